@@ -33,5 +33,6 @@ import repl.REPL;
  */
 void main() {
 	REPL repl = new REPL();
+	repl.handleInterruptSignal();
 	repl.loop();
 }
@@ -5,16 +5,17 @@ import repl.commands.*;
 import repl.commands.builtin.*;
 
 import java.util.Map;
-import java.util.function.Supplier;
+
+import static java.util.Map.entry;
 
 /**
  * Registry of all builtin shell commands.
  *
- * <p>Maps command names to their implementing classes. Used by ReplEvaluator
- * to determine if a command is builtin and to instantiate the appropriate
- * command class via reflection.
+ * <p>Maps command names to their implementations. Builtins keep no per-call
+ * state (everything comes from the {@link ReplContext}), so each name has one
+ * instance shared by all sessions and threads.
  *
- * @see ReplEvaluator
+ * @see CommandTable#resolve(String, String)
  */
 @UtilityClass
 public class BuiltinCommand {
@@ -33,17 +34,55 @@ public class BuiltinCommand {
 	/** Command name for the cd builtin. */
 	public static final String cd = "cd";
 
+	/** Command name for the export builtin. */
+	public static final String export = "export";
+
+	/** Command name for the test builtin. */
+	public static final String test = "test";
+
+	/** Command name for the {@code [ ... ]} form of the test builtin. */
+	public static final String testBracket = "[";
+
+	/** Command name for the {@code [[ ... ]]} form of the test builtin. */
+	public static final String testDoubleBracket = "[[";
+
+	/** Command name for the alias builtin. */
+	public static final String alias = "alias";
+
+	/** Command name for the unalias builtin. */
+	public static final String unalias = "unalias";
+
+	/** Command name for the return builtin ({@code return} is a Java keyword). */
+	public static final String returnCommand = "return";
+
+	/** Command name for the source builtin. */
+	public static final String source = "source";
+
+	/** Command name for the {@code .} form of the source builtin. */
+	public static final String dot = ".";
+
+	/** The source builtin, registered under both of its names. */
+	private static final Command SOURCE = new SourceCommand();
+
 	/**
-	 * Map of command names to their factory methods.
+	 * Map of command names to their shared instances.
 	 *
-	 * <p>Used to look up and instantiate builtin commands using Supplier pattern.
-	 * Avoids reflection overhead and provides type-safe instantiation.
+	 * <p>Running a builtin is a single lookup; no command object is created per call.
 	 */
-	public static final Map<String, Supplier<Command>> allCommandMap = Map.of(
-			exit, ExitCommand::new,
-			echo, EchoCommand::new,
-			type, TypeCommand::new,
-			pwd, PwdCommand::new,
-			cd, ChangeDirCommand::new
+	public static final Map<String, Command> allCommandMap = Map.ofEntries(
+			entry(exit, new ExitCommand()),
+			entry(echo, new EchoCommand()),
+			entry(type, new TypeCommand()),
+			entry(pwd, new PwdCommand()),
+			entry(cd, new ChangeDirCommand()),
+			entry(export, new ExportCommand()),
+			entry(test, new TestCommand()),
+			entry(testBracket, new TestCommand(testBracket)),
+			entry(testDoubleBracket, new TestCommand(testDoubleBracket)),
+			entry(alias, new AliasCommand()),
+			entry(unalias, new UnaliasCommand()),
+			entry(returnCommand, new ReturnCommand()),
+			entry(source, SOURCE),
+			entry(dot, SOURCE)
 	);
 }
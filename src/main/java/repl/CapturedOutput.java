@@ -0,0 +1,62 @@
+package repl;
+
+import repl.commands.CommandResult;
+
+/**
+ * {@link OutputSink} that collects output in memory.
+ *
+ * <p>Non-empty stdout and stderr chunks are joined with newlines, mirroring how
+ * the REPL would have printed them line by line.
+ *
+ * <p>Example usage:
+ * <pre>{@code
+ * CapturedOutput output = new CapturedOutput();
+ * int status = evaluator.execute(output);
+ * CommandResult combined = output.toResult(status);
+ * }</pre>
+ */
+public class CapturedOutput implements OutputSink {
+
+	private final StringBuilder stdout = new StringBuilder();
+	private final StringBuilder stderr = new StringBuilder();
+
+	/**
+	 * Appends a command's stdout and stderr to the captured text.
+	 *
+	 * @param result the command result to collect
+	 */
+	@Override
+	public void accept(CommandResult result) {
+		appendLine(stdout, result.stdout());
+		appendLine(stderr, result.stderr());
+	}
+
+	/**
+	 * Returns the stdout collected so far.
+	 *
+	 * @return the captured stdout (empty string if none)
+	 */
+	public String stdout() {
+		return stdout.toString();
+	}
+
+	/**
+	 * Combines the captured output into a single result.
+	 *
+	 * @param exitCode the exit code to report
+	 * @return a result holding all captured stdout and stderr
+	 */
+	public CommandResult toResult(int exitCode) {
+		return new CommandResult(stdout.toString(), stderr.toString(), exitCode);
+	}
+
+	private static void appendLine(StringBuilder target, String text) {
+		if (text.isEmpty()) {
+			return;
+		}
+		if (!target.isEmpty()) {
+			target.append('\n');
+		}
+		target.append(text);
+	}
+}
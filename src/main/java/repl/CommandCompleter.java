@@ -0,0 +1,160 @@
+package repl;
+
+import lombok.AccessLevel;
+import lombok.ToString;
+import lombok.experimental.FieldDefaults;
+import repl.io.Completer;
+import repl.utils.ExecutableUtils;
+import repl.utils.PrefixTrie;
+
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+/**
+ * Completes command names for the line editor, and hands other words to a completer
+ * for arguments.
+ *
+ * <p>A word is completed as a command name when it starts a command: at the start of
+ * the line, after {@code ;}, {@code &}, {@code |} or {@code (}, or after a reserved word
+ * that a command follows, such as {@code then} or {@code do}. The candidates are the
+ * builtins, the functions and aliases of the {@link CommandTable}, and the executables
+ * in PATH. Each source is a {@link PrefixTrie}, so Tab costs a walk of the typed
+ * prefix and of the matches, never a scan of PATH.
+ *
+ * <p>A word containing {@code /} is a path even in command position, and goes to the
+ * argument completer as well. Words with quotes, expansions or wildcards are not
+ * completed.
+ */
+@ToString
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class CommandCompleter implements Completer {
+	/** Names of the builtins, which never change. */
+	private static final PrefixTrie BUILTIN_NAMES = builtinNames();
+
+	/** Reserved words after which a command starts. */
+	private static final Set<String> COMMAND_KEYWORDS = Set.of(
+		"then", "do", "else", "elif", "if", "while", "until", "{", "!");
+
+	/** Characters ending the word before the cursor. */
+	private static final String WORD_BREAKS = " \t;&|()<>";
+
+	/** Characters after which a command starts. */
+	private static final String COMMAND_SEPARATORS = ";&|(\n";
+
+	/** Characters that make a word need expansion, which completion leaves alone. */
+	private static final String SPECIAL = "'\"\\$`*?[~=";
+
+	/** The session's functions and aliases. */
+	@ToString.Exclude
+	final CommandTable commandTable;
+
+	/** Completes the words that are not command names. */
+	final Completer arguments;
+
+	/**
+	 * Creates a completer for a session.
+	 *
+	 * @param commandTable the session's functions and aliases
+	 * @param arguments the completer for words that are not command names
+	 */
+	public CommandCompleter(CommandTable commandTable, Completer arguments) {
+		this.commandTable = commandTable;
+		this.arguments = arguments;
+	}
+
+	@Override
+	public Completion complete(String line, int cursor) {
+		int start = wordStart(line, cursor);
+		if (!isCommandName(line, start, cursor)) {
+			return arguments.complete(line, cursor);
+		}
+		return commandNames(start, line.substring(start, cursor));
+	}
+
+	@Override
+	public void complete(String line, int cursor, Consumer<Completion> results) {
+		int start = wordStart(line, cursor);
+		if (!isCommandName(line, start, cursor)) {
+			arguments.complete(line, cursor, results);
+			return;
+		}
+		results.accept(commandNames(start, line.substring(start, cursor)));
+	}
+
+	/**
+	 * Returns the index where the word ending at the cursor starts.
+	 *
+	 * @param line the line
+	 * @param cursor the end of the word
+	 * @return the start of the word
+	 */
+	static int wordStart(String line, int cursor) {
+		int start = cursor;
+		while (start > 0 && WORD_BREAKS.indexOf(line.charAt(start - 1)) < 0) {
+			start--;
+		}
+		return start;
+	}
+
+	/**
+	 * Returns whether a word is completed as typed: it has no quotes, expansions or wildcards.
+	 *
+	 * @param word the typed word
+	 * @return true if the word can be completed
+	 */
+	static boolean isPlain(String word) {
+		for (int i = 0; i < word.length(); i++) {
+			if (SPECIAL.indexOf(word.charAt(i)) >= 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns whether the word from {@code start} to {@code cursor} is completed as a
+	 * command name rather than a path.
+	 */
+	private static boolean isCommandName(String line, int start, int cursor) {
+		int slash = line.indexOf('/', start);
+		return (slash < 0 || slash >= cursor) && isCommandPosition(line, start);
+	}
+
+	private Completion commandNames(int start, String prefix) {
+		if (!isPlain(prefix)) {
+			return Completion.NONE;
+		}
+		TreeSet<String> names = new TreeSet<>();
+		BUILTIN_NAMES.collect(prefix, names);
+		commandTable.completeNames(prefix, names);
+		ExecutableUtils.completeExecutables(prefix, names);
+		return new Completion(start, List.copyOf(names));
+	}
+
+	/**
+	 * Returns whether a word starting at an index is the name of a command.
+	 */
+	private static boolean isCommandPosition(String line, int start) {
+		int end = start;
+		while (end > 0 && Character.isWhitespace(line.charAt(end - 1)) && line.charAt(end - 1) != '\n') {
+			end--;
+		}
+		if (end == 0 || COMMAND_SEPARATORS.indexOf(line.charAt(end - 1)) >= 0) {
+			return true;
+		}
+		int wordStart = end;
+		while (wordStart > 0 && WORD_BREAKS.indexOf(line.charAt(wordStart - 1)) < 0) {
+			wordStart--;
+		}
+		return COMMAND_KEYWORDS.contains(line.substring(wordStart, end))
+			&& isCommandPosition(line, wordStart);
+	}
+
+	private static PrefixTrie builtinNames() {
+		PrefixTrie names = new PrefixTrie();
+		BuiltinCommand.allCommandMap.keySet().forEach(names::add);
+		return names;
+	}
+}
@@ -0,0 +1,410 @@
+package repl;
+
+import repl.commands.Command;
+import repl.commands.CommandInput;
+import repl.commands.CommandResult;
+import repl.commands.ExecutableCommand;
+import repl.exceptions.CancelledException;
+import repl.exceptions.GracefulExitException;
+import repl.exceptions.ReplException;
+import repl.script.ExpansionContext;
+import repl.script.Node;
+import repl.script.ScriptParser;
+import repl.script.WordPart;
+import repl.utils.ExecutableUtils;
+import repl.utils.GlobUtils;
+import repl.utils.RedirectionTable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static repl.utils.RedirectionTable.Target.Stream.STDERR;
+import static repl.utils.RedirectionTable.Target.Stream.STDOUT;
+
+/**
+ * Evaluates {@code $(...)} command substitutions and variable references for one
+ * shell environment.
+ *
+ * <p>Each substitution runs in a forked environment (see {@link ReplContext.Builder#fork()}):
+ * the body sees the current directory and variables, but a {@code cd} or assignment
+ * inside it does not leak back.
+ *
+ * <p>A body holding a single command is evaluated by command type:
+ * <ul>
+ *   <li><b>Builtins</b> ({@code $(pwd)}, {@code $(echo ...)}, {@code $(type -p x)}) run
+ *       in-process through {@link BuiltinCommand#allCommandMap}; no process is forked.</li>
+ *   <li><b>Executables</b> are started with stderr inherited and stdout streamed into a
+ *       buffer capped at {@link #MAX_CAPTURE_BYTES}. Output past the cap is drained and
+ *       discarded so the child never blocks on a full pipe.</li>
+ *   <li><b>Unknown commands</b> report "command not found" on stderr and expand to nothing.</li>
+ * </ul>
+ *
+ * <p>Any other body ({@code $(cd /tmp; ls)}), and calls of functions and aliases, run through {@link ReplEvaluator} in the
+ * forked environment with its stdout collected in memory.
+ *
+ * <p>Trailing newlines are removed from the captured output.
+ *
+ * <p>{@code <(...)} and {@code >(...)} start a {@link ProcessSubstitution}, kept running
+ * until the evaluator closes it once the command using it has finished.
+ *
+ * @see repl.script.WordExpander
+ */
+public class CommandSubstitution implements ExpansionContext {
+
+	/** Maximum number of stdout bytes captured from an external substitution. */
+	static final int MAX_CAPTURE_BYTES = 16 * 1024 * 1024;
+
+	/** Name of the special parameter holding the last exit code. */
+	private static final String LAST_EXIT_CODE = "?";
+
+	/** Name of the special parameter holding the number of positional parameters. */
+	private static final String ARGUMENT_COUNT = "#";
+
+	/** Names of the special parameters expanding to all positional parameters. */
+	private static final String ALL_ARGUMENTS = "@";
+	private static final String ALL_ARGUMENTS_JOINED = "*";
+
+	/** Size of the chunk used to stream child output into the capture buffer. */
+	private static final int READ_CHUNK_BYTES = 8192;
+
+	/** The environment the substitutions belong to (forked, never modified). */
+	private final ReplContext.Builder scope;
+
+	/** Process substitutions started here, in order, until their commands finish. */
+	private List<ProcessSubstitution> processSubstitutions;
+
+	/**
+	 * Creates a substitution evaluator for the given environment.
+	 *
+	 * @param scope the builder of the environment words are expanded in
+	 */
+	public CommandSubstitution(ReplContext.Builder scope) {
+		this.scope = scope;
+	}
+
+	/**
+	 * Returns the value of a shell variable in this environment.
+	 *
+	 * @param name the variable name
+	 * @return the value, or null if unset
+	 */
+	@Override
+	public String getVariable(String name) {
+		if (name.equals(LAST_EXIT_CODE)) {
+			return Integer.toString(scope.getLastExitCode());
+		}
+		List<String> parameters = scope.getPositionalParameters();
+		switch (name) {
+			case ARGUMENT_COUNT -> {
+				return Integer.toString(parameters.size());
+			}
+			case ALL_ARGUMENTS, ALL_ARGUMENTS_JOINED -> {
+				return String.join(" ", parameters);
+			}
+			default -> {
+				if (Character.isDigit(name.charAt(0))) {
+					int index = Integer.parseInt(name);
+					return index >= 1 && index <= parameters.size() ? parameters.get(index - 1) : null;
+				}
+			}
+		}
+		return scope.getEnvUtils().get(name);
+	}
+
+	/**
+	 * Returns the arguments of the running function.
+	 *
+	 * @return the positional parameters (empty outside functions)
+	 */
+	@Override
+	public List<String> getPositionalParameters() {
+		return scope.getPositionalParameters();
+	}
+
+	/**
+	 * Expands a glob pattern against the environment's current directory.
+	 *
+	 * @param pattern the pattern to expand
+	 * @return the sorted matching paths
+	 */
+	@Override
+	public List<String> glob(String pattern) {
+		return GlobUtils.expand(scope.getDirUtils().getCurrentDir(), pattern);
+	}
+
+	/**
+	 * Assigns a shell variable in this environment.
+	 *
+	 * @param name the variable name
+	 * @param value the new value
+	 */
+	@Override
+	public void setVariable(String name, String value) {
+		scope.getEnvUtils().set(name, value);
+	}
+
+	/**
+	 * Parses and evaluates a substitution body and returns its captured stdout.
+	 *
+	 * @param body the command text between {@code $(} and {@code )}
+	 * @return the captured stdout without trailing newlines
+	 * @throws IllegalArgumentException if the body has a syntax error
+	 * @throws UncheckedIOException if the command cannot be run or its output cannot be read
+	 */
+	@Override
+	public String substitute(String body) {
+		return substitute(ScriptParser.parse(body));
+	}
+
+	/**
+	 * Evaluates the body parsed with the word and returns its captured stdout.
+	 *
+	 * @param substitution the substitution
+	 * @return the captured stdout without trailing newlines
+	 * @throws UncheckedIOException if the command cannot be run or its output cannot be read
+	 */
+	@Override
+	public String substitute(WordPart.CommandSubstitution substitution) {
+		return substitute(substitution.plan());
+	}
+
+	private String substitute(Node plan) {
+		if (!(plan instanceof Node.SimpleCommand(var assignments, var words)) || !assignments.isEmpty()) {
+			return capturePlan(plan);
+		}
+
+		ReplContext.Builder fork = scope.fork();
+		try {
+			return captureCommand(plan, fork.words(words).build());
+		} finally {
+			fork.getExpansionContext().closeProcessSubstitutions(0);
+		}
+	}
+
+	/**
+	 * Runs a body holding a single command, expanded in a forked environment, and
+	 * returns its stdout.
+	 */
+	private String captureCommand(Node plan, ReplContext context) {
+		String mainCommandStr = context.getMainCommandStr();
+		if (mainCommandStr.isEmpty()) {
+			return "";
+		}
+
+		CommandTable commandTable = scope.getCommandTable();
+		if (commandTable.getFunction(mainCommandStr) != null || commandTable.getAlias(mainCommandStr) != null) {
+			return capturePlan(plan);
+		}
+
+		try {
+			context.getRedirections().open(context.getDirUtils().getCurrentDir());
+			CommandTable.Resolution resolution = commandTable.resolve(mainCommandStr,
+					context.getEnvUtils().get(Constants.PATH_VARIABLE));
+			if (resolution.executablePath() == null) {
+				return captureBuiltin(resolution.command(), context);
+			}
+			context.setExecutablePath(resolution.executablePath());
+			return captureExecutable(context);
+		} catch (IOException e) {
+			throw new UncheckedIOException(mainCommandStr + ": command substitution failed: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Starts a process substitution, which runs until
+	 * {@link #closeProcessSubstitutions(int)} closes it.
+	 *
+	 * @param substitution the substitution, with its parsed body
+	 * @return the path of the pipe connected to the body
+	 * @throws UncheckedIOException if the pipe cannot be created or the body cannot be started
+	 */
+	@Override
+	public String processSubstitution(WordPart.ProcessSubstitution substitution) {
+		ProcessSubstitution running;
+		try {
+			running = ProcessSubstitution.start(substitution.plan(), substitution.output(), scope);
+		} catch (IOException e) {
+			throw new UncheckedIOException(LITERAL.processSubstitution(substitution)
+					+ ": process substitution failed: " + e.getMessage(), e);
+		}
+		if (processSubstitutions == null) {
+			processSubstitutions = new ArrayList<>(2);
+		}
+		processSubstitutions.add(running);
+		return running.path();
+	}
+
+	/**
+	 * Returns how many process substitutions are running, to close those a command
+	 * starts once it finishes.
+	 *
+	 * @return the number of substitutions not closed yet
+	 */
+	public int processSubstitutionCount() {
+		return processSubstitutions == null ? 0 : processSubstitutions.size();
+	}
+
+	/**
+	 * Closes the process substitutions started after the first {@code count}, latest
+	 * first, waiting for each body to finish.
+	 *
+	 * @param count the number of substitutions to keep running, as returned by
+	 *              {@link #processSubstitutionCount()} before the command started
+	 */
+	public void closeProcessSubstitutions(int count) {
+		if (processSubstitutions == null) {
+			return;
+		}
+		while (processSubstitutions.size() > count) {
+			processSubstitutions.removeLast().close();
+		}
+	}
+
+	/**
+	 * Runs a compound body in a forked environment and returns its stdout.
+	 */
+	private String capturePlan(Node plan) {
+		CapturedOutput output = new CapturedOutput();
+		try {
+			ReplEvaluator.execute(plan, scope.fork(), output);
+		} catch (GracefulExitException _) {
+			// exit only ends the substitution
+		} catch (CancelledException _) {
+			// Cancelled again by the caller's next command
+			Thread.currentThread().interrupt();
+		} catch (ReplException e) {
+			throw new UncheckedIOException(new IOException(e.getMessage(), e));
+		}
+		String stderr = output.toResult(0).stderr();
+		if (!stderr.isEmpty()) {
+			System.err.println(stderr);
+		}
+		return stripTrailingNewlines(output.stdout());
+	}
+
+	/**
+	 * Runs a command in-process and returns its stdout.
+	 *
+	 * <p>Stderr is printed immediately, matching the terminal behavior of a
+	 * forked substitution. {@code exit} only ends the substitution.
+	 */
+	private String captureBuiltin(Command command, ReplContext context) throws IOException {
+		CommandResult result;
+		try {
+			result = command.execute(context);
+		} catch (GracefulExitException _) {
+			return "";
+		} catch (CancelledException _) {
+			Thread.currentThread().interrupt();
+			return "";
+		} catch (ReplException e) {
+			throw new IOException(e.getMessage(), e);
+		}
+
+		RedirectionTable redirections = context.getRedirections();
+		redirections.write(context.getDirUtils().getCurrentDir(), result.stdout(), result.stderr());
+		String stderr = redirections.textFor(STDERR, result.stdout(), result.stderr());
+		if (!stderr.isEmpty()) {
+			System.err.println(stderr);
+		}
+		return stripTrailingNewlines(redirections.textFor(STDOUT, result.stdout(), result.stderr()));
+	}
+
+	/**
+	 * Runs an external command and streams its stdout into a bounded buffer. A
+	 * here-document or here-string is written into its stdin as it runs; a file
+	 * redirected with {@code <} is its stdin.
+	 */
+	private String captureExecutable(ReplContext context) throws IOException {
+		List<String> command = new ArrayList<>(context.getArgs().size() + 1);
+		command.add(ExecutableUtils.program(context.getMainCommandStr(), context.getExecutablePath(),
+				context.getEnvUtils().get(Constants.PATH_VARIABLE)));
+		command.addAll(context.getArgs());
+
+		Path currentDir = context.getDirUtils().getCurrentDir();
+		ProcessBuilder pb = new ProcessBuilder(command).directory(currentDir.toFile());
+		context.getEnvUtils().applyTo(pb);
+		RedirectionTable redirections = context.getRedirections();
+		if (redirections.stderr() == STDERR) {
+			pb.redirectError(ProcessBuilder.Redirect.INHERIT);
+		}
+		if (context.getStdin() instanceof CommandInput.File file) {
+			pb.redirectInput(file.path().toFile());
+		}
+		redirections.redirect(pb, currentDir);
+
+		// The child writes its stderr straight to the terminal: flush what System.err holds,
+		// though results the REPL has queued but not printed yet may still follow it
+		System.err.flush();
+		Process process = pb.start();
+		ExecutableCommand.feedInput(process, context.getStdin(), context.getMainCommandStr());
+
+		// Only one pipe carries text at a time: the other stream is inherited, in a
+		// file or merged, as descriptors 1 and 2 cannot be swapped
+		String stdout;
+		String stderr;
+		try (InputStream out = process.getInputStream(); InputStream err = process.getErrorStream()) {
+			stdout = readBounded(out);
+			stderr = readBounded(err);
+		}
+		String output = redirections.textFor(STDOUT, stdout, stderr);
+		String toTerminal = redirections.textFor(STDERR, stdout, stderr);
+		if (!toTerminal.isEmpty()) {
+			System.err.print(toTerminal);
+		}
+
+		try {
+			process.waitFor();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			process.destroy();
+			throw new IOException("interrupted", e);
+		}
+		return stripTrailingNewlines(output);
+	}
+
+	/**
+	 * Reads a stream to the end, keeping at most {@link #MAX_CAPTURE_BYTES} bytes.
+	 *
+	 * <p>Package-private for testing.
+	 *
+	 * @param stream the stream to drain
+	 * @return the captured bytes decoded as UTF-8
+	 * @throws IOException if reading fails
+	 */
+	static String readBounded(InputStream stream) throws IOException {
+		byte[] buffer = new byte[READ_CHUNK_BYTES];
+		int size = 0;
+		while (size < MAX_CAPTURE_BYTES) {
+			if (size == buffer.length) {
+				buffer = Arrays.copyOf(buffer, Math.min(MAX_CAPTURE_BYTES, buffer.length * 2));
+			}
+			int read = stream.read(buffer, size, buffer.length - size);
+			if (read == -1) {
+				return new String(buffer, 0, size, StandardCharsets.UTF_8);
+			}
+			size += read;
+		}
+
+		// Cap reached: keep draining so the child can run to completion
+		byte[] discard = new byte[READ_CHUNK_BYTES];
+		while (stream.read(discard) != -1) {
+			// discard
+		}
+		return new String(buffer, 0, size, StandardCharsets.UTF_8);
+	}
+
+	private static String stripTrailingNewlines(String output) {
+		int end = output.length();
+		while (end > 0 && output.charAt(end - 1) == '\n') {
+			end--;
+		}
+		return output.substring(0, end);
+	}
+}
@@ -0,0 +1,372 @@
+package repl;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.experimental.FieldDefaults;
+import repl.commands.BadCommand;
+import repl.commands.Command;
+import repl.commands.ExecutableCommand;
+import repl.commands.FunctionCommand;
+import repl.script.Node;
+import repl.script.ScriptParser;
+import repl.utils.ExecutableUtils;
+import repl.utils.PrefixTrie;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Session-scoped table of user-defined commands: shell functions and aliases.
+ *
+ * <p>Consulted by {@link ReplEvaluator} before {@link BuiltinCommand#allCommandMap}
+ * and PATH. Definitions are parsed once when they are made:
+ * <ul>
+ *   <li>A function stores the {@link Node} parsed from {@code name() { ... }}; every call
+ *       runs that node.</li>
+ *   <li>An alias stores its value together with the plan parsed from it; a call splices
+ *       the plan's words in front of the caller's words, so the command line is never
+ *       re-tokenized.</li>
+ * </ul>
+ *
+ * <p>{@link #resolve(String, String)} is the single place a command name is turned into
+ * the {@link Command} that runs it. Results are kept per name, so a command run again
+ * is dispatched with one map lookup and no allocation; they are dropped when the name
+ * is defined as a function or {@code PATH} changes.
+ *
+ * <p><strong>Copy-on-write:</strong> like {@link repl.utils.EnvUtils}, {@link #fork()} returns
+ * a child sharing this table until its first definition, so functions defined in a
+ * subshell do not leak into the shell.
+ *
+ * <p>Instance-based design allows for proper test isolation.
+ */
+@ToString
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class CommandTable {
+	/** Maximum depth of nested function calls, protecting the JVM stack from runaway recursion. */
+	static final int MAX_FUNCTION_DEPTH = 256;
+
+	/** Runs every external program; the path comes from the {@link Resolution}. */
+	private static final Command EXTERNAL = new ExecutableCommand();
+
+	/** Resolution of names that are not found, which is never cached. */
+	public static final Resolution NOT_FOUND = new Resolution(new BadCommand(), null);
+
+	/** Function bodies by name. */
+	Map<String, Node> functions;
+
+	/** Aliases by name. */
+	Map<String, Alias> aliases;
+
+	/** Whether the maps are shared with another instance and must be copied before writing. */
+	boolean shared;
+
+	/** Aliases currently being expanded, which are not expanded again. */
+	final Set<String> expandingAliases;
+
+	/** Number of function calls currently running. */
+	@Getter
+	int functionDepth;
+
+	/** Commands resolved by name since the last {@code PATH} change. */
+	@ToString.Exclude
+	final Map<String, Resolution> resolved = new HashMap<>();
+
+	/** The {@code PATH} value {@link #resolved} was filled with. */
+	String resolvedSearchPath;
+
+	/**
+	 * Names of the functions and aliases, for completion; built on the first query and
+	 * then kept up to date by each definition. A name defined as both is counted twice.
+	 */
+	@ToString.Exclude
+	PrefixTrie names;
+
+	/**
+	 * The command a name resolves to.
+	 *
+	 * @param command the command to run
+	 * @param executablePath the program run by an external command, or null
+	 */
+	public record Resolution(Command command, Path executablePath) { }
+
+	/**
+	 * An alias and its pre-parsed replacement.
+	 *
+	 * @param value the replacement text as defined
+	 * @param plan the replacement parsed into a plan
+	 */
+	public record Alias(String value, Node plan) { }
+
+	/**
+	 * Creates an empty command table.
+	 */
+	public CommandTable() {
+		this.functions = new HashMap<>();
+		this.aliases = new HashMap<>();
+		this.expandingAliases = new HashSet<>();
+	}
+
+	/**
+	 * Creates a child table; the child starts with no resolved commands, so it
+	 * never runs a parent's cached function after redefining it.
+	 */
+	private CommandTable(CommandTable parent) {
+		this.functions = parent.functions;
+		this.aliases = parent.aliases;
+		this.shared = true;
+		parent.shared = true;
+		this.expandingAliases = new HashSet<>(parent.expandingAliases);
+		this.functionDepth = parent.functionDepth;
+	}
+
+	/**
+	 * Creates a copy-on-write child table for a subshell.
+	 *
+	 * @return a child table starting with this table's definitions
+	 */
+	public CommandTable fork() {
+		return new CommandTable(this);
+	}
+
+	/**
+	 * Defines or replaces a function.
+	 *
+	 * @param name the function name
+	 * @param body the parsed function body
+	 */
+	public synchronized void defineFunction(String name, Node body) {
+		copyIfShared();
+		if (functions.put(name, body) == null && names != null) {
+			names.add(name);
+		}
+		resolved.remove(name);
+	}
+
+	/**
+	 * Returns the body of a function.
+	 *
+	 * @param name the function name
+	 * @return the parsed body, or null if no such function exists
+	 */
+	public Node getFunction(String name) {
+		return functions.get(name);
+	}
+
+	/**
+	 * Resolves a command name: function, builtin, then executable in PATH.
+	 *
+	 * <p>Builtins are the shared instances of {@link BuiltinCommand#allCommandMap}; a
+	 * function resolves to a {@link FunctionCommand} made once per definition. Names
+	 * that are not found are looked up again next time, so a program installed later
+	 * is picked up. Executables are searched in {@code searchPath}, the shell's PATH, and
+	 * a cached one is checked to still be executable, one {@code stat} before a process
+	 * is started, so a program deleted or moved since is searched again.
+	 *
+	 * @param name the command name
+	 * @param searchPath the current value of {@code PATH}; a different value than
+	 *        on the previous call drops all cached resolutions
+	 * @return the resolution, or {@link #NOT_FOUND} for unknown names
+	 */
+	public Resolution resolve(String name, String searchPath) {
+		if (!Objects.equals(searchPath, resolvedSearchPath)) {
+			resolved.clear();
+			resolvedSearchPath = searchPath;
+		}
+		Resolution resolution = resolved.get(name);
+		if (resolution != null && resolution.executablePath() != null
+				&& !Files.isExecutable(resolution.executablePath())) {
+			// The program was deleted or moved since it was found
+			resolved.remove(name);
+			resolution = null;
+		}
+		if (resolution == null) {
+			resolution = lookUp(name);
+			if (resolution == NOT_FOUND) {
+				return resolution;
+			}
+			resolved.put(name, resolution);
+		}
+		return resolution;
+	}
+
+	private Resolution lookUp(String name) {
+		Node function = functions.get(name);
+		if (function != null) {
+			return new Resolution(new FunctionCommand(function), null);
+		}
+		Command builtin = BuiltinCommand.allCommandMap.get(name);
+		if (builtin != null) {
+			return new Resolution(builtin, null);
+		}
+		Path executablePath = ExecutableUtils.findExecutablePath(name, resolvedSearchPath);
+		return executablePath != null ? new Resolution(EXTERNAL, executablePath) : NOT_FOUND;
+	}
+
+	/**
+	 * Defines or replaces an alias, parsing its value once.
+	 *
+	 * @param name the alias name
+	 * @param value the replacement text
+	 * @throws IllegalArgumentException if the value has a syntax error
+	 */
+	public synchronized void setAlias(String name, String value) {
+		Node plan = ScriptParser.parse(value);
+		copyIfShared();
+		if (aliases.put(name, new Alias(value, plan)) == null && names != null) {
+			names.add(name);
+		}
+	}
+
+	/**
+	 * Returns an alias.
+	 *
+	 * @param name the alias name
+	 * @return the alias, or null if not defined
+	 */
+	public Alias getAlias(String name) {
+		return aliases.get(name);
+	}
+
+	/**
+	 * Returns all aliases sorted by name.
+	 *
+	 * @return the alias values by name
+	 */
+	public Map<String, String> getAliases() {
+		Map<String, String> values = new TreeMap<>();
+		aliases.forEach((name, alias) -> values.put(name, alias.value()));
+		return values;
+	}
+
+	/**
+	 * Removes an alias.
+	 *
+	 * @param name the alias name
+	 * @return true if the alias existed
+	 */
+	public synchronized boolean removeAlias(String name) {
+		if (!aliases.containsKey(name)) {
+			return false;
+		}
+		copyIfShared();
+		aliases.remove(name);
+		if (names != null) {
+			names.remove(name);
+		}
+		return true;
+	}
+
+	/**
+	 * Removes all aliases.
+	 */
+	public synchronized void clearAliases() {
+		copyIfShared();
+		if (names != null) {
+			aliases.keySet().forEach(names::remove);
+		}
+		aliases.clear();
+	}
+
+	/**
+	 * Adds the names of all functions and aliases starting with a prefix to a collection.
+	 *
+	 * <p>The first call indexes the names in a {@link PrefixTrie}; later definitions
+	 * update it, so a query never walks the tables. Synchronized with the definitions,
+	 * as the line editor completes on its own thread while a line may be running.
+	 *
+	 * @param prefix the typed part of a command name
+	 * @param into the collection to add to
+	 */
+	public synchronized void completeNames(String prefix, Collection<? super String> into) {
+		if (names == null) {
+			PrefixTrie trie = new PrefixTrie();
+			functions.keySet().forEach(trie::add);
+			aliases.keySet().forEach(trie::add);
+			names = trie;
+		}
+		names.collect(prefix, into);
+	}
+
+	/**
+	 * Returns whether a name is defined as a function or an alias.
+	 *
+	 * <p>Synchronized with the definitions, for the line editor's highlighting.
+	 *
+	 * @param name the command name
+	 * @return true if it is a function or an alias
+	 */
+	public synchronized boolean isDefined(String name) {
+		return functions.containsKey(name) || aliases.containsKey(name);
+	}
+
+	/**
+	 * Returns whether a command name is an alias that is not already being expanded.
+	 *
+	 * @param name the command name
+	 * @return true if the name should be replaced by its alias
+	 */
+	public boolean isExpandableAlias(String name) {
+		return aliases.containsKey(name) && !expandingAliases.contains(name);
+	}
+
+	/**
+	 * Starts expanding an alias, unless it is already being expanded.
+	 *
+	 * <p>Stops {@code alias ls='ls -F'} from expanding forever.
+	 *
+	 * @param name the command name
+	 * @return the alias to expand, or null if there is none or it is already being expanded
+	 */
+	public Alias beginAliasExpansion(String name) {
+		Alias alias = aliases.get(name);
+		if (alias == null || !expandingAliases.add(name)) {
+			return null;
+		}
+		return alias;
+	}
+
+	/**
+	 * Ends an expansion started by {@link #beginAliasExpansion(String)}.
+	 *
+	 * @param name the alias name
+	 */
+	public void endAliasExpansion(String name) {
+		expandingAliases.remove(name);
+	}
+
+	/**
+	 * Records the start of a function call.
+	 *
+	 * @return false if the maximum nesting depth has been reached
+	 */
+	public boolean enterFunction() {
+		if (functionDepth >= MAX_FUNCTION_DEPTH) {
+			return false;
+		}
+		functionDepth++;
+		return true;
+	}
+
+	/**
+	 * Records the end of a function call.
+	 */
+	public void exitFunction() {
+		functionDepth--;
+	}
+
+	private void copyIfShared() {
+		if (shared) {
+			functions = new HashMap<>(functions);
+			aliases = new HashMap<>(aliases);
+			shared = false;
+		}
+	}
+}
@@ -30,6 +30,64 @@ public class Constants {
 	/** Newline character - can be escaped in double quotes. */
 	public static final char NEWLINE = '\n';
 
+	/** Opening parenthesis - starts a subshell, or a command substitution after {@code $}. */
+	public static final char OPEN_PAREN = '(';
+
+	/** Closing parenthesis - ends a command substitution or subshell. */
+	public static final char CLOSE_PAREN = ')';
+
+	/** Opening brace - starts a {@code ${name}} variable reference. */
+	public static final char OPEN_BRACE = '{';
+
+	/** Closing brace - ends a {@code ${name}} variable reference. */
+	public static final char CLOSE_BRACE = '}';
+
+	/** Tab character - separates words like a space on command lines. */
+	public static final char TAB = '\t';
+
+	/** Question mark - names the last exit code in {@code $?}; matches one character in globs. */
+	public static final char QUESTION_MARK = '?';
+
+	/** Asterisk - matches any string in globs and case patterns. */
+	public static final char ASTERISK = '*';
+
+	/** Opening bracket - starts a character class in globs and case patterns. */
+	public static final char OPEN_BRACKET = '[';
+
+	/** Closing bracket - ends a character class started by {@link #OPEN_BRACKET}. */
+	public static final char CLOSE_BRACKET = ']';
+
+	/** Semicolon - separates sequential commands (and {@code ;;} ends a case item). */
+	public static final char SEMICOLON = ';';
+
+	/** Ampersand - doubled, {@code &&} runs the next command only if the previous one succeeded. */
+	public static final char AMPERSAND = '&';
+
+	/** Vertical bar - doubled, {@code ||} runs the next command only if the previous one failed. */
+	public static final char PIPE = '|';
+
+	/** Less-than sign - {@code <<} and {@code <<<} feed text to standard input. */
+	public static final char LESS_THAN = '<';
+
+	/** Greater-than sign - {@code >} redirects output, {@code >>} appends it. */
+	public static final char GREATER_THAN = '>';
+
+	/** Hash sign - unquoted at the start of a word, starts a comment running to the end of the line. */
+	public static final char HASH = '#';
+
+	/**
+	 * Characters that form control operators outside quotes.
+	 *
+	 * <p>{@code ;} and newline separate commands; {@code (} and {@code )} group
+	 * commands into a subshell.
+	 */
+	public static final Set<Character> CONTROL_OPERATORS = Set.of(
+		SEMICOLON,
+		NEWLINE,
+		OPEN_PAREN,
+		CLOSE_PAREN
+	);
+
 	/**
 	 * Characters that can be escaped by backslash inside double quotes.
 	 *
@@ -39,7 +97,7 @@ public class Constants {
 	 *   <li>{@code \} - Backslash (to include literal backslash)</li>
 	 *   <li>{@code $} - Dollar sign (to prevent variable expansion)</li>
 	 *   <li>{@code `} - Backtick (to prevent command substitution)</li>
-	 *   <li>{@code \n} - Newline (to include literal newline)</li>
+	 *   <li>{@code \n} - Newline (a line continuation: the backslash and newline are removed)</li>
 	 * </ul>
 	 *
 	 * <p>For any other character, the backslash is preserved literally.
@@ -59,6 +117,19 @@ public class Constants {
 		NEWLINE
 	);
 
-	public static final Set<String> STDOUT_REDIRECT = Set.of("1>", ">");
-	public static final Set<String> STDERR_REDIRECT = Set.of("2>");
+	/** Name of the variable listing the directories searched for commands. */
+	public static final String PATH_VARIABLE = "PATH";
+
+	/** Operators reading standard input from the file named by the next word. */
+	public static final Set<String> STDIN_REDIRECT = Set.of("<", "0<");
+
+	/**
+	 * Operators feeding a here-document to standard input: the lines following the
+	 * command, up to a line holding only the delimiter. {@code <<-} also strips the
+	 * leading tabs of the lines.
+	 */
+	public static final Set<String> HERE_DOCUMENT = Set.of("<<", "<<-");
+
+	/** Operator feeding a here-string, the next word and a newline, to standard input. */
+	public static final String HERE_STRING = "<<<";
 }
@@ -34,4 +34,51 @@ public final class Messages {
 
 	/** Error suffix for file/directory not found errors. */
 	public static final String NO_SUCH_FILE_OR_DIRECTORY = ": No such file or directory";
+
+	// === Export command messages ===
+
+	/** Error suffix for names that cannot be used as variable names. */
+	public static final String NOT_A_VALID_IDENTIFIER = "': not a valid identifier";
+
+	// === Test command messages ===
+
+	/** Error prefix for a missing closing {@code ]}, {@code ]]} or {@code )}. */
+	public static final String TEST_MISSING_CLOSE = "missing `";
+
+	/** Error suffix for an operand that is not an integer. */
+	public static final String TEST_INTEGER_EXPRESSION_EXPECTED = ": integer expression expected";
+
+	/** Error suffix for a two-word expression whose first word is not an operator. */
+	public static final String TEST_UNARY_OPERATOR_EXPECTED = ": unary operator expected";
+
+	/** Error suffix for a three-word expression whose middle word is not an operator. */
+	public static final String TEST_BINARY_OPERATOR_EXPECTED = ": binary operator expected";
+
+	/** Error for an expression with words left over. */
+	public static final String TEST_TOO_MANY_ARGUMENTS = "too many arguments";
+
+	/** Error for an operator missing its operand. */
+	public static final String TEST_ARGUMENT_EXPECTED = "argument expected";
+
+	/** Error suffix for an invalid regular expression after {@code =~}. */
+	public static final String TEST_INVALID_REGEX = ": invalid regular expression";
+
+	// === Function and alias messages ===
+
+	/** Message suffix for a name that is an alias, followed by its value in backquotes. */
+	public static final String TYPE_IS_ALIASED_TO = " is aliased to `";
+
+	/** Message suffix indicating a command is a shell function. */
+	public static final String TYPE_IS_FUNCTION = " is a function";
+
+	/** Error suffix for a non-numeric argument of {@code return}. */
+	public static final String NUMERIC_ARGUMENT_REQUIRED = ": numeric argument required";
+
+	/** Usage message of {@code unalias}. */
+	public static final String UNALIAS_USAGE = "unalias: usage: unalias [-a] name [name ...]";
+
+	// === Source messages ===
+
+	/** Error suffix for {@code source} without a file name. */
+	public static final String FILENAME_ARGUMENT_REQUIRED = ": filename argument required";
 }
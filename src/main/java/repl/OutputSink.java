@@ -0,0 +1,39 @@
+package repl;
+
+import repl.commands.CommandResult;
+import repl.commands.TerminalHandoff;
+import repl.exceptions.ReplException;
+
+/**
+ * Destination for the output of commands run as part of a plan.
+ *
+ * <p>Compound commands (sequences, subshells) produce one {@link CommandResult}
+ * per simple command. The evaluator hands each result to a sink as soon as the
+ * command finishes; the sink decides whether to collect, print or discard it.
+ *
+ * <p>A sink printing to a terminal may also offer the terminal itself, so an external
+ * program whose output is not redirected writes to it directly instead of through
+ * {@link #accept(CommandResult)}.
+ *
+ * @see CapturedOutput
+ * @see ReplEvaluator
+ */
+@FunctionalInterface
+public interface OutputSink {
+	/**
+	 * Accepts the output of one finished command.
+	 *
+	 * @param result the command's stdout, stderr and exit code
+	 * @throws ReplException if the output cannot be delivered
+	 */
+	void accept(CommandResult result) throws ReplException;
+
+	/**
+	 * Returns the terminal this sink prints to, for programs run in the foreground.
+	 *
+	 * @return the terminal, or null if output must be delivered to {@link #accept(CommandResult)}
+	 */
+	default TerminalHandoff terminal() {
+		return null;
+	}
+}
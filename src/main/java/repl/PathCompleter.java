@@ -0,0 +1,106 @@
+package repl;
+
+import lombok.AccessLevel;
+import lombok.ToString;
+import lombok.experimental.FieldDefaults;
+import repl.io.Completer;
+import repl.utils.DirUtils;
+import repl.utils.DirectorySnapshots;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Completes file and directory paths for the line editor, relative to the shell's
+ * current directory.
+ *
+ * <p>The word before the cursor is split at its last {@code /} into the directory to
+ * look in and the start of the name. The directory's entries come from a
+ * {@link DirectorySnapshots} cache: a cached directory is answered at once, any other
+ * is listed on a virtual thread and answered when the listing is done, while the
+ * editor keeps taking keys. Directories are offered with a trailing {@code /}; names
+ * starting with {@code .} only when the typed name does.
+ */
+@ToString
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class PathCompleter implements Completer {
+	/**
+	 * Maximum number of candidates checked for being a directory; more are offered
+	 * without the slash rather than read one by one.
+	 */
+	static final int MAX_CHECKED = 256;
+
+	/** The shell's current directory. */
+	@ToString.Exclude
+	final DirUtils dirUtils;
+
+	/** Cached listings of the directories completed in. */
+	final DirectorySnapshots snapshots;
+
+	/**
+	 * Creates a completer for a session.
+	 *
+	 * @param dirUtils the session's current directory
+	 */
+	public PathCompleter(DirUtils dirUtils) {
+		this(dirUtils, new DirectorySnapshots());
+	}
+
+	/**
+	 * Creates a completer using the given snapshot cache.
+	 *
+	 * <p>Package-private for testing.
+	 */
+	PathCompleter(DirUtils dirUtils, DirectorySnapshots snapshots) {
+		this.dirUtils = dirUtils;
+		this.snapshots = snapshots;
+	}
+
+	/**
+	 * Returns the completions, waiting for the directory to be listed if necessary.
+	 */
+	@Override
+	public Completion complete(String line, int cursor) {
+		return completion(line, cursor).join();
+	}
+
+	/**
+	 * Passes the completions to {@code results} at once if the directory's snapshot is
+	 * cached, and otherwise on the listing thread when the listing is done.
+	 */
+	@Override
+	public void complete(String line, int cursor, Consumer<Completion> results) {
+		completion(line, cursor).thenAccept(results);
+	}
+
+	private CompletableFuture<Completion> completion(String line, int cursor) {
+		int start = CommandCompleter.wordStart(line, cursor);
+		String word = line.substring(start, cursor);
+		if (!CommandCompleter.isPlain(word)) {
+			return CompletableFuture.completedFuture(Completion.NONE);
+		}
+		String directoryPart = word.substring(0, word.lastIndexOf('/') + 1);
+		String namePrefix = word.substring(directoryPart.length());
+		Path directory = dirUtils.getCurrentDir().resolve(directoryPart);
+		return snapshots.get(directory).thenApply(snapshot -> new Completion(start,
+			candidates(snapshot.withPrefix(namePrefix), directory, directoryPart, namePrefix)));
+	}
+
+	private static List<String> candidates(List<String> names, Path directory, String directoryPart, String namePrefix) {
+		boolean hidden = namePrefix.startsWith(".");
+		boolean check = names.size() <= MAX_CHECKED;
+		List<String> candidates = new ArrayList<>(names.size());
+		for (String name : names) {
+			if (name.startsWith(".") && !hidden) {
+				continue;
+			}
+			boolean isDirectory = check && Files.isDirectory(directory.resolve(name));
+			candidates.add(directoryPart + name + (isDirectory ? "/" : ""));
+		}
+		return candidates;
+	}
+}
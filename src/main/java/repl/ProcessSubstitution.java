@@ -0,0 +1,302 @@
+package repl;
+
+import lombok.AccessLevel;
+import lombok.ToString;
+import lombok.experimental.FieldDefaults;
+import repl.commands.CommandInput;
+import repl.commands.CommandResult;
+import repl.exceptions.CancelledException;
+import repl.exceptions.GracefulExitException;
+import repl.exceptions.ReplException;
+import repl.io.Pipe;
+import repl.script.Node;
+import repl.utils.ExecutableUtils;
+import repl.utils.RedirectionTable;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static repl.Constants.NEWLINE;
+import static repl.Constants.PATH_VARIABLE;
+
+/**
+ * A running {@code <(...)} or {@code >(...)} process substitution.
+ *
+ * <p>The body is connected to the command using the substitution by a {@link Pipe}
+ * created for it, and the word expands to the path of the command's end of the pipe:
+ * {@code diff <(sort a) <(sort b)} runs both sorts while {@code diff} reads their output
+ * from two paths. Nothing is staged in files, so a producer and its consumer run side by
+ * side and an endless producer such as {@code <(yes)} works.
+ *
+ * <p>A body that is a single external program is started with the pipe as its stdout,
+ * or as its stdin for {@code >(...)}, and never passes data through the shell. Any other
+ * body runs in-process in a forked environment on a virtual thread: the output of a
+ * {@code <(...)} body is written to the pipe as each command finishes, while a
+ * {@code >(...)} body, which then cannot read the pipe, prints its output like a command
+ * run by itself.
+ *
+ * <p>{@link #close()} is called once the command using the substitution has finished.
+ * The shell's end of the pipe is closed first, so a consumer reads to the end of its
+ * input. A producer is stopped, as its consumer exited, even early, and nothing reads
+ * it any more. Then the body is waited for, so no substitution outlives its command.
+ *
+ * @see CommandSubstitution#processSubstitution(repl.script.WordPart.ProcessSubstitution)
+ */
+@ToString
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+final class ProcessSubstitution {
+
+	/** The pipe between the body and the command using the substitution. */
+	Pipe pipe;
+
+	/** True for {@code >(...)}, whose body reads from the pipe. */
+	boolean output;
+
+	/** The forked environment of the body, holding substitutions nested in its words. */
+	@ToString.Exclude
+	ReplContext.Builder fork;
+
+	/** The external program running the body, or null if it runs in-process. */
+	Process process;
+
+	/** The thread running the body in-process, or null if a program runs it. */
+	Thread thread;
+
+	private ProcessSubstitution(Pipe pipe, boolean output, ReplContext.Builder fork, Process process, Thread thread) {
+		this.pipe = pipe;
+		this.output = output;
+		this.fork = fork;
+		this.process = process;
+		this.thread = thread;
+	}
+
+	/**
+	 * Starts a substitution body.
+	 *
+	 * @param plan the body, parsed with the word holding it
+	 * @param output true for {@code >(...)}: the body reads what is written to the path
+	 * @param scope the environment the word is expanded in, forked for the body
+	 * @return the running substitution
+	 * @throws IOException if the pipe cannot be created or the program cannot be started
+	 */
+	static ProcessSubstitution start(Node plan, boolean output, ReplContext.Builder scope) throws IOException {
+		ReplContext.Builder fork = scope.fork();
+		Pipe pipe = Pipe.open();
+		try {
+			ReplContext program = program(plan, fork);
+			if (program != null && isStreamable(program)) {
+				return new ProcessSubstitution(pipe, output, fork, startProgram(program, pipe, output), null);
+			}
+			Body runner = program != null
+					? sink -> sink.accept(ReplEvaluator.processCommand(program, sink))
+					: sink -> ReplEvaluator.execute(plan, fork, sink);
+			return new ProcessSubstitution(pipe, output, fork, null, startThread(runner, pipe, output));
+		} catch (IOException | RuntimeException e) {
+			pipe.closeRead();
+			pipe.closeWrite();
+			fork.getExpansionContext().closeProcessSubstitutions(0);
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the path the command using the substitution reads or writes.
+	 *
+	 * @return the read end of a {@code <(...)} pipe, or the write end of a {@code >(...)} pipe
+	 */
+	String path() {
+		return output ? pipe.writePath() : pipe.readPath();
+	}
+
+	/**
+	 * Closes the shell's end of the pipe and waits for the body to finish.
+	 *
+	 * <p>A {@code <(...)} body is stopped first, as nothing reads its output any more. A
+	 * {@code >(...)} body reads to the end of its input and is waited for. If the shell
+	 * is interrupted while waiting, the body is stopped instead.
+	 */
+	void close() {
+		if (output) {
+			pipe.closeWrite();
+		} else {
+			pipe.closeRead();
+			stop();
+		}
+		try {
+			if (process != null) {
+				process.waitFor();
+			} else {
+				thread.join();
+			}
+		} catch (InterruptedException e) {
+			stop();
+			Thread.currentThread().interrupt();
+			if (thread != null) {
+				// The body stops at its next command; its thread closes what it started
+				return;
+			}
+		}
+		fork.getExpansionContext().closeProcessSubstitutions(0);
+	}
+
+	private void stop() {
+		if (process != null) {
+			process.destroy();
+		} else {
+			thread.interrupt();
+		}
+	}
+
+	/**
+	 * Expands a body that is a single command, unless it is an alias, which has to be
+	 * run as a plan.
+	 *
+	 * @return the context of the command, or null for any other body
+	 */
+	private static ReplContext program(Node plan, ReplContext.Builder fork) {
+		if (!(plan instanceof Node.SimpleCommand(var assignments, var words))
+				|| !assignments.isEmpty() || words.isEmpty()) {
+			return null;
+		}
+		String name = words.getFirst().unquotedText();
+		if (name != null && fork.getCommandTable().isExpandableAlias(name)) {
+			return null;
+		}
+		ReplContext context = fork.words(words).build();
+		if (!context.getMainCommandStr().isEmpty()) {
+			CommandTable.Resolution resolution = fork.getCommandTable()
+					.resolve(context.getMainCommandStr(), context.getEnvUtils().get(PATH_VARIABLE));
+			if (resolution.executablePath() != null) {
+				context.setExecutablePath(resolution.executablePath());
+			}
+		}
+		return context;
+	}
+
+	/**
+	 * Returns whether a command is an external program whose streams a
+	 * {@link ProcessBuilder} can connect: no text is fed to its stdin and neither output
+	 * goes to the other stream.
+	 */
+	private static boolean isStreamable(ReplContext context) {
+		return context.getExecutablePath() != null
+				&& !(context.getStdin() instanceof CommandInput.Text)
+				&& !context.getRedirections().crossesStreams();
+	}
+
+	/**
+	 * Starts an external program with the pipe as its stdout, or its stdin for
+	 * {@code >(...)}, and closes the shell's copy of the program's end.
+	 */
+	private static Process startProgram(ReplContext context, Pipe pipe, boolean output) throws IOException {
+		List<String> command = new ArrayList<>(context.getArgs().size() + 1);
+		command.add(ExecutableUtils.program(context.getMainCommandStr(), context.getExecutablePath(),
+				context.getEnvUtils().get(PATH_VARIABLE)));
+		command.addAll(context.getArgs());
+
+		Path currentDir = context.getDirUtils().getCurrentDir();
+		ProcessBuilder pb = new ProcessBuilder(command).directory(currentDir.toFile());
+		context.getEnvUtils().applyTo(pb);
+		// The shell opens its own descriptor of the pipe by path for the program
+		if (output) {
+			pb.redirectInput(new File(pipe.readPath()));
+			pb.redirectOutput(ProcessBuilder.Redirect.INHERIT);
+		} else {
+			pb.redirectOutput(new File(pipe.writePath()));
+		}
+		pb.redirectError(ProcessBuilder.Redirect.INHERIT);
+		if (context.getStdin() instanceof CommandInput.File file) {
+			pb.redirectInput(file.path().toFile());
+		}
+		RedirectionTable redirections = context.getRedirections();
+		redirections.open(currentDir);
+		redirections.redirect(pb, currentDir);
+
+		// Writes what System.out and System.err hold, not the results the REPL has yet to
+		// print: the program runs alongside the command, so its output has no set order
+		System.out.flush();
+		System.err.flush();
+		Process process = pb.start();
+		if (output) {
+			pipe.closeRead();
+		} else {
+			pipe.closeWrite();
+			if (pb.redirectInput() == ProcessBuilder.Redirect.PIPE) {
+				process.getOutputStream().close();
+			}
+		}
+		return process;
+	}
+
+	/**
+	 * Runs a body in-process on a virtual thread.
+	 *
+	 * <p>The output of a {@code <(...)} body is written to the pipe, opened here so the
+	 * shell's write end can be closed at once. A {@code >(...)} body does not read the
+	 * pipe, so its read end is closed at once too: writing to the path fails as it would
+	 * for a program that exits without reading.
+	 */
+	private static Thread startThread(Body body, Pipe pipe, boolean output) throws IOException {
+		if (output) {
+			pipe.closeRead();
+			return Thread.ofVirtual().name("process-substitution").start(() -> run(body, ProcessSubstitution::print));
+		}
+		OutputStream out = new FileOutputStream(pipe.writePath());
+		pipe.closeWrite();
+		return Thread.ofVirtual().name("process-substitution").start(() -> {
+			try (out) {
+				run(body, result -> {
+					printError(result.stderr());
+					if (result.stdout().isEmpty()) {
+						return;
+					}
+					try {
+						out.write((result.stdout() + NEWLINE).getBytes(StandardCharsets.UTF_8));
+					} catch (IOException e) {
+						// The consumer stopped reading: the body ends, as on SIGPIPE
+						throw new CancelledException();
+					}
+				});
+			} catch (IOException _) {
+				// Nothing is left to flush into a pipe nobody reads
+			}
+		});
+	}
+
+	private static void run(Body body, OutputSink sink) {
+		try {
+			body.run(sink);
+		} catch (GracefulExitException | CancelledException _) {
+			// exit, a closed pipe or Ctrl-C only end the substitution
+		} catch (ReplException | RuntimeException e) {
+			printError(e.getMessage());
+		}
+	}
+
+	private static void print(CommandResult result) {
+		if (!result.stdout().isEmpty()) {
+			System.out.println(result.stdout());
+		}
+		printError(result.stderr());
+	}
+
+	private static void printError(String text) {
+		if (text != null && !text.isEmpty()) {
+			System.err.println(text);
+		}
+	}
+
+	/**
+	 * A substitution body run in-process.
+	 */
+	@FunctionalInterface
+	private interface Body {
+		void run(OutputSink sink) throws ReplException;
+	}
+}
@@ -1,68 +1,252 @@
 package repl;
 
+import repl.commands.CommandResult;
+import repl.commands.TerminalHandoff;
+import repl.exceptions.CancelledException;
 import repl.exceptions.GracefulExitException;
 import repl.exceptions.ReplException;
+import repl.history.History;
+import repl.history.HistoryEntry;
+import repl.history.HistoryIndex;
+import repl.history.HistoryLog;
+import repl.io.InterruptSignal;
+import repl.io.LineEditor;
+import repl.io.LineReader;
+import repl.io.OutputRenderer;
+import repl.script.Node;
+import repl.script.ScriptParser;
+import repl.utils.ContinuationScanner;
 import repl.utils.DirUtils;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedByInterruptException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Scanner;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static repl.io.OutputRenderer.Target.STDERR;
+import static repl.io.OutputRenderer.Target.STDOUT;
 
 /**
  * The main Read-Eval-Print Loop that orchestrates the interactive shell.
  *
  * <p>Implements the classic REPL pattern: reads user input, evaluates commands,
- * handles I/O redirection, prints results, and loops until exit. Uses tail recursion
- * for the main loop.
+ * handles I/O redirection, prints results, and loops until exit. The main loop is an
+ * iterative event loop with explicit read, eval and render phases, so the stack
+ * depth stays the same however many commands a session runs.
+ *
+ * <p>The phases run on separate threads connected by bounded queues: lines
+ * typed while a command runs are read ahead, output is rendered while the command
+ * is still producing it, and Ctrl-C ({@link #interrupt()}) cancels only the running
+ * evaluation.
  *
  * <p>Responsibilities:
  * <ul>
- *   <li>Reading user input from stdin</li>
+ *   <li>Reading user input from stdin, showing a prompt only on a terminal</li>
  *   <li>Delegating command evaluation to {@link ReplEvaluator}</li>
- *   <li>Handling stdout and stderr redirection to files</li>
- *   <li>Printing output to the terminal</li>
+ *   <li>Printing output to the terminal through an {@link OutputRenderer}</li>
  *   <li>Error handling and recovery</li>
  * </ul>
  *
+ * <p>On a terminal, every line run is recorded in the {@link History} the line editor
+ * recalls from, with its start time, directory, exit code and duration, and appended
+ * to the history file by a {@link HistoryLog}. Ctrl-R searches a {@link HistoryIndex} of
+ * every line in the file, built in the background.
+ *
+ * <p>On a terminal, an external program whose output is not redirected or captured
+ * runs in the foreground: output queued before it is written first, the line editor
+ * stops reading keys and the terminal returns to cooked mode, and the program reads and
+ * writes the terminal itself until it exits (see {@link TerminalHandoff}).
+ *
+ * <p>A command may span several lines: while the input read so far ends inside quotes,
+ * after a trailing backslash or {@code &&}, or inside a compound command, a
+ * {@link ContinuationScanner} asks for more lines, with the continuation prompt on a
+ * terminal, and the whole command is parsed and run once complete.
+ *
+ * <p>Recently entered lines are kept with their parsed plans, so a line that is
+ * entered again (as by a polling script on stdin) runs without being parsed,
+ * and a repeated simple command allocates nothing but its output.
+ *
  * <p>Example usage:
  * <pre>{@code
  * REPL repl = new REPL();
+ * repl.handleInterruptSignal(); // Ctrl-C cancels programs in the foreground, not the JVM
  * repl.loop(); // Starts the interactive shell
  * }</pre>
  *
  * @see ReplEvaluator
- * @see EvaluationResult
  */
 public class REPL {
 
+	/** Maximum number of recently entered lines whose plans are kept. */
+	static final int MAX_CACHED_PLANS = 64;
+
+	/** Maximum number of lines read ahead while a command runs. */
+	static final int MAX_TYPE_AHEAD = 256;
+
+	/** Maximum number of command results waiting to be rendered before evaluation blocks. */
+	static final int MAX_PENDING_OUTPUT = 1024;
+
+	/** Text of the prompt. */
+	private static final String PROMPT_TEXT = "$ ";
+
+	/** Text of the prompt for the next line of an incomplete command. */
+	private static final String CONTINUATION_PROMPT_TEXT = "> ";
+
+	/** Queued after the last line of input; compared by identity. */
+	@SuppressWarnings("StringOperationCanBeSimplified")
+	private static final String END_OF_INPUT = new String();
+
+	/** Queued to show the prompt; compared by identity. */
+	private static final CommandResult PROMPT = new CommandResult(PROMPT_TEXT, "", 0);
+
+	/** Queued to show the continuation prompt; compared by identity. */
+	private static final CommandResult CONTINUATION_PROMPT = new CommandResult(CONTINUATION_PROMPT_TEXT, "", 0);
+
+	/** Queued when Ctrl-C cancels a line, to end the line the terminal or line editor echoed {@code ^C} on. */
+	private static final CommandResult CANCELLED = new CommandResult("", "", CancelledException.EXIT_CODE);
+
+	/** Queued after the last output; compared by identity. */
+	private static final CommandResult END_OF_OUTPUT = new CommandResult("", "", 0);
+
+	/** Queued before a program takes the terminal, to flush what is rendered; compared by identity. */
+	private static final CommandResult HANDOFF = new CommandResult("", "", 0);
+
 	/** The context builder with shared services (reused across commands). */
 	private final ReplContext.Builder contextBuilder;
 
+	/** Parsed plans of recently entered lines, least recently used first. */
+	private final Map<String, Node> plans = new LinkedHashMap<>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Node> eldest) {
+			return size() > MAX_CACHED_PLANS;
+		}
+	};
+
+	/**
+	 * Queues command output for rendering, and offers the terminal to programs run in the
+	 * foreground; a field so the loop does not create it per line.
+	 */
+	private final OutputSink printer = new OutputSink() {
+		@Override
+		public void accept(CommandResult result) throws CancelledException {
+			enqueue(result);
+		}
+
+		@Override
+		public TerminalHandoff terminal() {
+			return foreground;
+		}
+	};
+
+	/** Hands the terminal to programs run in the foreground, or null if input is not a line editor on a terminal. */
+	private final TerminalHandoff foreground;
+
+	/** Released by the render thread once it has flushed the output queued before a {@link #HANDOFF}. */
+	private final Semaphore handoffRendered = new Semaphore(0);
+
+	/** Lines read but not yet evaluated. */
+	private final BlockingQueue<String> pendingLines = new ArrayBlockingQueue<>(MAX_TYPE_AHEAD);
+
+	/** Joins the lines of a command spanning several; used by the evaluator only. */
+	private final ContinuationScanner continuation = new ContinuationScanner();
+
+	/** Whether a command is being continued, for the line editor's prompt. */
+	private volatile boolean continuing;
+
+	/** Set by Ctrl-C between lines, so an incomplete command is dropped. */
+	private final AtomicBoolean continuationCancelled = new AtomicBoolean();
+
+	/** Output produced but not yet rendered. */
+	private final BlockingQueue<CommandResult> pendingOutput = new ArrayBlockingQueue<>(MAX_PENDING_OUTPUT);
+
+	/** The thread taking lines from the type-ahead queue and evaluating them, for the whole loop. */
+	private volatile Thread evaluator;
+
+	/**
+	 * Whether the evaluator is running a line; guarded by {@link #evaluationLock}, so
+	 * Ctrl-C interrupts the evaluator only while a line runs and never the wait for the
+	 * next one.
+	 */
+	private boolean evaluating;
+
+	/** Guards {@link #evaluating} and the interrupt status of the evaluator. */
+	private final Object evaluationLock = new Object();
+
+	/** Set when the loop's thread is interrupted, so the evaluator stops after the current line. */
+	private volatile boolean stopped;
+
+	/** Whether the last line ran {@code exit}; used by the evaluator only. */
+	private boolean exitRequested;
+
 	/**
-	 * Scanner for reading user input (reused across all inputs).
+	 * Reader for user input (reused across all inputs).
 	 *
-	 * <p><strong>Resource Management:</strong> This Scanner is intentionally NOT closed
-	 * because closing it would close System.in, preventing any further input.
-	 * The Scanner lifecycle is tied to the REPL lifecycle and terminates when
+	 * <p><strong>Resource Management:</strong> This reader is intentionally NOT closed
+	 * because closing it would close stdin, preventing any further input.
+	 * Its lifecycle is tied to the REPL lifecycle and terminates when
 	 * the JVM exits. This is the correct pattern for interactive CLI applications.
 	 */
-	private final Scanner scanner = new Scanner(System.in);
+	private final LineReader reader;
+
+	/** Buffered writer for everything printed to the terminal. */
+	private final OutputRenderer renderer;
+
+	/** The lines run in this session and the last ones of earlier sessions. */
+	private final History history = new History();
+
+	/** Every distinct line run, in this session and earlier ones, for reverse search. */
+	private final HistoryIndex historyIndex = new HistoryIndex();
+
+	/** Persists the lines run, or null if history is kept in memory only. */
+	private HistoryLog historyLog;
+
+	/** The history file {@link #loop()} loads and appends to, or null to keep history in memory only. */
+	private Path historyFile;
 
 	/**
 	 * Creates a new REPL instance with default shared services.
 	 *
-	 * <p>Redirects stderr to stdout for all error output (including command errors
-	 * printed by {@link #handleIO}). This ensures consistent output ordering with prompts.
-	 * Commands that specify stderr redirection via {@code 2>} write to files before
-	 * this global redirection affects them.
+	 * <p>Output is written straight to file descriptors 1 and 2 by an {@link OutputRenderer},
+	 * and {@link System#out} and {@link System#err} are replaced by print streams writing
+	 * through the same renderer, so all output, including error messages printed
+	 * elsewhere, keeps its order relative to the prompts.
+	 *
+	 * <p>On a terminal, lines are read by a {@link LineEditor} in raw mode, completing
+	 * command names and paths on Tab and highlighting the line as it is typed, and Ctrl-C
+	 * typed into the editor cancels the running line. SIGINT is only handled after
+	 * {@link #handleInterruptSignal()}.
+	 * An interactive session loads the end of the history file
+	 * ({@link HistoryLog#defaultFile()}) and appends the lines it runs to it.
 	 */
 	public REPL() {
-		this(new DirUtils());
-		// Redirect all stderr to stdout for proper ordering
-		// This affects both REPL errors and command stderr (if not redirected to file)
-		System.setErr(System.out);
+		this(new DirUtils(), OutputRenderer.terminal());
+		System.setOut(renderer.printStream(STDOUT));
+		System.setErr(renderer.printStream(STDERR));
+		if (reader instanceof LineEditor editor) {
+			editor.setCompleter(new CommandCompleter(contextBuilder.getCommandTable(),
+				new PathCompleter(contextBuilder.getDirUtils())));
+			editor.setHighlighter(new SyntaxHighlighter(contextBuilder.getCommandTable()));
+			editor.setPrompt(PROMPT_TEXT);
+		}
+		if (reader.isInteractive()) {
+			historyFile = HistoryLog.defaultFile();
+		}
+	}
+
+	/**
+	 * Creates a REPL reading stdin, through a line editor echoing to the renderer if
+	 * stdin is a terminal.
+	 */
+	private REPL(DirUtils dirUtils, OutputRenderer renderer) {
+		this(dirUtils, LineEditor.stdin(renderer), renderer);
 	}
 
 	/**
@@ -73,122 +257,523 @@ public class REPL {
 	 * @param dirUtils the directory utilities instance
 	 */
 	public REPL(DirUtils dirUtils) {
+		this(dirUtils, LineReader.stdin());
+	}
+
+	/**
+	 * Creates a new REPL instance reading commands from the given stream, without prompts.
+	 *
+	 * <p>Useful for testing and for running a script fed through a stream.
+	 *
+	 * @param dirUtils the directory utilities instance
+	 * @param input the stream commands are read from
+	 */
+	public REPL(DirUtils dirUtils, InputStream input) {
+		this(dirUtils, new LineReader(Channels.newChannel(input), false));
+	}
+
+	/**
+	 * Creates a new REPL instance reading commands from the given reader and printing
+	 * to the current {@link System#out} and {@link System#err}.
+	 *
+	 * @param dirUtils the directory utilities instance
+	 * @param reader the reader commands are read from; prompts are shown if it is interactive
+	 */
+	public REPL(DirUtils dirUtils, LineReader reader) {
+		this(dirUtils, reader, OutputRenderer.of(System.out, System.err));
+	}
+
+	/**
+	 * Creates a new REPL instance with the given input and output.
+	 *
+	 * @param dirUtils the directory utilities instance
+	 * @param reader the reader commands are read from; prompts are shown if it is interactive
+	 * @param renderer the writer output is printed through
+	 */
+	public REPL(DirUtils dirUtils, LineReader reader, OutputRenderer renderer) {
 		this.contextBuilder = ReplContext.builder(dirUtils);
+		this.reader = reader;
+		this.renderer = renderer;
+		if (reader instanceof LineEditor editor) {
+			editor.setHistory(history);
+			editor.setHistoryIndex(historyIndex);
+		}
+		this.foreground = reader instanceof LineEditor editor && editor.isSuspendable()
+			? new ForegroundTerminal(editor) : null;
+	}
+
+	/**
+	 * Loads the last {@link History#DEFAULT_CAPACITY} entries of a history file and
+	 * appends the lines run from now on to it.
+	 *
+	 * <p>The whole file, up to {@link HistoryIndex#MAX_LOADED} entries, is indexed for
+	 * reverse search on a virtual thread, so the prompt does not wait for it.
+	 *
+	 * <p>Package-private for testing. Problems with the file are reported, and the
+	 * history is then kept in memory only.
+	 *
+	 * @param file the history file
+	 * @return the thread indexing the file, or null if it cannot be read
+	 */
+	Thread persistHistory(Path file) {
+		try {
+			// Only entries of earlier sessions are indexed from the file; this session's are added as they run
+			long length = Files.exists(file) ? Files.size(file) : 0;
+			history.addAll(HistoryLog.readTail(file, length, History.DEFAULT_CAPACITY));
+			historyLog = HistoryLog.open(file);
+			return Thread.ofVirtual().name("history-index").start(() -> indexHistory(file, length));
+		} catch (IOException e) {
+			renderer.println(STDERR, "history: " + e.getMessage());
+			return null;
+		}
+	}
+
+	private void indexHistory(Path file, long length) {
+		try {
+			historyIndex.addAll(HistoryLog.readTail(file, length, HistoryIndex.MAX_LOADED));
+		} catch (IOException e) {
+			renderer.println(STDERR, "history: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Returns the history of this session.
+	 *
+	 * <p>Package-private for testing.
+	 *
+	 * @return the history
+	 */
+	History history() {
+		return history;
+	}
+
+	/**
+	 * Returns the reverse search index of this session.
+	 *
+	 * <p>Package-private for testing.
+	 *
+	 * @return the index
+	 */
+	HistoryIndex historyIndex() {
+		return historyIndex;
 	}
 
 	/**
 	 * Starts the main REPL loop.
 	 *
-	 * <p>Repeatedly reads user input, evaluates it, handles I/O redirection,
-	 * and prints output until the user exits. Uses tail recursion instead of
-	 * an explicit while loop.
+	 * <p>The three phases run concurrently, connected by bounded queues:
+	 * <ol>
+	 *   <li><strong>read</strong> - a daemon thread reads lines into a type-ahead queue of
+	 *       {@link #MAX_TYPE_AHEAD} lines, so input typed while a command runs is taken
+	 *       at once rather than after the command; a platform thread, as a line editor
+	 *       waits for keys in a native {@code poll} that would pin a virtual thread's carrier</li>
+	 *   <li><strong>eval</strong> - one virtual thread, started with the loop, queues the
+	 *       prompt (on a terminal), takes the next line and runs it, over and over;
+	 *       {@link #interrupt()} cancels the line it runs. Each command's output is queued
+	 *       as soon as it finishes, so {@code echo a; exit} still prints {@code a}</li>
+	 *   <li><strong>render</strong> - a virtual thread prints queued output in order and, on a
+	 *       terminal, flushes whenever the queue runs empty, so output streams while a
+	 *       long command runs; from a pipe, output is left to the renderer's size and time
+	 *       limits, so a replayed script is written in large blocks</li>
+	 * </ol>
 	 *
-	 * <p>Flow: read → eval → handle I/O → loop (repeat)
+	 * <p>The loop ends on {@code exit} or at the end of input. Errors are printed to
+	 * stderr and the shell continues with the next line. Nothing is kept between
+	 * lines except the session state and the bounded plan cache and queues, so a session
+	 * running for weeks uses constant stack and heap, and no thread is started per line.
 	 *
-	 * <p>Errors are caught and printed to stderr. The shell continues
-	 * running after errors.
+	 * <p>The calling thread waits for the evaluator; interrupting it ends the loop after
+	 * the line being evaluated is cancelled.
 	 */
-	@SuppressWarnings("InfiniteRecursion")
 	public void loop() {
+		// Set up here rather than in a constructor, which must not let this escape
+		if (reader instanceof LineEditor editor) {
+			editor.setInterruptHandler(this::interrupt);
+		}
+		if (historyFile != null) {
+			persistHistory(historyFile);
+			historyFile = null;
+		}
+		Thread input = Thread.ofPlatform().daemon().name("repl-read").start(this::readAhead);
+		Thread output = Thread.ofVirtual().name("repl-render").start(this::render);
+		Thread worker = Thread.ofVirtual().name("repl-eval").unstarted(this::evaluateLines);
+		evaluator = worker;
 		try {
-			String input = read();
-			ReplEvaluator evaluator = new ReplEvaluator(input, contextBuilder);
-			EvaluationResult result = evaluator.eval();
-			handleIO(result);
-			loop();
-		} catch (GracefulExitException _) {
-		} catch (ReplException e) {
-			System.err.println(e.getMessage());
-			loop();
-		} catch (RuntimeException e) {
-			System.err.println(e.getClass().getName() + ": " + e.getMessage());
-			loop();
+			worker.start();
+			worker.join();
+		} catch (InterruptedException _) {
+			stopped = true;
+			worker.interrupt();
+			Thread.currentThread().interrupt();
+		} finally {
+			input.interrupt();
+			finishRendering(output);
+			if (historyLog != null) {
+				historyLog.close();
+			}
 		}
 	}
 
 	/**
-	 * Handles command output based on evaluation result.
+	 * Makes SIGINT cancel the line being evaluated, as Ctrl-C typed into the line editor
+	 * does, instead of ending the JVM.
 	 *
-	 * <p>For each output stream (stdout, stderr):
-	 * <ul>
-	 *   <li>If redirection is specified, writes to file</li>
-	 *   <li>Otherwise, prints to the corresponding terminal stream</li>
-	 * </ul>
+	 * <p>Needed on a terminal: while a program runs in the foreground, the terminal sends
+	 * SIGINT to the shell as well as to the program. The handler is JVM-wide, so it is
+	 * never installed by a constructor; the program's entry point opts in, once, before
+	 * {@link #loop()}. Does nothing unless stdin is a terminal.
+	 *
+	 * @see InterruptSignal
+	 */
+	public void handleInterruptSignal() {
+		if (reader.isInteractive()) {
+			InterruptSignal.handle(this::interrupt);
+		}
+	}
+
+	/**
+	 * Cancels the line being evaluated, as Ctrl-C does.
+	 *
+	 * <p>The evaluation stops at its next command, or when the external program it
+	 * waits for has been destroyed, and {@code $?} becomes {@link CancelledException#EXIT_CODE}.
+	 * Lines typed ahead are kept. Without a running evaluation, a fresh prompt is shown.
+	 */
+	public void interrupt() {
+		synchronized (evaluationLock) {
+			if (evaluating) {
+				evaluator.interrupt();
+				return;
+			}
+		}
+		if (reader.isInteractive()) {
+			continuationCancelled.set(true);
+			pendingOutput.offer(CANCELLED);
+			pendingOutput.offer(PROMPT);
+		}
+	}
+
+	/**
+	 * Returns the number of lines read ahead and waiting for evaluation.
 	 *
 	 * <p>Package-private for testing.
 	 *
-	 * @param result the evaluation result containing output and redirect targets
-	 * @throws ReplException if file I/O fails during redirection
+	 * @return the number of queued lines
 	 */
-	void handleIO(EvaluationResult result) throws ReplException {
-		// Handle stdout
-		if (result.hasStdoutRedirect()) {
-			redirectOutput(result.commandResult().stdout(), result.stdoutRedirectTo());
-		} else if (!result.commandResult().stdout().isEmpty()) {
-			System.out.println(result.commandResult().stdout());
+	int typedAhead() {
+		return pendingLines.size();
+	}
+
+	/**
+	 * Returns whether a line is being evaluated.
+	 *
+	 * <p>Package-private for testing.
+	 *
+	 * @return true while a line runs
+	 */
+	boolean isEvaluating() {
+		synchronized (evaluationLock) {
+			return evaluating;
 		}
+	}
 
-		// Handle stderr
-		if (result.hasStderrRedirect()) {
-			redirectOutput(result.commandResult().stderr(), result.stderrRedirectTo());
-		} else if (!result.commandResult().stderr().isEmpty()) {
-			System.err.println(result.commandResult().stderr());
+	/**
+	 * Eval phase, on the evaluator: reads and runs lines until the end of input,
+	 * {@code exit}, or the loop's thread is interrupted.
+	 */
+	private void evaluateLines() {
+		try {
+			boolean running = true;
+			while (running && !stopped) {
+				String line = read();
+				running = line != END_OF_INPUT && eval(line);
+			}
+		} catch (InterruptedException _) {
+			// The loop's thread was interrupted while waiting for a line
 		}
 	}
 
 	/**
-	 * Redirects output to a file.
+	 * Runs one line on the evaluator, where Ctrl-C can interrupt it without touching the
+	 * threads reading input and rendering output. An interrupt that arrives as the line
+	 * ends is cleared, so it never cancels the next line or the wait for it.
 	 *
-	 * <p>Creates parent directories if they don't exist. Overwrites the file
-	 * if it already exists.
+	 * @param line the line
+	 * @return false if the line ran {@code exit}, true to read the next line
+	 */
+	private boolean eval(String line) {
+		long startedAt = System.currentTimeMillis();
+		long start = System.nanoTime();
+		String directory = contextBuilder.getDirUtils().getCurrentDir().toString();
+		synchronized (evaluationLock) {
+			evaluating = true;
+		}
+		try {
+			evaluate(line);
+		} finally {
+			synchronized (evaluationLock) {
+				evaluating = false;
+				Thread.interrupted();
+			}
+		}
+		if (reader.isInteractive() && !line.isBlank()) {
+			record(new HistoryEntry(line, startedAt, directory, contextBuilder.getLastExitCode(),
+				(System.nanoTime() - start) / 1_000_000));
+		}
+		return !exitRequested;
+	}
+
+	/**
+	 * Adds a line that ran to the history, and queues it for the history file.
+	 */
+	private void record(HistoryEntry entry) {
+		history.add(entry);
+		historyIndex.add(entry);
+		if (historyLog != null) {
+			historyLog.append(entry);
+		}
+	}
+
+	/**
+	 * Evaluates one line, queueing the output of each command as it completes.
+	 */
+	private void evaluate(String line) {
+		try {
+			ReplEvaluator.execute(plan(line), contextBuilder, printer);
+		} catch (GracefulExitException _) {
+			exitRequested = true;
+		} catch (CancelledException _) {
+			contextBuilder.setLastExitCode(CancelledException.EXIT_CODE);
+			if (reader.isInteractive()) {
+				show(CANCELLED);
+			}
+		} catch (ReplException e) {
+			show(CommandResult.error(e.getMessage()));
+		} catch (ArithmeticException e) {
+			// An error in $((...)) aborts the rest of the line, as in other shells
+			contextBuilder.setLastExitCode(1);
+			show(CommandResult.error(e.getMessage()));
+		} catch (RuntimeException e) {
+			show(CommandResult.error(e.getClass().getName() + ": " + e.getMessage()));
+		}
+	}
+
+	/**
+	 * Queues a command's output for rendering, blocking while the queue is full.
 	 *
-	 * @param output the output string to write
-	 * @param redirectTo the target file path (relative to current working directory)
-	 * @throws ReplException if file I/O fails
+	 * @throws CancelledException if the evaluation is cancelled while waiting
 	 */
-	private void redirectOutput(String output, String redirectTo) throws ReplException {
+	private void enqueue(CommandResult result) throws CancelledException {
+		if (result.stdout().isEmpty() && result.stderr().isEmpty()) {
+			return;
+		}
 		try {
-			// Resolve relative paths against current working directory
-			Path outputPath = contextBuilder.getDirUtils().getCurrentDir().resolve(redirectTo);
+			pendingOutput.put(result);
+		} catch (InterruptedException e) {
+			throw new CancelledException();
+		}
+	}
 
-			// Ensure parent directories exist
-			Path parentDir = outputPath.getParent();
-			if (parentDir != null && !Files.exists(parentDir)) {
-				Files.createDirectories(parentDir);
+	/**
+	 * Queues a message at the end of an evaluation, even if it was cancelled meanwhile.
+	 */
+	private void show(CommandResult result) {
+		// A Ctrl-C arriving after the line failed must not lose its message
+		Thread.interrupted();
+		try {
+			pendingOutput.put(result);
+		} catch (InterruptedException _) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Render phase: prints queued output until the end of output is queued.
+	 */
+	private void render() {
+		try {
+			CommandResult result;
+			while ((result = pendingOutput.take()) != END_OF_OUTPUT) {
+				if (result == PROMPT) {
+					renderer.print(STDOUT, PROMPT_TEXT);
+				} else if (result == CONTINUATION_PROMPT) {
+					renderer.print(STDOUT, CONTINUATION_PROMPT_TEXT);
+				} else if (result == CANCELLED) {
+					renderer.print(STDOUT, "\n");
+				} else if (result == HANDOFF) {
+					renderer.flush();
+					handoffRendered.release();
+				} else {
+					print(result);
+				}
+				if (pendingOutput.isEmpty() && reader.isInteractive()) {
+					renderer.flush();
+				}
 			}
+		} catch (InterruptedException _) {
+			// The loop gave up waiting; it flushes what was rendered
+		}
+	}
 
-			Files.writeString(outputPath, output, StandardCharsets.UTF_8);
-		} catch (IOException e) {
-			throw new ReplException(e);
+	/**
+	 * Lets the render thread print everything queued, then flushes the renderer.
+	 */
+	private void finishRendering(Thread output) {
+		boolean interrupted = Thread.interrupted();
+		try {
+			pendingOutput.put(END_OF_OUTPUT);
+			output.join();
+		} catch (InterruptedException _) {
+			output.interrupt();
+			interrupted = true;
+		} finally {
+			renderer.flush();
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
 		}
 	}
 
 	/**
-	 * Reads user input from stdin.
+	 * Returns the plan of a line, parsing it only if it was not entered recently.
 	 *
-	 * <p>Displays the prompt and waits for a complete line of input.
+	 * <p>Package-private for testing.
 	 *
-	 * @return the user input as a string
+	 * @param input the line
+	 * @return the parsed plan
+	 * @throws IllegalArgumentException if the line has a syntax error
 	 */
-	private String read() {
-		showPrompt();
-		return readPrompt();
+	Node plan(String input) {
+		Node plan = plans.get(input);
+		if (plan == null) {
+			plan = ScriptParser.parse(input);
+			plans.put(input, plan);
+		}
+		return plan;
 	}
 
 	/**
-	 * Displays the shell prompt to the user.
+	 * Prints a command's non-redirected output to the terminal.
+	 *
+	 * @param result the output to print
 	 */
-	private void showPrompt() {
-		System.out.print("$ ");
+	private void print(CommandResult result) {
+		if (!result.stdout().isEmpty()) {
+			renderer.println(STDOUT, result.stdout());
+		}
+		if (!result.stderr().isEmpty()) {
+			renderer.println(STDERR, result.stderr());
+		}
+	}
+
+	/**
+	 * Read phase, on the evaluator: shows the prompt if the input is a terminal and
+	 * takes the next line read ahead. A pipe gets no prompt, so a script piped into
+	 * the shell prints only its commands' output.
+	 *
+	 * <p>The lines of a command spanning several are joined, with the continuation
+	 * prompt before each line after the first. An incomplete command at the end of the
+	 * input is returned as it is, for the parser to report what is missing.
+	 *
+	 * @return the next command, or {@link #END_OF_INPUT}
+	 */
+	private String read() throws InterruptedException {
+		if (reader.isInteractive()) {
+			// Queued behind the previous line's output, and flushed with it
+			pendingOutput.put(PROMPT);
+		}
+		while (true) {
+			String line = pendingLines.take();
+			if (continuationCancelled.getAndSet(false)) {
+				continuation.take();
+			}
+			if (line == END_OF_INPUT) {
+				if (!continuation.isContinuing()) {
+					return END_OF_INPUT;
+				}
+				// Taken by the next read, after this command
+				pendingLines.put(END_OF_INPUT);
+				continuing = false;
+				return continuation.take();
+			}
+			if (continuation.add(line)) {
+				continuing = false;
+				return continuation.take();
+			}
+			continuing = true;
+			if (reader.isInteractive()) {
+				pendingOutput.put(CONTINUATION_PROMPT);
+			}
+		}
+	}
+
+	/**
+	 * Read phase, on the input thread: reads lines into the type-ahead queue until the
+	 * end of input, blocking while the queue is full.
+	 */
+	private void readAhead() {
+		try {
+			String line;
+			while ((line = readPrompt()) != null) {
+				pendingLines.put(line);
+			}
+			pendingLines.put(END_OF_INPUT);
+		} catch (InterruptedException _) {
+			// The loop has ended
+		}
 	}
 
 	/**
 	 * Reads a line of input from the user.
 	 *
-	 * @return the input line as a string
+	 * <p>A read error ends the session like the end of input does.
+	 *
+	 * @return the input line as a string, or null at the end of input
 	 */
 	private String readPrompt() {
-		return scanner.nextLine();
+		if (reader instanceof LineEditor editor) {
+			editor.setPrompt(continuing ? CONTINUATION_PROMPT_TEXT : PROMPT_TEXT);
+		}
+		try {
+			return reader.readLine();
+		} catch (ClosedByInterruptException _) {
+			// The loop ended while this thread waited for input
+			return null;
+		} catch (IOException e) {
+			renderer.println(STDERR, e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Hands the terminal to a program: flushes the output queued before it through the
+	 * render thread, so it keeps its order, and suspends the line editor meanwhile.
+	 */
+	private final class ForegroundTerminal implements TerminalHandoff {
+		private final LineEditor editor;
+
+		private ForegroundTerminal(LineEditor editor) {
+			this.editor = editor;
+		}
+
+		@Override
+		public void suspend() throws CancelledException {
+			// Suspended first, so no key is echoed after the flush
+			editor.suspend();
+			// A permit left by a cancelled handoff must not stand for this one
+			handoffRendered.drainPermits();
+			try {
+				pendingOutput.put(HANDOFF);
+				handoffRendered.acquire();
+			} catch (InterruptedException e) {
+				editor.resume();
+				throw new CancelledException();
+			}
+		}
+
+		@Override
+		public void resume() {
+			editor.resume();
+		}
 	}
 
 }
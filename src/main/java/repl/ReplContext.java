@@ -2,41 +2,66 @@ package repl;
 
 import lombok.AccessLevel;
 import lombok.Getter;
-import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 import lombok.ToString;
 import lombok.experimental.FieldDefaults;
 import lombok.experimental.NonFinal;
+import repl.commands.CommandInput;
+import repl.commands.TerminalHandoff;
+import repl.script.Word;
 import repl.utils.DirUtils;
 import repl.utils.CommandExtractorUtils;
+import repl.utils.EnvUtils;
+import repl.utils.FileStatusCache;
+import repl.utils.RedirectionTable;
 
 import java.nio.file.Path;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Context object containing shared state and per-request data for command execution.
  *
  * <p>Contains two categories of data:
  * <ul>
- *   <li><b>Shared services</b> (injected once): DirUtils, and future services like
- *       environment variables, command history, etc.</li>
+ *   <li><b>Shared services</b> (injected once): DirUtils, EnvUtils (shell variables),
+ *       FileStatusCache (file metadata for {@code test}), CommandTable (functions and aliases),
+ *       and future services like command history, etc.</li>
  *   <li><b>Per-request data</b> (derived per command): original input, command name, arguments</li>
  * </ul>
  *
  * <p>Use {@link Builder} to construct instances. The builder is created with shared
- * services, then {@code originalInput} is set for each command. The command name and
- * arguments are automatically parsed from the input during {@link Builder#build()}.
+ * services, then the words of each command, parsed with its plan, are set. The command
+ * name and arguments are expanded from them during {@link Builder#build()}.
  *
  * <p>Example usage:
  * <pre>{@code
  * // Create builder once with shared services
  * ReplContext.Builder ctxBuilder = ReplContext.builder(dirUtils);
  *
- * // For each command, build context with original input
- * // (command name and args are parsed automatically)
+ * // For each simple command of a plan, build its context from its words
+ * // (substitutions and variables are expanded here)
  * ReplContext ctx = ctxBuilder
- *     .originalInput(input)
+ *     .words(command.words())
  *     .build();
  * }</pre>
+ *
+ * <p>A command whose words are all static (see {@link Word#isStatic()}) expands the
+ * same way every time, so its context is built once per builder and returned again
+ * on later runs: repeating such a command allocates no context, argument list or
+ * extracted command.
+ *
+ * <p>Such a shared context still carries two fields set for each run,
+ * {@link #getExecutablePath()} and {@link #getTerminal()}. This is safe because a
+ * builder is only used by the one thread evaluating in its environment. Substitutions
+ * evaluated on other threads run in a {@link Builder#fork()}, with its own cache. The
+ * evaluator sets both fields before every run, so a value never outlives the run
+ * that set it.
+ *
+ * <p>A builder also represents a shell execution environment: {@link Builder#fork()}
+ * creates the isolated environment of a subshell, whose directory and variables
+ * are copy-on-write views of the parent's.
  */
 @ToString
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
@@ -47,6 +72,26 @@ public class ReplContext {
 	@Getter
 	DirUtils dirUtils;
 
+	/** The shell variables and exported environment. */
+	@Getter
+	EnvUtils envUtils;
+
+	/** File metadata cached for the duration of one statement. */
+	@Getter
+	FileStatusCache fileStatusCache;
+
+	/** User-defined functions and aliases. */
+	@Getter
+	CommandTable commandTable;
+
+	/**
+	 * The environment the command runs in, for builtins such as {@code source}
+	 * that run shell code in the caller's environment.
+	 */
+	@Getter
+	@ToString.Exclude
+	Builder scope;
+
 	// === Per-request data (command-scoped) ===
 
 	/** The complete original input string from the user. */
@@ -61,18 +106,24 @@ public class ReplContext {
 	@Getter
 	List<String> args;
 
+	/** Where the command's stdout and stderr go, {@link RedirectionTable#NONE} if not redirected. */
 	@Getter
-	String stdoutRedirectTo;
+	RedirectionTable redirections;
+
+	/** The here-document or here-string fed to the command's standard input, or null. */
+	CommandInput.Text stdinText;
 
+	/** The file the command's standard input is read from, as written, or null. */
 	@Getter
-	String stderrRedirectTo;
+	String stdinRedirectFrom;
 
 	/**
 	 * The resolved absolute path to an external executable command.
 	 * Null for builtin commands or invalid commands.
 	 * Cached to avoid redundant PATH lookups.
 	 *
-	 * <p>Mutable field set by ReplEvaluator after command resolution.
+	 * <p>Mutable field set by ReplEvaluator on each run, after command resolution, as the
+	 * context of a static command is reused wherever the command appears.
 	 */
 	@Getter
 	@NonFinal
@@ -88,16 +139,58 @@ public class ReplContext {
 		this.executablePath = executablePath;
 	}
 
+	/**
+	 * The terminal an external program may take over, or null if its output is
+	 * captured or redirected.
+	 *
+	 * <p>Mutable field set by ReplEvaluator before each run, as the context of a static
+	 * command is reused wherever the command appears.
+	 */
+	@Getter
+	@NonFinal
+	@ToString.Exclude
+	TerminalHandoff terminal;
+
+	/**
+	 * Sets the terminal the command may take over.
+	 * Package-private to allow ReplEvaluator to set it per run.
+	 *
+	 * @param terminal the terminal, or null if the command's output is captured
+	 */
+	void setTerminal(TerminalHandoff terminal) {
+		this.terminal = terminal;
+	}
+
 	/**
 	 * Private constructor - use {@link Builder} to create instances.
 	 */
 	private ReplContext(Builder builder) {
 		this.dirUtils = builder.dirUtils;
+		this.envUtils = builder.envUtils;
+		this.fileStatusCache = builder.fileStatusCache;
+		this.commandTable = builder.commandTable;
+		this.scope = builder;
 		this.originalInput = builder.originalInput;
 		this.mainCommandStr = builder.mainCommandStr;
 		this.args = builder.args;
-		this.stdoutRedirectTo = builder.stdoutRedirectTo;
-		this.stderrRedirectTo = builder.stderrRedirectTo;
+		this.redirections = builder.redirections;
+		this.stdinText = builder.stdinText;
+		this.stdinRedirectFrom = builder.stdinRedirectFrom;
+	}
+
+	/**
+	 * Returns the redirected standard input of the command.
+	 *
+	 * <p>A file is resolved against the current directory on each call, as the
+	 * context of a static command is reused after {@code cd}.
+	 *
+	 * @return the here-document or here-string text, the file, or null if input is not redirected
+	 */
+	public CommandInput getStdin() {
+		if (stdinRedirectFrom != null) {
+			return new CommandInput.File(dirUtils.getCurrentDir().resolve(stdinRedirectFrom));
+		}
+		return stdinText;
 	}
 
 	/**
@@ -107,7 +200,18 @@ public class ReplContext {
 	 * @return a new builder instance
 	 */
 	public static Builder builder(DirUtils dirUtils) {
-		return new Builder(dirUtils);
+		return new Builder(dirUtils, new EnvUtils(), new FileStatusCache(), new CommandTable());
+	}
+
+	/**
+	 * Creates a new builder with the given shared services.
+	 *
+	 * @param dirUtils the directory utilities instance (shared across commands)
+	 * @param envUtils the shell variables (shared across commands)
+	 * @return a new builder instance
+	 */
+	public static Builder builder(DirUtils dirUtils, EnvUtils envUtils) {
+		return new Builder(dirUtils, envUtils, new FileStatusCache(), new CommandTable());
 	}
 
 	/**
@@ -116,19 +220,105 @@ public class ReplContext {
 	 * <p>Initialized with shared services, then per-request data is set
 	 * via fluent methods before calling {@link #build()}.
 	 */
-	@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
 	@FieldDefaults(level = AccessLevel.PRIVATE)
 	public static class Builder {
+		/** Maximum number of prepared contexts kept per builder. */
+		static final int MAX_PREPARED_CONTEXTS = 64;
+
 		// Shared services (set once in constructor)
 		@Getter
 		final DirUtils dirUtils;
 
+		@Getter
+		final EnvUtils envUtils;
+
+		/** File metadata shared by the commands of one statement. */
+		@Getter
+		final FileStatusCache fileStatusCache;
+
+		@Getter
+		final CommandTable commandTable;
+
+		/** Evaluates {@code $(...)} substitutions and variables found while parsing input. */
+		final CommandSubstitution commandSubstitution;
+
+		/** Exit code of the last command run in this environment, for {@code $?}. */
+		@Getter
+		@Setter
+		int lastExitCode;
+
+		/** Arguments of the running function, for {@code $1}, {@code $#} and {@code $@}. */
+		@Getter
+		@Setter
+		List<String> positionalParameters = List.of();
+
+		/**
+		 * Contexts of static commands by their words, created on first use.
+		 *
+		 * <p>Not synchronized, and the contexts handed out are shared: a builder must only
+		 * be used by one thread at a time, the one evaluating in its environment.
+		 */
+		Map<List<Word>, ReplContext> preparedContexts;
+
 		// Per-request data (set via builder methods)
 		String originalInput;
+		List<Word> words;
+		CommandSubstitution wordExpansion;
 		String mainCommandStr;
 		List<String> args;
-		String stdoutRedirectTo;
-		String stderrRedirectTo;
+		RedirectionTable redirections;
+		CommandInput.Text stdinText;
+		String stdinRedirectFrom;
+
+		private Builder(DirUtils dirUtils, EnvUtils envUtils, FileStatusCache fileStatusCache,
+				CommandTable commandTable) {
+			this.dirUtils = dirUtils;
+			this.envUtils = envUtils;
+			this.fileStatusCache = fileStatusCache;
+			this.commandTable = commandTable;
+			this.commandSubstitution = new CommandSubstitution(this);
+		}
+
+		/**
+		 * Creates the builder of an isolated child environment, as used by subshells.
+		 *
+		 * <p>The child starts with this environment's directory, variables, functions
+		 * and aliases as copy-on-write views; {@code cd}, assignments or definitions
+		 * in the child never affect this builder. No process is created.
+		 *
+		 * @return a new builder for the child environment
+		 */
+		public Builder fork() {
+			Builder child = new Builder(dirUtils.fork(), envUtils.fork(), new FileStatusCache(), commandTable.fork());
+			child.lastExitCode = lastExitCode;
+			child.positionalParameters = positionalParameters;
+			return child;
+		}
+
+		/**
+		 * Creates a builder sharing this directory state but using other variables.
+		 *
+		 * <p>Used for {@code NAME=value command}, where the assignment only applies
+		 * to the one command.
+		 *
+		 * @param envUtils the variables for the new builder
+		 * @return a new builder
+		 */
+		public Builder withEnvUtils(EnvUtils envUtils) {
+			Builder builder = new Builder(dirUtils, envUtils, fileStatusCache, commandTable);
+			builder.lastExitCode = lastExitCode;
+			builder.positionalParameters = positionalParameters;
+			return builder;
+		}
+
+		/**
+		 * Returns the expansion context for words evaluated in this environment.
+		 *
+		 * @return the context resolving substitutions and variables
+		 */
+		public CommandSubstitution getExpansionContext() {
+			return commandSubstitution;
+		}
 
 		/**
 		 * Sets the original input string.
@@ -141,17 +331,90 @@ public class ReplContext {
 			return this;
 		}
 
+		/**
+		 * Sets pre-parsed words to expand instead of parsing the original input.
+		 *
+		 * <p>Used when running a command from a parsed plan. Applies to the next
+		 * {@link #build()} only.
+		 *
+		 * @param words the unexpanded words of one simple command
+		 * @return this builder for chaining
+		 */
+		public Builder words(List<Word> words) {
+			this.words = words;
+			return this;
+		}
+
+		/**
+		 * Sets pre-parsed words to expand in another environment.
+		 *
+		 * <p>Used for {@code NAME=value command}: the command runs with the assignment,
+		 * but its words are expanded before it applies, so {@code A=2 echo $A} prints
+		 * the old value. Applies to the next {@link #build()} only.
+		 *
+		 * @param words the unexpanded words of one simple command
+		 * @param expansionContext the context to expand them with
+		 * @return this builder for chaining
+		 */
+		public Builder words(List<Word> words, CommandSubstitution expansionContext) {
+			this.words = words;
+			this.wordExpansion = expansionContext;
+			return this;
+		}
+
 		/**
 		 * Builds the ReplContext instance.
 		 *
-		 * @return a new immutable ReplContext
+		 * <p>Command substitutions and variables in the input are expanded while
+		 * the arguments are extracted. For words that need no expansion, the context
+		 * built the first time is returned again.
+		 *
+		 * @return an immutable ReplContext
 		 */
 		public ReplContext build() {
-			CommandExtractorUtils.ExtractedCommand extractedCommand = CommandExtractorUtils.get(originalInput);
+			if (words != null && isStatic(words)) {
+				List<Word> staticWords = words;
+				if (preparedContexts == null) {
+					preparedContexts = new LinkedHashMap<>(16, 0.75f, true) {
+						@Override
+						protected boolean removeEldestEntry(Map.Entry<List<Word>, ReplContext> eldest) {
+							return size() > MAX_PREPARED_CONTEXTS;
+						}
+					};
+				}
+				ReplContext prepared = preparedContexts.get(staticWords);
+				if (prepared == null) {
+					prepared = extract();
+					preparedContexts.put(staticWords, prepared);
+				}
+				words = null;
+				wordExpansion = null;
+				return prepared;
+			}
+			return extract();
+		}
+
+		private static boolean isStatic(List<Word> words) {
+			for (int i = 0; i < words.size(); i++) {
+				if (!words.get(i).isStatic()) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private ReplContext extract() {
+			CommandSubstitution expansion = wordExpansion != null ? wordExpansion : commandSubstitution;
+			CommandExtractorUtils.ExtractedCommand extractedCommand = words != null
+					? CommandExtractorUtils.get(words, expansion)
+					: CommandExtractorUtils.get(originalInput, commandSubstitution);
+			words = null;
+			wordExpansion = null;
 			mainCommandStr = extractedCommand.mainCommandStr();
 			args = extractedCommand.args();
-			stdoutRedirectTo = extractedCommand.stdoutRedirectTo();
-			stderrRedirectTo = extractedCommand.stderrRedirectTo();
+			redirections = extractedCommand.redirections();
+			stdinText = extractedCommand.stdin() != null ? new CommandInput.Text(extractedCommand.stdin()) : null;
+			stdinRedirectFrom = extractedCommand.stdinRedirectFrom();
 			return new ReplContext(this);
 		}
 	}
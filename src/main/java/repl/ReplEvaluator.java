@@ -1,92 +1,445 @@
 package repl;
 
 import repl.commands.Command;
-import repl.commands.BadCommand;
 import repl.commands.CommandResult;
-import repl.commands.ExecutableCommand;
+import repl.exceptions.CancelledException;
+import repl.exceptions.GracefulExitException;
 import repl.exceptions.ReplException;
-import repl.utils.ExecutableUtils;
+import repl.exceptions.ReturnException;
+import repl.script.Assignment;
+import repl.script.ExpansionContext;
+import repl.script.Node;
+import repl.script.Redirection;
+import repl.script.ScriptParser;
+import repl.script.Word;
+import repl.script.WordExpander;
+import repl.utils.EnvUtils;
+import repl.utils.FileStatusCache;
+import repl.utils.GlobUtils;
+import repl.utils.RedirectionTable;
 
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.function.Supplier;
+import java.util.ArrayList;
+import java.util.List;
+
+import static repl.Constants.PATH_VARIABLE;
+import static repl.utils.RedirectionTable.Target.Stream.STDERR;
+import static repl.utils.RedirectionTable.Target.Stream.STDOUT;
 
 /**
- * Evaluates user input to determine and execute the appropriate command.
+ * Evaluates user input to determine and execute the appropriate commands.
+ *
+ * <p>The input is parsed once by {@link ScriptParser} into a plan of {@link Node}s,
+ * which is then walked:
+ * <ul>
+ *   <li><b>Simple commands</b> are resolved and executed (see below).</li>
+ *   <li><b>Sequences</b> ({@code a; b}) run each command in turn.</li>
+ *   <li><b>And-or lists</b> ({@code a && b}, {@code a || b}) run the second command
+ *       depending on the exit code of the first. File metadata read by {@code test}
+ *       is shared across the whole list (see {@link FileStatusCache}).</li>
+ *   <li><b>Subshells</b> ({@code ( ... )}) run in a forked, copy-on-write
+ *       {@link ReplContext.Builder}: {@code cd}, assignments and {@code exit} inside
+ *       the parentheses do not affect the caller. No process is created.</li>
+ *   <li><b>Groups</b> ({@code { ...; }}) run in the current environment.</li>
+ *   <li><b>Function definitions</b> store their parsed body in the {@link CommandTable}.</li>
+ *   <li><b>Control flow</b> ({@code if}, {@code while}, {@code until}, {@code for},
+ *       {@code case}) re-runs the already parsed child nodes; loop bodies are never
+ *       re-tokenized and builtins in them run in-process.</li>
+ * </ul>
+ *
+ * <p>A simple command starting with an alias runs the alias's pre-parsed plan with the
+ * command's words spliced in. Otherwise the resolution order is:
+ * function → builtin → executable in PATH → bad command
  *
- * <p>Determines whether input is a builtin command, external executable, or invalid
- * command, then instantiates and executes the corresponding Command implementation.
+ * <p>Output redirections ({@link RedirectionTable}) are applied as each command runs:
+ * their files are created first, an external program writes into them itself, and the
+ * output of anything run in-process is written to them once it finishes.
  *
- * <p>Resolution order: builtin → executable in PATH → bad command
+ * <p>Process substitutions ({@link ProcessSubstitution}) started while the words of a node
+ * are expanded are closed when that node finishes, latest first.
  *
- * <p>Returns an {@link EvaluationResult} containing the command output and any
- * redirection targets. The REPL is responsible for handling I/O redirection.
+ * <p>{@link #execute(Node, ReplContext.Builder, OutputSink)} is the single entry point:
+ * the REPL, functions, {@code source} and substitutions all run their plans through it,
+ * and each command's output is passed to the sink as soon as it finishes.
+ *
+ * <p>When the sink offers its terminal ({@link OutputSink#terminal()}), a simple command
+ * may hand it to an external program, which then reads and writes the terminal directly,
+ * apart from the streams it writes to files. Output captured by {@code $(...)} or by a
+ * redirected compound command, and the output of a function call, goes to a
+ * {@link CapturedOutput}, which offers none.
  *
  * @see Command
  * @see BuiltinCommand
- * @see EvaluationResult
  */
 public class ReplEvaluator {
 
-	private final ReplContext context;
+	private ReplEvaluator() { }
 
 	/**
-	 * Creates a new evaluator for the given input.
+	 * Executes a plan in the given environment.
+	 *
+	 * <p>Redirections are applied here; the sink only receives output that was not
+	 * redirected. The exit code is also recorded in the environment for {@code $?}.
 	 *
-	 * @param input the user input string to evaluate
-	 * @param contextBuilder the context builder with shared services
+	 * @param node the plan to execute
+	 * @param scope the environment to run in
+	 * @param sink receives the output of each command
+	 * @return the exit code of the last command
+	 * @throws ReplException if command execution fails unexpectedly
 	 */
-	public ReplEvaluator(String input, ReplContext.Builder contextBuilder) {
-		// Build context with per-request data
-		context = contextBuilder
-				.originalInput(input)
-				.build();
+	public static int execute(Node node, ReplContext.Builder scope, OutputSink sink) throws ReplException {
+		CommandSubstitution expansion = scope.getExpansionContext();
+		int substitutions = expansion.processSubstitutionCount();
+		try {
+			return executeNode(node, scope, sink);
+		} finally {
+			// Process substitutions end with the command whose words started them
+			expansion.closeProcessSubstitutions(substitutions);
+		}
+	}
+
+	private static int executeNode(Node node, ReplContext.Builder scope, OutputSink sink) throws ReplException {
+		int exitCode = switch (node) {
+			case Node.SimpleCommand command -> executeSimple(command, scope, sink);
+			case Node.Sequence(List<Node> nodes) -> {
+				int last = 0;
+				for (int i = 0; i < nodes.size(); i++) {
+					last = execute(nodes.get(i), scope, sink);
+				}
+				yield last;
+			}
+			case Node.AndOr(Node left, Node right, boolean and) -> executeAndOr(left, right, and, scope, sink);
+			case Node.Subshell(Node body) -> executeSubshell(body, scope, sink);
+			case Node.Group(Node body) -> execute(body, scope, sink);
+			case Node.FunctionDefinition(String name, Node body) -> {
+				scope.getCommandTable().defineFunction(name, body);
+				yield 0;
+			}
+			case Node.Redirected(Node command, List<Redirection> redirections) ->
+				executeRedirected(command, redirections, scope, sink);
+			case Node.If(List<Node.Branch> branches, Node otherwise) -> executeIf(branches, otherwise, scope, sink);
+			case Node.Loop(Node condition, Node body, boolean until) -> {
+				int last = 0;
+				while ((execute(condition, scope, sink) == 0) != until) {
+					last = execute(body, scope, sink);
+				}
+				yield last;
+			}
+			case Node.For(String name, List<Word> items, Node body) -> {
+				int last = 0;
+				for (String item : WordExpander.expand(items, scope.getExpansionContext())) {
+					scope.getEnvUtils().set(name, item);
+					last = execute(body, scope, sink);
+				}
+				yield last;
+			}
+			case Node.Case(Word subject, List<Node.CaseItem> items) -> executeCase(subject, items, scope, sink);
+		};
+		scope.setLastExitCode(exitCode);
+		return exitCode;
 	}
 
 	/**
-	 * Evaluates the input and executes the appropriate command.
+	 * Runs {@code left}, then {@code right} if the exit code allows it.
 	 *
-	 * <p>Parses the input, determines command type, creates Command object,
-	 * executes it, and returns the result along with any redirection targets.
+	 * <p>The whole list is one statement for the {@link FileStatusCache}.
+	 */
+	private static int executeAndOr(Node left, Node right, boolean and,
+			ReplContext.Builder scope, OutputSink sink) throws ReplException {
+		FileStatusCache cache = scope.getFileStatusCache();
+		cache.beginStatement();
+		try {
+			int exitCode = execute(left, scope, sink);
+			return (exitCode == 0) == and ? execute(right, scope, sink) : exitCode;
+		} finally {
+			cache.endStatement();
+		}
+	}
+
+	/**
+	 * Runs the body of the first branch whose condition succeeds, or the else body.
 	 *
-	 * @return the evaluation result containing command output and redirect targets
-	 * @throws ReplException if command execution fails unexpectedly
+	 * @return the exit code of the body run, or 0 if none ran
 	 */
-	public EvaluationResult eval() throws ReplException {
-		return processCommand();
+	private static int executeIf(List<Node.Branch> branches, Node otherwise,
+			ReplContext.Builder scope, OutputSink sink) throws ReplException {
+		for (int i = 0; i < branches.size(); i++) {
+			Node.Branch branch = branches.get(i);
+			if (execute(branch.condition(), scope, sink) == 0) {
+				return execute(branch.body(), scope, sink);
+			}
+		}
+		return otherwise != null ? execute(otherwise, scope, sink) : 0;
 	}
 
 	/**
-	 * Processes the parsed command and executes it.
+	 * Runs the body of the first case item with a pattern matching the subject.
 	 *
-	 * <p>Checks if command is builtin, then searches PATH for executable,
-	 * falling back to BadCommand if not found.
+	 * @return the exit code of the body run, or 0 if no pattern matched
+	 */
+	private static int executeCase(Word subject, List<Node.CaseItem> items,
+			ReplContext.Builder scope, OutputSink sink) throws ReplException {
+		String value = WordExpander.expandToString(subject, scope.getExpansionContext());
+		for (Node.CaseItem item : items) {
+			for (Word pattern : item.patterns()) {
+				if (GlobUtils.matches(WordExpander.expandToPattern(pattern, scope.getExpansionContext()), value)) {
+					return execute(item.body(), scope, sink);
+				}
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Executes a simple command, applying its assignments and redirections.
 	 *
-	 * @return the evaluation result with command output and redirect targets
-	 * @throws ReplException if command execution fails unexpectedly
+	 * <p>Assignments alone set shell variables. Assignments before a command are
+	 * exported to that command only, and are not seen by the expansion of its words.
 	 */
-	private EvaluationResult processCommand() throws ReplException {
-		Supplier<Command> factory = BuiltinCommand.allCommandMap.get(context.getMainCommandStr());
-		Command command;
-		if(factory != null) {
-			command = factory.get();
-		} else {
-			Path executablePath = ExecutableUtils.findExecutablePath(context.getMainCommandStr());
-			if(executablePath != null) {
-				// Cache resolved path to avoid redundant PATH lookups in ExecutableCommand
-				context.setExecutablePath(executablePath);
-				command = new ExecutableCommand();
-			} else {
-				command = new BadCommand();
+	private static int executeSimple(Node.SimpleCommand command, ReplContext.Builder scope, OutputSink sink)
+			throws ReplException {
+		// Checked before every command, so Ctrl-C also stops loops running only builtins
+		if (Thread.interrupted()) {
+			throw new CancelledException();
+		}
+		String aliasName = aliasName(command.words(), scope);
+		if (aliasName != null) {
+			return executeAlias(aliasName, command, scope, sink);
+		}
+		if (command.words().isEmpty()) {
+			for (Assignment assignment : command.assignments()) {
+				scope.getEnvUtils().set(assignment.name(),
+						WordExpander.expandToString(assignment.value(), scope.getExpansionContext()));
+			}
+			return 0;
+		}
+
+		ReplContext.Builder commandScope = scope;
+		if (!command.assignments().isEmpty()) {
+			EnvUtils commandEnv = scope.getEnvUtils().fork();
+			for (Assignment assignment : command.assignments()) {
+				commandEnv.set(assignment.name(),
+						WordExpander.expandToString(assignment.value(), scope.getExpansionContext()));
+				commandEnv.export(assignment.name());
 			}
+			commandScope = scope.withEnvUtils(commandEnv);
+		}
+
+		// Expanded before the assignments apply, as in "A=2 echo $A"
+		ReplContext context = commandScope.words(command.words(), scope.getExpansionContext()).build();
+		if (Thread.interrupted()) {
+			// Cancelled during a command substitution in the words
+			throw new CancelledException();
+		}
+		// Redirected streams go to their files, not to the terminal
+		context.setTerminal(sink.terminal());
+		CommandResult result = processCommand(context, sink);
+		sink.accept(result);
+		return result.exitCode();
+	}
+
+	/**
+	 * Returns the name of the alias a command starts with, or null if its first
+	 * word is quoted, not an alias, or an alias already being expanded.
+	 */
+	private static String aliasName(List<Word> words, ReplContext.Builder scope) {
+		if (words.isEmpty()) {
+			return null;
+		}
+		String name = words.getFirst().unquotedText();
+		return name != null && scope.getCommandTable().isExpandableAlias(name) ? name : null;
+	}
+
+	/**
+	 * Executes a command starting with an alias.
+	 *
+	 * <p>The alias plan was parsed when it was defined: the command's assignments
+	 * are prepended to its first simple command and the remaining words appended
+	 * to its last one, without tokenizing anything again.
+	 */
+	private static int executeAlias(String name, Node.SimpleCommand command,
+			ReplContext.Builder scope, OutputSink sink) throws ReplException {
+		CommandTable commandTable = scope.getCommandTable();
+		CommandTable.Alias alias = commandTable.beginAliasExpansion(name);
+		try {
+			List<Word> arguments = command.words().subList(1, command.words().size());
+			Node expanded = appendWords(prependAssignments(alias.plan(), command.assignments()), arguments);
+			return execute(expanded, scope, sink);
+		} finally {
+			commandTable.endAliasExpansion(name);
 		}
+	}
+
+	private static Node prependAssignments(Node plan, List<Assignment> assignments) {
+		if (assignments.isEmpty()) {
+			return plan;
+		}
+		return switch (plan) {
+			case Node.SimpleCommand(List<Assignment> own, List<Word> words) ->
+				new Node.SimpleCommand(concat(assignments, own), words);
+			case Node.Sequence(List<Node> nodes) when !nodes.isEmpty() ->
+				new Node.Sequence(replace(nodes, 0, prependAssignments(nodes.getFirst(), assignments)));
+			case Node.AndOr(Node left, Node right, boolean and) ->
+				new Node.AndOr(prependAssignments(left, assignments), right, and);
+			default -> throw new IllegalArgumentException(
+					"syntax error near unexpected token `" + assignments.getFirst().name() + "='");
+		};
+	}
+
+	private static Node appendWords(Node plan, List<Word> words) {
+		if (words.isEmpty()) {
+			return plan;
+		}
+		return switch (plan) {
+			case Node.SimpleCommand(List<Assignment> assignments, List<Word> own) ->
+				new Node.SimpleCommand(assignments, concat(own, words));
+			case Node.Sequence(List<Node> nodes) when !nodes.isEmpty() ->
+				new Node.Sequence(replace(nodes, nodes.size() - 1, appendWords(nodes.getLast(), words)));
+			case Node.AndOr(Node left, Node right, boolean and) ->
+				new Node.AndOr(left, appendWords(right, words), and);
+			default -> throw new IllegalArgumentException("syntax error near unexpected token `"
+					+ WordExpander.expandToString(words.getFirst(), ExpansionContext.LITERAL) + "'");
+		};
+	}
+
+	private static <T> List<T> concat(List<T> first, List<T> second) {
+		List<T> all = new ArrayList<>(first.size() + second.size());
+		all.addAll(first);
+		all.addAll(second);
+		return List.copyOf(all);
+	}
+
+	private static List<Node> replace(List<Node> nodes, int index, Node node) {
+		List<Node> copy = new ArrayList<>(nodes);
+		copy.set(index, node);
+		return List.copyOf(copy);
+	}
+
+	/**
+	 * Executes a subshell body in a forked environment.
+	 */
+	private static int executeSubshell(Node body, ReplContext.Builder scope, OutputSink sink) throws ReplException {
+		try {
+			return execute(body, scope.fork(), sink);
+		} catch (GracefulExitException _) {
+			// exit inside ( ... ) only ends the subshell
+			return 0;
+		} catch (ReturnException e) {
+			// return inside ( ... ) in a function also only ends the subshell
+			return e.getExitCode() >= 0 ? e.getExitCode() : scope.getLastExitCode();
+		}
+	}
+
+	/**
+	 * Executes a compound command, collecting its output and writing it to the
+	 * redirection targets once the command finishes.
+	 *
+	 * <p>The targets are created first. When stdout and stderr are merged, each command's
+	 * stdout and stderr are collected together in the order the commands finish.
+	 */
+	private static int executeRedirected(Node command, List<Redirection> redirections,
+			ReplContext.Builder scope, OutputSink sink) throws ReplException {
+		RedirectionTable.Builder builder = RedirectionTable.builder();
+		for (Redirection redirection : redirections) {
+			builder.add(redirection.operator(),
+					WordExpander.expandToString(redirection.target(), scope.getExpansionContext()));
+		}
+		RedirectionTable table = builder.build();
+		Path currentDir = scope.getDirUtils().getCurrentDir();
+		try {
+			table.open(currentDir);
+		} catch (IOException e) {
+			throw new ReplException(e);
+		}
+
+		CapturedOutput captured = new CapturedOutput();
+		OutputSink capture = captured;
+		if (table.isMerged()) {
+			capture = result -> {
+				captured.accept(new CommandResult(result.stdout(), "", result.exitCode()));
+				captured.accept(new CommandResult(result.stderr(), "", result.exitCode()));
+			};
+		}
+		int exitCode = execute(command, scope, capture);
+
+		CommandResult output = captured.toResult(exitCode);
+		try {
+			table.write(currentDir, output.stdout(), output.stderr());
+		} catch (IOException e) {
+			throw new ReplException(e);
+		}
+		sink.accept(route(table, output));
+		return exitCode;
+	}
 
-		CommandResult result = command.execute(context);
+	/**
+	 * Returns the output left for the shell's own streams once the files got theirs.
+	 */
+	private static CommandResult route(RedirectionTable table, CommandResult result) {
+		return new CommandResult(table.textFor(STDOUT, result.stdout(), result.stderr()),
+				table.textFor(STDERR, result.stdout(), result.stderr()), result.exitCode());
+	}
 
-		return new EvaluationResult(
-			result,
-			context.getStdoutRedirectTo(),
-			context.getStderrRedirectTo()
-		);
+	/**
+	 * Resolves and executes a single command.
+	 *
+	 * <p>Checks the session's functions, then builtins, then searches PATH for
+	 * an executable, falling back to BadCommand if not found.
+	 *
+	 * <p>Package-private for {@link ProcessSubstitution}, which runs a command this way
+	 * on a thread of its own.
+	 *
+	 * @param context the context of the command, built in the environment it runs in
+	 * @param sink where a command whose output is not redirected may pass output while it runs
+	 * @return the command output not yet passed to the sink
+	 * @throws ReplException if command execution fails unexpectedly
+	 */
+	static CommandResult processCommand(ReplContext context, OutputSink sink) throws ReplException {
+		String stdinRedirectFrom = context.getStdinRedirectFrom();
+		if (stdinRedirectFrom != null
+				&& !Files.exists(context.getDirUtils().getCurrentDir().resolve(stdinRedirectFrom))) {
+			// As in other shells, the command does not run without its input
+			return CommandResult.error(stdinRedirectFrom + Messages.NO_SUCH_FILE_OR_DIRECTORY);
+		}
+
+		RedirectionTable redirections = context.getRedirections();
+		Path currentDir = context.getDirUtils().getCurrentDir();
+		try {
+			// Created even if the command writes nothing or does not run, as in "> file"
+			redirections.open(currentDir);
+			if (context.getMainCommandStr().isEmpty()) {
+				// Every word expanded to nothing, e.g. "$(true)"
+				return CommandResult.empty();
+			}
+			Command command = resolveCommand(context);
+			if (redirections == RedirectionTable.NONE) {
+				return command.execute(context, sink);
+			}
+			CommandResult result = command.execute(context);
+			if (command.appliesRedirections()) {
+				return result;
+			}
+			redirections.write(currentDir, result.stdout(), result.stderr());
+			return route(redirections, result);
+		} catch (IOException e) {
+			throw new ReplException(e);
+		} finally {
+			context.getFileStatusCache().endCommand();
+		}
+	}
+
+	/**
+	 * Finds the command to run through the session's dispatch cache: function,
+	 * builtin, executable in PATH, then BadCommand.
+	 */
+	private static Command resolveCommand(ReplContext context) {
+		CommandTable.Resolution resolution = context.getCommandTable()
+				.resolve(context.getMainCommandStr(), context.getEnvUtils().get(PATH_VARIABLE));
+		// Set on every run, even to null: a prepared context keeps the value of its last run
+		context.setExecutablePath(resolution.executablePath());
+		return resolution.command();
 	}
 
 }
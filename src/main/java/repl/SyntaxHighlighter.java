@@ -0,0 +1,104 @@
+package repl;
+
+import lombok.AccessLevel;
+import lombok.ToString;
+import lombok.experimental.FieldDefaults;
+import repl.io.Highlighter;
+import repl.utils.ExecutableUtils;
+import repl.utils.ResumableTokenizer;
+import repl.utils.ResumableTokenizer.Kind;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Highlights command lines for the line editor: command names green if they are known
+ * and red if not, reserved words, quotes, expansions, redirections and operators.
+ *
+ * <p>The line is lexed by a {@link ResumableTokenizer}, so a keystroke re-lexes only
+ * from the token it touched. A command name is known if it is a builtin, a function or
+ * alias of the {@link CommandTable}, or an executable in PATH, and all three are looked
+ * up in memory: PATH is never probed on a keystroke. Instead, the PATH listings are
+ * refreshed in the background each time a new line starts, so a program installed by
+ * the previous line shows as known on the next one. A name containing {@code /} would
+ * need a probe, and is left uncolored.
+ */
+@ToString
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class SyntaxHighlighter implements Highlighter {
+
+	/** The session's functions and aliases. */
+	@ToString.Exclude
+	final CommandTable commandTable;
+
+	/** Styles of the line being edited. */
+	final ResumableTokenizer tokenizer;
+
+	/** Whether the PATH listings are being refreshed. */
+	final AtomicBoolean refreshing = new AtomicBoolean();
+
+	/**
+	 * Creates a highlighter for a session.
+	 *
+	 * @param commandTable the session's functions and aliases
+	 */
+	public SyntaxHighlighter(CommandTable commandTable) {
+		this.commandTable = commandTable;
+		this.tokenizer = new ResumableTokenizer(this::isCommand);
+	}
+
+	@Override
+	public int update(CharSequence line, int from) {
+		if (line.isEmpty()) {
+			refreshExecutables();
+		}
+		return tokenizer.update(line, from);
+	}
+
+	@Override
+	public String style(int index) {
+		return style(tokenizer.kind(index));
+	}
+
+	/**
+	 * Returns the SGR parameters of a kind of token, or null to leave it uncolored.
+	 *
+	 * @param kind the kind
+	 * @return the style
+	 */
+	static String style(Kind kind) {
+		return switch (kind) {
+			case PLAIN -> null;
+			case COMMAND -> "32";
+			case UNKNOWN_COMMAND -> "31";
+			case KEYWORD -> "35";
+			case QUOTED -> "33";
+			case EXPANSION -> "36";
+			case REDIRECT -> "34";
+			case OPERATOR -> "1";
+		};
+	}
+
+	/**
+	 * Returns whether a command name is known, from memory only.
+	 */
+	private boolean isCommand(String name) {
+		return BuiltinCommand.allCommandMap.containsKey(name)
+			|| commandTable.isDefined(name)
+			|| ExecutableUtils.isKnownExecutable(name);
+	}
+
+	/**
+	 * Refreshes the PATH listings on a virtual thread, unless a refresh is running.
+	 */
+	private void refreshExecutables() {
+		if (refreshing.compareAndSet(false, true)) {
+			Thread.ofVirtual().name("path-refresh").start(() -> {
+				try {
+					ExecutableUtils.refreshExecutables();
+				} finally {
+					refreshing.set(false);
+				}
+			});
+		}
+	}
+}
@@ -1,5 +1,6 @@
 package repl.commands;
 
+import repl.OutputSink;
 import repl.ReplContext;
 import repl.exceptions.ReplException;
 
@@ -28,4 +29,33 @@ public interface Command {
 	 * @throws ReplException if command execution fails or encounters an error
 	 */
 	CommandResult execute(ReplContext context) throws ReplException;
+
+	/**
+	 * Executes this command, passing output to the sink as it is produced.
+	 *
+	 * <p>Called instead of {@link #execute(ReplContext)} when the command's output is not
+	 * redirected. Commands running other commands, such as functions, hand each one's
+	 * output to the sink as soon as it finishes; the others return all of it at the end.
+	 *
+	 * @param context the REPL context containing command input, arguments, and shared services
+	 * @param sink where output produced while the command runs goes
+	 * @return the output not yet passed to the sink, and the exit code
+	 * @throws ReplException if command execution fails or encounters an error
+	 */
+	default CommandResult execute(ReplContext context, OutputSink sink) throws ReplException {
+		return execute(context);
+	}
+
+	/**
+	 * Returns whether this command applies the output redirections of its context
+	 * ({@link ReplContext#getRedirections()}) itself.
+	 *
+	 * <p>Otherwise the caller writes the returned output to the redirection targets.
+	 * The caller creates or truncates the target files before either runs.
+	 *
+	 * @return true if the result only holds output that was not redirected
+	 */
+	default boolean appliesRedirections() {
+		return false;
+	}
 }
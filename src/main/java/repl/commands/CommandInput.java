@@ -0,0 +1,66 @@
+package repl.commands;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Redirected standard input of a command.
+ *
+ * <p>A command without one reads nothing: external programs see the end of their
+ * input at once.
+ *
+ * @see ExecutableCommand
+ */
+public sealed interface CommandInput {
+	/**
+	 * Text fed to the command: the body of a here-document or a here-string.
+	 *
+	 * <p>The text is kept in the pieces it was expanded from, in order: literal lines are
+	 * the strings of the parsed plan, not copies, and expansions are written between
+	 * them. The whole text is never joined into one string.
+	 *
+	 * @param chunks the pieces of the text
+	 */
+	record Text(List<String> chunks) implements CommandInput {
+		/**
+		 * Writes the text piece by piece.
+		 *
+		 * @param out the writer, such as one encoding into the command's stdin pipe
+		 * @throws IOException if writing fails, e.g. the command exited without reading
+		 */
+		public void writeTo(Writer out) throws IOException {
+			for (int i = 0; i < chunks.size(); i++) {
+				out.write(chunks.get(i));
+			}
+		}
+	}
+
+	/**
+	 * A file read as standard input, from {@code < file}.
+	 *
+	 * <p>An external program gets the file itself as its stdin, so its content never
+	 * passes through the shell. A command run in-process reads it through
+	 * {@link #open()}.
+	 *
+	 * @param path the resolved path of the file
+	 */
+	record File(Path path) implements CommandInput {
+		/**
+		 * Opens the file for a command reading it in-process.
+		 *
+		 * <p>The stream reads straight from a {@link FileChannel} into the caller's
+		 * buffer, so a file of any size is read without being loaded onto the heap.
+		 *
+		 * @return a stream over the file's content, to be closed by the caller
+		 * @throws IOException if the file cannot be opened
+		 */
+		public InputStream open() throws IOException {
+			return Channels.newInputStream(FileChannel.open(path));
+		}
+	}
+}
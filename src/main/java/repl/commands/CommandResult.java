@@ -8,6 +8,12 @@ package repl.commands;
  * @param exitCode the exit code (0 for success, non-zero for failure)
  */
 public record CommandResult(String stdout, String stderr, int exitCode) {
+	/** Shared result of a command that succeeded without output. */
+	private static final CommandResult EMPTY = new CommandResult("", "", 0);
+
+	/** Shared result of a command that failed without output. */
+	private static final CommandResult FALSE = new CommandResult("", "", 1);
+
 	/**
 	 * Creates a successful result with stdout only (stderr empty, exit code 0).
 	 */
@@ -19,7 +25,19 @@ public record CommandResult(String stdout, String stderr, int exitCode) {
 	 * Creates a successful result with no output (exit code 0).
 	 */
 	public static CommandResult empty() {
-		return new CommandResult("", "", 0);
+		return EMPTY;
+	}
+
+	/**
+	 * Returns a result with no output and the given exit code; results for 0 and 1
+	 * are shared, so conditions such as {@code test} allocate nothing.
+	 */
+	public static CommandResult status(int exitCode) {
+		return switch (exitCode) {
+			case 0 -> EMPTY;
+			case 1 -> FALSE;
+			default -> new CommandResult("", "", exitCode);
+		};
 	}
 
 	/**
@@ -1,22 +1,69 @@
 package repl.commands;
 
 import repl.ReplContext;
+import repl.exceptions.CancelledException;
 import repl.exceptions.ReplException;
+import repl.utils.DirUtils;
+import repl.utils.EnvUtils;
+import repl.utils.ExecutableUtils;
+import repl.utils.RedirectionTable;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
+import static repl.Constants.PATH_VARIABLE;
+import static repl.utils.RedirectionTable.Target.Stream.STDERR;
+import static repl.utils.RedirectionTable.Target.Stream.STDOUT;
+
 /**
  * Command handler for external executable programs.
  *
  * <p>Executes external programs found in PATH using Java's ProcessBuilder API.
  * Captures and returns stdout/stderr output from the spawned process.
+ *
+ * <p>A here-document or here-string is written into the process's stdin pipe by a
+ * virtual thread while the output is read, so a body larger than the pipe buffer is
+ * fed as fast as the program consumes it: the writer blocks on the full pipe, never
+ * the evaluator. A file redirected with {@code <} is handed to the process as its stdin
+ * and never read by the shell. Without either, stdin is closed at once and the program
+ * reads end of input.
+ *
+ * <p>When the context offers the terminal ({@link ReplContext#getTerminal()}), the
+ * program runs in the foreground instead: it inherits the shell's stdout and stderr,
+ * and its stdin unless that is redirected, so interactive programs such as {@code vim},
+ * {@code less} or {@code top} work, and output is never copied through the shell. The
+ * shell stops reading keys and restores the terminal's cooked mode until the program
+ * exits. Ctrl-C then reaches the program as a signal from the terminal, and the shell
+ * waits for it rather than destroying it, so a program that handles the signal keeps
+ * running.
+ *
+ * <p>Output redirections ({@link ReplContext#getRedirections()}) are applied by the OS:
+ * the process gets its files as its stdout and stderr, opened for appending after the
+ * caller created or truncated them, so its output streams to disk as it is written.
+ * Descriptors sharing a file share one handle, and {@code 2>&1} onto a stream is
+ * {@link ProcessBuilder#redirectErrorStream(boolean)}, so the two streams interleave
+ * in the order the program wrote them. A program in the foreground keeps its redirected
+ * files and inherits the terminal for the rest; one with a stream duplicated onto the
+ * other ({@code 1>&2}) is captured instead.
  */
 public class ExecutableCommand implements Command {
+	/**
+	 * Returns true: the process writes to its files itself, through handles it
+	 * inherits, and streams merged by {@code 2>&1} are merged by the OS.
+	 *
+	 * @return true
+	 */
+	@Override
+	public boolean appliesRedirections() {
+		return true;
+	}
+
 	/**
 	 * Executes the external command and captures its output.
 	 *
@@ -25,7 +72,8 @@ public class ExecutableCommand implements Command {
 	 *
 	 * @param context the REPL context containing command and arguments
 	 * @return the command result with stdout, stderr, and exit code
-	 * @throws ReplException only for truly unexpected errors (IOException, InterruptedException)
+	 * @throws CancelledException if the evaluation is interrupted; the process is destroyed
+	 * @throws ReplException only for truly unexpected errors (IOException)
 	 */
 	@Override
 	public CommandResult execute(ReplContext context) throws ReplException {
@@ -34,16 +82,49 @@ public class ExecutableCommand implements Command {
 			// Build command list
 			List<String> command = new ArrayList<>();
 
-			// Always use command name (not full path) to ensure argv[0] is correct
-			// ProcessBuilder will resolve via PATH (fast due to OS caching)
-			command.add(mainCommandStr);
+			// Use the command name (not full path) so argv[0] is correct, unless the
+			// shell's PATH changed and ProcessBuilder would find another program
+			EnvUtils envUtils = context.getEnvUtils();
+			command.add(envUtils == null ? mainCommandStr : ExecutableUtils.program(mainCommandStr,
+					context.getExecutablePath(), envUtils.get(PATH_VARIABLE)));
 			command.addAll(context.getArgs());
 
-			// Create and configure process
+			// Create and configure process: run in the shell's current directory
+			// with its exported variables
 			ProcessBuilder pb = new ProcessBuilder(command);
+			DirUtils dirUtils = context.getDirUtils();
+			if (dirUtils != null && dirUtils.getCurrentDir() != null) {
+				pb.directory(dirUtils.getCurrentDir().toFile());
+			}
+			if (envUtils != null) {
+				envUtils.applyTo(pb);
+			}
+			CommandInput stdin = context.getStdin();
+			if (stdin instanceof CommandInput.File file) {
+				pb.redirectInput(file.path().toFile());
+			}
+
+			RedirectionTable redirections = context.getRedirections();
+			if (redirections == null) {
+				redirections = RedirectionTable.NONE;
+			}
+			TerminalHandoff terminal = context.getTerminal();
+			boolean foreground = terminal != null && !redirections.crossesStreams();
+			if (foreground) {
+				// Streams left to the shell go straight to the terminal
+				pb.redirectOutput(ProcessBuilder.Redirect.INHERIT);
+				pb.redirectError(ProcessBuilder.Redirect.INHERIT);
+			}
+			if (redirections != RedirectionTable.NONE) {
+				redirections.redirect(pb, dirUtils.getCurrentDir());
+			}
+			if (foreground) {
+				return runInForeground(pb, stdin, terminal, mainCommandStr);
+			}
 
 			// Start process and capture output
 			Process process = pb.start();
+			feedInput(process, stdin, mainCommandStr);
 
 			// Read streams concurrently to avoid deadlock on large output
 			// Sequential reading can block if output exceeds pipe buffer size (~64KB)
@@ -63,8 +144,14 @@ public class ExecutableCommand implements Command {
 				}
 			});
 
-			// Wait for process completion
-			int exitCode = process.waitFor();
+			// Wait for process completion; Ctrl-C interrupts the wait
+			int exitCode;
+			try {
+				exitCode = process.waitFor();
+			} catch (InterruptedException e) {
+				process.destroy();
+				throw new CancelledException();
+			}
 
 			// Retrieve captured output (blocks until streams are fully read)
 			String stdout = stdoutFuture.join();
@@ -74,10 +161,82 @@ public class ExecutableCommand implements Command {
 			String cleanStdout = stdout.stripTrailing();
 			String cleanStderr = stderr.stripTrailing();
 
+			if (redirections != RedirectionTable.NONE) {
+				// A stream duplicated onto the other one, e.g. by 2>&1, was read as one
+				return new CommandResult(redirections.textFor(STDOUT, cleanStdout, cleanStderr),
+						redirections.textFor(STDERR, cleanStdout, cleanStderr), exitCode);
+			}
 			return new CommandResult(cleanStdout, cleanStderr, exitCode);
-		} catch (IOException | InterruptedException e) {
+		} catch (IOException e) {
 			throw new ReplException(mainCommandStr + ": execution failed: " + e.getMessage(), e);
 		}
 	}
 
+	/**
+	 * Runs the program on the shell's terminal and waits for it to exit.
+	 *
+	 * @return an empty result with the program's exit code, as its output went to the terminal
+	 * @throws CancelledException if Ctrl-C ended the program
+	 */
+	private static CommandResult runInForeground(ProcessBuilder pb, CommandInput stdin, TerminalHandoff terminal,
+			String name) throws IOException, CancelledException {
+		if (stdin == null) {
+			pb.redirectInput(ProcessBuilder.Redirect.INHERIT);
+		}
+		terminal.suspend();
+		boolean interrupted = false;
+		int exitCode;
+		try {
+			Process process = pb.start();
+			if (stdin != null) {
+				feedInput(process, stdin, name);
+			}
+			while (true) {
+				try {
+					exitCode = process.waitFor();
+					break;
+				} catch (InterruptedException e) {
+					// The terminal sent the program SIGINT too; it decides whether to exit
+					interrupted = true;
+				}
+			}
+		} finally {
+			terminal.resume();
+		}
+		if (interrupted && exitCode == CancelledException.EXIT_CODE) {
+			// Killed by the signal: cancel the rest of the line, as after a captured program
+			throw new CancelledException();
+		}
+		return new CommandResult("", "", exitCode);
+	}
+
+	/**
+	 * Writes the command's text input into its stdin pipe on a virtual thread, then
+	 * closes the pipe so that the program reads end of input.
+	 *
+	 * <p>The writer ends when the text is written or when the program exits without
+	 * reading it all, which fails the next write with a broken pipe.
+	 *
+	 * <p>Also used by command substitution, which starts programs of its own.
+	 *
+	 * @param process the started program
+	 * @param stdin the command's input, or null to give it end of input at once
+	 * @param name the command name, naming the writer thread
+	 * @throws IOException if the stdin pipe cannot be closed
+	 */
+	public static void feedInput(Process process, CommandInput stdin, String name) throws IOException {
+		switch (stdin) {
+			case CommandInput.Text text -> Thread.ofVirtual().name("stdin-" + name).start(() -> {
+				try (Writer writer = new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8)) {
+					text.writeTo(writer);
+				} catch (IOException e) {
+					// The program exited or closed its stdin before reading everything
+				}
+			});
+			// The process reads the file itself
+			case CommandInput.File _ -> { }
+			case null -> process.getOutputStream().close();
+		}
+	}
+
 }
@@ -0,0 +1,86 @@
+package repl.commands;
+
+import repl.CapturedOutput;
+import repl.CommandTable;
+import repl.ReplContext;
+import repl.OutputSink;
+import repl.ReplEvaluator;
+import repl.exceptions.ReplException;
+import repl.exceptions.ReturnException;
+import repl.script.Node;
+
+import java.util.List;
+
+/**
+ * Command handler for calls of shell functions.
+ *
+ * <p>Runs the body parsed when the function was defined, in the caller's
+ * environment: {@code cd} and assignments in the body stay in effect after it
+ * returns. The call's arguments become {@code $1}, {@code $2}, ... for the
+ * duration of the call.
+ *
+ * <p>One instance is made per definition and reused by every call, so it keeps
+ * no state of its own; the caller's environment comes from {@link ReplContext#getScope()}.
+ *
+ * @see CommandTable
+ */
+public class FunctionCommand implements Command {
+
+	/** The parsed function body. */
+	private final Node body;
+
+	/**
+	 * Creates the command running a function.
+	 *
+	 * @param body the parsed function body
+	 */
+	public FunctionCommand(Node body) {
+		this.body = body;
+	}
+
+	/**
+	 * Runs the function body with the arguments as positional parameters,
+	 * collecting its output.
+	 *
+	 * @param context the REPL context containing the arguments and the caller's environment
+	 * @return the combined output of the body and the exit code of its last command,
+	 *         or the code given to {@code return}
+	 * @throws ReplException if a command in the body fails unexpectedly
+	 */
+	@Override
+	public CommandResult execute(ReplContext context) throws ReplException {
+		CapturedOutput output = new CapturedOutput();
+		return output.toResult(execute(context, output).exitCode());
+	}
+
+	/**
+	 * Runs the function body with the arguments as positional parameters.
+	 *
+	 * <p>Each command of the body hands its output to the sink when it finishes, so
+	 * the caller sees stdout and stderr in the order they were written.
+	 *
+	 * @param context the REPL context containing the arguments and the caller's environment
+	 * @param sink where the output of the body's commands goes
+	 * @return no output, and the exit code of the body's last command or the code given to {@code return}
+	 * @throws ReplException if a command in the body fails unexpectedly
+	 */
+	@Override
+	public CommandResult execute(ReplContext context, OutputSink sink) throws ReplException {
+		ReplContext.Builder scope = context.getScope();
+		CommandTable commandTable = scope.getCommandTable();
+		if (!commandTable.enterFunction()) {
+			return CommandResult.error(context.getMainCommandStr() + ": maximum function nesting level exceeded ("
+					+ commandTable.getFunctionDepth() + ")");
+		}
+		List<String> callerParameters = scope.getPositionalParameters();
+		scope.setPositionalParameters(List.copyOf(context.getArgs()));
+		try {
+			return CommandResult.status(ReplEvaluator.execute(body, scope, sink));
+		} catch (ReturnException e) {
+			return CommandResult.status(e.getExitCode() >= 0 ? e.getExitCode() : scope.getLastExitCode());
+		} finally {
+			scope.setPositionalParameters(callerParameters);
+			commandTable.exitFunction();
+		}
+	}
+}
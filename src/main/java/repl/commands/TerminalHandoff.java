@@ -0,0 +1,29 @@
+package repl.commands;
+
+import repl.exceptions.CancelledException;
+
+/**
+ * Hands the shell's terminal to a program run in the foreground.
+ *
+ * <p>A program whose output is neither captured nor redirected inherits the shell's
+ * stdin, stdout and stderr instead of pipes, so full-screen and prompting programs
+ * such as {@code vim}, {@code less} or {@code top} see the terminal itself. While it
+ * runs, the shell must neither print nor read keys.
+ *
+ * @see ExecutableCommand
+ * @see repl.OutputSink#terminal()
+ */
+public interface TerminalHandoff {
+	/**
+	 * Gives the terminal away: returns once all output queued so far has been written,
+	 * the shell has stopped reading keys, and the terminal is back in cooked mode.
+	 *
+	 * @throws CancelledException if the evaluation is cancelled while waiting
+	 */
+	void suspend() throws CancelledException;
+
+	/**
+	 * Takes the terminal back after the program exited.
+	 */
+	void resume();
+}
@@ -0,0 +1,64 @@
+package repl.commands.builtin;
+
+import repl.BuiltinCommand;
+import repl.CommandTable;
+import repl.Messages;
+import repl.ReplContext;
+import repl.commands.Command;
+import repl.commands.CommandResult;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builtin command that defines and lists aliases.
+ *
+ * <p>{@code alias name=value} defines an alias, parsing its value once; {@code alias name}
+ * prints one definition and {@code alias} alone prints all of them, as
+ * {@code alias name='value'}.
+ *
+ * @see CommandTable
+ */
+public class AliasCommand implements Command {
+
+	/**
+	 * Defines or prints the given aliases.
+	 *
+	 * @param context the REPL context containing the definitions and the CommandTable
+	 * @return command result (the listing, empty on success, or errors for unknown names)
+	 */
+	@Override
+	public CommandResult execute(ReplContext context) {
+		CommandTable commandTable = context.getCommandTable();
+		List<String> lines = new ArrayList<>();
+		if (context.getArgs().isEmpty()) {
+			commandTable.getAliases().forEach((name, value) -> lines.add(format(name, value)));
+			return CommandResult.success(String.join("\n", lines));
+		}
+
+		List<String> errors = new ArrayList<>();
+		for (String arg : context.getArgs()) {
+			int equals = arg.indexOf('=');
+			if (equals > 0) {
+				String name = arg.substring(0, equals);
+				try {
+					commandTable.setAlias(name, arg.substring(equals + 1));
+				} catch (IllegalArgumentException e) {
+					errors.add(BuiltinCommand.alias + ": " + name + ": " + e.getMessage());
+				}
+			} else if (commandTable.getAlias(arg) != null) {
+				lines.add(format(arg, commandTable.getAlias(arg).value()));
+			} else {
+				errors.add(BuiltinCommand.alias + ": " + arg + Messages.TYPE_NOT_FOUND);
+			}
+		}
+		return new CommandResult(String.join("\n", lines), String.join("\n", errors), errors.isEmpty() ? 0 : 1);
+	}
+
+	/**
+	 * Formats a definition so that it can be pasted back into the shell.
+	 */
+	static String format(String name, String value) {
+		return BuiltinCommand.alias + " " + name + "='" + value.replace("'", "'\\''") + "'";
+	}
+}
@@ -4,6 +4,8 @@ import repl.ReplContext;
 import repl.commands.Command;
 import repl.commands.CommandResult;
 
+import java.util.List;
+
 import static repl.Constants.WHITESPACE;
 
 /**
@@ -13,6 +15,9 @@ import static repl.Constants.WHITESPACE;
  * separated by spaces.
  */
 public class EchoCommand implements Command {
+	/** Separator between arguments, created once rather than per call. */
+	private static final String SEPARATOR = Character.toString(WHITESPACE);
+
 	/**
 	 * Executes the echo command, printing all arguments.
 	 *
@@ -20,7 +25,9 @@ public class EchoCommand implements Command {
 	 * @return command result with arguments joined by spaces
 	 */
 	public CommandResult execute(ReplContext context) {
-		String output = String.join(Character.toString(WHITESPACE), context.getArgs());
+		List<String> args = context.getArgs();
+		// A single argument is already the output; no joined copy is needed
+		String output = args.size() == 1 ? args.getFirst() : String.join(SEPARATOR, args);
 		return CommandResult.success(output);
 	}
 }
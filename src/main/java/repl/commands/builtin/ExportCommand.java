@@ -0,0 +1,55 @@
+package repl.commands.builtin;
+
+import repl.BuiltinCommand;
+import repl.Messages;
+import repl.ReplContext;
+import repl.commands.Command;
+import repl.commands.CommandResult;
+import repl.utils.CommandExtractorUtils;
+import repl.utils.EnvUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Builtin command that exports shell variables to child processes.
+ *
+ * <p>Implements {@code export NAME} and {@code export NAME=value}. Without
+ * arguments, lists the exported variables as {@code declare -x NAME="value"}.
+ */
+public class ExportCommand implements Command {
+
+	/**
+	 * Exports each named variable, assigning it first when a value is given.
+	 *
+	 * @param context the REPL context containing the names and EnvUtils
+	 * @return command result (the listing, empty on success, or an error for invalid names)
+	 */
+	@Override
+	public CommandResult execute(ReplContext context) {
+		EnvUtils envUtils = context.getEnvUtils();
+		if (context.getArgs().isEmpty()) {
+			List<String> lines = new ArrayList<>();
+			new TreeMap<>(envUtils.getExportedVariables()).forEach((name, value) ->
+					lines.add("declare -x " + name + "=\"" + value + "\""));
+			return CommandResult.success(String.join("\n", lines));
+		}
+
+		List<String> errors = new ArrayList<>();
+		for (String arg : context.getArgs()) {
+			int nameLength = CommandExtractorUtils.nameLength(arg, 0);
+			boolean hasValue = nameLength < arg.length() && arg.charAt(nameLength) == '=';
+			if (nameLength == 0 || (nameLength < arg.length() && !hasValue)) {
+				errors.add(BuiltinCommand.export + ": `" + arg + Messages.NOT_A_VALID_IDENTIFIER);
+				continue;
+			}
+			String name = arg.substring(0, nameLength);
+			if (hasValue) {
+				envUtils.set(name, arg.substring(nameLength + 1));
+			}
+			envUtils.export(name);
+		}
+		return errors.isEmpty() ? CommandResult.empty() : CommandResult.error(String.join("\n", errors));
+	}
+}
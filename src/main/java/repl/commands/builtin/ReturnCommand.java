@@ -0,0 +1,40 @@
+package repl.commands.builtin;
+
+import repl.BuiltinCommand;
+import repl.Messages;
+import repl.ReplContext;
+import repl.commands.Command;
+import repl.commands.CommandResult;
+import repl.exceptions.ReturnException;
+
+import java.util.List;
+
+/**
+ * Builtin command that leaves the running shell function or sourced script.
+ *
+ * <p>{@code return n} makes the function exit with {@code n}; {@code return}
+ * alone keeps the exit code of the last command. Implemented by throwing a
+ * {@link ReturnException}, which the function call or {@code source} catches.
+ */
+public class ReturnCommand implements Command {
+	/**
+	 * Leaves the running function.
+	 *
+	 * @param context the REPL context containing the optional exit code
+	 * @return an error if the exit code is not numeric; otherwise never returns normally
+	 * @throws ReturnException to unwind the function body
+	 */
+	@Override
+	public CommandResult execute(ReplContext context) throws ReturnException {
+		List<String> args = context.getArgs();
+		if (args.isEmpty()) {
+			throw new ReturnException(-1);
+		}
+		try {
+			throw new ReturnException(Integer.parseInt(args.getFirst()) & 0xFF);
+		} catch (NumberFormatException e) {
+			return new CommandResult("", BuiltinCommand.returnCommand + ": " + args.getFirst()
+					+ Messages.NUMERIC_ARGUMENT_REQUIRED, 2);
+		}
+	}
+}
@@ -0,0 +1,124 @@
+package repl.commands.builtin;
+
+import repl.CapturedOutput;
+import repl.Constants;
+import repl.Messages;
+import repl.ReplContext;
+import repl.ReplEvaluator;
+import repl.commands.Command;
+import repl.commands.CommandResult;
+import repl.exceptions.ReplException;
+import repl.exceptions.ReturnException;
+import repl.script.Node;
+import repl.script.ScriptCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Builtin command that runs a script file in the current environment: {@code source} and {@code .}.
+ *
+ * <p>Unlike running the script as a program, {@code cd}, assignments, functions and
+ * aliases in the file stay in effect afterwards. Extra arguments become {@code $1},
+ * {@code $2}, ... while the file runs; {@code return} ends the file early.
+ *
+ * <p>A name without a slash is looked up in {@code PATH} first, then in the current
+ * directory. The parsed file comes from a {@link ScriptCache}, so a library sourced
+ * again is only re-parsed when its modification time or size has changed.
+ */
+public class SourceCommand implements Command {
+
+	/** Cache of parsed files. */
+	private final ScriptCache cache;
+
+	/**
+	 * Creates the command using the cache shared by all sessions.
+	 */
+	public SourceCommand() {
+		this(ScriptCache.SHARED);
+	}
+
+	/**
+	 * Creates the command using the given cache.
+	 *
+	 * @param cache the cache of parsed files
+	 */
+	public SourceCommand(ScriptCache cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * Runs the file named by the first argument.
+	 *
+	 * @param context the REPL context containing the file name and arguments
+	 * @return the combined output of the file and the exit code of its last command,
+	 *         or the code given to {@code return}
+	 * @throws ReplException if a command in the file fails unexpectedly
+	 */
+	@Override
+	public CommandResult execute(ReplContext context) throws ReplException {
+		String name = context.getMainCommandStr();
+		List<String> args = context.getArgs();
+		if (args.isEmpty()) {
+			return new CommandResult("", name + Messages.FILENAME_ARGUMENT_REQUIRED, 2);
+		}
+
+		String file = args.getFirst();
+		Node plan;
+		try {
+			plan = cache.load(locate(file, context));
+		} catch (NoSuchFileException | InvalidPathException e) {
+			return CommandResult.error(name + ": " + file + Messages.NO_SUCH_FILE_OR_DIRECTORY);
+		} catch (FileSystemException e) {
+			return CommandResult.error(name + ": " + file + ": " + e.getReason());
+		} catch (IOException e) {
+			return CommandResult.error(name + ": " + file + ": " + e.getMessage());
+		} catch (IllegalArgumentException e) {
+			return new CommandResult("", file + ": " + e.getMessage(), 2);
+		}
+
+		ReplContext.Builder scope = context.getScope();
+		List<String> callerParameters = scope.getPositionalParameters();
+		if (args.size() > 1) {
+			scope.setPositionalParameters(List.copyOf(args.subList(1, args.size())));
+		}
+		CapturedOutput output = new CapturedOutput();
+		try {
+			return output.toResult(ReplEvaluator.execute(plan, scope, output));
+		} catch (ReturnException e) {
+			return output.toResult(e.getExitCode() >= 0 ? e.getExitCode() : scope.getLastExitCode());
+		} finally {
+			scope.setPositionalParameters(callerParameters);
+		}
+	}
+
+	/**
+	 * Resolves the file name: relative to the current directory if it contains a
+	 * slash, otherwise the first regular file of that name in {@code PATH}.
+	 */
+	private static Path locate(String file, ReplContext context) {
+		Path currentDir = context.getDirUtils().getCurrentDir();
+		String searchPath = context.getEnvUtils().get(Constants.PATH_VARIABLE);
+		if (file.indexOf('/') < 0 && searchPath != null) {
+			for (String dir : searchPath.split(File.pathSeparator)) {
+				if (dir.isEmpty()) {
+					continue;
+				}
+				try {
+					Path candidate = currentDir.resolve(dir).resolve(file);
+					if (Files.isRegularFile(candidate)) {
+						return candidate;
+					}
+				} catch (InvalidPathException _) {
+				}
+			}
+		}
+		return currentDir.resolve(file);
+	}
+}
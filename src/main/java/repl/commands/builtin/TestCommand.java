@@ -0,0 +1,344 @@
+package repl.commands.builtin;
+
+import repl.BuiltinCommand;
+import repl.Messages;
+import repl.ReplContext;
+import repl.commands.Command;
+import repl.commands.CommandResult;
+import repl.script.ArithmeticParser;
+import repl.utils.FileStatusCache;
+import repl.utils.FileStatusCache.FileStatus;
+import repl.utils.GlobUtils;
+
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Builtin command that evaluates conditional expressions: {@code test}, {@code [} and {@code [[}.
+ *
+ * <p>Exits with 0 when the expression is true, 1 when it is false and 2 on a usage error.
+ * {@code [} requires a closing {@code ]} and {@code [[} a closing {@code ]]}.
+ *
+ * <p>Supported expressions:
+ * <ul>
+ *   <li>File tests: {@code -e -a -f -d -s -r -w -x -L -h -p -S -b -c -u -g -k -O -G},
+ *       and {@code f1 -nt f2}, {@code f1 -ot f2}, {@code f1 -ef f2}</li>
+ *   <li>Strings: {@code -z s}, {@code -n s}, {@code s}, {@code s1 = s2}, {@code s1 == s2}, {@code s1 != s2}</li>
+ *   <li>Integers: {@code -eq -ne -lt -le -gt -ge}</li>
+ *   <li>{@code !}, {@code ( ... )}, and {@code -a} / {@code -o} ({@code &&} / {@code ||} in {@code [[})</li>
+ * </ul>
+ *
+ * <p>In {@code [[}, the right side of {@code ==} and {@code !=} is a shell pattern,
+ * {@code =~} matches a regular expression, and integers may be written in hex or octal.
+ *
+ * <p>File tests are answered from one attribute read per path through the
+ * session's {@link FileStatusCache}, so {@code [ -f x ] && [ -r x ]} stats {@code x} once.
+ */
+public class TestCommand implements Command {
+
+	/** Exit code for a usage error, such as a missing operand. */
+	static final int USAGE_ERROR = 2;
+
+	/** Operators taking one operand. */
+	private static final Set<String> UNARY_OPERATORS = Set.of(
+		"-e", "-a", "-f", "-d", "-s", "-r", "-w", "-x", "-L", "-h", "-p", "-S", "-b", "-c",
+		"-u", "-g", "-k", "-O", "-G", "-z", "-n"
+	);
+
+	/** Operators taking two operands. */
+	private static final Set<String> BINARY_OPERATORS = Set.of(
+		"=", "==", "!=", "-eq", "-ne", "-lt", "-le", "-gt", "-ge", "-nt", "-ot", "-ef"
+	);
+
+	/** The name the command was invoked by. */
+	private final String name;
+
+	/** The word that must end the expression, or null for {@code test}. */
+	private final String closing;
+
+	/** Whether the {@code [[} extensions apply. */
+	private final boolean extended;
+
+	/**
+	 * Creates the {@code test} command.
+	 */
+	public TestCommand() {
+		this(BuiltinCommand.test);
+	}
+
+	/**
+	 * Creates the command for one of its names.
+	 *
+	 * @param name {@code test}, {@code [} or {@code [[}
+	 */
+	public TestCommand(String name) {
+		this.name = name;
+		this.extended = name.equals(BuiltinCommand.testDoubleBracket);
+		this.closing = switch (name) {
+			case BuiltinCommand.testBracket -> "]";
+			case BuiltinCommand.testDoubleBracket -> "]]";
+			default -> null;
+		};
+	}
+
+	/**
+	 * Evaluates the expression given as arguments.
+	 *
+	 * @param context the REPL context containing the expression and the current directory
+	 * @return empty result with exit code 0 (true) or 1 (false), or an error with exit code 2
+	 */
+	@Override
+	public CommandResult execute(ReplContext context) {
+		List<String> args = context.getArgs();
+		int end = args.size();
+		if (closing != null) {
+			if (args.isEmpty() || !args.getLast().equals(closing)) {
+				return usageError(Messages.TEST_MISSING_CLOSE + closing + "'");
+			}
+			end--;
+		}
+
+		FileStatusCache cache = context.getFileStatusCache() != null
+				? context.getFileStatusCache()
+				: new FileStatusCache();
+		Path currentDir = context.getDirUtils().getCurrentDir();
+		try {
+			// POSIX decides one to three arguments by their number; the common forms
+			// need no parser, so "[ -n x ]" allocates nothing
+			boolean result;
+			if (end == 1) {
+				result = !args.getFirst().isEmpty();
+			} else if (end == 2 && UNARY_OPERATORS.contains(args.getFirst())) {
+				result = unary(args.getFirst(), args.get(1), currentDir, cache);
+			} else if (end == 3 && isBinaryOperator(args.get(1))) {
+				result = binary(args.get(1), args.getFirst(), args.get(2), currentDir, cache);
+			} else {
+				result = new Evaluation(args, end, currentDir, cache).evaluate();
+			}
+			return CommandResult.status(result ? 0 : 1);
+		} catch (IllegalArgumentException e) {
+			return usageError(e.getMessage());
+		}
+	}
+
+	private boolean unary(String operator, String operand, Path currentDir, FileStatusCache cache) {
+		return switch (operator) {
+			case "-z" -> operand.isEmpty();
+			case "-n" -> !operand.isEmpty();
+			case "-L", "-h" -> {
+				FileStatus status = status(operand, false, currentDir, cache);
+				yield status != null && status.is(FileStatusCache.TYPE_SYMBOLIC_LINK);
+			}
+			default -> fileTest(operator, status(operand, true, currentDir, cache));
+		};
+	}
+
+	private static boolean fileTest(String operator, FileStatus status) {
+		if (status == null) {
+			return false;
+		}
+		return switch (operator) {
+			case "-f" -> status.is(FileStatusCache.TYPE_REGULAR);
+			case "-d" -> status.is(FileStatusCache.TYPE_DIRECTORY);
+			case "-p" -> status.is(FileStatusCache.TYPE_FIFO);
+			case "-S" -> status.is(FileStatusCache.TYPE_SOCKET);
+			case "-b" -> status.is(FileStatusCache.TYPE_BLOCK_DEVICE);
+			case "-c" -> status.is(FileStatusCache.TYPE_CHARACTER_DEVICE);
+			case "-s" -> status.size() > 0;
+			case "-r" -> status.permits(4);
+			case "-w" -> status.permits(2);
+			case "-x" -> status.permits(1);
+			case "-u" -> (status.mode() & 04000) != 0;
+			case "-g" -> (status.mode() & 02000) != 0;
+			case "-k" -> (status.mode() & 01000) != 0;
+			case "-O" -> status.isOwnedByUser();
+			case "-G" -> status.isOwnedByGroup();
+			default -> true; // -e, -a
+		};
+	}
+
+	private boolean binary(String operator, String left, String right, Path currentDir, FileStatusCache cache) {
+		return switch (operator) {
+			case "=", "==" -> extended ? GlobUtils.matches(right, left) : left.equals(right);
+			case "!=" -> extended ? !GlobUtils.matches(right, left) : !left.equals(right);
+			case "=~" -> {
+				try {
+					yield Pattern.compile(right).matcher(left).find();
+				} catch (PatternSyntaxException e) {
+					throw new IllegalArgumentException(right + Messages.TEST_INVALID_REGEX);
+				}
+			}
+			case "-nt", "-ot" -> {
+				FileStatus newer = status(operator.equals("-nt") ? left : right, true, currentDir, cache);
+				FileStatus older = status(operator.equals("-nt") ? right : left, true, currentDir, cache);
+				yield newer != null && (older == null
+						|| newer.lastModifiedTime().compareTo(older.lastModifiedTime()) > 0);
+			}
+			case "-ef" -> {
+				FileStatus first = status(left, true, currentDir, cache);
+				FileStatus second = status(right, true, currentDir, cache);
+				yield first != null && second != null && first.fileKey() != null
+						&& first.fileKey().equals(second.fileKey());
+			}
+			default -> {
+				int comparison = Long.compare(integer(left), integer(right));
+				yield switch (operator) {
+					case "-eq" -> comparison == 0;
+					case "-ne" -> comparison != 0;
+					case "-lt" -> comparison < 0;
+					case "-le" -> comparison <= 0;
+					case "-gt" -> comparison > 0;
+					default -> comparison >= 0;
+				};
+			}
+		};
+	}
+
+	/**
+	 * Parses an integer operand: decimal for {@code test} and {@code [},
+	 * any arithmetic notation (empty meaning 0) for {@code [[}.
+	 */
+	private long integer(String text) {
+		try {
+			if (extended) {
+				return text.isBlank() ? 0 : ArithmeticParser.parseNumber(text);
+			}
+			return Long.parseLong(text.strip());
+		} catch (NumberFormatException | ArithmeticException e) {
+			throw new IllegalArgumentException(text + Messages.TEST_INTEGER_EXPRESSION_EXPECTED);
+		}
+	}
+
+	private static FileStatus status(String file, boolean followLinks, Path currentDir, FileStatusCache cache) {
+		if (file.isEmpty()) {
+			return null;
+		}
+		try {
+			return cache.get(currentDir.resolve(file), followLinks);
+		} catch (InvalidPathException e) {
+			return null;
+		}
+	}
+
+	private boolean isBinaryOperator(String word) {
+		return BINARY_OPERATORS.contains(word) || (extended && word.equals("=~"));
+	}
+
+	private CommandResult usageError(String message) {
+		return new CommandResult("", name + ": " + message, USAGE_ERROR);
+	}
+
+	/**
+	 * Recursive-descent evaluation of one expression.
+	 *
+	 * <p>Each parse method takes whether its result is needed; operands of a
+	 * short-circuited {@code -a}/{@code -o} are parsed but not evaluated, so they
+	 * cause no file reads.
+	 */
+	private final class Evaluation {
+		private final List<String> args;
+
+		/** Index after the last word of the expression, excluding a closing bracket. */
+		private final int end;
+		private final Path currentDir;
+		private final FileStatusCache cache;
+		private int position;
+
+		private Evaluation(List<String> args, int end, Path currentDir, FileStatusCache cache) {
+			this.args = args;
+			this.end = end;
+			this.currentDir = currentDir;
+			this.cache = cache;
+		}
+
+		private boolean evaluate() {
+			if (end == 0) {
+				return false;
+			}
+			boolean result = parseOr(true);
+			if (position < end) {
+				throw new IllegalArgumentException(switch (end) {
+					case 2 -> args.getFirst() + Messages.TEST_UNARY_OPERATOR_EXPECTED;
+					case 3 -> args.get(1) + Messages.TEST_BINARY_OPERATOR_EXPECTED;
+					default -> Messages.TEST_TOO_MANY_ARGUMENTS;
+				});
+			}
+			return result;
+		}
+
+		private boolean parseOr(boolean needed) {
+			boolean result = parseAnd(needed);
+			while (accept(extended ? "||" : "-o")) {
+				boolean right = parseAnd(needed && !result);
+				result = result || right;
+			}
+			return result;
+		}
+
+		private boolean parseAnd(boolean needed) {
+			boolean result = parseNot(needed);
+			while (accept(extended ? "&&" : "-a")) {
+				boolean right = parseNot(needed && result);
+				result = result && right;
+			}
+			return result;
+		}
+
+		private boolean parseNot(boolean needed) {
+			if (remaining() >= 3 && isBinaryOperator(args.get(position + 1))) {
+				// "[ ! = x ]" compares "!" with "x"
+				return parseBinary(needed);
+			}
+			if (remaining() >= 2 && accept("!")) {
+				return !parseNot(needed);
+			}
+			return parsePrimary(needed);
+		}
+
+		private boolean parsePrimary(boolean needed) {
+			if (remaining() == 0) {
+				throw new IllegalArgumentException(Messages.TEST_ARGUMENT_EXPECTED);
+			}
+			String first = args.get(position);
+			if (remaining() >= 2 && first.equals("(")) {
+				position++;
+				boolean result = parseOr(needed);
+				if (!accept(")")) {
+					throw new IllegalArgumentException(Messages.TEST_MISSING_CLOSE + ")'");
+				}
+				return result;
+			}
+			if (remaining() >= 2 && UNARY_OPERATORS.contains(first)) {
+				String operand = args.get(position + 1);
+				position += 2;
+				return needed && unary(first, operand, currentDir, cache);
+			}
+			position++;
+			return !first.isEmpty();
+		}
+
+		private boolean parseBinary(boolean needed) {
+			String left = args.get(position);
+			String operator = args.get(position + 1);
+			String right = args.get(position + 2);
+			position += 3;
+			return needed && binary(operator, left, right, currentDir, cache);
+		}
+
+		private boolean accept(String word) {
+			if (position < end && args.get(position).equals(word)) {
+				position++;
+				return true;
+			}
+			return false;
+		}
+
+		private int remaining() {
+			return end - position;
+		}
+	}
+}
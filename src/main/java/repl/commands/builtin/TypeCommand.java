@@ -1,22 +1,32 @@
 package repl.commands.builtin;
 
 import repl.BuiltinCommand;
+import repl.CommandTable;
+import repl.Constants;
 import repl.Messages;
 import repl.ReplContext;
 import repl.commands.Command;
 import repl.commands.CommandResult;
+import repl.utils.EnvUtils;
 import repl.utils.ExecutableUtils;
 
 import java.nio.file.Path;
+import java.util.List;
 
 /**
  * Builtin command that identifies the type of command.
  *
- * <p>Implements the {@code type} command, which determines if a command is a
- * builtin, an executable in PATH, or not found.
+ * <p>Implements the {@code type} command, which determines if a command is an
+ * alias, a function, a builtin, an executable in PATH, or not found.
+ *
+ * <p>With {@code -p}, only the path of an executable is printed (nothing for
+ * builtins), which makes {@code $(type -p name)} usable in scripts.
  */
 public class TypeCommand implements Command {
 
+	/** Option that restricts output to the executable path. */
+	static final String PATH_ONLY_OPTION = "-p";
+
 	/**
 	 * Executes the type command to identify a command's type.
 	 *
@@ -28,15 +38,26 @@ public class TypeCommand implements Command {
 	 */
 	@Override
 	public CommandResult execute(ReplContext context) {
-		if (context.getArgs().isEmpty()) {
+		List<String> args = context.getArgs();
+		if (!args.isEmpty() && args.getFirst().equals(PATH_ONLY_OPTION)) {
+			return args.size() < 2
+					? CommandResult.error(Messages.TYPE_MISSING_OPERAND)
+					: executePathOnly(args.get(1), context);
+		}
+		if (args.isEmpty()) {
 			return CommandResult.error(Messages.TYPE_MISSING_OPERAND);
 		}
-		String commandToTest = context.getArgs().getFirst();
+		String commandToTest = args.getFirst();
 		String output;
-		if(BuiltinCommand.allCommandMap.containsKey(commandToTest)) {
+		CommandTable commandTable = context.getCommandTable();
+		if (commandTable != null && commandTable.getAlias(commandToTest) != null) {
+			output = commandToTest + Messages.TYPE_IS_ALIASED_TO + commandTable.getAlias(commandToTest).value() + "'";
+		} else if (commandTable != null && commandTable.getFunction(commandToTest) != null) {
+			output = commandToTest + Messages.TYPE_IS_FUNCTION;
+		} else if(BuiltinCommand.allCommandMap.containsKey(commandToTest)) {
 			output = commandToTest + Messages.TYPE_IS_SHELL_BUILTIN;
 		} else {
-			Path executablePath = ExecutableUtils.findExecutablePath(commandToTest);
+			Path executablePath = ExecutableUtils.findExecutablePath(commandToTest, searchPath(context));
 			if (executablePath != null)
 				output = commandToTest + " is " + executablePath;
 			else
@@ -44,4 +65,28 @@ public class TypeCommand implements Command {
 		}
 		return CommandResult.success(output);
 	}
+
+	/**
+	 * Handles {@code type -p}: prints the executable path, nothing for builtins,
+	 * and fails silently when the command is not found.
+	 */
+	private CommandResult executePathOnly(String commandToTest, ReplContext context) {
+		if (BuiltinCommand.allCommandMap.containsKey(commandToTest)) {
+			return CommandResult.empty();
+		}
+		Path executablePath = ExecutableUtils.findExecutablePath(commandToTest, searchPath(context));
+		if (executablePath == null) {
+			return new CommandResult("", "", 1);
+		}
+		return CommandResult.success(executablePath.toString());
+	}
+
+	/**
+	 * Returns the shell's PATH, or the one it was started with if the context has no
+	 * variables.
+	 */
+	private static String searchPath(ReplContext context) {
+		EnvUtils envUtils = context.getEnvUtils();
+		return envUtils != null ? envUtils.get(Constants.PATH_VARIABLE) : System.getenv(Constants.PATH_VARIABLE);
+	}
 }
@@ -0,0 +1,51 @@
+package repl.commands.builtin;
+
+import repl.BuiltinCommand;
+import repl.CommandTable;
+import repl.Messages;
+import repl.ReplContext;
+import repl.commands.Command;
+import repl.commands.CommandResult;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builtin command that removes aliases.
+ *
+ * <p>{@code unalias name...} removes the named aliases; {@code unalias -a} removes all of them.
+ *
+ * @see CommandTable
+ */
+public class UnaliasCommand implements Command {
+
+	/** Option that removes every alias. */
+	static final String ALL_OPTION = "-a";
+
+	/**
+	 * Removes the given aliases.
+	 *
+	 * @param context the REPL context containing the names and the CommandTable
+	 * @return empty result on success, or errors for names that are not aliases
+	 */
+	@Override
+	public CommandResult execute(ReplContext context) {
+		CommandTable commandTable = context.getCommandTable();
+		List<String> args = context.getArgs();
+		if (args.isEmpty()) {
+			return new CommandResult("", Messages.UNALIAS_USAGE, 2);
+		}
+		if (args.getFirst().equals(ALL_OPTION)) {
+			commandTable.clearAliases();
+			return CommandResult.empty();
+		}
+
+		List<String> errors = new ArrayList<>();
+		for (String name : args) {
+			if (!commandTable.removeAlias(name)) {
+				errors.add(BuiltinCommand.unalias + ": " + name + Messages.TYPE_NOT_FOUND);
+			}
+		}
+		return errors.isEmpty() ? CommandResult.empty() : CommandResult.error(String.join("\n", errors));
+	}
+}
@@ -8,9 +8,16 @@
  * {@link repl.commands.builtin.ExitCommand} (exit),
  * {@link repl.commands.builtin.TypeCommand} (type),
  * {@link repl.commands.builtin.PwdCommand} (pwd),
- * {@link repl.commands.builtin.ChangeDirCommand} (cd).
+ * {@link repl.commands.builtin.ChangeDirCommand} (cd),
+ * {@link repl.commands.builtin.ExportCommand} (export),
+ * {@link repl.commands.builtin.TestCommand} (test, [, [[),
+ * {@link repl.commands.builtin.AliasCommand} (alias),
+ * {@link repl.commands.builtin.UnaliasCommand} (unalias),
+ * {@link repl.commands.builtin.ReturnCommand} (return),
+ * {@link repl.commands.builtin.SourceCommand} (source, .).
  *
- * <p>Registered in {@link repl.BuiltinCommand} and instantiated via reflection by {@link repl.ReplEvaluator}.
+ * <p>Registered in {@link repl.BuiltinCommand} as shared instances and dispatched through
+ * {@link repl.CommandTable#resolve(String, String)}.
  *
  * @see repl.commands.Command
  * @see repl.BuiltinCommand
@@ -5,8 +5,14 @@
  *
  * <p>Command types: builtin commands (see {@link repl.commands.builtin}),
  * {@link repl.commands.ExecutableCommand} (PATH executables),
+ * {@link repl.commands.FunctionCommand} (shell function calls),
  * {@link repl.commands.BadCommand} (invalid commands).
  *
+ * <p>{@link repl.commands.CommandInput} is the redirected standard input of a command,
+ * such as the text of a here-document or a file read with {@code <}.
+ * {@link repl.commands.TerminalHandoff} gives the shell's terminal to a program run in
+ * the foreground.
+ *
  * @see repl.commands.Command
  * @see repl.commands.builtin
  * @see repl.ReplEvaluator
@@ -0,0 +1,25 @@
+package repl.exceptions;
+
+/**
+ * Exception used to abandon the running evaluation when the user presses Ctrl-C.
+ *
+ * <p>Like {@link GracefulExitException}, this is a control flow mechanism rather than an
+ * error. The REPL interrupts the thread running the current line; the evaluator throws
+ * this exception at the next command, and an external command that is waited for is
+ * destroyed. The REPL then records {@link #EXIT_CODE} in {@code $?} and reads the next line.
+ *
+ * @see repl.REPL#interrupt()
+ */
+public class CancelledException extends ReplException {
+	/** Exit code of a cancelled command: 128 plus the number of SIGINT. */
+	public static final int EXIT_CODE = 130;
+
+	/**
+	 * Creates a new CancelledException.
+	 *
+	 * <p>No error message is needed since the user asked for the cancellation.
+	 */
+	public CancelledException() {
+		super((String) null);
+	}
+}
@@ -0,0 +1,32 @@
+package repl.exceptions;
+
+import lombok.Getter;
+
+/**
+ * Exception used by the {@code return} builtin to leave a shell function or sourced script.
+ *
+ * <p>Like {@link GracefulExitException}, this is a control flow mechanism rather
+ * than an error: it unwinds the function body or script and is caught by
+ * {@link repl.commands.FunctionCommand} or {@link repl.commands.builtin.SourceCommand}.
+ * Its message is only shown when {@code return} is used outside a function or sourced script.
+ *
+ * @see repl.commands.builtin.ReturnCommand
+ */
+public class ReturnException extends ReplException {
+	/** Message shown when {@code return} is used outside a function or sourced script. */
+	public static final String OUTSIDE_FUNCTION = "return: can only `return' from a function or sourced script";
+
+	/** The exit code of the function, or -1 to use the exit code of the last command. */
+	@Getter
+	private final int exitCode;
+
+	/**
+	 * Creates a new ReturnException.
+	 *
+	 * @param exitCode the exit code of the function, or -1 to keep {@code $?}
+	 */
+	public ReturnException(int exitCode) {
+		super(OUTSIDE_FUNCTION);
+		this.exitCode = exitCode;
+	}
+}
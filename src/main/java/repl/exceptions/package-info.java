@@ -6,6 +6,12 @@
  * <p>{@link repl.exceptions.GracefulExitException} - Control flow signal for normal shell exit
  * (not an error). Thrown by exit command to terminate the REPL loop gracefully.
  *
+ * <p>{@link repl.exceptions.ReturnException} - Control flow signal thrown by {@code return}
+ * to leave a shell function.
+ *
+ * <p>{@link repl.exceptions.CancelledException} - Control flow signal thrown when Ctrl-C
+ * cancels the running evaluation.
+ *
  * @see repl.REPL
  * @see repl.commands.builtin.ExitCommand
  */
@@ -0,0 +1,95 @@
+package repl.history;
+
+import lombok.AccessLevel;
+import lombok.ToString;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+/**
+ * The most recent lines of a session, in a fixed-size ring buffer.
+ *
+ * <p>Adding to a full history overwrites the oldest entry, so recording a line costs
+ * one array store however long the session runs. Index 0 is the oldest entry kept.
+ *
+ * <p>Thread-safe: the REPL records lines while the line editor recalls them.
+ */
+@ToString(onlyExplicitlyIncluded = true)
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class History {
+	/** Default number of entries kept in memory. */
+	public static final int DEFAULT_CAPACITY = 1000;
+
+	/** The entries; {@link #size} of them starting at {@link #oldest}, wrapping around. */
+	final HistoryEntry[] entries;
+
+	/** Index in {@link #entries} of the oldest entry. */
+	int oldest;
+
+	/** Number of entries kept. */
+	@ToString.Include
+	int size;
+
+	/**
+	 * Creates an empty history of {@link #DEFAULT_CAPACITY} entries.
+	 */
+	public History() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates an empty history.
+	 *
+	 * @param capacity the maximum number of entries kept
+	 */
+	public History(int capacity) {
+		this.entries = new HistoryEntry[capacity];
+	}
+
+	/**
+	 * Adds an entry, dropping the oldest if the history is full.
+	 *
+	 * @param entry the entry
+	 */
+	public synchronized void add(HistoryEntry entry) {
+		if (size < entries.length) {
+			entries[(oldest + size) % entries.length] = entry;
+			size++;
+		} else {
+			entries[oldest] = entry;
+			oldest = (oldest + 1) % entries.length;
+		}
+	}
+
+	/**
+	 * Adds entries, oldest first.
+	 *
+	 * @param added the entries
+	 */
+	public synchronized void addAll(List<HistoryEntry> added) {
+		added.forEach(this::add);
+	}
+
+	/**
+	 * Returns an entry.
+	 *
+	 * @param index the index, 0 for the oldest entry kept
+	 * @return the entry
+	 * @throws IndexOutOfBoundsException if the index is not below {@link #size()}
+	 */
+	public synchronized HistoryEntry get(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException(index);
+		}
+		return entries[(oldest + index) % entries.length];
+	}
+
+	/**
+	 * Returns the number of entries kept.
+	 *
+	 * @return the number of entries
+	 */
+	public synchronized int size() {
+		return size;
+	}
+}
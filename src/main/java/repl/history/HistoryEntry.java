@@ -0,0 +1,13 @@
+package repl.history;
+
+/**
+ * A line entered in an interactive session, with how it ran.
+ *
+ * @param line the line as entered
+ * @param startedAt when the line started running, in milliseconds since the epoch
+ * @param directory the current directory when the line started
+ * @param exitCode the exit code of the line's last command
+ * @param durationMillis how long the line ran, in milliseconds
+ */
+public record HistoryEntry(String line, long startedAt, String directory, int exitCode, long durationMillis) {
+}
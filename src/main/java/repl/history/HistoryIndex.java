@@ -0,0 +1,314 @@
+package repl.history;
+
+import lombok.AccessLevel;
+import lombok.ToString;
+import lombok.experimental.FieldDefaults;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Substring index over the distinct lines of the history, for reverse search.
+ *
+ * <p>Each distinct line gets an id, and every trigram (three consecutive characters)
+ * of a line has a postings list of the ids of the lines containing it, ascending.
+ * A query of three characters or more is answered from the shortest postings list of
+ * its trigrams, checking only the lines on it, instead of every line. A query that
+ * extends the previous one, as each typed character does, only checks the previous
+ * {@link Matches}, or that postings list if it is shorter: the set only narrows. Only
+ * a fresh query of one or two characters scans all lines.
+ *
+ * <p>Lines are counted, and remember when they last ran, so {@link #ranked(Matches, int)}
+ * orders matches by recency and frequency: a line's age (time since it last ran,
+ * relative to the newest entry) divided by how often it ran, smallest first. A line
+ * run ten times an hour ago ranks above one run once five minutes ago.
+ *
+ * <p>Thread-safe: the index is filled in the background while the line editor searches
+ * it. {@link #addAll(List)} takes the lock for one batch at a time, so loading a large
+ * history never holds up recording or searching for long.
+ */
+@ToString(onlyExplicitlyIncluded = true)
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class HistoryIndex {
+	/** Maximum number of entries of the history file indexed at startup. */
+	public static final int MAX_LOADED = 1_000_000;
+
+	/** Number of entries {@link #addAll(List)} adds per lock acquisition. */
+	static final int BATCH_SIZE = 4096;
+
+	private static final int[] NO_IDS = {};
+
+	/** Id of each distinct line. */
+	final Map<String, Integer> ids = new HashMap<>();
+
+	/** The distinct lines, by id. */
+	String[] lines = new String[64];
+
+	/** How often each line ran, by id. */
+	int[] counts = new int[64];
+
+	/** When each line last started, by id, in milliseconds since the epoch. */
+	long[] lastUsed = new long[64];
+
+	/** Number of distinct lines. */
+	@ToString.Include
+	int size;
+
+	/** Start time of the newest entry added, the "now" lines are ranked against. */
+	long newest;
+
+	/** Number of lines compared with a query so far. */
+	long checked;
+
+		/** Ids of the lines containing each trigram, keyed by {@link #trigram(CharSequence, int)}. */
+	final Map<Long, Postings> postings = new HashMap<>();
+
+	/**
+	 * The ids of the lines containing a trigram, ascending.
+	 */
+	private static final class Postings {
+		int[] ids = new int[4];
+		int size;
+
+		void add(int id) {
+			// Ids arrive in ascending order; a trigram repeated in a line is listed once
+			if (size > 0 && ids[size - 1] == id) {
+				return;
+			}
+			if (size == ids.length) {
+				ids = Arrays.copyOf(ids, size * 2);
+			}
+			ids[size++] = id;
+		}
+	}
+
+	/**
+	 * The lines containing a query, as found by {@link #search(String, Matches)}.
+	 *
+	 * <p>A snapshot: lines added to the index afterwards are not among them.
+	 */
+	public static final class Matches {
+		final String query;
+		final int[] ids;
+
+		private Matches(String query, int[] ids) {
+			this.query = query;
+			this.ids = ids;
+		}
+
+		/**
+		 * Returns the query matched.
+		 *
+		 * @return the query
+		 */
+		public String query() {
+			return query;
+		}
+
+		/**
+		 * Returns the number of distinct lines matching.
+		 *
+		 * @return the number of matches
+		 */
+		public int size() {
+			return ids.length;
+		}
+	}
+
+	/**
+	 * Adds a line that ran.
+	 *
+	 * @param entry the entry
+	 */
+	public synchronized void add(HistoryEntry entry) {
+		String line = entry.line();
+		if (line.isBlank()) {
+			return;
+		}
+		newest = Math.max(newest, entry.startedAt());
+		Integer existing = ids.get(line);
+		if (existing != null) {
+			counts[existing]++;
+			lastUsed[existing] = Math.max(lastUsed[existing], entry.startedAt());
+			return;
+		}
+		int id = size++;
+		if (id == lines.length) {
+			lines = Arrays.copyOf(lines, id * 2);
+			counts = Arrays.copyOf(counts, id * 2);
+			lastUsed = Arrays.copyOf(lastUsed, id * 2);
+		}
+		ids.put(line, id);
+		lines[id] = line;
+		counts[id] = 1;
+		lastUsed[id] = entry.startedAt();
+		for (int i = 0; i + 3 <= line.length(); i++) {
+			postings.computeIfAbsent(trigram(line, i), _ -> new Postings()).add(id);
+		}
+	}
+
+	/**
+	 * Adds lines that ran, {@link #BATCH_SIZE} at a time.
+	 *
+	 * <p>As lines are ranked by their start times, entries may be added in any order:
+	 * earlier sessions' entries loaded after lines of this session rank the same.
+	 *
+	 * @param entries the entries
+	 */
+	public void addAll(List<HistoryEntry> entries) {
+		for (int from = 0; from < entries.size(); from += BATCH_SIZE) {
+			List<HistoryEntry> batch = entries.subList(from, Math.min(entries.size(), from + BATCH_SIZE));
+			synchronized (this) {
+				batch.forEach(this::add);
+			}
+		}
+	}
+
+	/**
+	 * Finds the lines containing a query.
+	 *
+	 * @param query the text to find
+	 * @param previous the matches of an earlier query, or null; if the query contains
+	 *        that one and it is not empty, only its matches are checked
+	 * @return the matches; none for an empty query
+	 */
+	public synchronized Matches search(String query, Matches previous) {
+		if (query.isEmpty()) {
+			return new Matches(query, NO_IDS);
+		}
+		int[] candidates = null;
+		int count = 0;
+		if (previous != null && !previous.query.isEmpty() && query.contains(previous.query)) {
+			candidates = previous.ids;
+			count = candidates.length;
+		}
+		if (query.length() >= 3) {
+			Postings rarest = rarest(query);
+			if (rarest == null) {
+				return new Matches(query, NO_IDS);
+			}
+			// Both hold every match: check the shorter
+			if (candidates == null || rarest.size < count) {
+				candidates = rarest.ids;
+				count = rarest.size;
+			}
+		} else if (candidates == null) {
+			candidates = new int[size];
+			Arrays.setAll(candidates, id -> id);
+			count = size;
+		}
+		return filter(query, candidates, count);
+	}
+
+	/**
+	 * Returns the shortest postings list of the query's trigrams, or null if a trigram
+	 * is in no line.
+	 */
+	private Postings rarest(String query) {
+		Postings rarest = null;
+		for (int i = 0; i + 3 <= query.length(); i++) {
+			Postings candidates = postings.get(trigram(query, i));
+			if (candidates == null) {
+				return null;
+			}
+			if (rarest == null || candidates.size < rarest.size) {
+				rarest = candidates;
+			}
+		}
+		return rarest;
+	}
+
+	/**
+	 * Keeps the candidates whose line contains the query.
+	 */
+	private Matches filter(String query, int[] candidates, int count) {
+		checked += count;
+		int[] matching = new int[count];
+		int found = 0;
+		for (int i = 0; i < count; i++) {
+			if (lines[candidates[i]].contains(query)) {
+				matching[found++] = candidates[i];
+			}
+		}
+		return new Matches(query, Arrays.copyOf(matching, found));
+	}
+
+	/**
+	 * Returns the best matching lines, ranked by recency and frequency.
+	 *
+	 * @param matches the matches
+	 * @param limit the maximum number of lines returned
+	 * @return the lines, best first
+	 */
+	public synchronized List<String> ranked(Matches matches, int limit) {
+		limit = Math.min(limit, matches.ids.length);
+		// The best lines seen so far, best first. Lines first seen last tend to rank
+		// best, so taking them first makes most of the rest lose to the worst kept
+		int[] best = new int[limit];
+		double[] bestScores = new double[limit];
+		int kept = 0;
+		for (int j = matches.ids.length - 1; j >= 0; j--) {
+			int id = matches.ids[j];
+			double score = score(id);
+			if (kept == limit && !better(id, score, best[kept - 1], bestScores[kept - 1])) {
+				continue;
+			}
+			int i = kept < limit ? kept++ : kept - 1;
+			while (i > 0 && better(id, score, best[i - 1], bestScores[i - 1])) {
+				best[i] = best[i - 1];
+				bestScores[i] = bestScores[i - 1];
+				i--;
+			}
+			best[i] = id;
+			bestScores[i] = score;
+		}
+		String[] result = new String[kept];
+		for (int i = 0; i < kept; i++) {
+			result[i] = lines[best[i]];
+		}
+		return List.of(result);
+	}
+
+	/**
+	 * Orders lines best first: by age divided by count, then most recent first.
+	 */
+	private boolean better(int id, double score, int other, double otherScore) {
+		return score < otherScore || (score == otherScore && lastUsed[id] > lastUsed[other]);
+	}
+
+	/**
+	 * Returns a line's age relative to the newest entry, divided by how often it ran.
+	 */
+	private double score(int id) {
+		return (double) (newest - lastUsed[id] + 1) / counts[id];
+	}
+
+	/**
+	 * Returns the number of distinct lines.
+	 *
+	 * @return the number of lines
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the number of lines compared with a query so far.
+	 *
+	 * <p>Package-private for testing.
+	 *
+	 * @return the number of comparisons
+	 */
+	synchronized long checked() {
+		return checked;
+	}
+
+	/**
+	 * Packs the three characters at an index into a key.
+	 */
+	private static long trigram(CharSequence text, int index) {
+		return (long) text.charAt(index) << 32 | (long) text.charAt(index + 1) << 16 | text.charAt(index + 2);
+	}
+}
@@ -0,0 +1,347 @@
+package repl.history;
+
+import lombok.AccessLevel;
+import lombok.ToString;
+import lombok.experimental.FieldDefaults;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Append-only history file, written behind the shell by a virtual thread.
+ *
+ * <p>{@link #append(HistoryEntry)} only queues the entry, so recording a line never
+ * waits for the disk. The writer thread takes whatever has queued up since its last
+ * write and appends it with a single {@code write}, so a burst of lines costs one
+ * system call. The file is opened with {@code O_APPEND}: shells sharing a history
+ * file never overwrite each other's entries, and as each batch is one write of whole
+ * lines, their lines do not interleave.
+ *
+ * <p>Each entry is one line of tab-separated fields: start time in milliseconds since
+ * the epoch, duration in milliseconds, exit code, directory and the line itself, the
+ * last two with backslash, tab and newline escaped.
+ *
+ * <p>{@link #readTail(Path, int)} loads the last entries without reading the rest of
+ * the file: it maps the file and scans backwards from its end for the newlines
+ * ending the wanted entries, so only the pages holding them are read, and a history
+ * of a million entries costs no more at startup than one of a thousand.
+ *
+ * <p>Persisting is best effort: once the file cannot be written, entries are dropped.
+ */
+@ToString(onlyExplicitlyIncluded = true)
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class HistoryLog implements AutoCloseable {
+	/** Maximum number of entries queued for the writer; more are dropped. */
+	static final int MAX_QUEUED = 4096;
+
+	/** How long {@link #close()} waits for queued entries to be written, in milliseconds. */
+	static final long CLOSE_TIMEOUT_MILLIS = 2000;
+
+	/** Queued after the last entry to stop the writer. */
+	private static final HistoryEntry CLOSED = new HistoryEntry("", 0, "", 0, 0);
+
+	/** The history file. */
+	@ToString.Include
+	final Path file;
+
+	/** The history file, opened for appending. */
+	final FileChannel channel;
+
+	/** Entries not written yet. */
+	final BlockingQueue<HistoryEntry> queue = new ArrayBlockingQueue<>(MAX_QUEUED);
+
+	/** Writes queued entries to {@link #channel}. */
+	final Thread writer;
+
+	/** Whether {@link #close()} was called. */
+	volatile boolean closed;
+
+	private HistoryLog(Path file, FileChannel channel) {
+		this.file = file;
+		this.channel = channel;
+		this.writer = Thread.ofVirtual().name("history-writer").start(this::drain);
+	}
+
+	/**
+	 * Opens a history file for appending, creating it readable by its owner only.
+	 *
+	 * <p>A last line left unfinished by a shell that stopped while writing is ended
+	 * first, so the entries appended after it stay readable.
+	 *
+	 * @param file the history file
+	 * @return the log
+	 * @throws IOException if the file cannot be opened
+	 */
+	public static HistoryLog open(Path file) throws IOException {
+		List<FileAttribute<?>> attributes = new ArrayList<>();
+		if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+			attributes.add(PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+		}
+		FileChannel channel = FileChannel.open(file,
+			Set.of(StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND),
+			attributes.toArray(FileAttribute<?>[]::new));
+		try {
+			if (!endsWithNewline(file)) {
+				channel.write(ByteBuffer.wrap(new byte[] {'\n'}));
+			}
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+		return new HistoryLog(file, channel);
+	}
+
+	private static boolean endsWithNewline(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size == 0) {
+				return true;
+			}
+			ByteBuffer last = ByteBuffer.allocate(1);
+			channel.read(last, size - 1);
+			return last.get(0) == '\n';
+		}
+	}
+
+	/**
+	 * Returns the history file of the user: {@code $HISTFILE}, or
+	 * {@code ~/.shell_history} if it is not set.
+	 *
+	 * @return the history file
+	 */
+	public static Path defaultFile() {
+		String histFile = System.getenv("HISTFILE");
+		if (histFile != null && !histFile.isEmpty()) {
+			return Path.of(histFile);
+		}
+		return Path.of(System.getProperty("user.home"), ".shell_history");
+	}
+
+	/**
+	 * Queues an entry to be appended to the file.
+	 *
+	 * @param entry the entry
+	 * @return false if the entry was dropped because the writer fell behind or the log is closed
+	 */
+	public boolean append(HistoryEntry entry) {
+		return !closed && queue.offer(entry);
+	}
+
+	/**
+	 * Writes the entries still queued and closes the file.
+	 */
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			queue.put(CLOSED);
+			writer.join(CLOSE_TIMEOUT_MILLIS);
+		} catch (InterruptedException _) {
+			Thread.currentThread().interrupt();
+		}
+		try {
+			channel.close();
+		} catch (IOException _) {
+			// Nothing left to write
+		}
+	}
+
+	/**
+	 * Writes batches of queued entries until {@link #CLOSED} is taken.
+	 */
+	private void drain() {
+		List<HistoryEntry> batch = new ArrayList<>();
+		StringBuilder text = new StringBuilder();
+		boolean writable = true;
+		try {
+			while (true) {
+				batch.add(queue.take());
+				queue.drainTo(batch);
+				boolean last = false;
+				text.setLength(0);
+				for (HistoryEntry entry : batch) {
+					if (entry == CLOSED) {
+						last = true;
+						break;
+					}
+					format(entry, text);
+				}
+				batch.clear();
+				if (writable && !text.isEmpty()) {
+					writable = write(text);
+				}
+				if (last) {
+					return;
+				}
+			}
+		} catch (InterruptedException _) {
+			// Closing without waiting: entries still queued are lost
+		}
+	}
+
+	private boolean write(CharSequence text) {
+		ByteBuffer bytes = StandardCharsets.UTF_8.encode(text.toString());
+		try {
+			while (bytes.hasRemaining()) {
+				channel.write(bytes);
+			}
+			return true;
+		} catch (IOException _) {
+			return false;
+		}
+	}
+
+	/**
+	 * Reads the last entries of a history file.
+	 *
+	 * @param file the history file
+	 * @param count the maximum number of entries to read
+	 * @return the entries, oldest first; empty if the file does not exist. Lines that
+	 *         cannot be parsed, such as one left unfinished by a crash, are skipped
+	 * @throws IOException if the file cannot be read
+	 */
+	public static List<HistoryEntry> readTail(Path file, int count) throws IOException {
+		return readTail(file, Long.MAX_VALUE, count);
+	}
+
+	/**
+	 * Reads the last entries among the first bytes of a history file, ignoring what
+	 * was appended after them.
+	 *
+	 * @param file the history file
+	 * @param length how many bytes of the file to read, such as its size before this
+	 *        session appended to it
+	 * @param count the maximum number of entries to read
+	 * @return the entries, oldest first; empty if the file does not exist. Lines that
+	 *         cannot be parsed are skipped
+	 * @throws IOException if the file cannot be read
+	 */
+	public static List<HistoryEntry> readTail(Path file, long length, int count) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = Math.min(channel.size(), length);
+			if (size == 0 || count <= 0) {
+				return List.of();
+			}
+			// The mapping is limited to 2 GiB: the tail of a larger file is mapped
+			long offset = Math.max(0, size - Integer.MAX_VALUE);
+			MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, offset, size - offset);
+			int end = map.limit();
+			// Drop a last line without its newline: it was being written when the shell stopped
+			while (end > 0 && map.get(end - 1) != '\n') {
+				end--;
+			}
+			int start = tailStart(map, end, count);
+			byte[] bytes = new byte[end - start];
+			map.get(start, bytes);
+			List<HistoryEntry> entries = new ArrayList<>();
+			for (String line : new String(bytes, StandardCharsets.UTF_8).split("\n")) {
+				HistoryEntry entry = parse(line);
+				if (entry != null) {
+					entries.add(entry);
+				}
+			}
+			return entries;
+		} catch (NoSuchFileException _) {
+			return List.of();
+		}
+	}
+
+	/**
+	 * Returns the offset of the first of the last {@code count} lines ending before
+	 * {@code end}, scanning backwards.
+	 */
+	private static int tailStart(MappedByteBuffer map, int end, int count) {
+		int lines = 0;
+		for (int i = end - 1; i > 0; i--) {
+			if (map.get(i - 1) == '\n' && ++lines == count) {
+				return i;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Appends an entry as a line of the file format.
+	 *
+	 * <p>Package-private for testing.
+	 */
+	static void format(HistoryEntry entry, StringBuilder out) {
+		out.append(entry.startedAt()).append('\t')
+			.append(entry.durationMillis()).append('\t')
+			.append(entry.exitCode()).append('\t');
+		escape(entry.directory(), out);
+		out.append('\t');
+		escape(entry.line(), out);
+		out.append('\n');
+	}
+
+	/**
+	 * Parses a line of the file format.
+	 *
+	 * <p>Package-private for testing.
+	 *
+	 * @return the entry, or null if the line is malformed
+	 */
+	static HistoryEntry parse(String line) {
+		String[] fields = line.split("\t", 5);
+		if (fields.length != 5) {
+			return null;
+		}
+		try {
+			return new HistoryEntry(unescape(fields[4]), Long.parseLong(fields[0]), unescape(fields[3]),
+				Integer.parseInt(fields[2]), Long.parseLong(fields[1]));
+		} catch (NumberFormatException _) {
+			return null;
+		}
+	}
+
+	private static void escape(String text, StringBuilder out) {
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			switch (c) {
+				case '\\' -> out.append("\\\\");
+				case '\t' -> out.append("\\t");
+				case '\n' -> out.append("\\n");
+				default -> out.append(c);
+			}
+		}
+	}
+
+	private static String unescape(String text) {
+		if (text.indexOf('\\') < 0) {
+			return text;
+		}
+		StringBuilder out = new StringBuilder(text.length());
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c == '\\' && i + 1 < text.length()) {
+				char next = text.charAt(++i);
+				out.append(switch (next) {
+					case 't' -> '\t';
+					case 'n' -> '\n';
+					default -> next;
+				});
+			} else {
+				out.append(c);
+			}
+		}
+		return out.toString();
+	}
+}
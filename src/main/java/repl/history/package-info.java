@@ -0,0 +1,20 @@
+/**
+ * Command history of interactive sessions.
+ *
+ * <p>{@link repl.history.History} - The most recent lines in a fixed-size ring buffer,
+ * recalled by the line editor.
+ *
+ * <p>{@link repl.history.HistoryEntry} - A line with its start time, directory, exit code
+ * and duration.
+ *
+ * <p>{@link repl.history.HistoryIndex} - Trigram index of the distinct lines for reverse
+ * search, narrowing matches as the query grows and ranking them by recency and frequency.
+ *
+ * <p>{@link repl.history.HistoryLog} - Appends entries to the history file from a
+ * write-behind virtual thread, and loads the file's last entries by scanning a mapping
+ * of it backwards.
+ *
+ * @see repl.REPL
+ * @see repl.io.LineEditor
+ */
+package repl.history;
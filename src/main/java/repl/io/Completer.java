@@ -0,0 +1,51 @@
+package repl.io;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Supplies the completions offered by the {@link LineEditor} when Tab is pressed.
+ *
+ * <p>A completer that has to read the file system implements
+ * {@link #complete(String, int, Consumer)} to answer later from another thread, so
+ * the editor keeps taking keys meanwhile.
+ */
+@FunctionalInterface
+public interface Completer {
+	/** Completer offering nothing. */
+	Completer NONE = (line, cursor) -> Completion.NONE;
+
+	/**
+	 * Completions of the word before the cursor.
+	 *
+	 * @param start the index in the line where the word being completed starts
+	 * @param candidates the possible words, sorted; each starts with the typed part
+	 */
+	record Completion(int start, List<String> candidates) {
+		/** No completion. */
+		public static final Completion NONE = new Completion(0, List.of());
+	}
+
+	/**
+	 * Returns the completions for the word ending at the cursor.
+	 *
+	 * @param line the line being edited
+	 * @param cursor the position of the cursor in the line
+	 * @return the completions, or {@link Completion#NONE}
+	 */
+	Completion complete(String line, int cursor);
+
+	/**
+	 * Computes the completions for the word ending at the cursor, possibly later and on
+	 * another thread.
+	 *
+	 * <p>Answers synchronously by default.
+	 *
+	 * @param line the line being edited
+	 * @param cursor the position of the cursor in the line
+	 * @param results receives the completions once, before or after this method returns
+	 */
+	default void complete(String line, int cursor, Consumer<Completion> results) {
+		results.accept(complete(line, cursor));
+	}
+}
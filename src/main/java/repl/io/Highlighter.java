@@ -0,0 +1,44 @@
+package repl.io;
+
+/**
+ * Colors the line edited by the {@link LineEditor}.
+ *
+ * <p>A highlighter keeps the styles of the line being edited: the editor reports every
+ * change with {@link #update(CharSequence, int)}, then asks for the style of each
+ * character it redraws. It is called with the editor's lock held, on every keystroke,
+ * so it must answer from memory.
+ */
+public interface Highlighter {
+	/** Highlighter leaving the line uncolored. */
+	Highlighter NONE = new Highlighter() {
+		@Override
+		public int update(CharSequence line, int from) {
+			return from;
+		}
+
+		@Override
+		public String style(int index) {
+			return null;
+		}
+	};
+
+	/**
+	 * Restyles the line after the characters from {@code from} on changed; a new line
+	 * is reported as changed from 0.
+	 *
+	 * @param line the line being edited
+	 * @param from the first index that may differ from the line reported before
+	 * @return the first index whose style changed: {@code from}, or an earlier index if
+	 *         the change restyled characters before it
+	 */
+	int update(CharSequence line, int from);
+
+	/**
+	 * Returns the style of a character of the line reported last.
+	 *
+	 * @param index the index in the line
+	 * @return the SGR parameters of the character's style, such as {@code "32"} for
+	 *         green, or null for the terminal's default
+	 */
+	String style(int index);
+}
@@ -0,0 +1,69 @@
+package repl.io;
+
+import lombok.experimental.UtilityClass;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * Replaces the JVM's handling of SIGINT, which would otherwise end it.
+ *
+ * <p>In raw mode the terminal delivers Ctrl-C as a byte to the line editor, but while a
+ * program runs in the foreground the terminal is cooked, and SIGINT goes to the whole
+ * foreground process group: the program and the shell.
+ *
+ * <p>The JDK's only API for this is {@code sun.misc.Signal} in {@code jdk.unsupported}.
+ * It is looked up reflectively, so compiling against it gives no internal-API warning,
+ * and the handler simply is not installed where it is missing.
+ *
+ * <p>The handler is JVM-wide: only a program's entry point should install it.
+ */
+@UtilityClass
+public class InterruptSignal {
+	/** Name of the class of a signal. */
+	private static final String SIGNAL_CLASS = "sun.misc.Signal";
+
+	/** Name of the interface of a signal handler. */
+	private static final String HANDLER_CLASS = "sun.misc.SignalHandler";
+
+	/** Name of the signal, without its {@code SIG} prefix. */
+	private static final String SIGINT = "INT";
+
+	/**
+	 * Runs the action on a JVM thread whenever the process receives SIGINT, instead of
+	 * ending the JVM.
+	 *
+	 * @param action what SIGINT does
+	 * @return false if the handler could not be installed, as on a JDK without
+	 *         {@code jdk.unsupported}
+	 */
+	public static boolean handle(Runnable action) {
+		try {
+			Class<?> signalClass = Class.forName(SIGNAL_CLASS);
+			Class<?> handlerClass = Class.forName(HANDLER_CLASS);
+			Object handler = Proxy.newProxyInstance(InterruptSignal.class.getClassLoader(),
+				new Class<?>[] {handlerClass}, handler(action));
+			Object signal = signalClass.getConstructor(String.class).newInstance(SIGINT);
+			signalClass.getMethod("handle", signalClass, handlerClass).invoke(null, signal, handler);
+			return true;
+		} catch (ReflectiveOperationException | RuntimeException _) {
+			return false;
+		}
+	}
+
+	/**
+	 * Returns the implementation of {@code SignalHandler.handle(Signal)} running the action.
+	 */
+	private static InvocationHandler handler(Runnable action) {
+		return (Object proxy, Method method, Object[] args) -> switch (method.getName()) {
+			case "handle" -> {
+				action.run();
+				yield null;
+			}
+			case "equals" -> proxy == args[0];
+			case "hashCode" -> System.identityHashCode(proxy);
+			default -> "InterruptSignal[" + action + "]";
+		};
+	}
+}
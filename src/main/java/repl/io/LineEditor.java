@@ -0,0 +1,793 @@
+package repl.io;
+
+import lombok.AccessLevel;
+import lombok.Setter;
+import lombok.ToString;
+import lombok.experimental.FieldDefaults;
+import repl.history.History;
+import repl.history.HistoryIndex;
+
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static repl.io.OutputRenderer.Target.STDOUT;
+
+/**
+ * Line editor for an interactive terminal in raw mode.
+ *
+ * <p>Keys are read byte by byte and echoed by the editor itself. Every edit redraws
+ * only what it changed, using relative cursor movements: a character typed at the end
+ * of the line is echoed as that character, one inserted in the middle rewrites the rest
+ * of the line and moves the cursor back. Nothing is written before all bytes already
+ * read are handled, so pasted text is drawn with one write.
+ *
+ * <p>Supported keys:
+ * <ul>
+ *   <li>Left, Right, Home, End, Ctrl-B, Ctrl-F, Ctrl-A, Ctrl-E - move the cursor</li>
+ *   <li>Backspace, Delete, Ctrl-D - delete a character; Ctrl-D on an empty line ends the input</li>
+ *   <li>Ctrl-U, Ctrl-K, Ctrl-W - delete to the start, to the end, or the word before the cursor</li>
+ *   <li>Up, Down, Ctrl-P, Ctrl-N - recall the lines of the {@link History}</li>
+ *   <li>Tab - complete the word before the cursor with the {@link Completer}: a single
+ *       candidate is inserted with a space (a directory with its slash), several are
+ *       completed to their common prefix; without a common prefix the bell rings, and a
+ *       second Tab lists them. A completer may answer later from another thread; the
+ *       answer is applied if no key was pressed since the Tab, and dropped otherwise</li>
+ *   <li>Ctrl-R - search the {@link HistoryIndex} backwards: typed characters extend the
+ *       query and show the best match, ranked by recency and frequency; Ctrl-R again
+ *       shows the next one. Enter runs the match, Ctrl-G restores the line from before
+ *       the search, and any other key ends the search with the match left to edit</li>
+ *   <li>Ctrl-C - discard the line and run the interrupt handler</li>
+ * </ul>
+ *
+ * <p>The search runs once all bytes already read are handled, so a pasted query is
+ * looked up once. Each character typed narrows the previous matches, and Backspace
+ * goes back to the matches of the shorter query without searching again.
+ *
+ * <p>A {@link Highlighter} may color the line. It is told about every edit, and when
+ * an edit restyles characters before it, as completing a command name does, the
+ * editor moves back and redraws from the first of them.
+ *
+ * <p>The editor only reads the history: lines are added to it by the shell once they
+ * have run, with their exit code and duration.
+ *
+ * <p>While a program run in the foreground has the terminal, the editor is
+ * {@linkplain #suspend() suspended}: it waits for keys with {@code poll} rather than in a
+ * read, so it never takes a key meant for the program, and reads again once
+ * {@linkplain #resume() resumed}.
+ *
+ * <p>Each character is assumed to take one column, and lines are assumed to fit the
+ * terminal's width.
+ */
+@ToString(callSuper = true)
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class LineEditor extends LineReader {
+	/** Maximum number of completion candidates listed; the rest are only counted. */
+	static final int MAX_LISTED = 200;
+
+	/** Maximum number of matches Ctrl-R steps through. */
+	static final int MAX_SEARCH_RESULTS = 100;
+
+	private static final int CTRL_A = 0x01;
+	private static final int CTRL_B = 0x02;
+	private static final int CTRL_C = 0x03;
+	private static final int CTRL_D = 0x04;
+	private static final int CTRL_E = 0x05;
+	private static final int CTRL_F = 0x06;
+	private static final int CTRL_G = 0x07;
+	private static final int BACKSPACE = 0x08;
+	private static final int TAB = 0x09;
+	private static final int CTRL_K = 0x0B;
+	private static final int CTRL_N = 0x0E;
+	private static final int CTRL_P = 0x10;
+	private static final int CTRL_R = 0x12;
+	private static final int CTRL_U = 0x15;
+	private static final int CTRL_W = 0x17;
+	private static final int ESCAPE = 0x1B;
+	private static final int DELETE = 0x7F;
+
+	/** Control sequence introducer, starting every cursor movement. */
+	private static final String CSI = "\033[";
+
+	/** Longest wait for a key before checking whether the reading thread was interrupted. */
+	static final int POLL_INTERVAL_MILLIS = 200;
+
+	/** The terminal switched to raw mode while reading, or null if already set up. */
+	@ToString.Exclude
+	final TerminalMode terminal;
+
+	/** Where the line is echoed. */
+	@ToString.Exclude
+	final OutputRenderer renderer;
+
+	/** Run on Ctrl-C, on the reading thread. */
+	@Setter
+	@ToString.Exclude
+	Runnable interruptHandler = () -> { };
+
+	/** Supplies the completions for Tab. */
+	@Setter
+	@ToString.Exclude
+	Completer completer = Completer.NONE;
+
+	/** Colors the line. */
+	@Setter
+	@ToString.Exclude
+	Highlighter highlighter = Highlighter.NONE;
+
+	/** The prompt, drawn again after completions are listed. */
+	@Setter
+	String prompt = "";
+
+	/** Whether the last key was a Tab that rang the bell, so another Tab lists the candidates. */
+	boolean listOnTab;
+
+	/** Guards the editing state against completions arriving on other threads. */
+	@ToString.Exclude
+	final ReentrantLock lock = new ReentrantLock();
+
+	/** Counts handled keys; a completion is applied only if no key followed its Tab. */
+	long generation;
+
+	/** The line being edited. */
+	final StringBuilder line = new StringBuilder();
+
+	/** Position of the cursor in {@link #line}. */
+	int cursor;
+
+	/** Output not yet written to {@link #renderer}. */
+	@ToString.Exclude
+	final StringBuilder pending = new StringBuilder();
+
+	/** The lines recalled by Up and Down. */
+	@Setter
+	@ToString.Exclude
+	History history = new History();
+
+	/** How many entries back from the newest the line shown is; 0 while editing a new line. */
+	int recalled;
+
+	/** The new line being edited when history recall started. */
+	String draft = "";
+
+	/** Searched by Ctrl-R. */
+	@Setter
+	@ToString.Exclude
+	HistoryIndex historyIndex = new HistoryIndex();
+
+	/** Whether a reverse search is shown instead of the line. */
+	boolean searching;
+
+	/** The text searched for. */
+	final StringBuilder query = new StringBuilder();
+
+	/** Whether {@link #query} changed since {@link #matches} were found. */
+	boolean searchStale;
+
+	/** Matches of the query and of the shorter queries typed before it, longest on top. */
+	@ToString.Exclude
+	final Deque<HistoryIndex.Matches> searches = new ArrayDeque<>();
+
+	/** The best matches of the query, best first. */
+	@ToString.Exclude
+	List<String> matches = List.of();
+
+	/** Index in {@link #matches} of the match shown. */
+	int match;
+
+	/** The line being edited when the search started, restored by Ctrl-G. */
+	String searchDraft = "";
+
+	/** Guards reading the terminal against handing it to a program. */
+	@ToString.Exclude
+	final ReentrantLock inputLock = new ReentrantLock();
+
+	/** Signalled when the terminal is taken back from a program. */
+	@ToString.Exclude
+	final Condition resumed = inputLock.newCondition();
+
+	/** Whether a program run in the foreground has the terminal. */
+	boolean suspended;
+
+	/** Counts the times the terminal was handed to a program, so input seen before is polled again. */
+	long handoffs;
+
+	/** Bytes of a UTF-8 character being decoded. */
+	@ToString.Exclude
+	final byte[] character = new byte[4];
+
+	/**
+	 * Creates an editor reading keys from a channel and echoing them to a renderer.
+	 *
+	 * @param channel the terminal's input
+	 * @param terminal the terminal to switch to raw mode while reading, or null if the
+	 *        channel delivers keys unprocessed already
+	 * @param renderer where the line is echoed
+	 */
+	public LineEditor(ReadableByteChannel channel, TerminalMode terminal, OutputRenderer renderer) {
+		super(channel, true);
+		this.terminal = terminal;
+		this.renderer = renderer;
+	}
+
+	/**
+	 * Creates the reader for standard input: a line editor if stdin is a terminal that
+	 * can be switched to raw mode, a plain {@link LineReader} otherwise.
+	 *
+	 * @param renderer where an editor echoes the line
+	 * @return the reader for stdin
+	 */
+	public static LineReader stdin(OutputRenderer renderer) {
+		TerminalMode terminal = TerminalMode.stdin();
+		if (terminal == null || !terminal.enterRaw()) {
+			return LineReader.stdin();
+		}
+		return new LineEditor(new FileInputStream(FileDescriptor.in).getChannel(), terminal, renderer);
+	}
+
+	/**
+	 * Reads and edits a line until Enter is pressed.
+	 *
+	 * @return the line, or null if Ctrl-D was pressed on an empty line or the input ended
+	 * @throws IOException if reading the terminal fails
+	 */
+	@Override
+	public String readLine() throws IOException {
+		if (terminal != null) {
+			terminal.enterRaw();
+		}
+		lock.lock();
+		try {
+			line.setLength(0);
+			highlighter.update(line, 0);
+			cursor = 0;
+			recalled = 0;
+			listOnTab = false;
+			searching = false;
+			generation++;
+		} finally {
+			lock.unlock();
+		}
+		while (true) {
+			// Read without the lock, so a completion can be applied while waiting for a key
+			int key = read();
+			lock.lock();
+			try {
+				if (searching && (key < 0 || key == CTRL_D || key == '\r' || key == '\n')) {
+					endSearch();
+				}
+				if (key < 0 || (key == CTRL_D && line.isEmpty())) {
+					if (terminal != null) {
+						terminal.restore();
+					}
+					return line.isEmpty() ? null : accept();
+				}
+				if (key == '\r' || key == '\n') {
+					return accept();
+				}
+				edit(key);
+				if (!hasBuffered()) {
+					if (searchStale) {
+						search();
+						drawSearch();
+					}
+					flush();
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Returns whether the terminal can be handed to a program: only when the editor
+	 * switches a terminal itself can it wait for keys without reading them.
+	 *
+	 * @return true if {@link #suspend()} keeps the editor from reading
+	 */
+	public boolean isSuspendable() {
+		return terminal != null;
+	}
+
+	/**
+	 * Stops reading keys and restores the terminal's cooked mode, for a program run in
+	 * the foreground.
+	 *
+	 * <p>Returns at once: the reading thread is either waiting for a key in {@code poll},
+	 * or reading a key that is already there.
+	 */
+	public void suspend() {
+		inputLock.lock();
+		try {
+			suspended = true;
+			handoffs++;
+		} finally {
+			inputLock.unlock();
+		}
+		if (terminal != null) {
+			terminal.restore();
+		}
+	}
+
+	/**
+	 * Switches the terminal back to raw mode and reads keys again.
+	 */
+	public void resume() {
+		if (terminal != null) {
+			terminal.enterRaw();
+		}
+		inputLock.lock();
+		try {
+			suspended = false;
+			resumed.signalAll();
+		} finally {
+			inputLock.unlock();
+		}
+	}
+
+	/**
+	 * Reads the terminal once a key is there and the editor is not suspended.
+	 *
+	 * <p>A key that arrived before a program took the terminal may have been read by the
+	 * program, so the wait starts over after each handoff rather than reading blindly.
+	 */
+	@Override
+	int readChannel(ByteBuffer target) throws IOException {
+		if (terminal == null) {
+			return super.readChannel(target);
+		}
+		while (true) {
+			long seen;
+			inputLock.lock();
+			try {
+				while (suspended) {
+					resumed.await();
+				}
+				seen = handoffs;
+			} catch (InterruptedException e) {
+				// As a read interrupted on the channel would report it
+				throw new ClosedByInterruptException();
+			} finally {
+				inputLock.unlock();
+			}
+			boolean ready = terminal.awaitInput(POLL_INTERVAL_MILLIS);
+			inputLock.lock();
+			try {
+				if (ready && handoffs == seen) {
+					return super.readChannel(target);
+				}
+			} finally {
+				inputLock.unlock();
+			}
+			if (Thread.currentThread().isInterrupted()) {
+				throw new ClosedByInterruptException();
+			}
+		}
+	}
+
+	/**
+	 * Applies one key, or the escape sequence it starts.
+	 */
+	private void edit(int key) throws IOException {
+		boolean listRequested = listOnTab;
+		listOnTab = false;
+		generation++;
+		if (searching && searchKey(key)) {
+			return;
+		}
+		switch (key) {
+			case TAB -> requestCompletion(listRequested);
+			case CTRL_A -> moveTo(0);
+			case CTRL_E -> moveTo(line.length());
+			case CTRL_B -> moveTo(cursor - 1);
+			case CTRL_F -> moveTo(cursor + 1);
+			case CTRL_D -> delete(cursor, cursor + 1);
+			case BACKSPACE, DELETE -> delete(cursor - 1, cursor);
+			case CTRL_K -> delete(cursor, line.length());
+			case CTRL_U -> delete(0, cursor);
+			case CTRL_W -> delete(wordStart(), cursor);
+			case CTRL_P -> recall(recalled + 1);
+			case CTRL_N -> recall(recalled - 1);
+			case CTRL_R -> startSearch();
+			case CTRL_C -> cancel();
+			case ESCAPE -> escapeSequence();
+			default -> {
+				if (key >= 0x80) {
+					insert(decode(key));
+				} else if (key >= ' ') {
+					insert(String.valueOf((char) key));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Handles {@code ESC [ ...} and {@code ESC O ...} sequences sent by cursor and
+	 * editing keys; unknown sequences are read completely and ignored.
+	 */
+	private void escapeSequence() throws IOException {
+		int introducer = read();
+		if (introducer != '[' && introducer != 'O') {
+			return;
+		}
+		int parameter = 0;
+		int key;
+		// Parameters are digits and ';', ended by a byte from '@' to '~'
+		while ((key = read()) >= 0 && (key < '@' || key > '~')) {
+			if (key >= '0' && key <= '9') {
+				parameter = parameter * 10 + key - '0';
+			}
+		}
+		switch (key) {
+			case 'A' -> recall(recalled + 1);
+			case 'B' -> recall(recalled - 1);
+			case 'C' -> moveTo(cursor + 1);
+			case 'D' -> moveTo(cursor - 1);
+			case 'H' -> moveTo(0);
+			case 'F' -> moveTo(line.length());
+			case '~' -> {
+				switch (parameter) {
+					case 1, 7 -> moveTo(0);
+					case 4, 8 -> moveTo(line.length());
+					case 3 -> delete(cursor, cursor + 1);
+					default -> { }
+				}
+			}
+			default -> { }
+		}
+	}
+
+	/**
+	 * Reads the continuation bytes of a UTF-8 character.
+	 */
+	private String decode(int lead) throws IOException {
+		int length = lead >= 0xF0 ? 4 : lead >= 0xE0 ? 3 : 2;
+		character[0] = (byte) lead;
+		for (int i = 1; i < length; i++) {
+			int next = read();
+			if (next < 0) {
+				length = i;
+				break;
+			}
+			character[i] = (byte) next;
+		}
+		return new String(character, 0, length, StandardCharsets.UTF_8);
+	}
+
+	private void insert(String text) {
+		int from = cursor;
+		line.insert(cursor, text);
+		cursor += text.length();
+		redraw(from, false);
+	}
+
+	/**
+	 * Deletes the characters from {@code from} to {@code to}, leaving the cursor at {@code from}.
+	 */
+	private void delete(int from, int to) {
+		from = Math.max(from, 0);
+		to = Math.min(to, line.length());
+		if (from >= to) {
+			return;
+		}
+		moveTo(from);
+		line.delete(from, to);
+		redraw(from, true);
+	}
+
+	/**
+	 * Replaces the line with a line from the history, or the draft below the newest one.
+	 */
+	private void recall(int back) {
+		int size = history.size();
+		if (back < 0 || back > size || back == recalled) {
+			return;
+		}
+		if (recalled == 0) {
+			draft = line.toString();
+		}
+		recalled = back;
+		String text = back == 0 ? draft : history.get(size - back).line();
+		moveTo(0);
+		line.setLength(0);
+		line.append(text);
+		cursor = line.length();
+		redraw(0, true);
+	}
+
+	/**
+	 * Draws the line from an index on after it changed there, with the terminal's cursor
+	 * at that index, then moves the cursor back to {@link #cursor}. Characters the
+	 * highlighter restyled before the index are drawn again too.
+	 *
+	 * @param clear whether the line may have been longer, so the rest of the screen line is cleared
+	 */
+	private void redraw(int from, boolean clear) {
+		int start = highlighter.update(line, from);
+		left(from - start);
+		draw(start, line.length());
+		if (clear) {
+			pending.append(CSI).append('K');
+		}
+		left(line.length() - cursor);
+	}
+
+	/**
+	 * Draws part of the line in the highlighter's styles, resetting the style after it.
+	 */
+	private void draw(int start, int end) {
+		if (highlighter == Highlighter.NONE) {
+			pending.append(line, start, end);
+			return;
+		}
+		String drawn = null;
+		for (int i = start; i < end; i++) {
+			String style = highlighter.style(i);
+			if (!Objects.equals(style, drawn)) {
+				pending.append(CSI).append(style == null ? "0" : style).append('m');
+				drawn = style;
+			}
+			pending.append(line.charAt(i));
+		}
+		if (drawn != null) {
+			pending.append(CSI).append("0m");
+		}
+	}
+
+	/**
+	 * Shows an empty reverse search in place of the line.
+	 */
+	private void startSearch() {
+		searching = true;
+		searchDraft = line.toString();
+		query.setLength(0);
+		searches.clear();
+		matches = List.of();
+		match = 0;
+		searchStale = false;
+		drawSearch();
+	}
+
+	/**
+	 * Applies a key typed during a reverse search.
+	 *
+	 * @return false if the key ended the search and is still to be handled as an edit
+	 */
+	private boolean searchKey(int key) throws IOException {
+		switch (key) {
+			case CTRL_R -> {
+				if (searchStale) {
+					search();
+				}
+				if (match + 1 < matches.size()) {
+					match++;
+					selectMatch();
+				} else {
+					pending.append('\007');
+				}
+				drawSearch();
+			}
+			case BACKSPACE, DELETE -> {
+				if (!query.isEmpty()) {
+					query.setLength(query.length() - 1);
+					searchStale = true;
+				}
+			}
+			case CTRL_G -> {
+				searchStale = false;
+				line.setLength(0);
+				line.append(searchDraft);
+				endSearch();
+			}
+			default -> {
+				if (key >= 0x80) {
+					query.append(decode(key));
+					searchStale = true;
+				} else if (key >= ' ') {
+					query.append((char) key);
+					searchStale = true;
+				} else {
+					endSearch();
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Finds the matches of the query, narrowing those of the query it extends, and
+	 * selects the best one.
+	 */
+	private void search() {
+		searchStale = false;
+		// Backspace: the matches of the shorter query are still on the stack
+		while (!searches.isEmpty() && !query.toString().startsWith(searches.peek().query())) {
+			searches.pop();
+		}
+		HistoryIndex.Matches previous = searches.peek();
+		if (previous == null || previous.query().length() < query.length()) {
+			previous = historyIndex.search(query.toString(), previous);
+			searches.push(previous);
+		}
+		matches = historyIndex.ranked(previous, MAX_SEARCH_RESULTS);
+		match = 0;
+		selectMatch();
+	}
+
+	/**
+	 * Puts the selected match in the line, keeping the last one if nothing matches.
+	 */
+	private void selectMatch() {
+		if (match < matches.size()) {
+			line.setLength(0);
+			line.append(matches.get(match));
+		}
+		cursor = line.length();
+	}
+
+	private void drawSearch() {
+		pending.append('\r').append(CSI).append('K')
+			.append(matches.isEmpty() && !query.isEmpty() ? "(failed reverse-i-search)`" : "(reverse-i-search)`")
+			.append(query).append("': ").append(line);
+	}
+
+	/**
+	 * Ends the reverse search, drawing the prompt and the line again with the cursor at its end.
+	 */
+	private void endSearch() {
+		if (searchStale) {
+			search();
+		}
+		searching = false;
+		recalled = 0;
+		cursor = line.length();
+		highlighter.update(line, 0);
+		pending.append('\r').append(CSI).append('K').append(prompt);
+		draw(0, line.length());
+	}
+
+	/**
+	 * Asks the completer for the completions of the word before the cursor; they are
+	 * applied when they arrive, unless a key was handled meanwhile.
+	 *
+	 * @param list whether to list the candidates if they share no longer prefix
+	 */
+	private void requestCompletion(boolean list) {
+		long requested = generation;
+		completer.complete(line.toString(), cursor, completion -> {
+			lock.lock();
+			try {
+				if (generation == requested) {
+					complete(completion, list);
+					flush();
+				}
+			} finally {
+				lock.unlock();
+			}
+		});
+	}
+
+	/**
+	 * Completes the word before the cursor.
+	 *
+	 * @param completion the candidates
+	 * @param list whether to list the candidates if they share no longer prefix
+	 */
+	private void complete(Completer.Completion completion, boolean list) {
+		List<String> candidates = completion.candidates();
+		int typed = cursor - completion.start();
+		if (candidates.isEmpty()) {
+			pending.append('\007');
+			return;
+		}
+		if (candidates.size() == 1) {
+			String candidate = candidates.getFirst();
+			// A directory is completed with its slash, ready for the next name
+			insert(candidate.substring(typed) + (candidate.endsWith("/") ? "" : " "));
+			return;
+		}
+		String common = commonPrefix(candidates);
+		if (common.length() > typed) {
+			insert(common.substring(typed));
+		} else if (!list) {
+			pending.append('\007');
+			listOnTab = true;
+		} else {
+			int position = cursor;
+			moveTo(line.length());
+			pending.append('\n').append(String.join("  ", candidates.subList(0, Math.min(candidates.size(), MAX_LISTED))));
+			if (candidates.size() > MAX_LISTED) {
+				pending.append("  ... ").append(candidates.size() - MAX_LISTED).append(" more");
+			}
+			pending.append('\n').append(prompt);
+			draw(0, line.length());
+			left(line.length() - position);
+			cursor = position;
+		}
+	}
+
+	private static String commonPrefix(List<String> words) {
+		String first = words.getFirst();
+		int length = first.length();
+		for (String word : words) {
+			length = Math.min(length, word.length());
+			for (int i = 0; i < length; i++) {
+				if (word.charAt(i) != first.charAt(i)) {
+					length = i;
+					break;
+				}
+			}
+		}
+		return first.substring(0, length);
+	}
+
+	/**
+	 * Discards the line, as Ctrl-C does, and runs the interrupt handler.
+	 */
+	private void cancel() {
+		moveTo(line.length());
+		pending.append("^C");
+		line.setLength(0);
+		highlighter.update(line, 0);
+		cursor = 0;
+		recalled = 0;
+		flush();
+		interruptHandler.run();
+	}
+
+	/**
+	 * Ends the line: moves the cursor past it and returns it.
+	 */
+	private String accept() {
+		moveTo(line.length());
+		pending.append('\n');
+		flush();
+		return line.toString();
+	}
+
+	private int wordStart() {
+		int start = cursor;
+		while (start > 0 && line.charAt(start - 1) == ' ') {
+			start--;
+		}
+		while (start > 0 && line.charAt(start - 1) != ' ') {
+			start--;
+		}
+		return start;
+	}
+
+	private void moveTo(int position) {
+		position = Math.clamp(position, 0, line.length());
+		if (position < cursor) {
+			left(cursor - position);
+		} else if (position > cursor) {
+			pending.append(CSI).append(position - cursor).append('C');
+		}
+		cursor = position;
+	}
+
+	private void left(int columns) {
+		if (columns > 0) {
+			pending.append(CSI).append(columns).append('D');
+		}
+	}
+
+	private void flush() {
+		if (!pending.isEmpty()) {
+			renderer.print(STDOUT, pending.toString());
+			pending.setLength(0);
+		}
+		renderer.flush();
+	}
+}
@@ -0,0 +1,219 @@
+package repl.io;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.experimental.FieldDefaults;
+
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Reads UTF-8 lines from a byte channel, replacing {@link java.util.Scanner} for the REPL's input.
+ *
+ * <p>Bytes are read into one reusable buffer and lines are found by scanning it for
+ * {@code '\n'} directly; only the bytes of each line are decoded. This is safe for
+ * UTF-8, where the newline byte never occurs inside a multi-byte character. A line
+ * longer than the buffer grows it; the buffer is never shrunk.
+ *
+ * <p>When stdin is a pipe or a file, each read fills as much of a large buffer as the
+ * channel has, so a generated command stream is read in a few system calls rather
+ * than one per line. A terminal delivers one line per read anyway, so a small buffer
+ * is used.
+ *
+ * <p>Line terminators ({@code \n} or {@code \r\n}) are not included in the returned
+ * lines; a last line without terminator is returned as well.
+ */
+@ToString
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class LineReader {
+	/** Initial buffer size when reading a pipe or file. */
+	static final int BATCH_BUFFER_SIZE = 64 * 1024;
+
+	/** Initial buffer size when reading a terminal. */
+	static final int TERMINAL_BUFFER_SIZE = 1024;
+
+	/** The channel lines are read from. */
+	@ToString.Exclude
+	final ReadableByteChannel channel;
+
+	/** Whether the input is an interactive terminal, which is shown a prompt. */
+	@Getter
+	final boolean interactive;
+
+	/** Bytes read from the channel; those between {@link #start} and {@link #end} are unconsumed. */
+	@ToString.Exclude
+	byte[] bytes;
+
+	/** View of {@link #bytes} the channel reads into. */
+	@ToString.Exclude
+	ByteBuffer buffer;
+
+	/** Index of the first unconsumed byte. */
+	int start;
+
+	/** Index after the last byte read. */
+	int end;
+
+	/** Whether the channel has reached its end. */
+	boolean endOfInput;
+
+	/**
+	 * Creates a reader with the buffer size suited to the kind of input.
+	 *
+	 * @param channel the channel to read from
+	 * @param interactive whether the channel is an interactive terminal
+	 */
+	public LineReader(ReadableByteChannel channel, boolean interactive) {
+		this(channel, interactive, interactive ? TERMINAL_BUFFER_SIZE : BATCH_BUFFER_SIZE);
+	}
+
+	/**
+	 * Creates a reader with the given initial buffer size.
+	 *
+	 * <p>Package-private for testing.
+	 */
+	LineReader(ReadableByteChannel channel, boolean interactive, int bufferSize) {
+		this.channel = channel;
+		this.interactive = interactive;
+		this.bytes = new byte[bufferSize];
+		this.buffer = ByteBuffer.wrap(bytes);
+	}
+
+	/**
+	 * Creates a reader for the process's standard input.
+	 *
+	 * <p>The channel is deliberately never closed: closing it would close stdin.
+	 *
+	 * @return a reader over stdin, interactive if stdin is a terminal
+	 */
+	public static LineReader stdin() {
+		return new LineReader(new FileInputStream(FileDescriptor.in).getChannel(), isTerminal());
+	}
+
+	/**
+	 * Reads the next line.
+	 *
+	 * @return the line without its terminator, or null at the end of input
+	 * @throws IOException if reading the channel fails
+	 */
+	public String readLine() throws IOException {
+		int scanned = start;
+		while (true) {
+			for (int i = scanned; i < end; i++) {
+				if (bytes[i] == '\n') {
+					String line = decode(start, i);
+					start = i + 1;
+					return line;
+				}
+			}
+			if (endOfInput) {
+				if (start == end) {
+					return null;
+				}
+				String line = decode(start, end);
+				start = end;
+				return line;
+			}
+			scanned = end - start;
+			fill();
+			scanned += start;
+		}
+	}
+
+	/**
+	 * Reads the next byte, for a {@link LineEditor} decoding keys.
+	 *
+	 * @return the byte as a value from 0 to 255, or -1 at the end of input
+	 * @throws IOException if reading the channel fails
+	 */
+	int read() throws IOException {
+		while (start == end) {
+			if (endOfInput) {
+				return -1;
+			}
+			start = 0;
+			end = 0;
+			fill();
+		}
+		return bytes[start++] & 0xFF;
+	}
+
+	/**
+	 * Returns whether bytes have been read from the channel but not consumed, as when
+	 * text is pasted; a line editor redraws once they are all handled.
+	 *
+	 * @return true if {@link #read()} returns without reading the channel
+	 */
+	boolean hasBuffered() {
+		return start < end;
+	}
+
+	/**
+	 * Reads more bytes after the unconsumed ones, first moving them to the front of
+	 * the buffer or growing it if it is full.
+	 */
+	private void fill() throws IOException {
+		if (end == bytes.length) {
+			if (start > 0) {
+				System.arraycopy(bytes, start, bytes, 0, end - start);
+				end -= start;
+				start = 0;
+			} else {
+				bytes = Arrays.copyOf(bytes, bytes.length * 2);
+				buffer = ByteBuffer.wrap(bytes);
+			}
+		}
+		buffer.limit(bytes.length).position(end);
+		int read = readChannel(buffer);
+		if (read < 0) {
+			endOfInput = true;
+		} else {
+			end += read;
+		}
+	}
+
+	/**
+	 * Reads bytes from the channel; a {@link LineEditor} first waits until it may read.
+	 *
+	 * @param target the buffer to read into
+	 * @return the number of bytes read, or -1 at the end of input
+	 * @throws IOException if reading the channel fails
+	 */
+	int readChannel(ByteBuffer target) throws IOException {
+		return channel.read(target);
+	}
+
+	/**
+	 * Decodes a line, dropping the {@code \r} of a {@code \r\n} terminator.
+	 */
+	private String decode(int from, int to) {
+		if (to > from && bytes[to - 1] == '\r') {
+			to--;
+		}
+		return new String(bytes, from, to - from, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Returns whether stdin is a terminal.
+	 *
+	 * <p>On Linux the target of {@code /proc/self/fd/0} tells a terminal device from a
+	 * pipe or file even when stdout is redirected; elsewhere a console being attached
+	 * to the JVM is used instead.
+	 */
+	private static boolean isTerminal() {
+		try {
+			String target = Files.readSymbolicLink(Path.of("/proc/self/fd/0")).toString();
+			return target.startsWith("/dev/pts/") || target.startsWith("/dev/tty");
+		} catch (IOException | UnsupportedOperationException e) {
+			return System.console() != null;
+		}
+	}
+}
@@ -0,0 +1,280 @@
+package repl.io;
+
+import lombok.AccessLevel;
+import lombok.ToString;
+import lombok.experimental.FieldDefaults;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Buffered writer for everything the REPL prints to the terminal.
+ *
+ * <p>Output of both streams goes into one large buffer, which is written out:
+ * <ul>
+ *   <li>when {@link #flush()} is called, which the REPL does before each prompt,</li>
+ *   <li>when the buffer is full,</li>
+ *   <li>{@link #FLUSH_DELAY_MILLIS} after the first unflushed byte, so the output of a
+ *       long-running loop still appears while it runs, and</li>
+ *   <li>when output switches between stdout and stderr, so the two are seen in the order
+ *       they were printed.</li>
+ * </ul>
+ *
+ * <p>A script replayed through a pipe thus costs one write per buffer rather than one
+ * per line. {@link #printStream(Target)} adapts the renderer for code that prints to
+ * {@link System#out} and {@link System#err}.
+ *
+ * <p>Write errors (such as a closed pipe) are ignored like {@link PrintStream} does;
+ * the unwritten output is dropped.
+ *
+ * <p>Thread-safe: the timer flushes from its own thread.
+ */
+@ToString
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class OutputRenderer {
+	/** Size of the output buffer. */
+	static final int BUFFER_SIZE = 64 * 1024;
+
+	/** Longest time output stays in the buffer before the timer writes it. */
+	static final long FLUSH_DELAY_MILLIS = 50;
+
+	/** Runs the delayed flushes of all renderers. */
+	private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(
+		Thread.ofPlatform().daemon().name("output-flush").factory());
+
+	/** The stream a piece of output is printed to. */
+	public enum Target {
+		/** Standard output. */
+		STDOUT,
+		/** Standard error. */
+		STDERR
+	}
+
+	/** Destination of {@link Target#STDOUT}. */
+	@ToString.Exclude
+	final WritableByteChannel stdout;
+
+	/** Destination of {@link Target#STDERR}. */
+	@ToString.Exclude
+	final WritableByteChannel stderr;
+
+	/** Guards the buffer against the timer thread. */
+	@ToString.Exclude
+	final ReentrantLock lock = new ReentrantLock();
+
+	/** Unflushed output, all of it for {@link #pendingTarget}. */
+	@ToString.Exclude
+	final ByteBuffer buffer;
+
+	/** Time output may stay in the buffer before the timer writes it, in milliseconds. */
+	final long flushDelayMillis;
+
+	/** The flush run by the timer; a field so scheduling it does not allocate a new one. */
+	@ToString.Exclude
+	final Runnable timedFlush = this::flush;
+
+	/** The stream the buffered output belongs to. */
+	Target pendingTarget = Target.STDOUT;
+
+	/** The pending timer flush, or null if none is scheduled. */
+	@ToString.Exclude
+	ScheduledFuture<?> scheduledFlush;
+
+	/**
+	 * Creates a renderer writing to the given channels.
+	 *
+	 * @param stdout the destination of standard output
+	 * @param stderr the destination of standard error
+	 */
+	public OutputRenderer(WritableByteChannel stdout, WritableByteChannel stderr) {
+		this(stdout, stderr, BUFFER_SIZE, FLUSH_DELAY_MILLIS);
+	}
+
+	/**
+	 * Creates a renderer with the given buffer size and timer delay.
+	 *
+	 * <p>Package-private for testing.
+	 */
+	OutputRenderer(WritableByteChannel stdout, WritableByteChannel stderr, int bufferSize, long flushDelayMillis) {
+		this.stdout = stdout;
+		this.stderr = stderr;
+		this.buffer = ByteBuffer.allocate(bufferSize);
+		this.flushDelayMillis = flushDelayMillis;
+	}
+
+	/**
+	 * Creates a renderer writing to the given streams, such as the current
+	 * {@link System#out} and {@link System#err}.
+	 *
+	 * @param stdout the destination of standard output
+	 * @param stderr the destination of standard error
+	 * @return the renderer
+	 */
+	public static OutputRenderer of(OutputStream stdout, OutputStream stderr) {
+		return new OutputRenderer(Channels.newChannel(stdout), Channels.newChannel(stderr));
+	}
+
+	/**
+	 * Creates a renderer writing straight to the process's file descriptors 1 and 2,
+	 * bypassing {@link System#out} and {@link System#err}.
+	 *
+	 * @return the renderer
+	 */
+	public static OutputRenderer terminal() {
+		return new OutputRenderer(new FileOutputStream(FileDescriptor.out).getChannel(),
+			new FileOutputStream(FileDescriptor.err).getChannel());
+	}
+
+	/**
+	 * Prints text.
+	 *
+	 * @param target the stream to print to
+	 * @param text the text
+	 */
+	public void print(Target target, String text) {
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		write(target, bytes, 0, bytes.length);
+	}
+
+	/**
+	 * Prints text followed by a newline.
+	 *
+	 * @param target the stream to print to
+	 * @param text the text
+	 */
+	public void println(Target target, String text) {
+		lock.lock();
+		try {
+			// Under one lock, so the timer cannot flush between the text and its newline
+			print(target, text);
+			write(target, '\n');
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Writes bytes.
+	 *
+	 * @param target the stream to write to
+	 * @param bytes the bytes
+	 * @param offset the index of the first byte to write
+	 * @param length the number of bytes to write
+	 */
+	public void write(Target target, byte[] bytes, int offset, int length) {
+		lock.lock();
+		try {
+			prepare(target, length);
+			if (length > buffer.capacity()) {
+				writeFully(channel(target), ByteBuffer.wrap(bytes, offset, length));
+				return;
+			}
+			buffer.put(bytes, offset, length);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Writes one byte.
+	 *
+	 * @param target the stream to write to
+	 * @param b the byte
+	 */
+	public void write(Target target, int b) {
+		lock.lock();
+		try {
+			prepare(target, 1);
+			buffer.put((byte) b);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Writes all buffered output.
+	 */
+	public void flush() {
+		lock.lock();
+		try {
+			if (scheduledFlush != null) {
+				scheduledFlush.cancel(false);
+				scheduledFlush = null;
+			}
+			if (buffer.position() == 0) {
+				return;
+			}
+			buffer.flip();
+			writeFully(channel(pendingTarget), buffer);
+			buffer.clear();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns a print stream that prints through this renderer, to be installed as
+	 * {@link System#out} or {@link System#err}.
+	 *
+	 * @param target the stream the print stream prints to
+	 * @return a print stream without autoflush
+	 */
+	public PrintStream printStream(Target target) {
+		return new PrintStream(new OutputStream() {
+			@Override
+			public void write(int b) {
+				OutputRenderer.this.write(target, b);
+			}
+
+			@Override
+			public void write(byte[] bytes, int offset, int length) {
+				OutputRenderer.this.write(target, bytes, offset, length);
+			}
+
+			@Override
+			public void flush() {
+				OutputRenderer.this.flush();
+			}
+		}, false, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Makes room for output to a stream: flushes output of the other stream, or a
+	 * buffer too full to take it, and starts the timer for the first pending byte.
+	 */
+	private void prepare(Target target, int length) {
+		if (buffer.position() > 0 && (target != pendingTarget || length > buffer.remaining())) {
+			flush();
+		}
+		pendingTarget = target;
+		if (scheduledFlush == null && length <= buffer.capacity()) {
+			scheduledFlush = TIMER.schedule(timedFlush, flushDelayMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private WritableByteChannel channel(Target target) {
+		return target == Target.STDOUT ? stdout : stderr;
+	}
+
+	private static void writeFully(WritableByteChannel channel, ByteBuffer bytes) {
+		try {
+			while (bytes.hasRemaining()) {
+				channel.write(bytes);
+			}
+		} catch (IOException _) {
+			// Like PrintStream: a terminal that went away does not stop the shell
+		}
+	}
+}
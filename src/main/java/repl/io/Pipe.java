@@ -0,0 +1,144 @@
+package repl.io;
+
+import lombok.AccessLevel;
+import lombok.ToString;
+import lombok.experimental.FieldDefaults;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SymbolLookup;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.MethodHandle;
+
+/**
+ * An anonymous pipe created in the shell's own process with {@code pipe2}, called
+ * through {@code java.lang.foreign}.
+ *
+ * <p>Each end is reachable by path as {@code /proc/<pid>/fd/<n>}, the shell's
+ * {@code /dev/fd} as seen from other processes: a {@link ProcessBuilder} can only give a
+ * child descriptors 0 to 2, so the pipe cannot be inherited as another descriptor, but
+ * another process can open it by path. Opening an end gives a new handle to the same
+ * pipe, with no file on disk. Only Linux is supported.
+ *
+ * <p>Both descriptors are close-on-exec, so programs the shell starts never hold an end
+ * they were not given. An end stays open until {@link #closeRead()} or
+ * {@link #closeWrite()}; handles opened by path are independent of it.
+ */
+@ToString
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class Pipe {
+	/** {@code O_CLOEXEC} on Linux. */
+	private static final int O_CLOEXEC = 0x80000;
+
+	/** {@code pipe2(int[2], int)}, or null if unavailable. */
+	private static final MethodHandle PIPE2;
+
+	/** {@code close(int)}, or null if unavailable. */
+	private static final MethodHandle CLOSE;
+
+	/** The prefix of the paths of this process's descriptors. */
+	private static final String FD_DIRECTORY = "/proc/" + ProcessHandle.current().pid() + "/fd/";
+
+	static {
+		MethodHandle pipe2 = null;
+		MethodHandle close = null;
+		if (System.getProperty("os.name", "").startsWith("Linux")) {
+			Linker linker = Linker.nativeLinker();
+			SymbolLookup libc = linker.defaultLookup();
+			pipe2 = libc.find("pipe2")
+				.map(address -> linker.downcallHandle(address,
+					FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.ADDRESS, ValueLayout.JAVA_INT)))
+				.orElse(null);
+			close = libc.find("close")
+				.map(address -> linker.downcallHandle(address,
+					FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.JAVA_INT)))
+				.orElse(null);
+		}
+		PIPE2 = pipe2;
+		CLOSE = close;
+	}
+
+	/** The read end, or -1 once closed. */
+	int readFd;
+
+	/** The write end, or -1 once closed. */
+	int writeFd;
+
+	private Pipe(int readFd, int writeFd) {
+		this.readFd = readFd;
+		this.writeFd = writeFd;
+	}
+
+	/**
+	 * Creates a pipe.
+	 *
+	 * @return the pipe, with both ends open
+	 * @throws IOException if the platform is not supported or no descriptor is left
+	 */
+	public static Pipe open() throws IOException {
+		if (PIPE2 == null || CLOSE == null) {
+			throw new IOException("pipes are not supported on this platform");
+		}
+		try (Arena arena = Arena.ofConfined()) {
+			MemorySegment fds = arena.allocate(2L * Integer.BYTES);
+			if ((int) PIPE2.invokeExact(fds, O_CLOEXEC) != 0) {
+				throw new IOException("cannot create pipe");
+			}
+			return new Pipe(fds.getAtIndex(ValueLayout.JAVA_INT, 0), fds.getAtIndex(ValueLayout.JAVA_INT, 1));
+		} catch (IOException e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new IOException("cannot create pipe", e);
+		}
+	}
+
+	/**
+	 * Returns the path other processes open to read from the pipe.
+	 *
+	 * @return the path of the read end
+	 */
+	public String readPath() {
+		return FD_DIRECTORY + readFd;
+	}
+
+	/**
+	 * Returns the path other processes open to write to the pipe.
+	 *
+	 * @return the path of the write end
+	 */
+	public String writePath() {
+		return FD_DIRECTORY + writeFd;
+	}
+
+	/**
+	 * Closes the shell's read end. Once no handle reads the pipe, writing to it fails
+	 * with {@code EPIPE}, which ends a program still writing.
+	 */
+	public synchronized void closeRead() {
+		close(readFd);
+		readFd = -1;
+	}
+
+	/**
+	 * Closes the shell's write end. Once no handle writes to the pipe, reading it
+	 * reaches the end of the input.
+	 */
+	public synchronized void closeWrite() {
+		close(writeFd);
+		writeFd = -1;
+	}
+
+	private static void close(int fd) {
+		if (fd < 0) {
+			return;
+		}
+		try {
+			int _ = (int) CLOSE.invokeExact(fd);
+		} catch (Throwable e) {
+			// The descriptor is released even when close reports an error
+		}
+	}
+}
@@ -0,0 +1,239 @@
+package repl.io;
+
+import lombok.AccessLevel;
+import lombok.ToString;
+import lombok.experimental.FieldDefaults;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SymbolLookup;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.MethodHandle;
+
+/**
+ * Switches a terminal between raw and cooked mode with {@code tcgetattr} and
+ * {@code tcsetattr}, called through {@code java.lang.foreign}.
+ *
+ * <p>Each switch is a single system call, where running {@code stty} would start a
+ * process. Only Linux is supported, as the {@code struct termios} layout and flag
+ * values are those of Linux (identical on x86-64 and AArch64).
+ *
+ * <p>Raw mode here is {@code cfmakeraw} except for output processing, which stays on
+ * so a {@code \n} printed by the shell still returns the cursor to the first column.
+ * Signal characters are delivered as bytes, so the line editor handles Ctrl-C itself.
+ *
+ * <p>The cooked settings are restored by {@link #restore()} and, should the shell end
+ * without calling it, by a shutdown hook.
+ *
+ * <p>{@link #awaitInput(int)} waits for a key with {@code poll}, so a reader can stop
+ * before reading when the terminal is handed to a program in the foreground, instead of
+ * being stuck in a read that would take the program's keys.
+ */
+@ToString
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class TerminalMode {
+	/** Size of {@code struct termios} on Linux, rounded up. */
+	static final int TERMIOS_SIZE = 64;
+
+	/** Offset of {@code c_iflag}. */
+	static final int INPUT_FLAGS = 0;
+
+	/** Offset of {@code c_oflag}. */
+	static final int OUTPUT_FLAGS = 4;
+
+	/** Offset of {@code c_lflag}. */
+	static final int LOCAL_FLAGS = 12;
+
+	/** Offset of {@code c_cc}. */
+	static final int CONTROL_CHARS = 17;
+
+	/** Index of {@code VTIME} in {@code c_cc}. */
+	static final int VTIME = 5;
+
+	/** Index of {@code VMIN} in {@code c_cc}. */
+	static final int VMIN = 6;
+
+	/** Input flags cleared in raw mode: {@code BRKINT | INPCK | ISTRIP | ICRNL | IXON}. */
+	static final int RAW_INPUT_CLEARED = 0x2 | 0x10 | 0x20 | 0x100 | 0x400;
+
+	/** Local flags cleared in raw mode: {@code ISIG | ICANON | ECHO | IEXTEN}. */
+	static final int RAW_LOCAL_CLEARED = 0x1 | 0x2 | 0x8 | 0x8000;
+
+	/** {@code TCSANOW}: apply at once, keeping input typed ahead. */
+	private static final int TCSANOW = 0;
+
+	/** Size of {@code struct pollfd}. */
+	static final int POLLFD_SIZE = 8;
+
+	/** Offset of {@code events} in {@code struct pollfd}. */
+	static final int POLL_EVENTS = 4;
+
+	/** {@code POLLIN}: data to read. */
+	static final short POLLIN = 0x1;
+
+	/** {@code tcgetattr(int, struct termios *)}, or null if unavailable. */
+	private static final MethodHandle TCGETATTR;
+
+	/** {@code tcsetattr(int, int, const struct termios *)}, or null if unavailable. */
+	private static final MethodHandle TCSETATTR;
+
+	/** {@code poll(struct pollfd *, nfds_t, int)}, or null if unavailable. */
+	private static final MethodHandle POLL;
+
+	static {
+		MethodHandle get = null;
+		MethodHandle set = null;
+		MethodHandle poll = null;
+		if (System.getProperty("os.name", "").startsWith("Linux")) {
+			Linker linker = Linker.nativeLinker();
+			SymbolLookup libc = linker.defaultLookup();
+			get = libc.find("tcgetattr")
+				.map(address -> linker.downcallHandle(address,
+					FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.JAVA_INT, ValueLayout.ADDRESS)))
+				.orElse(null);
+			set = libc.find("tcsetattr")
+				.map(address -> linker.downcallHandle(address,
+					FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.JAVA_INT, ValueLayout.JAVA_INT, ValueLayout.ADDRESS)))
+				.orElse(null);
+			poll = libc.find("poll")
+				.map(address -> linker.downcallHandle(address,
+					FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.ADDRESS, ValueLayout.JAVA_LONG, ValueLayout.JAVA_INT)))
+				.orElse(null);
+		}
+		TCGETATTR = get;
+		TCSETATTR = set;
+		POLL = poll;
+	}
+
+	/** The terminal's file descriptor. */
+	final int fd;
+
+	/** The settings found when this instance was created. */
+	@ToString.Exclude
+	final MemorySegment cooked;
+
+	/** {@link #cooked} with the raw mode changes applied. */
+	@ToString.Exclude
+	final MemorySegment raw;
+
+	/** The {@code struct pollfd} waiting for input on {@link #fd}. */
+	@ToString.Exclude
+	final MemorySegment pollfd;
+
+	/** Whether the terminal is in raw mode. */
+	boolean rawMode;
+
+	private TerminalMode(int fd, MemorySegment cooked, MemorySegment raw) {
+		this.fd = fd;
+		this.cooked = cooked;
+		this.raw = raw;
+		this.pollfd = Arena.global().allocate(POLLFD_SIZE);
+		pollfd.set(ValueLayout.JAVA_INT, 0, fd);
+		pollfd.set(ValueLayout.JAVA_SHORT, POLL_EVENTS, POLLIN);
+	}
+
+	/**
+	 * Reads the current settings of standard input.
+	 *
+	 * @return the terminal mode of stdin, or null if stdin is not a terminal or the
+	 *         platform is not supported
+	 */
+	public static TerminalMode stdin() {
+		return of(0);
+	}
+
+	/**
+	 * Reads the current settings of a terminal.
+	 *
+	 * @param fd the file descriptor
+	 * @return the terminal mode, or null if the descriptor is not a terminal or the
+	 *         platform is not supported
+	 */
+	static TerminalMode of(int fd) {
+		if (TCGETATTR == null || TCSETATTR == null) {
+			return null;
+		}
+		MemorySegment cooked = Arena.global().allocate(TERMIOS_SIZE);
+		try {
+			if ((int) TCGETATTR.invokeExact(fd, cooked) != 0) {
+				return null;
+			}
+		} catch (Throwable e) {
+			return null;
+		}
+		MemorySegment raw = Arena.global().allocate(TERMIOS_SIZE);
+		MemorySegment.copy(cooked, 0, raw, 0, TERMIOS_SIZE);
+		makeRaw(raw);
+		TerminalMode mode = new TerminalMode(fd, cooked, raw);
+		Runtime.getRuntime().addShutdownHook(new Thread(mode::restore, "terminal-restore"));
+		return mode;
+	}
+
+	/**
+	 * Switches the terminal to raw mode: bytes are delivered as typed, without echo.
+	 *
+	 * @return true if the terminal is in raw mode
+	 */
+	public synchronized boolean enterRaw() {
+		if (!rawMode) {
+			rawMode = apply(raw);
+		}
+		return rawMode;
+	}
+
+	/**
+	 * Switches the terminal back to the settings it had when this instance was created.
+	 */
+	public synchronized void restore() {
+		if (rawMode) {
+			apply(cooked);
+			rawMode = false;
+		}
+	}
+
+	/**
+	 * Waits until the terminal has input to read.
+	 *
+	 * <p>Called by one thread at a time, the one reading keys. Without {@code poll}, input
+	 * is reported as ready, so the caller falls back to a blocking read.
+	 *
+	 * @param timeoutMillis the longest time to wait
+	 * @return true if a read would return without blocking, false if the time ran out or
+	 *         a signal interrupted the wait
+	 */
+	public boolean awaitInput(int timeoutMillis) {
+		if (POLL == null) {
+			return true;
+		}
+		try {
+			return (int) POLL.invokeExact(pollfd, 1L, timeoutMillis) > 0;
+		} catch (Throwable e) {
+			return true;
+		}
+	}
+
+	/**
+	 * Applies the raw mode changes to a {@code struct termios}.
+	 *
+	 * <p>Package-private for testing.
+	 *
+	 * @param termios the settings to change
+	 */
+	static void makeRaw(MemorySegment termios) {
+		termios.set(ValueLayout.JAVA_INT, INPUT_FLAGS, termios.get(ValueLayout.JAVA_INT, INPUT_FLAGS) & ~RAW_INPUT_CLEARED);
+		termios.set(ValueLayout.JAVA_INT, LOCAL_FLAGS, termios.get(ValueLayout.JAVA_INT, LOCAL_FLAGS) & ~RAW_LOCAL_CLEARED);
+		// Block until one byte is available, with no timeout
+		termios.set(ValueLayout.JAVA_BYTE, CONTROL_CHARS + VMIN, (byte) 1);
+		termios.set(ValueLayout.JAVA_BYTE, CONTROL_CHARS + VTIME, (byte) 0);
+	}
+
+	private boolean apply(MemorySegment termios) {
+		try {
+			return (int) TCSETATTR.invokeExact(fd, TCSANOW, termios) == 0;
+		} catch (Throwable e) {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,30 @@
+/**
+ * Terminal input and output of the REPL.
+ *
+ * <p>{@link repl.io.LineReader} - Reads command lines from a byte channel through one
+ * reusable buffer, and tells whether stdin is an interactive terminal or a pipe.
+ *
+ * <p>{@link repl.io.OutputRenderer} - Buffers stdout and stderr together and writes them
+ * at prompts, when the buffer is full or after a short delay, keeping their order.
+ *
+ * <p>{@link repl.io.LineEditor} - Edits lines on a terminal in raw mode, echoing keys and
+ * redrawing only what each edit changed.
+ *
+ * <p>{@link repl.io.Completer} - Supplies the candidates the line editor offers on Tab.
+ *
+ * <p>{@link repl.io.Highlighter} - Styles the characters of the line being edited.
+ *
+ * <p>{@link repl.io.TerminalMode} - Switches a terminal between raw and cooked mode with
+ * {@code tcsetattr}, called through {@code java.lang.foreign}, and waits for keys with
+ * {@code poll}, so the line editor can stop reading while a program has the terminal.
+ *
+ * <p>{@link repl.io.Pipe} - Creates a pipe with {@code pipe2}, also through
+ * {@code java.lang.foreign}, whose ends other processes open by path, for process
+ * substitution.
+ *
+ * <p>{@link repl.io.InterruptSignal} - Makes SIGINT, which the terminal also sends the shell
+ * while a program runs in the foreground, cancel the running line instead of ending the JVM.
+ *
+ * @see repl.REPL
+ */
+package repl.io;
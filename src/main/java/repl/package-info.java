@@ -2,15 +2,22 @@
  * Core REPL (Read-Eval-Print Loop) implementation for a POSIX-compliant shell.
  *
  * <p>Main components: {@link repl.REPL} (main loop), {@link repl.ReplEvaluator} (command parsing),
- * {@link repl.BuiltinCommand} (builtin registry), {@link repl.Constants} (shared constants),
- * {@link repl.ReplContext} (shared context for commands).
+ * {@link repl.BuiltinCommand} (builtin registry), {@link repl.CommandTable} (functions and aliases),
+ * {@link repl.Constants} (shared constants),
+ * {@link repl.ReplContext} (shared context for commands),
+ * {@link repl.CommandSubstitution} ({@code $(...)} evaluation),
+ * {@link repl.ProcessSubstitution} ({@code <(...)} and {@code >(...)} bodies connected by a pipe),
+ * {@link repl.OutputSink} and {@link repl.CapturedOutput} (output of compound commands),
+ * {@link repl.CommandCompleter} and {@link repl.PathCompleter} (Tab completion of command names and paths),
+ * {@link repl.SyntaxHighlighter} (coloring of the line being edited).
  *
  * <p>Flow: Read input → Parse and evaluate → Execute command → Print output → Loop
  *
- * <p>Command resolution order: builtins → PATH executables → command not found
+ * <p>Command resolution order: aliases → functions → builtins → PATH executables → command not found
  *
  * @see repl.commands
  * @see repl.exceptions
+ * @see repl.script
  * @see repl.utils
  */
 package repl;
@@ -0,0 +1,313 @@
+package repl.script;
+
+/**
+ * A compiled {@code $((...))} arithmetic expression.
+ *
+ * <p>Expressions are parsed once by {@link ArithmeticParser} into a tree of
+ * records stored in the {@link WordPart.Arithmetic} part of the plan. Evaluation
+ * walks the tree on primitive {@code long}s: no boxing, and no re-parsing when
+ * the same plan runs again, e.g. in a loop body.
+ *
+ * <p>Arithmetic follows the shell: 64-bit signed integers that wrap on overflow,
+ * C operator precedence, and unset or empty variables evaluating to 0.
+ *
+ * @see ArithmeticParser
+ */
+public sealed interface ArithmeticExpression {
+
+	/**
+	 * Integer variables that expressions read and assign.
+	 */
+	interface Variables {
+		/**
+		 * Returns the numeric value of a variable.
+		 *
+		 * @param name the variable name
+		 * @return the value, 0 if unset or empty
+		 * @throws ArithmeticException if the value is not a number
+		 */
+		long get(String name);
+
+		/**
+		 * Assigns a variable.
+		 *
+		 * @param name the variable name
+		 * @param value the new value
+		 */
+		void set(String name, long value);
+	}
+
+	/**
+	 * Binary operators, each applied to two already evaluated operands.
+	 *
+	 * <p>{@code &&}, {@code ||} and {@code ,} are not listed here because they
+	 * do not always evaluate both operands; see {@link Logical} and {@link Comma}.
+	 */
+	enum Operator {
+		MULTIPLY("*") {
+			@Override
+			long apply(long left, long right) {
+				return left * right;
+			}
+		},
+		DIVIDE("/") {
+			@Override
+			long apply(long left, long right) {
+				return left / checkDivisor(right);
+			}
+		},
+		REMAINDER("%") {
+			@Override
+			long apply(long left, long right) {
+				return left % checkDivisor(right);
+			}
+		},
+		POWER("**") {
+			@Override
+			long apply(long left, long right) {
+				if (right < 0) {
+					throw new ArithmeticException("exponent less than 0");
+				}
+				long result = 1;
+				long base = left;
+				for (long exponent = right; exponent > 0; exponent >>= 1) {
+					if ((exponent & 1) != 0) {
+						result *= base;
+					}
+					base *= base;
+				}
+				return result;
+			}
+		},
+		ADD("+") {
+			@Override
+			long apply(long left, long right) {
+				return left + right;
+			}
+		},
+		SUBTRACT("-") {
+			@Override
+			long apply(long left, long right) {
+				return left - right;
+			}
+		},
+		SHIFT_LEFT("<<") {
+			@Override
+			long apply(long left, long right) {
+				return left << right;
+			}
+		},
+		SHIFT_RIGHT(">>") {
+			@Override
+			long apply(long left, long right) {
+				return left >> right;
+			}
+		},
+		LESS("<") {
+			@Override
+			long apply(long left, long right) {
+				return left < right ? 1 : 0;
+			}
+		},
+		LESS_EQUAL("<=") {
+			@Override
+			long apply(long left, long right) {
+				return left <= right ? 1 : 0;
+			}
+		},
+		GREATER(">") {
+			@Override
+			long apply(long left, long right) {
+				return left > right ? 1 : 0;
+			}
+		},
+		GREATER_EQUAL(">=") {
+			@Override
+			long apply(long left, long right) {
+				return left >= right ? 1 : 0;
+			}
+		},
+		EQUAL("==") {
+			@Override
+			long apply(long left, long right) {
+				return left == right ? 1 : 0;
+			}
+		},
+		NOT_EQUAL("!=") {
+			@Override
+			long apply(long left, long right) {
+				return left != right ? 1 : 0;
+			}
+		},
+		BIT_AND("&") {
+			@Override
+			long apply(long left, long right) {
+				return left & right;
+			}
+		},
+		BIT_XOR("^") {
+			@Override
+			long apply(long left, long right) {
+				return left ^ right;
+			}
+		},
+		BIT_OR("|") {
+			@Override
+			long apply(long left, long right) {
+				return left | right;
+			}
+		};
+
+		/** The operator as written in an expression. */
+		final String symbol;
+
+		Operator(String symbol) {
+			this.symbol = symbol;
+		}
+
+		/**
+		 * Applies the operator.
+		 *
+		 * @param left the left operand
+		 * @param right the right operand
+		 * @return the result
+		 * @throws ArithmeticException on division by zero or a negative exponent
+		 */
+		abstract long apply(long left, long right);
+
+		private static long checkDivisor(long divisor) {
+			if (divisor == 0) {
+				throw new ArithmeticException("division by 0");
+			}
+			return divisor;
+		}
+	}
+
+	/**
+	 * A numeric literal.
+	 *
+	 * @param value the value
+	 */
+	record Constant(long value) implements ArithmeticExpression { }
+
+	/**
+	 * A variable reference, written {@code x} or {@code $x}.
+	 *
+	 * @param name the variable name
+	 */
+	record Variable(String name) implements ArithmeticExpression { }
+
+	/**
+	 * A unary {@code -}, {@code +}, {@code !} or {@code ~}.
+	 *
+	 * @param operator the operator character
+	 * @param operand the operand
+	 */
+	record Unary(char operator, ArithmeticExpression operand) implements ArithmeticExpression { }
+
+	/**
+	 * A binary operation whose operands are both always evaluated.
+	 *
+	 * @param operator the operator
+	 * @param left the left operand
+	 * @param right the right operand
+	 */
+	record Binary(Operator operator, ArithmeticExpression left, ArithmeticExpression right)
+			implements ArithmeticExpression { }
+
+	/**
+	 * A short-circuit {@code &&} or {@code ||}.
+	 *
+	 * @param and true for {@code &&}, false for {@code ||}
+	 * @param left the left operand
+	 * @param right the right operand, evaluated only when needed
+	 */
+	record Logical(boolean and, ArithmeticExpression left, ArithmeticExpression right)
+			implements ArithmeticExpression { }
+
+	/**
+	 * The {@code condition ? then : otherwise} operator.
+	 *
+	 * @param condition the condition
+	 * @param then the value when the condition is non-zero
+	 * @param otherwise the value when the condition is zero
+	 */
+	record Conditional(ArithmeticExpression condition, ArithmeticExpression then, ArithmeticExpression otherwise)
+			implements ArithmeticExpression { }
+
+	/**
+	 * An assignment: {@code x = v}, or a compound one like {@code x += v}.
+	 *
+	 * @param name the variable assigned
+	 * @param operator the operator combining the old value with {@code value}, or null for {@code =}
+	 * @param value the assigned value
+	 */
+	record Assign(String name, Operator operator, ArithmeticExpression value) implements ArithmeticExpression { }
+
+	/**
+	 * {@code ++x}, {@code --x}, {@code x++} or {@code x--}.
+	 *
+	 * @param name the variable updated
+	 * @param delta +1 or -1
+	 * @param prefix whether the new value (prefix) or the old value (postfix) is the result
+	 */
+	record Increment(String name, long delta, boolean prefix) implements ArithmeticExpression { }
+
+	/**
+	 * The comma operator: evaluates both sides and yields the right one.
+	 *
+	 * @param left the expression evaluated first
+	 * @param right the expression whose value is the result
+	 */
+	record Comma(ArithmeticExpression left, ArithmeticExpression right) implements ArithmeticExpression { }
+
+	/**
+	 * Evaluates this expression.
+	 *
+	 * @param variables the variables read and assigned by the expression
+	 * @return the value
+	 * @throws ArithmeticException on division by zero or a non-numeric variable
+	 */
+	default long evaluate(Variables variables) {
+		return switch (this) {
+			case Constant(long value) -> value;
+			case Variable(String name) -> variables.get(name);
+			case Unary(char operator, ArithmeticExpression operand) -> {
+				long value = operand.evaluate(variables);
+				yield switch (operator) {
+					case '-' -> -value;
+					case '!' -> value == 0 ? 1 : 0;
+					case '~' -> ~value;
+					default -> value;
+				};
+			}
+			case Binary(Operator operator, ArithmeticExpression left, ArithmeticExpression right) ->
+				operator.apply(left.evaluate(variables), right.evaluate(variables));
+			case Logical(boolean and, ArithmeticExpression left, ArithmeticExpression right) -> {
+				boolean leftTrue = left.evaluate(variables) != 0;
+				if (and != leftTrue) {
+					yield leftTrue ? 1 : 0;
+				}
+				yield right.evaluate(variables) != 0 ? 1 : 0;
+			}
+			case Conditional(ArithmeticExpression condition, ArithmeticExpression then, ArithmeticExpression otherwise) ->
+				condition.evaluate(variables) != 0 ? then.evaluate(variables) : otherwise.evaluate(variables);
+			case Assign(String name, Operator operator, ArithmeticExpression value) -> {
+				long result = operator == null
+						? value.evaluate(variables)
+						: operator.apply(variables.get(name), value.evaluate(variables));
+				variables.set(name, result);
+				yield result;
+			}
+			case Increment(String name, long delta, boolean prefix) -> {
+				long old = variables.get(name);
+				variables.set(name, old + delta);
+				yield prefix ? old + delta : old;
+			}
+			case Comma(ArithmeticExpression left, ArithmeticExpression right) -> {
+				left.evaluate(variables);
+				yield right.evaluate(variables);
+			}
+		};
+	}
+}
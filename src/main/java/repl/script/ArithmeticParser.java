@@ -0,0 +1,333 @@
+package repl.script;
+
+import lombok.experimental.UtilityClass;
+import repl.script.ArithmeticExpression.Operator;
+import repl.utils.CommandExtractorUtils;
+
+import java.util.List;
+
+/**
+ * Compiles the text of a {@code $((...))} expansion into an {@link ArithmeticExpression}.
+ *
+ * <p>Supported, from lowest to highest precedence:
+ * <pre>
+ * ,                      comma
+ * = *= /= %= += -= &lt;&lt;= &gt;&gt;= &amp;= ^= |=   assignment (right-associative)
+ * ?:                     conditional
+ * ||  &amp;&amp;                 logical (short-circuit)
+ * |  ^  &amp;                bitwise
+ * ==  !=  &lt;  &lt;=  &gt;  &gt;=    comparison
+ * &lt;&lt;  &gt;&gt;                 shift
+ * +  -  *  /  %          arithmetic
+ * **                     exponentiation (right-associative)
+ * -  +  !  ~  ++  --     unary and increment
+ * </pre>
+ *
+ * <p>Operands are decimal, {@code 0x} hexadecimal or leading-zero octal numbers,
+ * variable names ({@code x}, {@code $x}, {@code ${x}}) and parenthesized expressions.
+ *
+ * <p>Examples:
+ * <pre>{@code
+ * parse("1 + 2 * 3")  → Binary(ADD, 1, Binary(MULTIPLY, 2, 3))
+ * parse("i += 1")     → Assign(i, ADD, 1)
+ * parse("i++")        → Increment(i, 1, postfix)
+ * }</pre>
+ */
+@UtilityClass
+public class ArithmeticParser {
+
+	/** Binary operators by precedence level, lowest first; {@code **} is handled separately. */
+	private static final List<List<Operator>> BINARY_LEVELS = List.of(
+		List.of(Operator.BIT_OR),
+		List.of(Operator.BIT_XOR),
+		List.of(Operator.BIT_AND),
+		List.of(Operator.EQUAL, Operator.NOT_EQUAL),
+		List.of(Operator.LESS_EQUAL, Operator.GREATER_EQUAL, Operator.LESS, Operator.GREATER),
+		List.of(Operator.SHIFT_LEFT, Operator.SHIFT_RIGHT),
+		List.of(Operator.ADD, Operator.SUBTRACT),
+		List.of(Operator.MULTIPLY, Operator.DIVIDE, Operator.REMAINDER)
+	);
+
+	/** Operators usable in compound assignments such as {@code +=}. */
+	private static final List<Operator> ASSIGNMENT_OPERATORS = List.of(
+		Operator.MULTIPLY, Operator.DIVIDE, Operator.REMAINDER, Operator.ADD, Operator.SUBTRACT,
+		Operator.SHIFT_LEFT, Operator.SHIFT_RIGHT, Operator.BIT_AND, Operator.BIT_XOR, Operator.BIT_OR
+	);
+
+	/**
+	 * Compiles an arithmetic expression.
+	 *
+	 * @param text the text between {@code $((} and {@code ))}
+	 * @return the compiled expression
+	 * @throws IllegalArgumentException if the expression is malformed
+	 */
+	public static ArithmeticExpression parse(String text) {
+		Parser parser = new Parser(text);
+		parser.skipSpaces();
+		if (parser.atEnd()) {
+			// $(( )) is 0 in the shell
+			return new ArithmeticExpression.Constant(0);
+		}
+		ArithmeticExpression expression = parser.parseComma();
+		parser.skipSpaces();
+		if (!parser.atEnd()) {
+			throw parser.syntaxError();
+		}
+		return expression;
+	}
+
+	/**
+	 * Parses a variable value or literal as a number.
+	 *
+	 * <p>Accepts the same notations as expression operands, with an optional sign.
+	 *
+	 * @param text the text to parse
+	 * @return the number
+	 * @throws ArithmeticException if the text is not a number
+	 */
+	public static long parseNumber(String text) {
+		String trimmed = text.strip();
+		boolean negative = trimmed.startsWith("-");
+		String digits = negative || trimmed.startsWith("+") ? trimmed.substring(1) : trimmed;
+		try {
+			long value = parseUnsigned(digits);
+			return negative ? -value : value;
+		} catch (NumberFormatException e) {
+			throw new ArithmeticException(text + ": arithmetic syntax error: invalid number");
+		}
+	}
+
+	private static long parseUnsigned(String digits) {
+		if (digits.startsWith("0x") || digits.startsWith("0X")) {
+			return Long.parseUnsignedLong(digits.substring(2), 16);
+		}
+		if (digits.length() > 1 && digits.charAt(0) == '0') {
+			return Long.parseUnsignedLong(digits.substring(1), 8);
+		}
+		return Long.parseUnsignedLong(digits);
+	}
+
+	/**
+	 * Precedence-climbing parser over the expression text.
+	 */
+	private static final class Parser {
+		private final String text;
+		private int position;
+
+		private Parser(String text) {
+			this.text = text;
+		}
+
+		private ArithmeticExpression parseComma() {
+			ArithmeticExpression left = parseAssignment();
+			while (accept(",")) {
+				left = new ArithmeticExpression.Comma(left, parseAssignment());
+			}
+			return left;
+		}
+
+		private ArithmeticExpression parseAssignment() {
+			int start = position;
+			String name = readName();
+			if (name != null) {
+				if (peekIs("=") && !peekIs("==")) {
+					position++;
+					return new ArithmeticExpression.Assign(name, null, parseAssignment());
+				}
+				for (Operator operator : ASSIGNMENT_OPERATORS) {
+					if (accept(operator.symbol + "=")) {
+						return new ArithmeticExpression.Assign(name, operator, parseAssignment());
+					}
+				}
+				position = start;
+			}
+			return parseConditional();
+		}
+
+		private ArithmeticExpression parseConditional() {
+			ArithmeticExpression condition = parseLogical(false);
+			if (!accept("?")) {
+				return condition;
+			}
+			ArithmeticExpression then = parseAssignment();
+			expect(":");
+			return new ArithmeticExpression.Conditional(condition, then, parseAssignment());
+		}
+
+		/**
+		 * Parses {@code ||} (when {@code and} is false) or {@code &&} chains.
+		 */
+		private ArithmeticExpression parseLogical(boolean and) {
+			ArithmeticExpression left = and ? parseBinary(0) : parseLogical(true);
+			while (accept(and ? "&&" : "||")) {
+				left = new ArithmeticExpression.Logical(and, left, and ? parseBinary(0) : parseLogical(true));
+			}
+			return left;
+		}
+
+		private ArithmeticExpression parseBinary(int level) {
+			if (level == BINARY_LEVELS.size()) {
+				return parsePower();
+			}
+			ArithmeticExpression left = parseBinary(level + 1);
+			Operator operator;
+			while ((operator = acceptBinary(BINARY_LEVELS.get(level))) != null) {
+				left = new ArithmeticExpression.Binary(operator, left, parseBinary(level + 1));
+			}
+			return left;
+		}
+
+		private ArithmeticExpression parsePower() {
+			ArithmeticExpression base = parseUnary();
+			if (accept("**")) {
+				return new ArithmeticExpression.Binary(Operator.POWER, base, parsePower());
+			}
+			return base;
+		}
+
+		private ArithmeticExpression parseUnary() {
+			if (accept("++")) {
+				return new ArithmeticExpression.Increment(expectName(), 1, true);
+			}
+			if (accept("--")) {
+				return new ArithmeticExpression.Increment(expectName(), -1, true);
+			}
+			for (char operator : new char[] {'-', '+', '!', '~'}) {
+				if (peekIs(Character.toString(operator)) && !peekIs("!=")) {
+					position++;
+					return new ArithmeticExpression.Unary(operator, parseUnary());
+				}
+			}
+			return parsePostfix();
+		}
+
+		private ArithmeticExpression parsePostfix() {
+			skipSpaces();
+			if (atEnd()) {
+				throw syntaxError();
+			}
+			char c = text.charAt(position);
+			if (c == '(') {
+				position++;
+				ArithmeticExpression inner = parseComma();
+				expect(")");
+				return inner;
+			}
+			if (c >= '0' && c <= '9') {
+				int start = position;
+				while (position < text.length() && Character.isLetterOrDigit(text.charAt(position))) {
+					position++;
+				}
+				return new ArithmeticExpression.Constant(parseNumber(text.substring(start, position)));
+			}
+			String name = readName();
+			if (name == null) {
+				throw syntaxError();
+			}
+			if (accept("++")) {
+				return new ArithmeticExpression.Increment(name, 1, false);
+			}
+			if (accept("--")) {
+				return new ArithmeticExpression.Increment(name, -1, false);
+			}
+			return new ArithmeticExpression.Variable(name);
+		}
+
+		/**
+		 * Reads a variable name written as {@code x}, {@code $x} or {@code ${x}}.
+		 *
+		 * @return the name, or null (position unchanged) if none starts here
+		 */
+		private String readName() {
+			skipSpaces();
+			int start = position;
+			boolean braced = false;
+			if (peekIs("${")) {
+				position += 2;
+				braced = true;
+			} else if (peekIs("$")) {
+				position++;
+			}
+			int length = CommandExtractorUtils.nameLength(text, position);
+			if (length == 0 || (braced && !text.startsWith("}", position + length))) {
+				position = start;
+				return null;
+			}
+			String name = text.substring(position, position + length);
+			position += length + (braced ? 1 : 0);
+			return name;
+		}
+
+		private String expectName() {
+			String name = readName();
+			if (name == null) {
+				throw syntaxError();
+			}
+			return name;
+		}
+
+		/**
+		 * Consumes one operator of the level, not mistaking a prefix of a longer
+		 * operator ({@code <} in {@code <<}, {@code &} in {@code &&}) or a compound
+		 * assignment ({@code +} in {@code +=}) for it.
+		 */
+		private Operator acceptBinary(List<Operator> operators) {
+			skipSpaces();
+			for (Operator operator : operators) {
+				String symbol = operator.symbol;
+				if (!text.startsWith(symbol, position)) {
+					continue;
+				}
+				int end = position + symbol.length();
+				char next = end < text.length() ? text.charAt(end) : 0;
+				boolean longerOperator = switch (symbol) {
+					case "<", ">" -> next == symbol.charAt(0) || next == '=';
+					case "&", "|" -> next == symbol.charAt(0) || next == '=';
+					case "*" -> next == '*' || next == '=';
+					case "==", "!=", "<=", ">=" -> false;
+					default -> next == '=';
+				};
+				if (!longerOperator) {
+					position = end;
+					return operator;
+				}
+			}
+			return null;
+		}
+
+		private boolean accept(String symbol) {
+			if (peekIs(symbol)) {
+				position += symbol.length();
+				return true;
+			}
+			return false;
+		}
+
+		private void expect(String symbol) {
+			if (!accept(symbol)) {
+				throw syntaxError();
+			}
+		}
+
+		private boolean peekIs(String symbol) {
+			skipSpaces();
+			return text.startsWith(symbol, position);
+		}
+
+		private void skipSpaces() {
+			while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+				position++;
+			}
+		}
+
+		private boolean atEnd() {
+			return position >= text.length();
+		}
+
+		private IllegalArgumentException syntaxError() {
+			String rest = atEnd() ? "" : text.substring(position).strip();
+			return new IllegalArgumentException(text.strip() + ": arithmetic syntax error"
+					+ (rest.isEmpty() ? ": operand expected" : " (error token is \"" + rest + "\")"));
+		}
+	}
+}
@@ -0,0 +1,9 @@
+package repl.script;
+
+/**
+ * A {@code NAME=value} variable assignment.
+ *
+ * @param name the variable name
+ * @param value the unexpanded value (expanded without field splitting)
+ */
+public record Assignment(String name, Word value) { }
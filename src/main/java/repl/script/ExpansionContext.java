@@ -0,0 +1,144 @@
+package repl.script;
+
+import java.util.List;
+
+/**
+ * Environment a {@link Word} is expanded in.
+ *
+ * <p>Supplies command substitution results and variable values to
+ * {@link WordExpander}. Failures are reported as unchecked exceptions because
+ * expansion happens while arguments are being built.
+ *
+ * <p>Only {@link #substitute(String)} is abstract, so a lambda can serve as a
+ * context in which every variable is unset.
+ *
+ * @see repl.CommandSubstitution
+ */
+@FunctionalInterface
+public interface ExpansionContext {
+
+	/**
+	 * Context that does not evaluate anything and reproduces the original
+	 * {@code $(...)}, {@code <(...)} and {@code $name} text. Used when input is only being tokenized.
+	 */
+	ExpansionContext LITERAL = new ExpansionContext() {
+		@Override
+		public String substitute(String body) {
+			return "$(" + body + ")";
+		}
+
+		@Override
+		public String getVariable(String name) {
+			return "$" + name;
+		}
+
+		@Override
+		public String evaluate(WordPart.Arithmetic arithmetic) {
+			return "$((" + arithmetic.text() + "))";
+		}
+
+		@Override
+		public String processSubstitution(WordPart.ProcessSubstitution substitution) {
+			return (substitution.output() ? ">(" : "<(") + substitution.body() + ")";
+		}
+	};
+
+	/**
+	 * Evaluates a command substitution body.
+	 *
+	 * @param body the command text between {@code $(} and {@code )}
+	 * @return the captured output, without trailing newlines
+	 */
+	String substitute(String body);
+
+	/**
+	 * Evaluates a command substitution of a parsed word.
+	 *
+	 * <p>Passes the body's text to {@link #substitute(String)} by default; a context
+	 * running commands runs the plan parsed with the word instead.
+	 *
+	 * @param substitution the substitution
+	 * @return the captured output, without trailing newlines
+	 */
+	default String substitute(WordPart.CommandSubstitution substitution) {
+		return substitute(substitution.body());
+	}
+
+	/**
+	 * Starts a process substitution, which runs until the command using it finishes.
+	 *
+	 * <p>Reproduces the original text by default, as nothing is run.
+	 *
+	 * @param substitution the substitution, with its parsed body
+	 * @return the path the command reads from or writes to
+	 */
+	default String processSubstitution(WordPart.ProcessSubstitution substitution) {
+		return (substitution.output() ? ">(" : "<(") + substitution.body() + ")";
+	}
+
+	/**
+	 * Looks up the value of a shell variable.
+	 *
+	 * @param name the variable name
+	 * @return the value, or null if the variable is unset
+	 */
+	default String getVariable(String name) {
+		return null;
+	}
+
+	/**
+	 * Returns the positional parameters, which {@code "$@"} expands to as separate fields.
+	 *
+	 * <p>Empty by default.
+	 *
+	 * @return the arguments of the running function
+	 */
+	default List<String> getPositionalParameters() {
+		return List.of();
+	}
+
+	/**
+	 * Expands a glob pattern into matching path names.
+	 *
+	 * <p>Matches nothing by default, which leaves patterns as written.
+	 *
+	 * @param pattern the pattern, with quoted wildcard characters escaped by {@code \}
+	 * @return the sorted matches, or an empty list if nothing matches
+	 */
+	default List<String> glob(String pattern) {
+		return List.of();
+	}
+
+	/**
+	 * Assigns a shell variable, as done by {@code $((i += 1))}.
+	 *
+	 * <p>Ignored by default.
+	 *
+	 * @param name the variable name
+	 * @param value the new value
+	 */
+	default void setVariable(String name, String value) {
+	}
+
+	/**
+	 * Evaluates an arithmetic expansion against this context's variables.
+	 *
+	 * @param arithmetic the compiled expansion
+	 * @return the result as a decimal string
+	 * @throws ArithmeticException on division by zero or a non-numeric variable
+	 */
+	default String evaluate(WordPart.Arithmetic arithmetic) {
+		return Long.toString(arithmetic.expression().evaluate(new ArithmeticExpression.Variables() {
+			@Override
+			public long get(String name) {
+				String value = getVariable(name);
+				return value == null || value.isBlank() ? 0 : ArithmeticParser.parseNumber(value);
+			}
+
+			@Override
+			public void set(String name, long value) {
+				setVariable(name, Long.toString(value));
+			}
+		}));
+	}
+}
@@ -0,0 +1,130 @@
+package repl.script;
+
+import java.util.List;
+
+/**
+ * A node of a parsed command plan.
+ *
+ * <p>Input is parsed once by {@link ScriptParser} into a tree of nodes; the tree
+ * holds unexpanded {@link Word}s so it can be executed any number of times.
+ *
+ * @see ScriptParser
+ * @see repl.ReplEvaluator
+ */
+public sealed interface Node {
+
+	/**
+	 * A simple command: optional leading assignments followed by words.
+	 *
+	 * <p>With no words, the assignments set shell variables. Otherwise they only
+	 * apply to the environment of this command.
+	 *
+	 * @param assignments leading {@code NAME=value} assignments (may be empty)
+	 * @param words the command name, arguments and redirections (may be empty)
+	 */
+	record SimpleCommand(List<Assignment> assignments, List<Word> words) implements Node { }
+
+	/**
+	 * Commands separated by {@code ;} or newlines, run one after another.
+	 *
+	 * @param nodes the commands in execution order (may be empty)
+	 */
+	record Sequence(List<Node> nodes) implements Node { }
+
+	/**
+	 * {@code left && right} or {@code left || right}: {@code right} only runs if
+	 * {@code left} succeeded (for {@code &&}) or failed (for {@code ||}).
+	 *
+	 * <p>Chains are left-associative, so {@code a && b || c} is
+	 * {@code AndOr(AndOr(a, b, true), c, false)}.
+	 *
+	 * @param left the command run first
+	 * @param right the command run depending on the exit code of {@code left}
+	 * @param and true for {@code &&}, false for {@code ||}
+	 */
+	record AndOr(Node left, Node right, boolean and) implements Node { }
+
+	/**
+	 * A {@code ( ... )} group run in an isolated child environment.
+	 *
+	 * @param body the grouped commands
+	 */
+	record Subshell(Node body) implements Node { }
+
+	/**
+	 * A {@code { ...; }} group run in the current environment.
+	 *
+	 * @param body the grouped commands
+	 */
+	record Group(Node body) implements Node { }
+
+	/**
+	 * {@code name() compound-command}: defines a shell function when executed.
+	 *
+	 * <p>The body is parsed together with the definition and stored as is, so
+	 * calls never parse it again.
+	 *
+	 * @param name the function name
+	 * @param body the function body
+	 */
+	record FunctionDefinition(String name, Node body) implements Node { }
+
+	/**
+	 * A compound command followed by redirections, e.g. {@code ( ... ) > out.txt}
+	 * or {@code for ...; done > out.txt}.
+	 *
+	 * @param command the compound command
+	 * @param redirections output redirections applied to all of its output
+	 */
+	record Redirected(Node command, List<Redirection> redirections) implements Node { }
+
+	/**
+	 * {@code if c1; then b1; elif c2; then b2; else b3; fi}.
+	 *
+	 * @param branches the {@code if} and {@code elif} branches, tried in order
+	 * @param otherwise the {@code else} body, or null if absent
+	 */
+	record If(List<Branch> branches, Node otherwise) implements Node { }
+
+	/**
+	 * A condition and the body run when it succeeds.
+	 *
+	 * @param condition commands whose exit code decides the branch
+	 * @param body commands run when the condition exits with 0
+	 */
+	record Branch(Node condition, Node body) { }
+
+	/**
+	 * {@code while c; do body; done}, or {@code until} when {@code until} is set.
+	 *
+	 * @param condition commands run before each iteration
+	 * @param body commands run while the condition succeeds (or fails, for until)
+	 * @param until whether the loop runs until the condition succeeds
+	 */
+	record Loop(Node condition, Node body, boolean until) implements Node { }
+
+	/**
+	 * {@code for name in words; do body; done}.
+	 *
+	 * @param name the loop variable
+	 * @param items the unexpanded words iterated over (globs are expanded per run)
+	 * @param body commands run once per item
+	 */
+	record For(String name, List<Word> items, Node body) implements Node { }
+
+	/**
+	 * {@code case word in pattern) body;; ... esac}.
+	 *
+	 * @param subject the word matched against the patterns
+	 * @param items the pattern lists and bodies, tried in order
+	 */
+	record Case(Word subject, List<CaseItem> items) implements Node { }
+
+	/**
+	 * One {@code pattern | pattern) body ;;} item of a {@link Case}.
+	 *
+	 * @param patterns the alternative patterns
+	 * @param body commands run when a pattern matches
+	 */
+	record CaseItem(List<Word> patterns, Node body) { }
+}
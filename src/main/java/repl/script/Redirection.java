@@ -0,0 +1,118 @@
+package repl.script;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static repl.Constants.AMPERSAND;
+import static repl.Constants.GREATER_THAN;
+import static repl.Constants.HERE_DOCUMENT;
+import static repl.Constants.HERE_STRING;
+import static repl.Constants.LESS_THAN;
+
+/**
+ * A redirection: an operator and the word naming its target, e.g. {@code 2> err.txt}.
+ *
+ * <p>Output operators are {@code >}, {@code >>} (append) and {@code >&} (duplicate a
+ * descriptor), each optionally preceded by a descriptor digit as in {@code 2>}, and
+ * {@code &>} and {@code &>>}, which redirect stdout and stderr together. Input operators
+ * are {@code <} and {@code 0<}, and the here-document and here-string operators.
+ *
+ * <p>An operator starts an unquoted word. The rest of the word is the target, as in
+ * {@code >out.txt} or {@code 2>&1}; an operator alone takes the next word.
+ *
+ * @param operator the redirect operator
+ * @param target the unexpanded target word
+ */
+public record Redirection(String operator, Word target) {
+
+	/**
+	 * Returns the redirection operator a word starts with.
+	 *
+	 * <p>Only unquoted text counts, so {@code '>'} and {@code \>} are arguments.
+	 *
+	 * @param word the word
+	 * @return the operator, or null if the word is not a redirection
+	 */
+	public static String operator(Word word) {
+		if (!(firstLiteral(word) instanceof WordPart.Literal(String text, boolean quoted)) || quoted) {
+			return null;
+		}
+		int length = operatorLength(text);
+		if (length == 0) {
+			return null;
+		}
+		return length == text.length() ? text : text.substring(0, length);
+	}
+
+	/**
+	 * Returns whether a word starts with a redirection operator, without allocating.
+	 *
+	 * @param word the word
+	 * @return true if {@link #operator(Word)} returns an operator
+	 */
+	public static boolean isRedirection(Word word) {
+		return firstLiteral(word) instanceof WordPart.Literal(String text, boolean quoted)
+				&& !quoted && operatorLength(text) > 0;
+	}
+
+	/**
+	 * Returns the target written in the same word as the operator.
+	 *
+	 * @param word a word starting with {@code operator}
+	 * @param operator the operator, from {@link #operator(Word)}
+	 * @return the rest of the word, or null if the word is only the operator
+	 */
+	public static Word attachedTarget(Word word, String operator) {
+		List<WordPart> parts = word.parts();
+		String rest = ((WordPart.Literal) parts.getFirst()).text().substring(operator.length());
+		if (rest.isEmpty() && parts.size() == 1) {
+			return null;
+		}
+		List<WordPart> target = new ArrayList<>(parts.size());
+		if (!rest.isEmpty()) {
+			target.add(new WordPart.Literal(rest));
+		}
+		target.addAll(parts.subList(1, parts.size()));
+		return new Word(List.copyOf(target));
+	}
+
+	private static WordPart firstLiteral(Word word) {
+		return word.parts().isEmpty() ? null : word.parts().getFirst();
+	}
+
+	/**
+	 * Returns the length of the operator at the start of unquoted text, or 0.
+	 */
+	private static int operatorLength(String text) {
+		if (text.isEmpty()) {
+			return 0;
+		}
+		if (HERE_DOCUMENT.contains(text) || text.equals(HERE_STRING)) {
+			// Whole words: the tokenizer separates them from their delimiter
+			return text.length();
+		}
+		if (text.charAt(0) == AMPERSAND) {
+			if (text.length() < 2 || text.charAt(1) != GREATER_THAN) {
+				return 0;
+			}
+			return text.length() > 2 && text.charAt(2) == GREATER_THAN ? 3 : 2;
+		}
+		int i = Character.isDigit(text.charAt(0)) ? 1 : 0;
+		if (i >= text.length()) {
+			return 0;
+		}
+		char c = text.charAt(i);
+		if (c == LESS_THAN) {
+			// "<<" belongs to a here-document, recognized only at the start of a word
+			return i + 1 < text.length() && text.charAt(i + 1) == LESS_THAN ? 0 : i + 1;
+		}
+		if (c != GREATER_THAN) {
+			return 0;
+		}
+		i++;
+		if (i < text.length() && (text.charAt(i) == GREATER_THAN || text.charAt(i) == AMPERSAND)) {
+			i++;
+		}
+		return i;
+	}
+}
@@ -0,0 +1,120 @@
+package repl.script;
+
+import lombok.AccessLevel;
+import lombok.ToString;
+import lombok.experimental.FieldDefaults;
+
+import java.io.IOException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of parsed script files, used by the {@code source} builtin.
+ *
+ * <p>Entries are keyed by the file's canonical path, so a library reached through
+ * different relative paths or symbolic links is parsed once. Each lookup reads the
+ * modification time and size in one attribute call; the file is only read and
+ * parsed again when either has changed. A pipe, such as the path of a {@code <(...)}
+ * process substitution, is parsed as it is read and never cached.
+ *
+ * <p>{@link #SHARED} is used by every session in the JVM: a library sourced by many
+ * sessions is parsed once. Plans are immutable, so sessions can run the same plan
+ * concurrently. The least recently used entries are dropped beyond a fixed number
+ * of files.
+ *
+ * <p>Instance-based design allows for proper test isolation.
+ */
+@ToString
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class ScriptCache {
+	/** Number of files kept by {@link #SHARED}. */
+	static final int DEFAULT_CAPACITY = 256;
+
+	/** The cache shared by all sessions. */
+	public static final ScriptCache SHARED = new ScriptCache(DEFAULT_CAPACITY);
+
+	/** Parsed files by canonical path, in least recently used order. */
+	@ToString.Exclude
+	Map<Path, Entry> entries;
+
+	/**
+	 * A parsed file and the attributes it was read with.
+	 *
+	 * @param lastModifiedTime the modification time when the file was read
+	 * @param size the size in bytes when the file was read
+	 * @param plan the parsed contents
+	 */
+	private record Entry(FileTime lastModifiedTime, long size, Node plan) {
+
+		private boolean matches(BasicFileAttributes attributes) {
+			return size == attributes.size() && lastModifiedTime.equals(attributes.lastModifiedTime());
+		}
+	}
+
+	/**
+	 * Creates an empty cache.
+	 *
+	 * @param capacity the maximum number of files kept
+	 */
+	public ScriptCache(int capacity) {
+		this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Path, Entry> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * Returns the parsed contents of a script file, parsing it only if it is
+	 * not cached or has changed since it was cached.
+	 *
+	 * @param file the path of the file
+	 * @return the parsed plan
+	 * @throws java.nio.file.NoSuchFileException if the file does not exist
+	 * @throws IOException if the file is a directory or cannot be read
+	 * @throws IllegalArgumentException if the file has a syntax error
+	 */
+	public Node load(Path file) throws IOException {
+		BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+		if (attributes.isDirectory()) {
+			throw new FileSystemException(file.toString(), null, "is a directory");
+		}
+		if (attributes.isOther()) {
+			// A pipe, as in "source <(...)", is read once and has no path to cache it by
+			return ScriptParser.parse(Files.readString(file));
+		}
+		Path canonical = file.toRealPath();
+
+		Entry cached;
+		synchronized (entries) {
+			cached = entries.get(canonical);
+		}
+		if (cached != null && cached.matches(attributes)) {
+			return cached.plan();
+		}
+
+		// Parsed outside the lock, so a large file does not block other sessions
+		Node plan = ScriptParser.parse(Files.readString(canonical));
+		synchronized (entries) {
+			entries.put(canonical, new Entry(attributes.lastModifiedTime(), attributes.size(), plan));
+		}
+		return plan;
+	}
+
+	/**
+	 * Returns the number of cached files.
+	 *
+	 * @return the number of entries
+	 */
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+}
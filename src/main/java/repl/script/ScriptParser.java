@@ -0,0 +1,505 @@
+package repl.script;
+
+import lombok.experimental.UtilityClass;
+import repl.utils.CommandExtractorUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static repl.Constants.*;
+
+/**
+ * Parses shell input into an executable plan of {@link Node}s.
+ *
+ * <p>Supported grammar:
+ * <pre>
+ * list     := and_or ( (';' | newline) and_or )* [';' | newline]
+ * and_or   := command ( ('&amp;&amp;' | '||') newline* command )*
+ * command  := compound redirection*
+ *           | name '(' ')' newline* compound redirection*
+ *           | 'function' name ['(' ')'] newline* compound redirection*
+ *           | assignment* word*
+ *           | '[[' word* ']]'        ('&amp;&amp;', '||', '(' and ')' are words here)
+ * compound := '(' list ')'
+ *           | '{' list '}'
+ *           | 'if' list 'then' list ('elif' list 'then' list)* ['else' list] 'fi'
+ *           | ('while' | 'until') list 'do' list 'done'
+ *           | 'for' name ['in' word*] (';' | newline) 'do' list 'done'
+ *           | 'case' word 'in' ( ['('] pattern ('|' pattern)* ')' list [';;'] )* 'esac'
+ * </pre>
+ *
+ * <p>Comments, from a {@code #} starting a word to the end of the line, are dropped
+ * by the tokenizer; the newline ending one still separates commands.
+ *
+ * <p>Reserved words ({@code if}, {@code do}, {@code done}, ...) are only recognized
+ * when unquoted and in command position, so {@code echo done} prints "done".
+ *
+ * <p>Words are kept unexpanded, so a plan can be parsed once and run many times;
+ * a loop body is tokenized once no matter how often it runs.
+ * A plan containing a single simple command is returned as that
+ * {@link Node.SimpleCommand} rather than wrapped in a sequence.
+ *
+ * <p>Examples:
+ * <pre>{@code
+ * parse("pwd")               → SimpleCommand([], [pwd])
+ * parse("cd /tmp; pwd")      → Sequence([SimpleCommand(cd /tmp), SimpleCommand(pwd)])
+ * parse("(cd /tmp; ls) > f") → Redirected(Subshell(Sequence(...)), [> f])
+ * parse("x=1")               → SimpleCommand([x=1], [])
+ * parse("f() { echo $1; }")  → FunctionDefinition(f, Group(SimpleCommand(echo $1)))
+ * parse("[ -f x ] && cat x") → AndOr(SimpleCommand([ -f x ]), SimpleCommand(cat x), and)
+ * parse("for f in *.csv; do echo $f; done") → For(f, [*.csv], SimpleCommand(echo $f))
+ * }</pre>
+ */
+@UtilityClass
+public class ScriptParser {
+
+	/** Reserved words that can only end a list, never start a command. */
+	private static final Set<String> CLOSING_WORDS = Set.of("then", "elif", "else", "fi", "do", "done", "esac", "}");
+
+	/** Reserved words that start a compound command. */
+	private static final Set<String> COMPOUND_WORDS = Set.of("{", "if", "while", "until", "for", "case");
+
+	/** Word opening a conditional expression, inside which operators are plain words. */
+	private static final String CONDITIONAL_START = "[[";
+
+	/** Word closing a conditional expression. */
+	private static final String CONDITIONAL_END = "]]";
+
+	/**
+	 * Parses a command line or script into a plan.
+	 *
+	 * @param input the text to parse
+	 * @return the root node of the plan
+	 * @throws IllegalArgumentException on unclosed quotes or a syntax error
+	 */
+	public static Node parse(String input) {
+		Parser parser = new Parser(CommandExtractorUtils.tokenize(input));
+		Node plan = parser.parseList(Set.of());
+		if (!parser.atEnd()) {
+			throw parser.unexpected();
+		}
+		return plan;
+	}
+
+	/**
+	 * Recursive-descent parser over a token list.
+	 */
+	private static final class Parser {
+		private static final String SEMICOLON_OP = Character.toString(SEMICOLON);
+		private static final String NEWLINE_OP = Character.toString(NEWLINE);
+		private static final String OPEN_PAREN_OP = Character.toString(OPEN_PAREN);
+		private static final String CLOSE_PAREN_OP = Character.toString(CLOSE_PAREN);
+		private static final String CASE_END_OP = SEMICOLON_OP + SEMICOLON_OP;
+		private static final String AND_OP = "&&";
+		private static final String OR_OP = "||";
+
+		/** Operators that are expression words between {@code [[} and {@code ]]}. */
+		private static final Set<String> CONDITIONAL_OPERATORS = Set.of(AND_OP, OR_OP, OPEN_PAREN_OP, CLOSE_PAREN_OP);
+
+		private final List<Token> tokens;
+		private int position;
+
+		private Parser(List<Token> tokens) {
+			this.tokens = tokens;
+		}
+
+		/**
+		 * Parses commands until the end of input, a closing parenthesis, {@code ;;}
+		 * or one of the given reserved words.
+		 */
+		private Node parseList(Set<String> terminators) {
+			List<Node> nodes = new ArrayList<>();
+			skipNewlines();
+			while (!atEnd() && !isOperator(CLOSE_PAREN_OP) && !isOperator(CASE_END_OP)
+					&& !isKeywordIn(terminators)) {
+				nodes.add(parseAndOr());
+				if (isOperator(SEMICOLON_OP) || isOperator(NEWLINE_OP)) {
+					position++;
+					skipNewlines();
+				} else {
+					break;
+				}
+			}
+			return nodes.size() == 1 ? nodes.getFirst() : new Node.Sequence(List.copyOf(nodes));
+		}
+
+		/**
+		 * Parses a list that must contain at least one command.
+		 */
+		private Node parseBody(Set<String> terminators) {
+			Node body = parseList(terminators);
+			if (body instanceof Node.Sequence sequence && sequence.nodes().isEmpty()) {
+				throw unexpected();
+			}
+			return body;
+		}
+
+		private Node parseAndOr() {
+			Node node = parseCommand();
+			while (isOperator(AND_OP) || isOperator(OR_OP)) {
+				boolean and = isOperator(AND_OP);
+				position++;
+				skipNewlines();
+				node = new Node.AndOr(node, parseCommand(), and);
+			}
+			return node;
+		}
+
+		private Node parseCommand() {
+			String keyword = keyword();
+			Node compound;
+			if (isOperator(OPEN_PAREN_OP)) {
+				compound = parseSubshell();
+			} else if ("if".equals(keyword)) {
+				compound = parseIf();
+			} else if ("while".equals(keyword) || "until".equals(keyword)) {
+				compound = parseLoop(keyword.equals("until"));
+			} else if ("for".equals(keyword)) {
+				compound = parseFor();
+			} else if ("case".equals(keyword)) {
+				compound = parseCase();
+			} else if ("{".equals(keyword)) {
+				compound = parseGroup();
+			} else if ("function".equals(keyword)) {
+				position++;
+				return parseFunction();
+			} else if (keyword != null && isFunctionDefinition(position)) {
+				return parseFunction();
+			} else if (peek() instanceof Token.WordToken && !isKeywordIn(CLOSING_WORDS)) {
+				return parseSimpleCommand();
+			} else {
+				throw unexpected();
+			}
+			List<Redirection> redirections = parseRedirections();
+			return redirections.isEmpty() ? compound : new Node.Redirected(compound, redirections);
+		}
+
+		private Node parseSubshell() {
+			position++;
+			Node body = parseList(Set.of());
+			if (!isOperator(CLOSE_PAREN_OP)) {
+				throw atEnd() ? new IllegalArgumentException("syntax error: unclosed subshell") : unexpected();
+			}
+			if (body instanceof Node.Sequence sequence && sequence.nodes().isEmpty()) {
+				throw unexpected();
+			}
+			position++;
+			return new Node.Subshell(body);
+		}
+
+		private Node parseGroup() {
+			position++;
+			Node body = parseBody(Set.of("}"));
+			expectKeyword("}");
+			return new Node.Group(body);
+		}
+
+		/**
+		 * Returns whether the word at {@code index} is followed by {@code ()}.
+		 */
+		private boolean isFunctionDefinition(int index) {
+			return index + 2 < tokens.size()
+					&& tokens.get(index + 1) instanceof Token.Operator(String open) && open.equals(OPEN_PAREN_OP)
+					&& tokens.get(index + 2) instanceof Token.Operator(String close) && close.equals(CLOSE_PAREN_OP);
+		}
+
+		/**
+		 * Parses {@code name [()] compound}, with the current token at the name.
+		 */
+		private Node parseFunction() {
+			String name = keyword();
+			if (name == null || name.isEmpty() || CLOSING_WORDS.contains(name)) {
+				throw unexpected();
+			}
+			position++;
+			if (isFunctionDefinition(position - 1)) {
+				position += 2;
+			}
+			skipNewlines();
+			if (!isOperator(OPEN_PAREN_OP) && !isKeywordIn(COMPOUND_WORDS)) {
+				// Only compound commands can be function bodies
+				throw unexpected();
+			}
+			return new Node.FunctionDefinition(name, parseCommand());
+		}
+
+		private Node parseIf() {
+			List<Node.Branch> branches = new ArrayList<>();
+			Node otherwise = null;
+			position++;
+			while (true) {
+				Node condition = parseBody(Set.of("then"));
+				expectKeyword("then");
+				branches.add(new Node.Branch(condition, parseBody(Set.of("elif", "else", "fi"))));
+				if (acceptKeyword("elif")) {
+					continue;
+				}
+				if (acceptKeyword("else")) {
+					otherwise = parseBody(Set.of("fi"));
+				}
+				expectKeyword("fi");
+				return new Node.If(List.copyOf(branches), otherwise);
+			}
+		}
+
+		private Node parseLoop(boolean until) {
+			position++;
+			Node condition = parseBody(Set.of("do"));
+			expectKeyword("do");
+			Node body = parseBody(Set.of("done"));
+			expectKeyword("done");
+			return new Node.Loop(condition, body, until);
+		}
+
+		private Node parseFor() {
+			position++;
+			String name = peek() instanceof Token.WordToken(Word word) ? literalText(word) : "";
+			if (CommandExtractorUtils.nameLength(name, 0) != name.length() || name.isEmpty()) {
+				throw unexpected();
+			}
+			position++;
+
+			List<Word> items = List.of();
+			skipNewlines();
+			if (acceptKeyword("in")) {
+				List<Word> words = new ArrayList<>();
+				while (peek() instanceof Token.WordToken(Word word)) {
+					position++;
+					words.add(word);
+				}
+				items = List.copyOf(words);
+			}
+			if (isOperator(SEMICOLON_OP) || isOperator(NEWLINE_OP)) {
+				position++;
+			}
+			skipNewlines();
+			expectKeyword("do");
+			Node body = parseBody(Set.of("done"));
+			expectKeyword("done");
+			return new Node.For(name, items, body);
+		}
+
+		private Node parseCase() {
+			position++;
+			if (!(peek() instanceof Token.WordToken(Word subject))) {
+				throw unexpected();
+			}
+			position++;
+			skipNewlines();
+			expectKeyword("in");
+			skipNewlines();
+
+			List<Node.CaseItem> items = new ArrayList<>();
+			while (!acceptKeyword("esac")) {
+				if (isOperator(OPEN_PAREN_OP)) {
+					position++;
+				}
+				List<Word> patterns = new ArrayList<>();
+				while (peek() instanceof Token.WordToken(Word word)) {
+					position++;
+					splitPatterns(word, patterns);
+				}
+				if (patterns.isEmpty() || !isOperator(CLOSE_PAREN_OP)) {
+					throw unexpected();
+				}
+				position++;
+				items.add(new Node.CaseItem(List.copyOf(patterns), parseList(Set.of("esac"))));
+				if (isOperator(CASE_END_OP)) {
+					position++;
+					skipNewlines();
+				} else if (!"esac".equals(keyword())) {
+					throw unexpected();
+				}
+			}
+			return new Node.Case(subject, List.copyOf(items));
+		}
+
+		/**
+		 * Parses {@code > file} style output redirections following a compound command.
+		 */
+		private List<Redirection> parseRedirections() {
+			List<Redirection> redirections = new ArrayList<>();
+			while (peek() instanceof Token.WordToken(Word word) && isOutputRedirection(word)) {
+				position++;
+				String operator = Redirection.operator(word);
+				Word target = Redirection.attachedTarget(word, operator);
+				if (target == null) {
+					if (!(peek() instanceof Token.WordToken(Word next)) || Redirection.isRedirection(next)) {
+						throw unexpected();
+					}
+					position++;
+					target = next;
+				}
+				redirections.add(new Redirection(operator, target));
+			}
+			if (peek() instanceof Token.WordToken) {
+				throw unexpected();
+			}
+			return List.copyOf(redirections);
+		}
+
+		private Node parseSimpleCommand() {
+			List<Assignment> assignments = new ArrayList<>();
+			List<Word> words = new ArrayList<>();
+			boolean conditional = false;
+			while (true) {
+				if (peek() instanceof Token.WordToken(Word word)) {
+					position++;
+					Assignment assignment = words.isEmpty() ? toAssignment(word) : null;
+					if (assignment != null) {
+						assignments.add(assignment);
+						continue;
+					}
+					String text = word.unquotedText();
+					if (words.isEmpty() && CONDITIONAL_START.equals(text)) {
+						conditional = true;
+					} else if (conditional && CONDITIONAL_END.equals(text)) {
+						conditional = false;
+					}
+					words.add(word);
+				} else if (conditional && peek() instanceof Token.Operator(String symbol)
+						&& CONDITIONAL_OPERATORS.contains(symbol)) {
+					// [[ a && b ]]: the operator is evaluated by the [[ builtin
+					position++;
+					words.add(new Word(List.of(new WordPart.Literal(symbol, true))));
+				} else {
+					return new Node.SimpleCommand(List.copyOf(assignments), List.copyOf(words));
+				}
+			}
+		}
+
+		/**
+		 * Returns the reserved word at the current position, or null if the
+		 * current token is not an unquoted literal word.
+		 */
+		private String keyword() {
+			return peek() instanceof Token.WordToken(Word word) ? word.unquotedText() : null;
+		}
+
+		private boolean isKeywordIn(Set<String> keywords) {
+			String keyword = keyword();
+			return keyword != null && keywords.contains(keyword);
+		}
+
+		private boolean acceptKeyword(String keyword) {
+			if (keyword.equals(keyword())) {
+				position++;
+				return true;
+			}
+			return false;
+		}
+
+		private void expectKeyword(String keyword) {
+			if (!acceptKeyword(keyword)) {
+				throw unexpected();
+			}
+		}
+
+		private void skipNewlines() {
+			while (isOperator(NEWLINE_OP)) {
+				position++;
+			}
+		}
+
+		private Token peek() {
+			return atEnd() ? null : tokens.get(position);
+		}
+
+		private boolean atEnd() {
+			return position >= tokens.size();
+		}
+
+		private boolean isOperator(String symbol) {
+			return peek() instanceof Token.Operator(String s) && s.equals(symbol);
+		}
+
+		private IllegalArgumentException unexpected() {
+			if (atEnd()) {
+				return new IllegalArgumentException("syntax error: unexpected end of input");
+			}
+			String text = switch (peek()) {
+				case Token.Operator(String symbol) -> symbol.equals(NEWLINE_OP) ? "newline" : symbol;
+				case Token.WordToken(Word word) -> literalText(word);
+			};
+			return new IllegalArgumentException("syntax error near unexpected token `" + text + "'");
+		}
+	}
+
+	/**
+	 * Converts a word of the form {@code NAME=value} into an assignment.
+	 *
+	 * @return the assignment, or null if the word is not an assignment
+	 */
+	private static Assignment toAssignment(Word word) {
+		if (!(word.parts().getFirst() instanceof WordPart.Literal(String text, boolean quoted)) || quoted) {
+			return null;
+		}
+		int nameLength = CommandExtractorUtils.nameLength(text, 0);
+		if (nameLength == 0 || nameLength >= text.length() || text.charAt(nameLength) != '=') {
+			return null;
+		}
+
+		List<WordPart> valueParts = new ArrayList<>(word.parts().size());
+		String rest = text.substring(nameLength + 1);
+		if (!rest.isEmpty()) {
+			valueParts.add(new WordPart.Literal(rest, false));
+		}
+		valueParts.addAll(word.parts().subList(1, word.parts().size()));
+		return new Assignment(text.substring(0, nameLength), new Word(List.copyOf(valueParts)));
+	}
+
+	/**
+	 * Splits a case pattern word at unquoted {@code |} characters.
+	 *
+	 * <p>{@code |} is not an operator for the tokenizer, so {@code a|b)} arrives
+	 * as the single word {@code a|b}.
+	 */
+	private static void splitPatterns(Word word, List<Word> patterns) {
+		List<WordPart> current = new ArrayList<>();
+		for (WordPart part : word.parts()) {
+			if (!(part instanceof WordPart.Literal(String text, boolean quoted)) || quoted) {
+				current.add(part);
+				continue;
+			}
+			int start = 0;
+			for (int bar = text.indexOf('|'); bar >= 0; bar = text.indexOf('|', start)) {
+				if (bar > start) {
+					current.add(new WordPart.Literal(text.substring(start, bar), false));
+				}
+				addPattern(current, patterns);
+				start = bar + 1;
+			}
+			if (start < text.length()) {
+				current.add(new WordPart.Literal(text.substring(start), false));
+			}
+		}
+		addPattern(current, patterns);
+	}
+
+	private static void addPattern(List<WordPart> parts, List<Word> patterns) {
+		if (!parts.isEmpty()) {
+			patterns.add(new Word(List.copyOf(parts)));
+			parts.clear();
+		}
+	}
+
+	private static boolean isOutputRedirection(Word word) {
+		String operator = Redirection.operator(word);
+		return operator != null && operator.indexOf(LESS_THAN) < 0;
+	}
+
+	/**
+	 * Returns the text of a purely literal word, or an empty string otherwise.
+	 */
+	private static String literalText(Word word) {
+		if (!word.isLiteral()) {
+			return "";
+		}
+		StringBuilder text = new StringBuilder();
+		for (WordPart part : word.parts()) {
+			text.append(((WordPart.Literal) part).text());
+		}
+		return text.toString();
+	}
+}
@@ -0,0 +1,24 @@
+package repl.script;
+
+/**
+ * A lexical token of shell input: either a {@link Word} or a control operator.
+ *
+ * @see repl.utils.CommandExtractorUtils#tokenize(String)
+ * @see ScriptParser
+ */
+public sealed interface Token {
+
+	/**
+	 * A word token (command name, argument, or redirect operator/target).
+	 *
+	 * @param word the unexpanded word
+	 */
+	record WordToken(Word word) implements Token { }
+
+	/**
+	 * A control operator such as {@code ;}, {@code (}, {@code )} or a newline.
+	 *
+	 * @param symbol the operator text
+	 */
+	record Operator(String symbol) implements Token { }
+}
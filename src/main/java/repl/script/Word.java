@@ -0,0 +1,90 @@
+package repl.script;
+
+import java.util.List;
+
+import static repl.Constants.ASTERISK;
+import static repl.Constants.CLOSE_BRACKET;
+import static repl.Constants.OPEN_BRACKET;
+import static repl.Constants.QUESTION_MARK;
+
+/**
+ * A shell word as produced by the tokenizer, before expansion.
+ *
+ * <p>A word is a sequence of {@link WordPart}s. For example {@code pre"$(pwd)"post}
+ * is one word with three parts: the literal {@code pre}, a quoted command
+ * substitution, and the literal {@code post}.
+ *
+ * @param parts the parts making up the word (never null)
+ * @see WordExpander
+ */
+public record Word(List<WordPart> parts) {
+
+	/**
+	 * Returns whether the word consists only of literal text.
+	 *
+	 * @return true if no part of this word needs evaluation
+	 */
+	public boolean isLiteral() {
+		for (WordPart part : parts) {
+			if (!(part instanceof WordPart.Literal)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns whether the word always expands to exactly its literal text, as one field.
+	 *
+	 * <p>True for literal words without unquoted wildcards; an unquoted {@code [} only
+	 * counts if a {@code ]} follows, so {@code [} and {@code [[} are static. Such words
+	 * need no expansion, so a command made of them can be prepared once and reused.
+	 *
+	 * @return true if expanding this word never depends on the environment
+	 */
+	public boolean isStatic() {
+		if (parts.isEmpty()) {
+			return false;
+		}
+		boolean openBracket = false;
+		// Indexed loops: this runs on every command and must not allocate iterators
+		for (int p = 0; p < parts.size(); p++) {
+			if (!(parts.get(p) instanceof WordPart.Literal(String text, boolean quoted))) {
+				return false;
+			}
+			for (int i = 0; i < text.length(); i++) {
+				char c = text.charAt(i);
+				if (c == CLOSE_BRACKET && openBracket) {
+					return false;
+				}
+				if (!quoted) {
+					if (c == ASTERISK || c == QUESTION_MARK) {
+						return false;
+					}
+					openBracket |= c == OPEN_BRACKET;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the text of a word made only of unquoted literal text, as needed
+	 * for reserved words and alias names.
+	 *
+	 * @return the text, or null if any part is quoted or needs evaluation
+	 */
+	public String unquotedText() {
+		if (parts.size() == 1 && parts.getFirst() instanceof WordPart.Literal(String text, boolean quoted)) {
+			return quoted ? null : text;
+		}
+		StringBuilder text = new StringBuilder();
+		for (WordPart part : parts) {
+			if (!(part instanceof WordPart.Literal literal) || literal.quoted()) {
+				return null;
+			}
+			text.append(literal.text());
+		}
+		return text.toString();
+	}
+}
@@ -0,0 +1,275 @@
+package repl.script;
+
+import lombok.experimental.UtilityClass;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static repl.Constants.*;
+
+/**
+ * Expands parsed {@link Word}s into the final argument strings.
+ *
+ * <p>Literal parts are copied verbatim. Command substitutions, variables and arithmetic are
+ * resolved through an {@link ExpansionContext}; unquoted results are split into
+ * separate fields on spaces, tabs and newlines, while quoted results stay inside
+ * the current field. A process substitution's path is never split.
+ *
+ * <p>A field containing an unquoted {@code *}, {@code ?} or {@code [} is then
+ * expanded into the matching path names via {@link ExpansionContext#glob(String)};
+ * when nothing matches the field is kept as written.
+ *
+ * <p>Examples (assuming {@code $(cmd)} outputs {@code "a b"}):
+ * <pre>{@code
+ * x$(cmd)y   → ["xa", "by"]
+ * "x$(cmd)y" → ["xa by"]
+ * *.csv      → ["a.csv", "b.csv"]
+ * "*.csv"    → ["*.csv"]
+ * "$@"       → one field per positional parameter
+ * }</pre>
+ */
+@UtilityClass
+public class WordExpander {
+
+	/** Special parameter that expands to one field per positional parameter when quoted. */
+	private static final String ALL_PARAMETERS = "@";
+
+	/**
+	 * Expands every word in order and collects the resulting fields.
+	 *
+	 * @param words the words to expand
+	 * @param context supplier of substitution results and variable values
+	 * @return the expanded fields (may be empty, never null)
+	 */
+	public static List<String> expand(List<Word> words, ExpansionContext context) {
+		List<String> fields = new ArrayList<>(words.size());
+		for (Word word : words) {
+			expand(word, context, fields);
+		}
+		return fields;
+	}
+
+	/**
+	 * Expands a single word, appending its fields to {@code fields}.
+	 *
+	 * <p>A word whose unquoted substitutions expand to nothing contributes no field.
+	 *
+	 * @param word the word to expand
+	 * @param context supplier of substitution results and variable values
+	 * @param fields the list receiving the expanded fields
+	 */
+	public static void expand(Word word, ExpansionContext context, List<String> fields) {
+		FieldBuilder field = new FieldBuilder(context, fields);
+		for (WordPart part : word.parts()) {
+			switch (part) {
+				case WordPart.Literal literal -> field.append(literal.text(), !literal.quoted());
+				case WordPart.CommandSubstitution substitution ->
+					field.appendValue(context.substitute(substitution), substitution.quoted());
+				case WordPart.Parameter parameter when parameter.quoted() && parameter.name().equals(ALL_PARAMETERS) ->
+					field.appendFields(context.getPositionalParameters());
+				case WordPart.Parameter parameter ->
+					field.appendValue(variableValue(parameter.name(), context), parameter.quoted());
+				case WordPart.Arithmetic arithmetic ->
+					field.appendValue(context.evaluate(arithmetic), arithmetic.quoted());
+				case WordPart.ProcessSubstitution substitution ->
+					field.append(context.processSubstitution(substitution), false);
+			}
+		}
+		field.finish();
+	}
+
+	/**
+	 * Expands a word into a single string without field splitting.
+	 *
+	 * <p>Used where the shell never splits, such as the value of {@code NAME=value}.
+	 *
+	 * @param word the word to expand
+	 * @param context supplier of substitution results and variable values
+	 * @return the expanded text
+	 */
+	public static String expandToString(Word word, ExpansionContext context) {
+		StringBuilder value = new StringBuilder();
+		for (WordPart part : word.parts()) {
+			value.append(partValue(part, context));
+		}
+		return value.toString();
+	}
+
+	/**
+	 * Expands a word into the values of its parts, in order, without field splitting.
+	 *
+	 * <p>Used for here-document bodies, which are streamed rather than joined: literal
+	 * parts are returned as the same strings, so a large body is never copied.
+	 *
+	 * @param word the word to expand
+	 * @param context supplier of substitution results and variable values
+	 * @return the value of each part
+	 */
+	public static List<String> expandToChunks(Word word, ExpansionContext context) {
+		List<String> chunks = new ArrayList<>(word.parts().size());
+		for (WordPart part : word.parts()) {
+			chunks.add(partValue(part, context));
+		}
+		return chunks;
+	}
+
+	/**
+	 * Expands a word into a shell pattern, as used by {@code case}.
+	 *
+	 * <p>Quoted text is escaped so that it only matches itself; unquoted text
+	 * keeps its wildcard meaning.
+	 *
+	 * @param word the pattern word
+	 * @param context supplier of substitution results and variable values
+	 * @return the pattern, for {@link repl.utils.GlobUtils#matches(String, String)}
+	 */
+	public static String expandToPattern(Word word, ExpansionContext context) {
+		StringBuilder pattern = new StringBuilder();
+		for (WordPart part : word.parts()) {
+			String value = partValue(part, context);
+			boolean quoted = switch (part) {
+				case WordPart.Literal literal -> literal.quoted();
+				case WordPart.CommandSubstitution substitution -> substitution.quoted();
+				case WordPart.Parameter parameter -> parameter.quoted();
+				case WordPart.Arithmetic arithmetic -> arithmetic.quoted();
+				case WordPart.ProcessSubstitution _ -> true;
+			};
+			if (quoted) {
+				appendEscaped(pattern, value);
+			} else {
+				pattern.append(value);
+			}
+		}
+		return pattern.toString();
+	}
+
+	private static String partValue(WordPart part, ExpansionContext context) {
+		return switch (part) {
+			case WordPart.Literal literal -> literal.text();
+			case WordPart.CommandSubstitution substitution -> context.substitute(substitution);
+			case WordPart.Parameter parameter -> variableValue(parameter.name(), context);
+			case WordPart.Arithmetic arithmetic -> context.evaluate(arithmetic);
+			case WordPart.ProcessSubstitution substitution -> context.processSubstitution(substitution);
+		};
+	}
+
+	private static String variableValue(String name, ExpansionContext context) {
+		String value = context.getVariable(name);
+		return value != null ? value : "";
+	}
+
+	private static void appendEscaped(StringBuilder pattern, String text) {
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (isPatternChar(c)) {
+				pattern.append(BACKSLASH);
+			}
+			pattern.append(c);
+		}
+	}
+
+	private static boolean isPatternChar(char c) {
+		return c == ASTERISK || c == QUESTION_MARK || c == OPEN_BRACKET || c == BACKSLASH;
+	}
+
+	private static boolean isFieldSeparator(char c) {
+		return c == ' ' || c == '\t' || c == '\n';
+	}
+
+	/**
+	 * Accumulates the field being built and emits finished fields.
+	 *
+	 * <p>Alongside the field text, a glob pattern is kept in which quoted
+	 * wildcard characters are escaped, so {@code "*".txt} only matches a file
+	 * literally named {@code *.txt}.
+	 */
+	private static final class FieldBuilder {
+		private final ExpansionContext context;
+		private final List<String> fields;
+		private final StringBuilder text = new StringBuilder();
+		private final StringBuilder pattern = new StringBuilder();
+
+		/** Whether the current field holds content that has not been emitted yet. */
+		private boolean pending;
+
+		/** Whether the current field contains an unquoted wildcard. */
+		private boolean wildcard;
+
+		private FieldBuilder(ExpansionContext context, List<String> fields) {
+			this.context = context;
+			this.fields = fields;
+		}
+
+		/**
+		 * Appends text to the current field without splitting it.
+		 */
+		private void append(String value, boolean unquoted) {
+			for (int i = 0; i < value.length(); i++) {
+				appendChar(value.charAt(i), unquoted);
+			}
+			pending = true;
+		}
+
+		/**
+		 * Appends an expansion result, splitting it into fields unless quoted.
+		 */
+		private void appendValue(String value, boolean quoted) {
+			if (quoted) {
+				append(value, false);
+				return;
+			}
+			for (int i = 0; i < value.length(); i++) {
+				char c = value.charAt(i);
+				if (isFieldSeparator(c)) {
+					finish();
+				} else {
+					appendChar(c, true);
+					pending = true;
+				}
+			}
+		}
+
+		/**
+		 * Appends values as separate quoted fields, as {@code "$@"} does; the first
+		 * joins the current field and the last stays open for following text.
+		 */
+		private void appendFields(List<String> values) {
+			for (int i = 0; i < values.size(); i++) {
+				if (i > 0) {
+					finish();
+				}
+				append(values.get(i), false);
+			}
+		}
+
+		private void appendChar(char c, boolean unquoted) {
+			text.append(c);
+			if (isPatternChar(c)) {
+				if (unquoted && c != BACKSLASH) {
+					wildcard = true;
+				} else {
+					pattern.append(BACKSLASH);
+				}
+			}
+			pattern.append(c);
+		}
+
+		/**
+		 * Emits the current field, expanding it as a glob if it has wildcards.
+		 */
+		private void finish() {
+			if (pending) {
+				List<String> matches = wildcard ? context.glob(pattern.toString()) : List.of();
+				if (matches.isEmpty()) {
+					fields.add(text.toString());
+				} else {
+					fields.addAll(matches);
+				}
+			}
+			text.setLength(0);
+			pattern.setLength(0);
+			pending = false;
+			wildcard = false;
+		}
+	}
+}
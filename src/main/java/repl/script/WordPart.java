@@ -0,0 +1,104 @@
+package repl.script;
+
+/**
+ * A single piece of an unexpanded shell {@link Word}.
+ *
+ * <p>Literal parts are copied into the resulting field as-is; every other part
+ * is evaluated by {@link WordExpander} at execution time. Keeping the parts
+ * separate lets a word be parsed once and expanded many times: substitution bodies
+ * and arithmetic are parsed with the word, so a loop never parses them again.
+ *
+ * @see Word
+ * @see WordExpander
+ */
+public sealed interface WordPart {
+
+	/**
+	 * Literal text with quoting and escaping already removed.
+	 *
+	 * <p>Quoted text is kept in separate parts from unquoted text, so later
+	 * stages can tell {@code A=1} (an assignment) from {@code 'A=1'} (a word).
+	 *
+	 * @param text the literal characters
+	 * @param quoted whether the text was quoted or escaped
+	 */
+	record Literal(String text, boolean quoted) implements WordPart {
+		/**
+		 * Creates an unquoted literal.
+		 *
+		 * @param text the literal characters
+		 */
+		public Literal(String text) {
+			this(text, false);
+		}
+	}
+
+	/**
+	 * A {@code $(...)} command substitution, parsed when the word is parsed.
+	 *
+	 * <p>Unquoted substitutions are split into fields on whitespace; quoted ones
+	 * ({@code "$(...)"}) always contribute to the current field.
+	 *
+	 * @param body the command text between the parentheses
+	 * @param plan the parsed body
+	 * @param quoted whether the substitution appeared inside double quotes
+	 */
+	record CommandSubstitution(String body, Node plan, boolean quoted) implements WordPart {
+		/**
+		 * Creates a substitution, parsing its body.
+		 *
+		 * @param body the command text between the parentheses
+		 * @param quoted whether the substitution appeared inside double quotes
+		 * @throws IllegalArgumentException if the body has a syntax error
+		 */
+		public CommandSubstitution(String body, boolean quoted) {
+			this(body, ScriptParser.parse(body), quoted);
+		}
+	}
+
+	/**
+	 * A {@code $name} or {@code ${name}} variable reference.
+	 *
+	 * <p>Unset variables expand to nothing. Like substitutions, unquoted values
+	 * are split into fields on whitespace.
+	 *
+	 * @param name the variable name
+	 * @param quoted whether the reference appeared inside double quotes
+	 */
+	record Parameter(String name, boolean quoted) implements WordPart { }
+
+	/**
+	 * A {@code $((...))} arithmetic expansion, compiled when the word is parsed.
+	 *
+	 * @param text the expression text between {@code $((} and {@code ))}
+	 * @param expression the compiled expression
+	 * @param quoted whether the expansion appeared inside double quotes
+	 */
+	record Arithmetic(String text, ArithmeticExpression expression, boolean quoted) implements WordPart { }
+
+	/**
+	 * A {@code <(...)} or {@code >(...)} process substitution.
+	 *
+	 * <p>Expands to a path connected by a pipe to the command, which runs while the
+	 * command holding the word does: reading the path reads the output of a
+	 * {@code <(...)} body, and writing to it feeds the input of a {@code >(...)} body.
+	 * The path is one field, never split or matched as a glob. Only recognized outside
+	 * quotes. The body is parsed when the word is parsed.
+	 *
+	 * @param body the command text between the parentheses
+	 * @param plan the parsed body
+	 * @param output true for {@code >(...)}, whose body reads what is written to the path
+	 */
+	record ProcessSubstitution(String body, Node plan, boolean output) implements WordPart {
+		/**
+		 * Creates a process substitution, parsing its body.
+		 *
+		 * @param body the command text between the parentheses
+		 * @param output true for {@code >(...)}, whose body reads what is written to the path
+		 * @throws IllegalArgumentException if the body has a syntax error
+		 */
+		public ProcessSubstitution(String body, boolean output) {
+			this(body, ScriptParser.parse(body), output);
+		}
+	}
+}
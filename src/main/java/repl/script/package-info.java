@@ -0,0 +1,25 @@
+/**
+ * Shell language model: parsed command plans, unexpanded words and their expansion.
+ *
+ * <p>{@link repl.script.ScriptParser} - Parses input into a tree of {@link repl.script.Node}s
+ * (simple commands, sequences, subshells, if/while/until/for/case) that can be executed repeatedly.
+ *
+ * <p>{@link repl.script.Word} - A parsed word made of {@link repl.script.WordPart}s
+ * (literal text, command substitutions, variable references, arithmetic).
+ *
+ * <p>{@link repl.script.WordExpander} - Turns words into argument strings, performing
+ * command substitution, variable expansion and field splitting.
+ *
+ * <p>{@link repl.script.ArithmeticParser} - Compiles {@code $((...))} text into an
+ * {@link repl.script.ArithmeticExpression} evaluated on primitive longs.
+ *
+ * <p>{@link repl.script.ScriptCache} - Keeps parsed script files for {@code source},
+ * re-parsing a file only when its modification time or size changes.
+ *
+ * <p>{@link repl.script.ExpansionContext} - Supplies substitution results and variable values.
+ *
+ * @see repl.utils.CommandExtractorUtils
+ * @see repl.CommandSubstitution
+ * @see repl.ReplEvaluator
+ */
+package repl.script;
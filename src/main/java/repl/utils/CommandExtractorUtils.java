@@ -1,10 +1,17 @@
 package repl.utils;
 
 import lombok.experimental.UtilityClass;
+import repl.script.ArithmeticParser;
+import repl.script.ExpansionContext;
+import repl.script.Redirection;
+import repl.script.ScriptParser;
+import repl.script.Token;
+import repl.script.Word;
+import repl.script.WordExpander;
+import repl.script.WordPart;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.IntStream;
 
 import static repl.Constants.*;
 
@@ -30,6 +37,9 @@ import static repl.Constants.*;
  *   <li>Adjacent quoted strings are concatenated into a single argument</li>
  *   <li>Empty quotes are ignored</li>
  *   <li>Backslash ({@code \}) outside quotes escapes any following character</li>
+ *   <li>{@code $(...)} outside single quotes is a command substitution, and {@code $name}
+ *       or {@code ${name}} a variable reference, both resolved by the
+ *       {@link ExpansionContext} passed to {@link #get(String, ExpansionContext)}</li>
  * </ul>
  *
  * <p>Examples:
@@ -72,14 +82,38 @@ public class CommandExtractorUtils {
 	 * Represents a parsed command with its name and arguments.
 	 *
 	 * @param mainCommandStr the command name (first token)
-	 * @param args the list of parsed arguments (may be empty, never null)
+	 * @param args the parsed arguments, unmodifiable (may be empty, never null)
+	 * @param redirections where stdout and stderr go, {@link RedirectionTable#NONE} if not redirected
+	 * @param stdin the text of a here-document or here-string fed to standard input, in
+	 *              the pieces it was expanded from, or null
+	 * @param stdinRedirectFrom the file standard input is read from, as written, or null;
+	 *                          at most one of {@code stdin} and this is set
 	 */
 	public record ExtractedCommand(
 		String mainCommandStr,
 		List<String> args,
-		String stdoutRedirectTo,
-		String stderrRedirectTo
-	) { }
+		RedirectionTable redirections,
+		List<String> stdin,
+		String stdinRedirectFrom
+	) {
+		/**
+		 * Returns the file stdout is redirected to.
+		 *
+		 * @return the path as written, or null if stdout does not go to a file
+		 */
+		public String stdoutRedirectTo() {
+			return redirections.stdoutFile();
+		}
+
+		/**
+		 * Returns the file stderr is redirected to.
+		 *
+		 * @return the path as written, or null if stderr does not go to a file
+		 */
+		public String stderrRedirectTo() {
+			return redirections.stderrFile();
+		}
+	}
 
 	/**
 	 * Represents the parsing state while processing command arguments.
@@ -93,7 +127,7 @@ public class CommandExtractorUtils {
 	 *   <li>{@link #ESCAPING_IN_DOUBLE_QUOTES} - Next character may be escaped (inside double quotes, if escapable)</li>
 	 * </ul>
 	 */
-	private enum ParserState {
+	enum ParserState {
 		/** Normal parsing mode, outside any quotes. */
 		NORMAL,
 
@@ -116,6 +150,7 @@ public class CommandExtractorUtils {
 	 * <p>Leading and trailing whitespace is stripped before parsing.
 	 * Parses the entire input using shell quoting/escaping rules, treating
 	 * the first token as the command name and remaining tokens as arguments.
+	 * Expansions are not evaluated; their {@code $(...)} or {@code $name} text is kept.
 	 *
 	 * <p>Supports quoted command names:
 	 * <pre>{@code
@@ -129,123 +164,196 @@ public class CommandExtractorUtils {
 	 * @throws IllegalArgumentException if the input contains unclosed quotes
 	 */
 	public static ExtractedCommand get(String originalInput) {
-		List<String> tokens = parseTokens(originalInput.strip());
-
-		if (tokens.isEmpty()) {
-			return emptyCommand();
-		}
-
-		String command = tokens.getFirst();
-		RedirectInfo redirectInfo = extractRedirectInfo(tokens);
-
-		return new ExtractedCommand(
-			command,
-			new ArrayList<>(tokens.subList(1, redirectInfo.argsEndIndex())),
-			redirectInfo.stdoutTarget(),
-			redirectInfo.stderrTarget()
-		);
+		return get(originalInput, ExpansionContext.LITERAL);
 	}
 
 	/**
-	 * Creates an ExtractedCommand representing empty input.
+	 * Extracts the command name and arguments, evaluating expansions.
+	 *
+	 * <p>Words are tokenized first and then expanded through {@code context}.
+	 * Redirections (see {@link Redirection}) are recognized on the words before
+	 * expansion, so a quoted or expanded {@code >} is an argument.
+	 *
+	 * @param originalInput the complete input string to parse
+	 * @param context supplier of command substitution results and variable values
+	 * @return an ExtractedCommand containing the command name and parsed arguments
+	 * @throws IllegalArgumentException if the input contains unclosed quotes or substitutions
 	 */
-	private static ExtractedCommand emptyCommand() {
-		return new ExtractedCommand("", new ArrayList<>(), null, null);
+	public static ExtractedCommand get(String originalInput, ExpansionContext context) {
+		return get(parseWords(originalInput.strip()), context);
 	}
 
 	/**
-	 * Extracts stdout and stderr redirect information from tokens.
+	 * Expands already-parsed words and extracts the command name, arguments
+	 * and redirect targets.
 	 *
-	 * @param tokens the parsed token list
-	 * @return RedirectInfo containing the args end index and redirect targets (if any)
-	 * @throws IllegalArgumentException if redirect operator is not followed by exactly one token,
-	 *                                  or if both stdout and stderr redirects are present
+	 * <p>Used to run commands from a parsed plan without re-tokenizing their text.
+	 *
+	 * @param words the unexpanded words of one simple command
+	 * @param context supplier of command substitution results and variable values
+	 * @return an ExtractedCommand containing the command name and parsed arguments
+	 * @throws IllegalArgumentException if the redirect syntax is invalid
 	 */
-	private static RedirectInfo extractRedirectInfo(List<String> tokens) {
-		if (tokens.size() == 1) {
-			return new RedirectInfo(tokens.size(), null, null);
+	public static ExtractedCommand get(List<Word> words, ExpansionContext context) {
+		List<String> stdin = null;
+		String stdinRedirectFrom = null;
+		RedirectionTable redirections = RedirectionTable.NONE;
+		if (hasRedirection(words)) {
+			// Redirections are taken out before expansion: only an unquoted operator counts,
+			// and a here-document body is expanded into pieces, never into a field
+			RedirectionTable.Builder table = null;
+			List<Word> commandWords = new ArrayList<>(words.size());
+			for (int i = 0; i < words.size(); i++) {
+				String operator = Redirection.operator(words.get(i));
+				if (operator == null) {
+					commandWords.add(words.get(i));
+					continue;
+				}
+				Word target = Redirection.attachedTarget(words.get(i), operator);
+				if (target == null) {
+					if (i + 1 == words.size()) {
+						throw new IllegalArgumentException("syntax error near unexpected token `newline'");
+					}
+					target = words.get(++i);
+					String nextOperator = Redirection.operator(target);
+					if (nextOperator != null) {
+						throw new IllegalArgumentException("syntax error near unexpected token `" + nextOperator + "'");
+					}
+				}
+				// The last input redirection wins; the earlier ones are still expanded
+				if (STDIN_REDIRECT.contains(operator)) {
+					stdin = null;
+					stdinRedirectFrom = WordExpander.expandToString(target, context);
+				} else if (HERE_DOCUMENT.contains(operator) || operator.equals(HERE_STRING)) {
+					stdinRedirectFrom = null;
+					stdin = operator.equals(HERE_STRING)
+							? List.of(WordExpander.expandToString(target, context), Character.toString(NEWLINE))
+							: WordExpander.expandToChunks(target, context);
+				} else if (operator.indexOf(LESS_THAN) >= 0) {
+					throw new IllegalArgumentException(
+							"redirection of file descriptor " + operator.charAt(0) + " is not supported");
+				} else {
+					if (table == null) {
+						table = RedirectionTable.builder();
+					}
+					table.add(operator, WordExpander.expandToString(target, context));
+				}
+			}
+			words = commandWords;
+			if (table != null) {
+				redirections = table.build();
+			}
 		}
+		List<String> tokens = WordExpander.expand(words, context);
 
-		// Find stdout redirect (> or 1>)
-		int stdoutRedirectIndex = IntStream.range(1, tokens.size())
-			.filter(i -> STDOUT_REDIRECT.contains(tokens.get(i)))
-			.findFirst()
-			.orElse(-1);
-
-		// Find stderr redirect (2>)
-		int stderrRedirectIndex = IntStream.range(1, tokens.size())
-			.filter(i -> STDERR_REDIRECT.contains(tokens.get(i)))
-			.findFirst()
-			.orElse(-1);
-
-		// No redirects
-		if (stdoutRedirectIndex < 0 && stderrRedirectIndex < 0) {
-			return new RedirectInfo(tokens.size(), null, null);
+		if (tokens.isEmpty()) {
+			return new ExtractedCommand("", List.of(), redirections, stdin, stdinRedirectFrom);
 		}
 
-		// Validate redirect format
-		if (stdoutRedirectIndex >= 0 && stdoutRedirectIndex != tokens.size() - 2) {
-			throw new IllegalArgumentException("single token expected after stdout redirection");
-		}
-		if (stderrRedirectIndex >= 0 && stderrRedirectIndex != tokens.size() - 2) {
-			throw new IllegalArgumentException("single token expected after stderr redirection");
-		}
+		return new ExtractedCommand(
+			tokens.getFirst(),
+			List.copyOf(tokens.subList(1, tokens.size())),
+			redirections,
+			stdin,
+			stdinRedirectFrom
+		);
+	}
 
-		// Both redirects present - not supported for now
-		if (stdoutRedirectIndex >= 0 && stderrRedirectIndex >= 0) {
-			throw new IllegalArgumentException("cannot redirect both stdout and stderr simultaneously");
+	private static boolean hasRedirection(List<Word> words) {
+		// Indexed loop: this runs on every command and must not allocate an iterator
+		for (int i = 0; i < words.size(); i++) {
+			if (Redirection.isRedirection(words.get(i))) {
+				return true;
+			}
 		}
+		return false;
+	}
 
-		// Extract redirect targets
-		String stdoutTarget = stdoutRedirectIndex >= 0 ? tokens.get(stdoutRedirectIndex + 1) : null;
-		String stderrTarget = stderrRedirectIndex >= 0 ? tokens.get(stderrRedirectIndex + 1) : null;
-
-		int redirectIndex = Math.max(stdoutRedirectIndex, stderrRedirectIndex);
-
-		return new RedirectInfo(redirectIndex, stdoutTarget, stderrTarget);
+	/**
+	 * Parses input string into words using shell quoting/escaping rules.
+	 *
+	 * <p>All characters other than whitespace are part of words; control
+	 * operators such as {@code ;} are not recognized. Use {@link #tokenize(String)}
+	 * for full command lines.
+	 *
+	 * @param input the string to parse
+	 * @return list of parsed words (may be empty, never null)
+	 * @throws IllegalArgumentException if input contains unclosed quotes or substitutions
+	 */
+	public static List<Word> parseWords(String input) {
+		return scan(input, false).stream()
+				.map(token -> ((Token.WordToken) token).word())
+				.toList();
 	}
 
 	/**
-	 * Internal record for redirect parsing results.
+	 * Splits a command line into words and control operators.
 	 *
-	 * @param argsEndIndex the index where arguments end (exclusive)
-	 * @param stdoutTarget the stdout redirect target filename, or null if no stdout redirection
-	 * @param stderrTarget the stderr redirect target filename, or null if no stderr redirection
+	 * <p>Outside quotes, {@code ;}, {@code (}, {@code )}, {@code &&}, {@code ||} and
+	 * newlines are returned as {@link Token.Operator}s, and tabs separate words like
+	 * spaces do. A {@code #} starting a word starts a comment, skipped up to the newline.
+	 *
+	 * <p>A word starting with {@code <<} is a here-document operator: it becomes a
+	 * {@code <<} or {@code <<-} word followed by a word holding the body, the lines after
+	 * the current one up to the delimiter line, which are skipped by the scan. The body
+	 * is expanded like double-quoted text unless the delimiter is quoted, as in
+	 * {@code <<'EOF'}. {@code <<<} becomes a word of its own, followed by its word.
+	 * <pre>{@code
+	 * tokenize("cat <<EOF\nhi $USER\nEOF\n") → [cat, <<, "hi $USER\n", \n]
+	 * }</pre>
+	 *
+	 * @param input the command line to tokenize
+	 * @return list of tokens (may be empty, never null)
+	 * @throws IllegalArgumentException if input contains unclosed quotes or substitutions
 	 */
-	private record RedirectInfo(int argsEndIndex, String stdoutTarget, String stderrTarget) { }
+	public static List<Token> tokenize(String input) {
+		return scan(input, true);
+	}
 
 	/**
-	 * Parses input string into tokens using shell quoting/escaping rules.
+	 * Scans input into tokens using shell quoting/escaping rules.
 	 *
 	 * <p>This is the core parsing engine that handles:
 	 * <ul>
 	 *   <li>Single quotes (literal strings)</li>
 	 *   <li>Double quotes (with selective escaping)</li>
-	 *   <li>Backslash escaping</li>
+	 *   <li>Backslash escaping, and backslash-newline line continuations</li>
 	 *   <li>Adjacent quote concatenation</li>
-	 *   <li>Whitespace tokenization</li>
+	 *   <li>Whitespace tokenization, and {@code #} comments</li>
+	 *   <li>{@code $(...)} and {@code <(...)} substitutions and {@code $name} references (kept
+	 *       unevaluated as word parts)</li>
+	 *   <li>Control operators and here-documents, when {@code recognizeOperators} is set</li>
 	 * </ul>
 	 *
 	 * @param input the string to parse
+	 * @param recognizeOperators whether control operators end words and become tokens
 	 * @return list of parsed tokens (may be empty, never null)
-	 * @throws IllegalArgumentException if input contains unclosed quotes
+	 * @throws IllegalArgumentException if input contains unclosed quotes or substitutions
 	 */
-	private static List<String> parseTokens(String input) {
-		List<StringBuilder> builders = new ArrayList<>();
+	private static List<Token> scan(String input, boolean recognizeOperators) {
+		TokenCollector out = new TokenCollector();
 		ParserState state = ParserState.NORMAL;
+		List<HereDocument> hereDocuments = new ArrayList<>();
 
-		for (char c : input.toCharArray()) {
+		for (int i = 0; i < input.length(); i++) {
+			char c = input.charAt(i);
 			state = switch (state) {
 				case ESCAPING -> {
-					addCharToLastArg(c, builders);
+					// A backslash-newline is a line continuation, removed with its newline
+					if (c != NEWLINE) {
+						out.appendQuoted(c);
+					}
 					yield ParserState.NORMAL;
 				}
 
 				case ESCAPING_IN_DOUBLE_QUOTES -> {
+					if (c == NEWLINE) {
+						yield ParserState.DOUBLE_QUOTED;
+					}
 					if(!DOUBLE_QUOTE_ESCAPABLE_CHARS.contains(c)) {
-						addCharToLastArg(BACKSLASH, builders);
+						out.appendQuoted(BACKSLASH);
 					}
-					addCharToLastArg(c, builders);
+					out.appendQuoted(c);
 					yield ParserState.DOUBLE_QUOTED;
 				}
 
@@ -256,13 +364,52 @@ public class CommandExtractorUtils {
 						yield ParserState.SINGLE_QUOTED;
 					} else if (c == DOUBLE_QUOTE) {
 						yield ParserState.DOUBLE_QUOTED;
-					} else if (c == WHITESPACE) {
-						if (!hasLastElementAsEmpty(builders)) {
-							builders.add(new StringBuilder());
+					} else if (c == DOLLAR) {
+						i = addDollarExpansion(input, i, false, out);
+						yield ParserState.NORMAL;
+					} else if (c == WHITESPACE || (recognizeOperators && c == TAB)) {
+						out.endWord();
+						yield ParserState.NORMAL;
+					} else if (c == HASH && startsWord(input, i, out)) {
+						// A comment: skipped up to the newline, which still ends the command
+						int newline = input.indexOf(NEWLINE, i);
+						i = (newline < 0 ? input.length() : newline) - 1;
+						yield ParserState.NORMAL;
+					} else if (recognizeOperators && (c == AMPERSAND || c == PIPE)
+							&& i + 1 < input.length() && input.charAt(i + 1) == c) {
+						// "&&" and "||"; a single '&' or '|' stays part of the word
+						out.endWord();
+						out.addOperator(input.substring(i, i + 2));
+						i++;
+						yield ParserState.NORMAL;
+					} else if (recognizeOperators && CONTROL_OPERATORS.contains(c)) {
+						out.endWord();
+						if (c == SEMICOLON && i + 1 < input.length() && input.charAt(i + 1) == SEMICOLON) {
+							// ";;" ends a case item
+							out.addOperator(input.substring(i, i + 2));
+							i++;
+						} else {
+							out.addOperator(Character.toString(c));
+						}
+						if (c == NEWLINE && !hereDocuments.isEmpty()) {
+							// Here-document bodies start on the line after their operators
+							i = readHereDocuments(input, i + 1, hereDocuments, out) - 1;
 						}
 						yield ParserState.NORMAL;
+					} else if (recognizeOperators && c == LESS_THAN && !out.inWord()
+							&& i + 1 < input.length() && input.charAt(i + 1) == LESS_THAN) {
+						i = addHereOperator(input, i, hereDocuments, out);
+						yield ParserState.NORMAL;
+					} else if ((c == LESS_THAN || c == GREATER_THAN)
+							&& i + 1 < input.length() && input.charAt(i + 1) == OPEN_PAREN) {
+						// <(...) and >(...): a path to a pipe, not a redirection
+						int close = findClosingParen(input, i + 2);
+						String body = input.substring(i + 2, close);
+						out.addPart(new WordPart.ProcessSubstitution(body, ScriptParser.parse(body), c == GREATER_THAN));
+						i = close;
+						yield ParserState.NORMAL;
 					} else {
-						addCharToLastArg(c, builders);
+						out.append(c);
 						yield ParserState.NORMAL;
 					}
 				}
@@ -271,7 +418,7 @@ public class CommandExtractorUtils {
 					if (c == SINGLE_QUOTE) {
 						yield ParserState.NORMAL;
 					} else {
-						addCharToLastArg(c, builders);
+						out.appendQuoted(c);
 						yield ParserState.SINGLE_QUOTED;
 					}
 				}
@@ -281,8 +428,11 @@ public class CommandExtractorUtils {
 						yield ParserState.NORMAL;
 					} else if (c == BACKSLASH) {
 						yield ParserState.ESCAPING_IN_DOUBLE_QUOTES;
+					} else if (c == DOLLAR) {
+						i = addDollarExpansion(input, i, true, out);
+						yield ParserState.DOUBLE_QUOTED;
 					} else {
-						addCharToLastArg(c, builders);
+						out.appendQuoted(c);
 						yield ParserState.DOUBLE_QUOTED;
 					}
 				}
@@ -294,24 +444,400 @@ public class CommandExtractorUtils {
 			throw new IllegalArgumentException("Unclosed quote in input");
 		}
 
-		// Remove trailing empty token if present
-		if (hasLastElementAsEmpty(builders)) {
-			builders.removeLast();
+		out.endWord();
+		if (!hereDocuments.isEmpty()) {
+			// No line follows the operators: the bodies are empty
+			readHereDocuments(input, input.length(), hereDocuments, out);
 		}
+		return out.tokens;
+	}
 
-		return builders.stream()
-				.map(StringBuilder::toString)
-				.toList();
+	/**
+	 * Returns whether the character at {@code index} starts a word, rather than
+	 * following a quote, as the {@code #} of {@code ''#} does.
+	 */
+	private static boolean startsWord(String input, int index, TokenCollector out) {
+		if (out.inWord()) {
+			return false;
+		}
+		if (index == 0) {
+			return true;
+		}
+		char previous = input.charAt(index - 1);
+		return previous != SINGLE_QUOTE && previous != DOUBLE_QUOTE;
 	}
 
-	private static void addCharToLastArg(char c, List<StringBuilder> builders) {
-		if (builders.isEmpty()) {
-			builders.add(new StringBuilder());
+	/**
+	 * A here-document whose operator was read and whose body starts on the next line.
+	 *
+	 * @param token index of the token reserved for the body
+	 * @param delimiter the line ending the body, with its quotes removed
+	 * @param expand whether the body is expanded: only if no part of the delimiter was quoted
+	 * @param stripTabs whether leading tabs are removed from the lines, for {@code <<-}
+	 */
+	private record HereDocument(int token, String delimiter, boolean expand, boolean stripTabs) { }
+
+	/**
+	 * Handles {@code <<} at {@code start}: a here-string operator, whose word is scanned
+	 * next, or a here-document operator and its delimiter, whose body is read at the end
+	 * of the line. Both become a word holding the operator, followed by a word holding
+	 * the text, as for output redirections.
+	 *
+	 * @return the index of the last character consumed
+	 * @throws IllegalArgumentException if the delimiter is missing or has an unclosed quote
+	 */
+	private static int addHereOperator(String input, int start, List<HereDocument> hereDocuments,
+			TokenCollector out) {
+		if (input.startsWith(HERE_STRING, start)) {
+			out.addLiteralWord(HERE_STRING);
+			return start + HERE_STRING.length() - 1;
+		}
+		boolean stripTabs = start + 2 < input.length() && input.charAt(start + 2) == '-';
+		int i = start + (stripTabs ? 3 : 2);
+		while (i < input.length() && (input.charAt(i) == WHITESPACE || input.charAt(i) == TAB)) {
+			i++;
 		}
-		builders.getLast().append(c);
+
+		StringBuilder delimiter = new StringBuilder();
+		boolean quoted = false;
+		while (i < input.length()) {
+			char c = input.charAt(i);
+			if (c == SINGLE_QUOTE || c == DOUBLE_QUOTE) {
+				int close = c == SINGLE_QUOTE ? input.indexOf(SINGLE_QUOTE, i + 1) : skipDoubleQuoted(input, i + 1);
+				if (close < 0) {
+					throw new IllegalArgumentException("Unclosed quote in input");
+				}
+				delimiter.append(input, i + 1, close);
+				quoted = true;
+				i = close + 1;
+			} else if (c == BACKSLASH && i + 1 < input.length()) {
+				delimiter.append(input.charAt(i + 1));
+				quoted = true;
+				i += 2;
+			} else if (c == WHITESPACE || c == TAB || CONTROL_OPERATORS.contains(c)
+					|| ((c == AMPERSAND || c == PIPE) && i + 1 < input.length() && input.charAt(i + 1) == c)) {
+				break;
+			} else {
+				delimiter.append(c);
+				i++;
+			}
+		}
+		if (delimiter.isEmpty() && !quoted) {
+			String next = i < input.length() && input.charAt(i) != NEWLINE ? input.substring(i, i + 1) : "newline";
+			throw new IllegalArgumentException("syntax error near unexpected token `" + next + "'");
+		}
+
+		out.addLiteralWord(stripTabs ? "<<-" : "<<");
+		hereDocuments.add(new HereDocument(out.reserveWord(), delimiter.toString(), !quoted, stripTabs));
+		return i - 1;
 	}
 
-	private static boolean hasLastElementAsEmpty(List<StringBuilder> builders) {
-		return !builders.isEmpty() && builders.getLast().isEmpty();
+	/**
+	 * Reads the bodies of the pending here-documents, one after the other, into the words
+	 * reserved for them. A body without its delimiter line runs to the end of the input.
+	 *
+	 * @param from index of the first line of the first body
+	 * @return the index following the last delimiter line
+	 */
+	private static int readHereDocuments(String input, int from, List<HereDocument> hereDocuments,
+			TokenCollector out) {
+		int i = from;
+		for (HereDocument hereDocument : hereDocuments) {
+			String delimiter = hereDocument.delimiter();
+			TokenCollector body = new TokenCollector();
+			while (i < input.length()) {
+				int lineEnd = input.indexOf(NEWLINE, i);
+				if (lineEnd < 0) {
+					lineEnd = input.length();
+				}
+				if (hereDocument.stripTabs()) {
+					while (i < lineEnd && input.charAt(i) == TAB) {
+						i++;
+					}
+				}
+				if (lineEnd - i == delimiter.length() && input.startsWith(delimiter, i)) {
+					i = Math.min(lineEnd + 1, input.length());
+					break;
+				}
+				i = appendHereDocumentLine(input, i, hereDocument.expand(), body);
+			}
+			out.setWord(hereDocument.token(), body.takeWord());
+		}
+		hereDocuments.clear();
+		return i;
+	}
+
+	/**
+	 * Appends a line of a here-document body, and its newline, to {@code body}.
+	 *
+	 * <p>Without expansion the line is literal. Otherwise {@code $} expansions are
+	 * evaluated as inside double quotes, a backslash only escapes {@code $}, {@code `}
+	 * and {@code \}, and a backslash-newline joins the next line; quotes are literal.
+	 *
+	 * @return the index following the line
+	 */
+	private static int appendHereDocumentLine(String input, int from, boolean expand, TokenCollector body) {
+		for (int i = from; i < input.length(); i++) {
+			char c = input.charAt(i);
+			if (c == NEWLINE) {
+				body.appendQuoted(NEWLINE);
+				return i + 1;
+			}
+			if (!expand) {
+				body.appendQuoted(c);
+			} else if (c == BACKSLASH && i + 1 < input.length()) {
+				char next = input.charAt(i + 1);
+				if (next == DOLLAR || next == BACKTICK || next == BACKSLASH) {
+					body.appendQuoted(next);
+					i++;
+				} else if (next == NEWLINE) {
+					i++;
+				} else {
+					body.appendQuoted(c);
+				}
+			} else if (c == DOLLAR) {
+				i = addDollarExpansion(input, i, true, body);
+			} else {
+				body.appendQuoted(c);
+			}
+		}
+		body.appendQuoted(NEWLINE);
+		return input.length();
+	}
+
+	/**
+	 * Handles a {@code $} at {@code start}: a {@code $((...))} arithmetic expansion,
+	 * a {@code $(...)} substitution, a {@code ${name}} or {@code $name} variable
+	 * reference, or a literal dollar sign.
+	 *
+	 * @return the index of the last character consumed
+	 * @throws IllegalArgumentException if a substitution or {@code ${} is never closed, or
+	 *                                  a substitution body has a syntax error
+	 */
+	private static int addDollarExpansion(String input, int start, boolean quoted, TokenCollector out) {
+		int next = start + 1;
+		if (next < input.length() && input.charAt(next) == OPEN_PAREN) {
+			int close = findClosingParen(input, next + 1);
+			if (input.charAt(next + 1) == OPEN_PAREN && findClosingParen(input, next + 2) == close - 1) {
+				// $((...)): compiled here so the plan carries the parsed expression
+				String expression = input.substring(next + 2, close - 1);
+				out.addPart(new WordPart.Arithmetic(expression, ArithmeticParser.parse(expression), quoted));
+				return close;
+			}
+			// $(...): parsed here too, so a loop runs the body without parsing it again
+			String body = input.substring(next + 1, close);
+			out.addPart(new WordPart.CommandSubstitution(body, ScriptParser.parse(body), quoted));
+			return close;
+		}
+		if (next < input.length() && input.charAt(next) == OPEN_BRACE) {
+			int close = input.indexOf(CLOSE_BRACE, next + 1);
+			if (close < 0) {
+				throw new IllegalArgumentException("Unclosed parameter expansion in input");
+			}
+			String name = input.substring(next + 1, close);
+			if (!isParameterName(name)) {
+				throw new IllegalArgumentException("${" + name + "}: bad substitution");
+			}
+			out.addPart(new WordPart.Parameter(name, quoted));
+			return close;
+		}
+		if (next < input.length() && isSpecialParameter(input.charAt(next))) {
+			// $? (last exit code), $1..$9, $#, $@ and $* (function arguments)
+			out.addPart(new WordPart.Parameter(Character.toString(input.charAt(next)), quoted));
+			return next;
+		}
+		int length = nameLength(input, next);
+		if (length == 0) {
+			out.append(DOLLAR, quoted);
+			return start;
+		}
+		out.addPart(new WordPart.Parameter(input.substring(next, next + length), quoted));
+		return next + length - 1;
+	}
+
+	/**
+	 * Returns whether a character names a special parameter on its own:
+	 * {@code ?}, a digit, {@code #}, {@code @} or {@code *}.
+	 */
+	private static boolean isSpecialParameter(char c) {
+		return c == QUESTION_MARK || (c >= '1' && c <= '9') || c == '#' || c == '@' || c == ASTERISK;
+	}
+
+	/**
+	 * Returns whether the text inside {@code ${...}} is a variable name, a
+	 * positional parameter number or a special parameter.
+	 */
+	private static boolean isParameterName(String name) {
+		if (name.isEmpty()) {
+			return false;
+		}
+		if (name.length() == 1 && isSpecialParameter(name.charAt(0))) {
+			return true;
+		}
+		return name.chars().allMatch(Character::isDigit) || nameLength(name, 0) == name.length();
+	}
+
+	/**
+	 * Returns the length of the variable name starting at {@code from}, or 0
+	 * if no valid name starts there. Names match {@code [A-Za-z_][A-Za-z0-9_]*}.
+	 *
+	 * @param text the text to inspect
+	 * @param from index of the first name character
+	 * @return the number of name characters
+	 */
+	public static int nameLength(String text, int from) {
+		int i = from;
+		while (i < text.length()) {
+			char c = text.charAt(i);
+			boolean valid = c == '_' || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
+					|| (i > from && c >= '0' && c <= '9');
+			if (!valid) {
+				break;
+			}
+			i++;
+		}
+		return i - from;
+	}
+
+	/**
+	 * Finds the parenthesis closing a substitution body, skipping over quoted text,
+	 * escaped characters and nested parentheses.
+	 *
+	 * @param input the input being parsed
+	 * @param from index of the first body character
+	 * @return index of the matching closing parenthesis
+	 * @throws IllegalArgumentException if no matching parenthesis exists
+	 */
+	private static int findClosingParen(String input, int from) {
+		int depth = 1;
+		for (int i = from; i < input.length(); i++) {
+			char c = input.charAt(i);
+			if (c == BACKSLASH) {
+				i++;
+			} else if (c == SINGLE_QUOTE) {
+				i = input.indexOf(SINGLE_QUOTE, i + 1);
+				if (i < 0) {
+					break;
+				}
+			} else if (c == DOUBLE_QUOTE) {
+				i = skipDoubleQuoted(input, i + 1);
+				if (i < 0) {
+					break;
+				}
+			} else if (c == OPEN_PAREN) {
+				depth++;
+			} else if (c == CLOSE_PAREN && --depth == 0) {
+				return i;
+			}
+		}
+		throw new IllegalArgumentException("Unclosed command substitution in input");
+	}
+
+	/**
+	 * Returns the index of the double quote closing a string opened just before
+	 * {@code from}, or -1 if the string is unterminated.
+	 */
+	private static int skipDoubleQuoted(String input, int from) {
+		for (int i = from; i < input.length(); i++) {
+			char c = input.charAt(i);
+			if (c == BACKSLASH) {
+				i++;
+			} else if (c == DOUBLE_QUOTE) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Mutable accumulator for the tokens of one input while it is scanned.
+	 *
+	 * <p>Literal characters are buffered and flushed into a {@link WordPart.Literal}
+	 * whenever a non-literal part is added or the word ends. A word only exists
+	 * once it has content, so empty quotes ({@code ''}) produce no token.
+	 */
+	private static final class TokenCollector {
+		private final List<Token> tokens = new ArrayList<>();
+		private final List<WordPart> parts = new ArrayList<>();
+		private final StringBuilder literal = new StringBuilder();
+		private boolean literalQuoted;
+
+		private void append(char c) {
+			append(c, false);
+		}
+
+		private void appendQuoted(char c) {
+			append(c, true);
+		}
+
+		private void append(char c, boolean quoted) {
+			if (quoted != literalQuoted) {
+				flushLiteral();
+				literalQuoted = quoted;
+			}
+			literal.append(c);
+		}
+
+		private void addPart(WordPart part) {
+			flushLiteral();
+			parts.add(part);
+		}
+
+		private void addOperator(String symbol) {
+			tokens.add(new Token.Operator(symbol));
+		}
+
+		/**
+		 * Returns whether a word has content, so the next character continues it.
+		 */
+		private boolean inWord() {
+			return !parts.isEmpty() || !literal.isEmpty();
+		}
+
+		/**
+		 * Adds a word of unquoted literal text, such as a redirection operator.
+		 */
+		private void addLiteralWord(String text) {
+			tokens.add(new Token.WordToken(new Word(List.of(new WordPart.Literal(text)))));
+		}
+
+		/**
+		 * Reserves the place of a word that is read later, such as a here-document body.
+		 *
+		 * @return the index of the word, for {@link #setWord(int, Word)}
+		 */
+		private int reserveWord() {
+			tokens.add(null);
+			return tokens.size() - 1;
+		}
+
+		private void setWord(int index, Word word) {
+			tokens.set(index, new Token.WordToken(word));
+		}
+
+		/**
+		 * Returns the parts collected so far as one word, which may have no parts.
+		 */
+		private Word takeWord() {
+			flushLiteral();
+			Word word = new Word(List.copyOf(parts));
+			parts.clear();
+			return word;
+		}
+
+		private void endWord() {
+			flushLiteral();
+			if (!parts.isEmpty()) {
+				tokens.add(new Token.WordToken(new Word(List.copyOf(parts))));
+				parts.clear();
+			}
+		}
+
+		private void flushLiteral() {
+			if (!literal.isEmpty()) {
+				parts.add(new WordPart.Literal(literal.toString(), literalQuoted));
+				literal.setLength(0);
+			}
+		}
 	}
 }
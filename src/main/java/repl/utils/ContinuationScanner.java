@@ -0,0 +1,515 @@
+package repl.utils;
+
+import lombok.AccessLevel;
+import lombok.ToString;
+import lombok.experimental.FieldDefaults;
+import repl.utils.CommandExtractorUtils.ParserState;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+
+import static repl.Constants.*;
+
+/**
+ * Joins physical lines of input into complete commands, as a shell does when it shows
+ * its continuation prompt.
+ *
+ * <p>Input is incomplete while it ends:
+ * <ul>
+ *   <li>inside single or double quotes</li>
+ *   <li>with a backslash, which joins the next line to this one; both are removed, as
+ *       {@code \}newline is a line continuation</li>
+ *   <li>after {@code &&} or {@code ||}</li>
+ *   <li>inside {@code $(...)}, {@code ${...}} or a subshell</li>
+ *   <li>inside a compound command: an {@code if} without its {@code fi}, a
+ *       {@code while}, {@code until} or {@code for} without its {@code done}, a
+ *       {@code case} without its {@code esac}, a {@code {} without its {@code }}</li>
+ *   <li>inside the body of a here-document: after a line with {@code <<EOF} or
+ *       {@code <<-EOF}, up to the line holding only {@code EOF}</li>
+ * </ul>
+ *
+ * <p>Each line is scanned once, with the {@link ParserState} machine of
+ * {@link CommandExtractorUtils} and a stack of the closers expected, both kept across
+ * lines; only the complete command is parsed, once. A pasted block of any number of
+ * lines is therefore read in linear time, where parsing the text so far after each line
+ * would take quadratic time.
+ *
+ * <p>A {@code #} starting a word starts a comment: quotes or operators after it, up to
+ * the end of the line, do not continue the command.
+ *
+ * <p>The scanner only decides when to stop reading: syntax errors, such as a {@code fi}
+ * without an {@code if}, end the command and are reported by the parser.
+ */
+@ToString(onlyExplicitlyIncluded = true)
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ContinuationScanner {
+
+	/** Reserved words after which a command starts. */
+	private static final Set<String> COMMAND_KEYWORDS = Set.of(
+		"if", "then", "else", "elif", "do", "while", "until", "!", "{");
+
+	/** Closes a subshell or function definition parentheses. */
+	private static final String SUBSHELL = ")";
+
+	/** Closes a {@code $(...)}. */
+	private static final String SUBSTITUTION = "$(";
+
+	/** Closes a {@code $(...)} inside double quotes. */
+	private static final String QUOTED_SUBSTITUTION = "\"$(";
+
+	/** Closes a {@code ${...}}. */
+	private static final String PARAMETER = "${";
+
+	/** Closes a {@code ${...}} inside double quotes. */
+	private static final String QUOTED_PARAMETER = "\"${";
+
+	/** The lines read so far, joined by newlines. */
+	@ToString.Include
+	final StringBuilder text = new StringBuilder();
+
+	/** The first line added, returned as it is if it is the whole command. */
+	String firstLine;
+
+	/** What must close before the command is complete, innermost first. */
+	@ToString.Include
+	final Deque<String> closers = new ArrayDeque<>();
+
+	ParserState state = ParserState.NORMAL;
+
+	/** The unquoted word being read, for reserved words. */
+	final StringBuilder word = new StringBuilder();
+
+	/** Whether a word is being read. */
+	boolean inWord;
+
+	/** Whether the word being read has quotes or expansions, so it is no reserved word. */
+	boolean wordQuoted;
+
+	/** Whether the next word starts a command. */
+	boolean commandPosition = true;
+
+	/** Whether the word being read started a command. */
+	boolean wordIsCommand;
+
+	/** Whether the last character was a {@code $}. */
+	boolean afterDollar;
+
+	/** The first {@code &} or {@code |} of an operator, if the last character was one. */
+	char operatorStart;
+
+	/** Whether the last token was {@code &&} or {@code ||}. */
+	boolean afterAndOr;
+
+	/** Whether the word being read is the delimiter of a here-document. */
+	boolean readingDelimiter;
+
+	/** Whether the delimiter being read is for {@code <<-}. */
+	boolean delimiterStripsTabs;
+
+	/** The delimiter being read, as written, with its quotes. */
+	final StringBuilder delimiter = new StringBuilder();
+
+	/**
+	 * Delimiters of the here-documents whose bodies are pending, in order; a {@code -}
+	 * prefix marks a {@code <<-} delimiter, whose lines may start with tabs.
+	 */
+	@ToString.Include
+	final List<String> hereDocuments = new ArrayList<>();
+
+	/** Whether the lines read are here-document bodies. */
+	boolean inHereDocument;
+
+	/** Whether the rest of the line is a comment, in which quotes and operators mean nothing. */
+	boolean inComment;
+
+	/**
+	 * Adds a line of input.
+	 *
+	 * @param line the line, without its line terminator
+	 * @return true if the input read so far is a complete command, to be taken with
+	 *         {@link #take()}; false if more lines are needed
+	 */
+	public boolean add(String line) {
+		if (inHereDocument) {
+			return addBodyLine(line);
+		}
+		firstLine = text.isEmpty() && !isContinuing() ? line : null;
+		text.append(line);
+		for (int i = 0; i < line.length(); i++) {
+			scan(line.charAt(i));
+		}
+		if (state == ParserState.ESCAPING || state == ParserState.ESCAPING_IN_DOUBLE_QUOTES) {
+			// A line continuation: the backslash and newline are removed
+			text.setLength(text.length() - 1);
+			state = state == ParserState.ESCAPING ? ParserState.NORMAL : ParserState.DOUBLE_QUOTED;
+			firstLine = null;
+			return false;
+		}
+		scan(NEWLINE);
+		if (isComplete()) {
+			return true;
+		}
+		text.append(NEWLINE);
+		firstLine = null;
+		return false;
+	}
+
+	/**
+	 * Adds a line of a here-document body; the delimiter line ends the body, and the
+	 * next pending body or the rest of the command follows.
+	 */
+	private boolean addBodyLine(String line) {
+		text.append(line);
+		String pending = hereDocuments.getFirst();
+		boolean stripTabs = pending.charAt(0) == '-';
+		int start = 0;
+		while (stripTabs && start < line.length() && line.charAt(start) == TAB) {
+			start++;
+		}
+		if (line.length() - start == pending.length() - 1 && line.startsWith(pending.substring(1), start)) {
+			hereDocuments.removeFirst();
+			inHereDocument = !hereDocuments.isEmpty();
+			if (isComplete()) {
+				return true;
+			}
+		}
+		text.append(NEWLINE);
+		return false;
+	}
+
+	/**
+	 * Returns whether lines were added since the last complete command was taken.
+	 *
+	 * @return true if a command is being continued
+	 */
+	public boolean isContinuing() {
+		return !text.isEmpty() || !closers.isEmpty() || state != ParserState.NORMAL || !hereDocuments.isEmpty();
+	}
+
+	/**
+	 * Returns the lines added since the last command was taken, joined by newlines, and
+	 * starts a new command. Also takes an incomplete command, at the end of the input,
+	 * so that the parser reports what is missing.
+	 *
+	 * @return the command's text; the line itself for a command of one line, so that
+	 *         reading a one-line command allocates nothing
+	 */
+	public String take() {
+		String command = firstLine != null ? firstLine : text.toString();
+		firstLine = null;
+		text.setLength(0);
+		closers.clear();
+		state = ParserState.NORMAL;
+		word.setLength(0);
+		inWord = false;
+		commandPosition = true;
+		afterDollar = false;
+		operatorStart = 0;
+		afterAndOr = false;
+		readingDelimiter = false;
+		delimiter.setLength(0);
+		hereDocuments.clear();
+		inHereDocument = false;
+		inComment = false;
+		return command;
+	}
+
+	private boolean isComplete() {
+		return state == ParserState.NORMAL && closers.isEmpty() && !afterAndOr && hereDocuments.isEmpty();
+	}
+
+	private void scan(char c) {
+		if (inComment) {
+			if (c != NEWLINE) {
+				return;
+			}
+			inComment = false;
+		}
+		if (readingDelimiter) {
+			readDelimiter(c);
+		}
+		String innermost = closers.peek();
+		if (PARAMETER.equals(innermost) || QUOTED_PARAMETER.equals(innermost)) {
+			if (c == CLOSE_BRACE) {
+				closers.pop();
+				state = innermost.equals(PARAMETER) ? ParserState.NORMAL : ParserState.DOUBLE_QUOTED;
+			}
+			return;
+		}
+		boolean dollar = afterDollar;
+		afterDollar = false;
+		switch (state) {
+			case ESCAPING -> state = ParserState.NORMAL;
+			case ESCAPING_IN_DOUBLE_QUOTES -> state = ParserState.DOUBLE_QUOTED;
+			case SINGLE_QUOTED -> {
+				if (c == SINGLE_QUOTE) {
+					state = ParserState.NORMAL;
+				}
+			}
+			case DOUBLE_QUOTED -> {
+				if (c == DOUBLE_QUOTE) {
+					state = ParserState.NORMAL;
+				} else if (c == BACKSLASH) {
+					state = ParserState.ESCAPING_IN_DOUBLE_QUOTES;
+				} else if (c == DOLLAR) {
+					afterDollar = true;
+				} else if (dollar && c == OPEN_PAREN) {
+					openSubstitution(QUOTED_SUBSTITUTION);
+					state = ParserState.NORMAL;
+				} else if (dollar && c == OPEN_BRACE) {
+					closers.push(QUOTED_PARAMETER);
+				}
+			}
+			case NORMAL -> scanNormal(c, dollar);
+		}
+	}
+
+	private void scanNormal(char c, boolean dollar) {
+		if (c == AMPERSAND || c == PIPE) {
+			if (operatorStart == c) {
+				endWord();
+				operatorStart = 0;
+				afterAndOr = true;
+				commandPosition = true;
+				return;
+			}
+			operatorStart = c;
+		} else {
+			operatorStart = 0;
+		}
+		if (c == WHITESPACE || c == TAB) {
+			endWord();
+			return;
+		}
+		if (c == NEWLINE || c == SEMICOLON) {
+			endWord();
+			// "cat <<" without a delimiter is an error for the parser
+			readingDelimiter = false;
+			// A newline after "&&" continues the command; ";" there is an error for the parser
+			afterAndOr &= c == NEWLINE;
+			commandPosition = true;
+			// Here-document bodies start on the next line
+			inHereDocument = c == NEWLINE && !hereDocuments.isEmpty();
+			return;
+		}
+		if (c == OPEN_PAREN) {
+			openParen(dollar);
+			return;
+		}
+		if (c == CLOSE_PAREN) {
+			closeParen();
+			return;
+		}
+		if (c == HASH && !inWord) {
+			inComment = true;
+			return;
+		}
+		afterAndOr = false;
+		startWord();
+		if (!wordQuoted && (isWord("<<") && c != LESS_THAN && c != '-' || isWord("<<-"))) {
+			// "<<EOF": the delimiter follows the operator in the same word
+			startDelimiter(word.length() == 3);
+			readDelimiter(c);
+		}
+		switch (c) {
+			case BACKSLASH -> {
+				wordQuoted = true;
+				state = ParserState.ESCAPING;
+			}
+			case SINGLE_QUOTE -> {
+				wordQuoted = true;
+				state = ParserState.SINGLE_QUOTED;
+			}
+			case DOUBLE_QUOTE -> {
+				wordQuoted = true;
+				state = ParserState.DOUBLE_QUOTED;
+			}
+			case DOLLAR -> {
+				wordQuoted = true;
+				afterDollar = true;
+			}
+			default -> {
+				if (dollar && c == OPEN_BRACE) {
+					closers.push(PARAMETER);
+				} else {
+					word.append(c);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Opens a substitution ({@code $(}, {@code <(} or {@code >(}), a subshell or the
+	 * parentheses of a function definition. A parenthesis anywhere else is left for the
+	 * parser to reject, as are case patterns.
+	 */
+	private void openParen(boolean dollar) {
+		afterAndOr = false;
+		if (dollar || inWord && !wordQuoted && endsWithRedirect()) {
+			// $(...), or <(...) and >(...)
+			openSubstitution(SUBSTITUTION);
+			return;
+		}
+		// "f()" defines a function; "echo (" is a syntax error, left to the parser
+		boolean functionName = inWord && wordIsCommand && !wordQuoted;
+		endWord();
+		if ("esac".equals(closers.peek())) {
+			return;
+		}
+		if (commandPosition || functionName) {
+			closers.push(SUBSHELL);
+			commandPosition = true;
+		}
+	}
+
+	private void closeParen() {
+		endWord();
+		afterAndOr = false;
+		String innermost = closers.peek();
+		if (SUBSHELL.equals(innermost)) {
+			closers.pop();
+		}
+		// ")" of a function definition is followed by its body
+		commandPosition = true;
+		if (SUBSTITUTION.equals(innermost) || QUOTED_SUBSTITUTION.equals(innermost)) {
+			closers.pop();
+			// The word holding the substitution goes on
+			inWord = true;
+			wordQuoted = true;
+			commandPosition = false;
+			if (QUOTED_SUBSTITUTION.equals(innermost)) {
+				state = ParserState.DOUBLE_QUOTED;
+			}
+		}
+	}
+
+	/**
+	 * Starts reading the command of a {@code $(...)}, inside the word holding it.
+	 */
+	private void openSubstitution(String closer) {
+		closers.push(closer);
+		inWord = false;
+		commandPosition = true;
+	}
+
+	private boolean endsWithRedirect() {
+		char last = word.charAt(word.length() - 1);
+		return last == LESS_THAN || last == GREATER_THAN;
+	}
+
+	private boolean isWord(String text) {
+		return word.length() == text.length() && text.contentEquals(word);
+	}
+
+	/**
+	 * Starts reading the delimiter of a here-document; inside {@code $(...)}, where
+	 * {@code <<} is most likely an arithmetic shift, no here-document is read.
+	 */
+	private void startDelimiter(boolean stripTabs) {
+		if (closers.contains(SUBSTITUTION) || closers.contains(QUOTED_SUBSTITUTION)) {
+			return;
+		}
+		readingDelimiter = true;
+		delimiterStripsTabs = stripTabs;
+		delimiter.setLength(0);
+	}
+
+	/**
+	 * Reads a character of a here-document delimiter, which ends like a word; the
+	 * pending delimiter has its quotes removed.
+	 */
+	private void readDelimiter(char c) {
+		boolean unquoted = state == ParserState.NORMAL;
+		if (unquoted && (c == WHITESPACE || c == TAB) && delimiter.isEmpty()) {
+			return;
+		}
+		if (unquoted && (c == WHITESPACE || c == TAB || c == NEWLINE || c == SEMICOLON
+				|| c == OPEN_PAREN || c == CLOSE_PAREN || c == operatorStart)) {
+			readingDelimiter = false;
+			if (c == operatorStart) {
+				// "EOF&&": the first '&' was read as part of the delimiter
+				delimiter.setLength(delimiter.length() - 1);
+			}
+			if (!delimiter.isEmpty()) {
+				hereDocuments.add((delimiterStripsTabs ? "-" : "+") + unquote(delimiter));
+			}
+			return;
+		}
+		delimiter.append(c);
+	}
+
+	/**
+	 * Removes quotes and backslashes from a delimiter as written.
+	 */
+	private static String unquote(CharSequence written) {
+		StringBuilder unquoted = new StringBuilder(written.length());
+		char quote = 0;
+		for (int i = 0; i < written.length(); i++) {
+			char c = written.charAt(i);
+			if (quote == 0 && (c == SINGLE_QUOTE || c == DOUBLE_QUOTE)) {
+				quote = c;
+			} else if (c == quote) {
+				quote = 0;
+			} else if (c == BACKSLASH && quote != SINGLE_QUOTE && i + 1 < written.length()) {
+				unquoted.append(written.charAt(++i));
+			} else {
+				unquoted.append(c);
+			}
+		}
+		return unquoted.toString();
+	}
+
+	private void startWord() {
+		if (inWord) {
+			return;
+		}
+		inWord = true;
+		wordQuoted = false;
+		word.setLength(0);
+		wordIsCommand = commandPosition;
+		commandPosition = false;
+	}
+
+	/**
+	 * Ends the word being read; a reserved word in command position opens or closes a
+	 * compound command.
+	 */
+	private void endWord() {
+		if (!inWord) {
+			return;
+		}
+		inWord = false;
+		if (!wordQuoted && (isWord("<<") || isWord("<<-"))) {
+			// "<< EOF": the delimiter is the next word
+			startDelimiter(word.length() == 3);
+			return;
+		}
+		if (!wordIsCommand || wordQuoted) {
+			return;
+		}
+		String name = word.toString();
+		switch (name) {
+			case "if" -> closers.push("fi");
+			case "while", "until", "for" -> closers.push("done");
+			case "case" -> closers.push("esac");
+			case "{" -> closers.push("}");
+			case "fi", "done", "esac", "}" -> {
+				if (name.equals(closers.peek())) {
+					closers.pop();
+				}
+			}
+			default -> {
+				int nameLength = CommandExtractorUtils.nameLength(name, 0);
+				if (nameLength > 0 && nameLength < name.length() && name.charAt(nameLength) == '=') {
+					// "x=1 cmd": the command comes after the assignment
+					commandPosition = true;
+				}
+				return;
+			}
+		}
+		commandPosition = COMMAND_KEYWORDS.contains(name);
+	}
+}
@@ -75,6 +75,23 @@ public class DirUtils {
 		this.currentDir = initialDir;
 	}
 
+	private DirUtils(Path initialDir, Path currentDir) {
+		this.initialDir = initialDir;
+		this.currentDir = currentDir;
+	}
+
+	/**
+	 * Creates an independent copy starting at this instance's current directory.
+	 *
+	 * <p>Used for isolated execution environments such as command substitution:
+	 * changing directory in the copy never affects this instance.
+	 *
+	 * @return a new DirUtils with the same initial and current directory
+	 */
+	public DirUtils fork() {
+		return new DirUtils(initialDir, currentDir);
+	}
+
 	/**
 	 * Sets the current working directory.
 	 *
@@ -0,0 +1,231 @@
+package repl.utils;
+
+import lombok.AccessLevel;
+import lombok.ToString;
+import lombok.experimental.FieldDefaults;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+
+/**
+ * Cached, sorted listings of directories, for path completion.
+ *
+ * <p>{@link #get(Path)} never lists a directory on the calling thread: a directory not
+ * cached yet is listed on a virtual thread, and the caller gets a future of its
+ * snapshot. A directory with hundreds of thousands of entries therefore never blocks
+ * the line editor; the completion is delivered when the listing is done.
+ *
+ * <p>Snapshots stay valid until the directory changes. Each cached directory is
+ * registered with a {@link WatchService} before it is listed, and a virtual thread
+ * drops the snapshot of a directory as soon as an entry is created or deleted in it,
+ * so the next completion lists it again. Where watching is not supported, snapshots
+ * are kept until evicted.
+ *
+ * <p>At most {@link #MAX_SNAPSHOTS} directories are kept, least recently used first out.
+ *
+ * <p>Thread-safe.
+ */
+@ToString(onlyExplicitlyIncluded = true)
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class DirectorySnapshots {
+	/** Maximum number of directories whose snapshots are kept. */
+	static final int MAX_SNAPSHOTS = 32;
+
+	/** Lists directories, one virtual thread per listing. */
+	private static final Executor LISTING = task -> Thread.ofVirtual().name("dir-listing").start(task);
+
+	/**
+	 * The entry names of a directory, sorted.
+	 *
+	 * @param names the names, sorted by {@link String#compareTo(String)}
+	 */
+	public record Snapshot(String[] names) {
+		/**
+		 * Returns the names starting with a prefix, found by binary search.
+		 *
+		 * @param prefix the prefix
+		 * @return the matching names, sorted
+		 */
+		public List<String> withPrefix(String prefix) {
+			int from = lowerBound(prefix);
+			int to = from;
+			while (to < names.length && names[to].startsWith(prefix)) {
+				to++;
+			}
+			return Arrays.asList(names).subList(from, to);
+		}
+
+		private int lowerBound(String key) {
+			int low = 0;
+			int high = names.length;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (names[middle].compareTo(key) < 0) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
+			}
+			return low;
+		}
+	}
+
+	/** The snapshot of each cached directory, possibly still being listed. */
+	@ToString.Include
+	final Map<Path, Entry> snapshots = new LinkedHashMap<>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Path, Entry> eldest) {
+			if (size() > MAX_SNAPSHOTS) {
+				eldest.getValue().cancelWatch();
+				return true;
+			}
+			return false;
+		}
+	};
+
+	/** Lists a directory's entry names, unsorted. */
+	final Function<Path, List<String>> lister;
+
+	/** Reports changes to cached directories, or null if watching is unsupported or not started yet. */
+	WatchService watcher;
+
+	/** Whether creating {@link #watcher} failed, so it is not tried again. */
+	boolean watchingUnsupported;
+
+	/**
+	 * A cached snapshot and the watch invalidating it.
+	 */
+	private record Entry(CompletableFuture<Snapshot> snapshot, WatchKey watch) {
+		void cancelWatch() {
+			if (watch != null) {
+				watch.cancel();
+			}
+		}
+	}
+
+	/**
+	 * Creates an empty cache listing directories from the file system.
+	 */
+	public DirectorySnapshots() {
+		this(DirectorySnapshots::list);
+	}
+
+	/**
+	 * Creates an empty cache using the given lister.
+	 *
+	 * <p>Package-private for testing.
+	 */
+	DirectorySnapshots(Function<Path, List<String>> lister) {
+		this.lister = lister;
+	}
+
+	/**
+	 * Returns the snapshot of a directory, starting to list it if it is not cached.
+	 *
+	 * @param directory the directory
+	 * @return the snapshot, completed at once if cached; a missing or unreadable
+	 *         directory has an empty snapshot
+	 */
+	public synchronized CompletableFuture<Snapshot> get(Path directory) {
+		Path key = directory.toAbsolutePath().normalize();
+		Entry entry = snapshots.get(key);
+		if (entry == null) {
+			// Watch first, so a change made while listing still drops the snapshot
+			WatchKey watch = watch(key);
+			CompletableFuture<Snapshot> snapshot = CompletableFuture.supplyAsync(() -> snapshot(key), LISTING);
+			entry = new Entry(snapshot, watch);
+			snapshots.put(key, entry);
+		}
+		return entry.snapshot();
+	}
+
+	/**
+	 * Drops the snapshot of a directory, so the next {@link #get(Path)} lists it again.
+	 *
+	 * @param directory the directory
+	 */
+	public synchronized void invalidate(Path directory) {
+		Entry entry = snapshots.remove(directory.toAbsolutePath().normalize());
+		if (entry != null) {
+			entry.cancelWatch();
+		}
+	}
+
+	private Snapshot snapshot(Path directory) {
+		String[] names = lister.apply(directory).toArray(String[]::new);
+		Arrays.sort(names);
+		return new Snapshot(names);
+	}
+
+	/**
+	 * Registers a directory with the watch service, starting it on first use.
+	 *
+	 * @return the watch key, or null if the directory cannot be watched
+	 */
+	private WatchKey watch(Path directory) {
+		if (watcher == null && !watchingUnsupported) {
+			try {
+				watcher = FileSystems.getDefault().newWatchService();
+				WatchService service = watcher;
+				Thread.ofVirtual().name("dir-watch").start(() -> dispatch(service));
+			} catch (IOException | UnsupportedOperationException _) {
+				watchingUnsupported = true;
+			}
+		}
+		if (watcher == null) {
+			return null;
+		}
+		try {
+			return directory.register(watcher, ENTRY_CREATE, ENTRY_DELETE);
+		} catch (IOException | UnsupportedOperationException _) {
+			return null;
+		}
+	}
+
+	/**
+	 * Drops the snapshot of every directory the watch service reports a change in.
+	 */
+	private void dispatch(WatchService service) {
+		try {
+			while (true) {
+				WatchKey key = service.take();
+				key.pollEvents();
+				invalidate((Path) key.watchable());
+			}
+		} catch (InterruptedException | ClosedWatchServiceException _) {
+			// No more changes are reported
+		}
+	}
+
+	/**
+	 * Lists the entry names of a directory; empty if it cannot be read.
+	 */
+	private static List<String> list(Path directory) {
+		List<String> names = new ArrayList<>();
+		try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+			for (Path entry : entries) {
+				names.add(entry.getFileName().toString());
+			}
+		} catch (IOException _) {
+			// Completion offers nothing for a missing or unreadable directory
+		}
+		return names;
+	}
+}
@@ -0,0 +1,171 @@
+package repl.utils;
+
+import lombok.AccessLevel;
+import lombok.ToString;
+import lombok.experimental.FieldDefaults;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Manages the shell's variables and which of them are exported to child processes.
+ *
+ * <p>Starts with a copy of the JVM's process environment, all of it exported.
+ * Variables assigned with {@code NAME=value} are shell-local unless exported.
+ *
+ * <p><strong>Copy-on-write:</strong> {@link #fork()} returns a child that shares
+ * this instance's maps until either of them writes: the writer copies the maps first,
+ * so the shared ones are never modified. Subshells and substitutions therefore cost
+ * no copying unless one side assigns a variable; their changes never reach the parent,
+ * and the parent's later changes never reach them. This also lets a child run
+ * concurrently with its parent, as the body of a process substitution does, as long as
+ * each instance is used by one thread.
+ *
+ * <p>Instance-based design allows for proper test isolation.
+ */
+@ToString
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class EnvUtils {
+	/** All shell variables by name. */
+	Map<String, String> variables;
+
+	/** Names of the variables passed to child processes. */
+	Set<String> exported;
+
+	/** Whether the maps are shared with another instance and must be copied before writing. */
+	boolean shared;
+
+	/** Whether the exported variables differ from the JVM's own environment. */
+	boolean exportsChanged;
+
+	/**
+	 * Creates a new EnvUtils instance holding the JVM's process environment.
+	 */
+	public EnvUtils() {
+		this(System.getenv());
+		this.exportsChanged = false;
+	}
+
+	/**
+	 * Creates a new EnvUtils instance with the given exported variables.
+	 *
+	 * <p>Useful for testing with a controlled environment.
+	 *
+	 * @param initialVariables the variables to start with (all exported)
+	 */
+	public EnvUtils(Map<String, String> initialVariables) {
+		this.variables = new HashMap<>(initialVariables);
+		this.exported = new HashSet<>(initialVariables.keySet());
+		this.exportsChanged = true;
+	}
+
+	private EnvUtils(EnvUtils parent) {
+		this.variables = parent.variables;
+		this.exported = parent.exported;
+		this.shared = true;
+		parent.shared = true;
+		this.exportsChanged = parent.exportsChanged;
+	}
+
+	/**
+	 * Creates a copy-on-write child environment.
+	 *
+	 * @return a child that sees this environment and keeps its own changes
+	 */
+	public EnvUtils fork() {
+		return new EnvUtils(this);
+	}
+
+	/**
+	 * Returns the value of a variable.
+	 *
+	 * @param name the variable name
+	 * @return the value, or null if unset
+	 */
+	public String get(String name) {
+		return variables.get(name);
+	}
+
+	/**
+	 * Sets a variable, keeping its exported status.
+	 *
+	 * @param name the variable name
+	 * @param value the new value
+	 */
+	public void set(String name, String value) {
+		copyIfShared();
+		variables.put(name, value);
+		if (exported.contains(name)) {
+			exportsChanged = true;
+		}
+	}
+
+	/**
+	 * Marks a variable as exported to child processes.
+	 *
+	 * <p>An unset variable is created with an empty value.
+	 *
+	 * @param name the variable name
+	 */
+	public void export(String name) {
+		copyIfShared();
+		variables.putIfAbsent(name, "");
+		exported.add(name);
+		exportsChanged = true;
+	}
+
+	/**
+	 * Returns whether child processes need an environment different from the JVM's.
+	 *
+	 * <p>Lets command execution skip rebuilding the process environment in the
+	 * common case where nothing was exported or changed.
+	 *
+	 * @return true if the exported variables have changed
+	 */
+	public boolean hasExportChanges() {
+		return exportsChanged;
+	}
+
+	/**
+	 * Returns the variables to pass to child processes.
+	 *
+	 * @return a new map of exported names to values
+	 */
+	public Map<String, String> getExportedVariables() {
+		Map<String, String> result = new HashMap<>();
+		for (String name : exported) {
+			String value = variables.get(name);
+			if (value != null) {
+				result.put(name, value);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Sets the environment of a process about to be started.
+	 *
+	 * <p>Leaves the inherited JVM environment untouched when nothing was exported
+	 * or changed.
+	 *
+	 * @param processBuilder the process builder to configure
+	 */
+	public void applyTo(ProcessBuilder processBuilder) {
+		if (!exportsChanged) {
+			return;
+		}
+		Map<String, String> environment = processBuilder.environment();
+		environment.clear();
+		environment.putAll(getExportedVariables());
+	}
+
+	private void copyIfShared() {
+		if (shared) {
+			variables = new HashMap<>(variables);
+			exported = new HashSet<>(exported);
+			shared = false;
+		}
+	}
+}
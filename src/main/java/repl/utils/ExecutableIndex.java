@@ -0,0 +1,196 @@
+package repl.utils;
+
+import lombok.AccessLevel;
+import lombok.ToString;
+import lombok.experimental.FieldDefaults;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Listings of the executables in a list of directories, with a {@link PrefixTrie} of
+ * their names for completion.
+ *
+ * <p>Each directory is listed once, when first needed. {@link #refresh()} compares each
+ * directory's modification time with the listed one, which costs one {@code stat} per
+ * directory, and lists again only the directories that changed; the names that
+ * appeared or disappeared are added to or removed from the trie. Completing a
+ * command name thus never rescans PATH unless a program was installed or removed.
+ *
+ * <p>Only regular files the shell may execute are listed.
+ *
+ * <p>Thread-safe: listings and the trie are guarded by the instance's lock, and
+ * {@link #contains(String)} reads an immutable copy of the names published through a
+ * volatile field.
+ */
+@ToString(onlyExplicitlyIncluded = true)
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ExecutableIndex {
+	/** The directories, in search order. */
+	@ToString.Include
+	final List<String> directories;
+
+	/** The listing of each directory listed so far. */
+	final Map<String, Listing> listings = new HashMap<>();
+
+	/** The names in all listings, counted once per directory holding them. */
+	final PrefixTrie names = new PrefixTrie();
+
+	/**
+	 * The names in all listings, as an immutable copy replaced after every change, so
+	 * {@link #contains(String)} reads them without the lock.
+	 */
+	volatile Set<String> published = Set.of();
+
+	/**
+	 * The executables of one directory.
+	 *
+	 * @param modified the directory's modification time when listed, or null if it did not exist
+	 * @param names the names of the executables
+	 */
+	private record Listing(FileTime modified, Set<String> names) { }
+
+	/**
+	 * Creates an index of the given directories; nothing is listed yet.
+	 *
+	 * @param directories the directories, such as the entries of PATH
+	 */
+	public ExecutableIndex(List<String> directories) {
+		this.directories = List.copyOf(directories);
+	}
+
+	/**
+	 * Returns the executables of a directory, listing it if it was not listed before.
+	 *
+	 * @param directory the directory
+	 * @return the names of the executables in it; empty if it does not exist
+	 */
+	public synchronized Set<String> listing(String directory) {
+		Listing listing = listings.get(directory);
+		if (listing == null) {
+			listing = update(directory, null);
+			publish();
+		}
+		return listing.names();
+	}
+
+	/**
+	 * Lists again every directory that changed since it was listed, and lists the
+	 * directories not listed yet.
+	 */
+	public synchronized void refresh() {
+		boolean changed = false;
+		for (String directory : directories) {
+			Listing listing = listings.get(directory);
+			if (listing == null || !Objects.equals(listing.modified(), modified(directory))) {
+				update(directory, listing);
+				changed = true;
+			}
+		}
+		if (changed) {
+			publish();
+		}
+	}
+
+	/**
+	 * Adds the names of all executables starting with a prefix to a collection, in
+	 * sorted order, after refreshing changed directories.
+	 *
+	 * @param prefix the typed part of the name
+	 * @param into the collection to add to
+	 */
+	public synchronized void complete(String prefix, Collection<? super String> into) {
+		refresh();
+		names.collect(prefix, into);
+	}
+
+	/**
+	 * Returns whether an executable of that name was found by the listings made so far.
+	 *
+	 * <p>Never touches the file system, and does not wait for a listing in progress:
+	 * the line editor asks on every keystroke. It reads the names published by the last
+	 * listing that finished, never the trie being updated.
+	 *
+	 * @param name the name
+	 * @return true if a listed directory holds it
+	 */
+	public boolean contains(String name) {
+		return published.contains(name);
+	}
+
+	/**
+	 * Publishes the names of all listings for {@link #contains(String)}.
+	 */
+	private void publish() {
+		Set<String> all = new HashSet<>();
+		for (Listing listing : listings.values()) {
+			all.addAll(listing.names());
+		}
+		published = Set.copyOf(all);
+	}
+
+	/**
+	 * Lists a directory and applies the differences to the old listing to the trie.
+	 */
+	private Listing update(String directory, Listing old) {
+		Listing listing = scan(directory);
+		Set<String> oldNames = old != null ? old.names() : Set.of();
+		for (String name : listing.names()) {
+			if (!oldNames.contains(name)) {
+				names.add(name);
+			}
+		}
+		for (String name : oldNames) {
+			if (!listing.names().contains(name)) {
+				names.remove(name);
+			}
+		}
+		listings.put(directory, listing);
+		return listing;
+	}
+
+	/**
+	 * Lists the executables of a directory, reading its modification time first so a
+	 * change made while listing is seen by the next {@link #refresh()}.
+	 */
+	private static Listing scan(String directory) {
+		FileTime modified = modified(directory);
+		if (modified == null) {
+			return new Listing(null, Collections.emptySet());
+		}
+		Set<String> executables = new HashSet<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(Path.of(directory))) {
+			for (Path file : files) {
+				if (Files.isRegularFile(file) && Files.isExecutable(file)) {
+					executables.add(file.getFileName().toString());
+				}
+			}
+		} catch (NoSuchFileException | NotDirectoryException _) {
+			return new Listing(null, Collections.emptySet());
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		return new Listing(modified, Collections.unmodifiableSet(executables));
+	}
+
+	private static FileTime modified(String directory) {
+		try {
+			return Files.getLastModifiedTime(Path.of(directory));
+		} catch (IOException _) {
+			return null;
+		}
+	}
+}
@@ -3,36 +3,33 @@ package repl.utils;
 import lombok.experimental.UtilityClass;
 
 import java.io.File;
-import java.io.IOException;
 import java.nio.file.Files;
-import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.Objects;
 
 /**
  * Utility class for finding executables in system PATH.
  *
- * <p>Provides functionality to search PATH directories for executable files
- * by name, used to resolve external commands.
+ * <p>Provides functionality to search the directories of the shell's PATH for
+ * executable files by name, used to resolve external commands. Completion and
+ * highlighting list the PATH the shell was started with.
  *
- * <p>Implements two-level caching for performance:
- * <ul>
- *   <li>Command cache: Maps command names to their resolved paths</li>
- *   <li>Directory listing cache: Caches file listings for each PATH directory</li>
- * </ul>
+ * <p>Resolved commands are cached by name. The directory listings kept for completion
+ * never decide whether a command exists: they are only refreshed by completion, so a
+ * program installed or made executable since would be missed.
  */
 @UtilityClass
 public class ExecutableUtils {
 	/** Maximum number of entries in command cache before LRU eviction. */
 	private static final int MAX_COMMAND_CACHE_SIZE = 256;
 
-	/** Maximum number of entries in directory listing cache before LRU eviction. */
-	private static final int MAX_DIR_CACHE_SIZE = 64;
+	/** The PATH the shell was started with, which {@link ProcessBuilder} searches. */
+	private static final String INHERITED_SEARCH_PATH = System.getenv("PATH");
 
 	/**
 	 * Array of directory paths from the PATH environment variable.
@@ -40,11 +37,12 @@ public class ExecutableUtils {
 	 * <p>Initialized by splitting PATH using platform-specific separator.
 	 * Handles missing PATH gracefully by returning empty array.
 	 */
-	public static final String[] ENV_PATHS = initEnvPaths();
+	public static final String[] ENV_PATHS = splitSearchPath(INHERITED_SEARCH_PATH);
 
 	/**
-	 * Cache mapping command names to their resolved executable paths.
-	 * Thread-safe LRU cache with bounded size to prevent unbounded growth.
+	 * Cache mapping command names to their resolved executable paths in
+	 * {@link #cachedSearchPath}. Thread-safe LRU cache with bounded size to prevent
+	 * unbounded growth; compound updates synchronize on it.
 	 */
 	private static final Map<String, Path> commandCache = Collections.synchronizedMap(
 		new LinkedHashMap<>(16, 0.75f, true) {
@@ -55,71 +53,61 @@ public class ExecutableUtils {
 		}
 	);
 
-	/**
-	 * Cache mapping PATH directory paths to sets of filenames they contain.
-	 * Thread-safe LRU cache with bounded size to prevent unbounded growth.
-	 */
-	private static final Map<String, Set<String>> dirListingCache = Collections.synchronizedMap(
-		new LinkedHashMap<>(16, 0.75f, true) {
-			@Override
-			protected boolean removeEldestEntry(Map.Entry<String, Set<String>> eldest) {
-				return size() > MAX_DIR_CACHE_SIZE;
-			}
-		}
-	);
+	/** The search path {@link #commandCache} was filled for. */
+	private static String cachedSearchPath = INHERITED_SEARCH_PATH;
+
+	/** The directories of {@link #cachedSearchPath}. */
+	private static String[] cachedDirectories = ENV_PATHS;
 
 	/**
-	 * Initializes the PATH environment variable array.
-	 *
-	 * <p>Uses platform-specific path separator (colon on Unix, semicolon on Windows).
-	 * Returns empty array if PATH is not set or is empty.
-	 *
-	 * @return array of PATH directory strings
+	 * Listings of the executables in the PATH directories, and the trie of their names
+	 * used for completion.
 	 */
-	private static String[] initEnvPaths() {
-		String pathEnv = System.getenv("PATH");
-		if (pathEnv == null || pathEnv.isEmpty()) {
-			return new String[0];
-		}
-		return pathEnv.split(File.pathSeparator);
-	}
+	private static final ExecutableIndex pathIndex = new ExecutableIndex(List.of(ENV_PATHS));
 
 	/**
-	 * Searches PATH directories for an executable with the given name.
+	 * Searches the directories of a search path for an executable with the given name.
 	 *
-	 * <p>Uses two-level caching for optimal performance:
-	 * <ol>
-	 *   <li>Checks command cache for previously resolved paths</li>
-	 *   <li>Checks directory listing cache to avoid repeated filesystem scans</li>
-	 *   <li>Only scans directories on cache miss</li>
-	 * </ol>
+	 * <p>Checks the command cache first; on a miss, each directory is probed in order,
+	 * with one {@code stat} each, until the program is found.
 	 *
-	 * <p>Iterates through each PATH directory, looking for a file matching the
-	 * command name that has executable permissions. Returns the first match found.
+	 * <p>The command cache holds the names resolved against one search path; a call with
+	 * another search path empties it. A cached path is checked to still be executable
+	 * before it is returned, so a program deleted or moved since is searched again.
+	 * Names not found are not cached, so a program installed or made executable later is
+	 * found by the next search.
 	 *
 	 * @param commandToTest the name of the executable to find
+	 * @param searchPath the shell's current value of {@code PATH}, or null if it is unset
 	 * @return the Path to the executable if found, null otherwise
 	 */
-	public static Path findExecutablePath(String commandToTest) {
-		// Check command cache first - O(1) lookup
-		Path cachedPath = commandCache.get(commandToTest);
-		if (cachedPath != null) {
-			return cachedPath;
+	public static Path findExecutablePath(String commandToTest, String searchPath) {
+		String[] directories;
+		synchronized (commandCache) {
+			if (!Objects.equals(searchPath, cachedSearchPath)) {
+				commandCache.clear();
+				cachedSearchPath = searchPath;
+				cachedDirectories = splitSearchPath(searchPath);
+			}
+			Path cachedPath = commandCache.get(commandToTest);
+			if (cachedPath != null) {
+				if (Files.isExecutable(cachedPath)) {
+					return cachedPath;
+				}
+				commandCache.remove(commandToTest);
+			}
+			directories = cachedDirectories;
 		}
 
-		// Search PATH directories using cached listings
-		for (String envPath : ENV_PATHS) {
-			// Get or compute directory listing
-			Set<String> dirFiles = dirListingCache.computeIfAbsent(envPath, ExecutableUtils::scanDirectory);
-
-			// Check if command exists in this directory
-			if (dirFiles.contains(commandToTest)) {
-				Path candidatePath = Path.of(envPath, commandToTest);
-				if (Files.isExecutable(candidatePath)) {
-					// Cache the result for future lookups
-					commandCache.put(commandToTest, candidatePath);
-					return candidatePath;
+		for (String directory : directories) {
+			Path candidatePath = Path.of(directory, commandToTest);
+			if (Files.isRegularFile(candidatePath) && Files.isExecutable(candidatePath)) {
+				synchronized (commandCache) {
+					if (Objects.equals(searchPath, cachedSearchPath)) {
+						commandCache.put(commandToTest, candidatePath);
+					}
 				}
+				return candidatePath;
 			}
 		}
 
@@ -127,24 +115,66 @@ public class ExecutableUtils {
 	}
 
 	/**
-	 * Scans a directory and returns a set of filenames it contains.
+	 * Returns the program to hand to {@link ProcessBuilder} for a resolved command.
 	 *
-	 * <p>Helper method for directory listing cache. Handles missing directories
-	 * gracefully by returning an empty set.
+	 * <p>{@link ProcessBuilder} looks a bare name up in the PATH the JVM was started with.
+	 * While the shell's PATH is that one, the name is passed, so the program sees it as
+	 * {@code argv[0]}; once the shell's PATH differs, the resolved file is run instead.
 	 *
-	 * @param dirPath the directory path to scan
-	 * @return set of filenames in the directory, or empty set if directory doesn't exist
-	 * @throws RuntimeException if an unexpected I/O error occurs
+	 * @param name the command name as typed
+	 * @param executablePath the path the name resolved to, or null if unknown
+	 * @param searchPath the shell's current value of {@code PATH}
+	 * @return the name, or the resolved path if the JVM would not find the same program
+	 */
+	public static String program(String name, Path executablePath, String searchPath) {
+		if (executablePath == null || Objects.equals(searchPath, INHERITED_SEARCH_PATH)) {
+			return name;
+		}
+		return executablePath.toString();
+	}
+
+	/**
+	 * Splits a search path into its directories; an unset or empty one has none.
 	 */
-	private static Set<String> scanDirectory(String dirPath) {
-		try (Stream<Path> files = Files.list(Path.of(dirPath))) {
-			return files
-					.map(path -> path.getFileName().toString())
-					.collect(Collectors.toSet());
-		} catch (NoSuchFileException _) {
-			return Collections.emptySet();
-		} catch (IOException e) {
-			throw new RuntimeException(e);
+	private static String[] splitSearchPath(String searchPath) {
+		if (searchPath == null || searchPath.isEmpty()) {
+			return new String[0];
 		}
+		return searchPath.split(File.pathSeparator);
+	}
+
+	/**
+	 * Adds the names of all executables in PATH starting with a prefix to a collection,
+	 * in sorted order.
+	 *
+	 * <p>Answered from a prefix trie; only PATH directories modified since they were
+	 * listed are listed again.
+	 *
+	 * @param prefix the typed part of a command name
+	 * @param into the collection to add to
+	 */
+	public static void completeExecutables(String prefix, Collection<? super String> into) {
+		pathIndex.complete(prefix, into);
+	}
+
+	/**
+	 * Returns whether a command name was resolved or listed in PATH already.
+	 *
+	 * <p>Answered from the caches only, without touching the file system: a program
+	 * installed since PATH was last listed is unknown until {@link #refreshExecutables()}.
+	 *
+	 * @param name the command name
+	 * @return true if it is known to be in PATH
+	 */
+	public static boolean isKnownExecutable(String name) {
+		return commandCache.containsKey(name) || pathIndex.contains(name);
+	}
+
+	/**
+	 * Lists again the PATH directories modified since they were listed, and lists those
+	 * never listed.
+	 */
+	public static void refreshExecutables() {
+		pathIndex.refresh();
 	}
 }
@@ -0,0 +1,243 @@
+package repl.utils;
+
+import lombok.AccessLevel;
+import lombok.ToString;
+import lombok.experimental.FieldDefaults;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Short-lived cache of file metadata, used by the {@code test} builtin.
+ *
+ * <p>Each path is read with a single {@code Files.readAttributes} call that returns
+ * the type, permission bits, owner, size and modification time together, so
+ * {@code [ -f x -a -r x ]} needs one stat instead of one per operator.
+ *
+ * <p>Entries only live for one statement: the evaluator brackets a
+ * {@code &&}/{@code ||} list with {@link #beginStatement()} and {@link #endStatement()},
+ * so {@code [ -f x ] && [ -r x ]} stats {@code x} once, and calls {@link #endCommand()}
+ * after each command, which clears the cache unless a statement is still running.
+ * A file created by one statement is therefore always seen by the next.
+ *
+ * <p>Instance-based design allows for proper test isolation.
+ */
+@ToString
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class FileStatusCache {
+	/** Attributes read in one call through the "unix" view. */
+	private static final String UNIX_ATTRIBUTES = "unix:mode,uid,gid,size,lastModifiedTime,fileKey";
+
+	/** Mask of the file type bits of a mode. */
+	public static final int TYPE_MASK = 0170000;
+
+	/** File type bits of a regular file. */
+	public static final int TYPE_REGULAR = 0100000;
+
+	/** File type bits of a directory. */
+	public static final int TYPE_DIRECTORY = 0040000;
+
+	/** File type bits of a symbolic link. */
+	public static final int TYPE_SYMBOLIC_LINK = 0120000;
+
+	/** File type bits of a named pipe. */
+	public static final int TYPE_FIFO = 0010000;
+
+	/** File type bits of a socket. */
+	public static final int TYPE_SOCKET = 0140000;
+
+	/** File type bits of a block device. */
+	public static final int TYPE_BLOCK_DEVICE = 0060000;
+
+	/** File type bits of a character device. */
+	public static final int TYPE_CHARACTER_DEVICE = 0020000;
+
+	/** Identity of the shell process, for permission checks; null if unknown. */
+	private static final long[] IDENTITY = readIdentity();
+
+	/** Statuses of paths with symbolic links followed; null values mark missing files. */
+	final Map<Path, FileStatus> followed = new HashMap<>();
+
+	/** Statuses of the paths themselves, not following a final symbolic link. */
+	final Map<Path, FileStatus> links = new HashMap<>();
+
+	/** Number of statements currently running. */
+	int depth;
+
+	/**
+	 * Metadata of one file, as read by a single attribute call.
+	 *
+	 * @param mode the file type and permission bits, as in {@code stat(2)}
+	 * @param uid the owner's user id, or -1 if unknown
+	 * @param gid the owner's group id, or -1 if unknown
+	 * @param size the size in bytes
+	 * @param lastModifiedTime the modification time
+	 * @param fileKey an object identifying the file (device and inode), or null
+	 */
+	public record FileStatus(int mode, int uid, int gid, long size, FileTime lastModifiedTime, Object fileKey) {
+
+		/**
+		 * Returns whether the file type bits equal the given type.
+		 *
+		 * @param type one of the {@code TYPE_*} constants
+		 * @return true if the file is of that type
+		 */
+		public boolean is(int type) {
+			return (mode & TYPE_MASK) == type;
+		}
+
+		/**
+		 * Returns whether the shell process may access the file.
+		 *
+		 * <p>Uses the owner, group or other permission bits depending on who owns
+		 * the file; root may read and write anything and execute anything with an
+		 * execute bit set, like {@code access(2)}.
+		 *
+		 * @param permission 4 for read, 2 for write, 1 for execute
+		 * @return true if access is granted
+		 */
+		public boolean permits(int permission) {
+			if (IDENTITY == null || uid < 0) {
+				return (mode >> 6 & permission) != 0;
+			}
+			if (IDENTITY[0] == 0) {
+				return permission != 1 || (mode & 0111) != 0;
+			}
+			int shift = uid == IDENTITY[0] ? 6 : isInGroup(gid) ? 3 : 0;
+			return (mode >> shift & permission) != 0;
+		}
+
+		/**
+		 * Returns whether the file is owned by the shell's user.
+		 *
+		 * @return true if the owner is the current user
+		 */
+		public boolean isOwnedByUser() {
+			return IDENTITY == null || uid < 0 || uid == IDENTITY[0];
+		}
+
+		/**
+		 * Returns whether the file's group is the shell's primary group.
+		 *
+		 * @return true if the group is the current group
+		 */
+		public boolean isOwnedByGroup() {
+			return IDENTITY == null || gid < 0 || gid == IDENTITY[1];
+		}
+	}
+
+	/**
+	 * Returns the status of a file, reading it at most once per statement.
+	 *
+	 * @param path the absolute path of the file
+	 * @param followLinks whether a final symbolic link is followed
+	 * @return the status, or null if the file does not exist or cannot be read
+	 */
+	public FileStatus get(Path path, boolean followLinks) {
+		Map<Path, FileStatus> cache = followLinks ? followed : links;
+		if (cache.containsKey(path)) {
+			return cache.get(path);
+		}
+		FileStatus status = read(path, followLinks);
+		cache.put(path, status);
+		return status;
+	}
+
+	/**
+	 * Marks the start of a statement whose commands share cached statuses.
+	 */
+	public void beginStatement() {
+		depth++;
+	}
+
+	/**
+	 * Marks the end of a statement, clearing the cache once no statement is running.
+	 */
+	public void endStatement() {
+		depth--;
+		endCommand();
+	}
+
+	/**
+	 * Clears the cache after a command unless it ran inside a statement.
+	 */
+	public void endCommand() {
+		if (depth <= 0) {
+			followed.clear();
+			links.clear();
+		}
+	}
+
+	private static FileStatus read(Path path, boolean followLinks) {
+		LinkOption[] options = followLinks ? new LinkOption[0] : new LinkOption[] {LinkOption.NOFOLLOW_LINKS};
+		try {
+			Map<String, Object> attributes = Files.readAttributes(path, UNIX_ATTRIBUTES, options);
+			return new FileStatus(
+				(Integer) attributes.get("mode"),
+				(Integer) attributes.get("uid"),
+				(Integer) attributes.get("gid"),
+				(Long) attributes.get("size"),
+				(FileTime) attributes.get("lastModifiedTime"),
+				attributes.get("fileKey")
+			);
+		} catch (UnsupportedOperationException e) {
+			return readBasic(path, options);
+		} catch (IOException | SecurityException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Reads a status where the "unix" view is unavailable, deriving the
+	 * permission bits from the access checks of {@link Files}.
+	 */
+	private static FileStatus readBasic(Path path, LinkOption[] options) {
+		try {
+			BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class, options);
+			int type = attributes.isDirectory() ? TYPE_DIRECTORY
+					: attributes.isSymbolicLink() ? TYPE_SYMBOLIC_LINK
+					: attributes.isRegularFile() ? TYPE_REGULAR
+					: 0;
+			int permissions = (Files.isReadable(path) ? 0444 : 0)
+					| (Files.isWritable(path) ? 0222 : 0)
+					| (Files.isExecutable(path) ? 0111 : 0);
+			return new FileStatus(type | permissions, -1, -1, attributes.size(),
+					attributes.lastModifiedTime(), attributes.fileKey());
+		} catch (IOException | SecurityException e) {
+			return null;
+		}
+	}
+
+	private static boolean isInGroup(int gid) {
+		for (int i = 1; i < IDENTITY.length; i++) {
+			if (IDENTITY[i] == gid) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Reads the user id, primary group id and supplementary group ids of the
+	 * shell process, or returns null where they are not available (Windows).
+	 */
+	private static long[] readIdentity() {
+		try {
+			com.sun.security.auth.module.UnixSystem system = new com.sun.security.auth.module.UnixSystem();
+			long[] groups = system.getGroups() != null ? system.getGroups() : new long[0];
+			long[] identity = new long[groups.length + 2];
+			identity[0] = system.getUid();
+			identity[1] = system.getGid();
+			System.arraycopy(groups, 0, identity, 2, groups.length);
+			return identity;
+		} catch (LinkageError | RuntimeException e) {
+			return null;
+		}
+	}
+}
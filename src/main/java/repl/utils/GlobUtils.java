@@ -0,0 +1,225 @@
+package repl.utils;
+
+import lombok.experimental.UtilityClass;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static repl.Constants.*;
+
+/**
+ * Utility class for shell pattern matching and pathname expansion.
+ *
+ * <p>Patterns use shell syntax:
+ * <ul>
+ *   <li>{@code *} matches any string, {@code ?} any single character</li>
+ *   <li>{@code [abc]}, {@code [a-z]} match one character of a set; {@code [!a]} or
+ *       {@code [^a]} one character not in it</li>
+ *   <li>{@code \} makes the next character literal</li>
+ * </ul>
+ *
+ * <p>Examples:
+ * <pre>{@code
+ * matches("*.csv", "data.csv")       → true
+ * matches("file[0-9]", "file7")      → true
+ * expand(cwd, "logs/*.txt")          → ["logs/a.txt", "logs/b.txt"]
+ * }</pre>
+ */
+@UtilityClass
+public class GlobUtils {
+
+	/**
+	 * Returns whether a pattern contains an unescaped {@code *}, {@code ?} or {@code [}.
+	 *
+	 * @param pattern the pattern to inspect
+	 * @return true if expanding the pattern can match more than its literal text
+	 */
+	public static boolean hasWildcards(String pattern) {
+		for (int i = 0; i < pattern.length(); i++) {
+			char c = pattern.charAt(i);
+			if (c == BACKSLASH) {
+				i++;
+			} else if (c == ASTERISK || c == QUESTION_MARK || c == OPEN_BRACKET) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns whether the whole text matches a pattern.
+	 *
+	 * @param pattern the shell pattern
+	 * @param text the text to match
+	 * @return true on a full match
+	 */
+	public static boolean matches(String pattern, String text) {
+		int p = 0;
+		int t = 0;
+		int starPattern = -1;
+		int starText = -1;
+		while (t < text.length()) {
+			if (p < pattern.length() && pattern.charAt(p) == ASTERISK) {
+				// Remember the star and first try matching it against nothing
+				starPattern = ++p;
+				starText = t;
+				continue;
+			}
+			int consumed = p < pattern.length() ? matchOne(pattern, p, text.charAt(t)) : -1;
+			if (consumed > 0) {
+				p += consumed;
+				t++;
+			} else if (starPattern >= 0) {
+				// Let the last star absorb one more character
+				p = starPattern;
+				t = ++starText;
+			} else {
+				return false;
+			}
+		}
+		while (p < pattern.length() && pattern.charAt(p) == ASTERISK) {
+			p++;
+		}
+		return p == pattern.length();
+	}
+
+	/**
+	 * Expands a pattern into the paths it matches, sorted.
+	 *
+	 * <p>Relative patterns are resolved against {@code currentDir} and the matches
+	 * are returned relative too. Names starting with {@code .} are only matched by
+	 * a pattern component that starts with {@code .}.
+	 *
+	 * @param currentDir the directory relative patterns are resolved against
+	 * @param pattern the pattern, possibly spanning several path components
+	 * @return the matching paths as written by the user; empty if nothing matches
+	 */
+	public static List<String> expand(Path currentDir, String pattern) {
+		boolean directoriesOnly = pattern.endsWith("/");
+		List<String> prefixes = List.of(pattern.startsWith("/") ? "/" : "");
+		for (String component : pattern.split("/")) {
+			if (component.isEmpty()) {
+				continue;
+			}
+			List<String> next = new ArrayList<>();
+			for (String prefix : prefixes) {
+				Path dir = prefix.isEmpty() ? currentDir : currentDir.resolve(prefix);
+				if (!hasWildcards(component)) {
+					String name = unescape(component);
+					if (Files.exists(dir.resolve(name))) {
+						next.add(prefix + name);
+					}
+					continue;
+				}
+				addMatches(dir, prefix, component, next);
+			}
+			prefixes = next.stream().map(path -> path + "/").toList();
+		}
+
+		List<String> matches = new ArrayList<>(prefixes.size());
+		for (String prefix : prefixes) {
+			if (!directoriesOnly || Files.isDirectory(currentDir.resolve(prefix))) {
+				matches.add(directoriesOnly ? prefix : prefix.substring(0, prefix.length() - 1));
+			}
+		}
+		matches.sort(null);
+		return matches;
+	}
+
+	/**
+	 * Removes pattern escapes, turning {@code a\*b} into {@code a*b}.
+	 *
+	 * @param pattern the pattern text
+	 * @return the literal text the pattern stands for
+	 */
+	public static String unescape(String pattern) {
+		if (pattern.indexOf(BACKSLASH) < 0) {
+			return pattern;
+		}
+		StringBuilder text = new StringBuilder(pattern.length());
+		for (int i = 0; i < pattern.length(); i++) {
+			char c = pattern.charAt(i);
+			if (c == BACKSLASH && i + 1 < pattern.length()) {
+				c = pattern.charAt(++i);
+			}
+			text.append(c);
+		}
+		return text.toString();
+	}
+
+	private static void addMatches(Path dir, String prefix, String component, List<String> matches) {
+		boolean matchHidden = component.startsWith(".");
+		try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+			for (Path entry : entries) {
+				String name = entry.getFileName().toString();
+				if ((matchHidden || !name.startsWith(".")) && matches(component, name)) {
+					matches.add(prefix + name);
+				}
+			}
+		} catch (IOException e) {
+			// Unreadable or not a directory: no matches, like the shell
+		}
+	}
+
+	/**
+	 * Matches the pattern element at {@code p} against one character.
+	 *
+	 * @return the length of the pattern element if it matches, otherwise -1
+	 */
+	private static int matchOne(String pattern, int p, char c) {
+		char first = pattern.charAt(p);
+		if (first == QUESTION_MARK) {
+			return 1;
+		}
+		if (first == BACKSLASH && p + 1 < pattern.length()) {
+			return pattern.charAt(p + 1) == c ? 2 : -1;
+		}
+		if (first == OPEN_BRACKET) {
+			int length = matchBracket(pattern, p, c);
+			if (length != 0) {
+				return length;
+			}
+			// No closing bracket: '[' is literal
+		}
+		return first == c ? 1 : -1;
+	}
+
+	/**
+	 * Matches a {@code [...]} expression against one character.
+	 *
+	 * @return the expression length if it matches, -1 if it does not, 0 if it is unterminated
+	 */
+	private static int matchBracket(String pattern, int start, char c) {
+		int i = start + 1;
+		boolean negated = i < pattern.length() && (pattern.charAt(i) == '!' || pattern.charAt(i) == '^');
+		if (negated) {
+			i++;
+		}
+		boolean matched = false;
+		boolean first = true;
+		while (i < pattern.length() && (first || pattern.charAt(i) != ']')) {
+			first = false;
+			char low = pattern.charAt(i);
+			if (low == BACKSLASH && i + 1 < pattern.length()) {
+				low = pattern.charAt(++i);
+			}
+			char high = low;
+			if (i + 2 < pattern.length() && pattern.charAt(i + 1) == '-' && pattern.charAt(i + 2) != ']') {
+				high = pattern.charAt(i + 2);
+				i += 2;
+			}
+			if (low <= c && c <= high) {
+				matched = true;
+			}
+			i++;
+		}
+		if (i >= pattern.length()) {
+			return 0;
+		}
+		return matched != negated ? i - start + 1 : -1;
+	}
+}
@@ -0,0 +1,188 @@
+package repl.utils;
+
+import lombok.AccessLevel;
+import lombok.ToString;
+import lombok.experimental.FieldDefaults;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Set of names answering prefix queries, for command completion.
+ *
+ * <p>A character trie whose nodes keep their children in sorted parallel arrays
+ * rather than maps, so a node costs two small arrays and a lookup is a binary search.
+ * Finding the names with a prefix walks the prefix once and then visits only the
+ * subtree below it, in O(prefix length + total length of the results), and yields
+ * them in sorted order.
+ *
+ * <p>Names are counted: a name added by two sources (say, a program present in two
+ * PATH directories) stays until it has been removed as often as it was added.
+ * Removing the last copy prunes the nodes no other name needs.
+ *
+ * <p>Thread-safe: completion reads the trie while the shell updates it.
+ */
+@ToString(onlyExplicitlyIncluded = true)
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class PrefixTrie {
+	private static final char[] NO_LABELS = {};
+	private static final Node[] NO_CHILDREN = {};
+
+	/** The node of the empty prefix. */
+	final Node root = new Node();
+
+	/** Number of distinct names. */
+	@ToString.Include
+	int size;
+
+	/**
+	 * A trie node: the prefix spelled by the path from the root.
+	 */
+	private static final class Node {
+		/** First characters of the children's suffixes, sorted; only the first {@link #childCount} are used. */
+		char[] labels = NO_LABELS;
+
+		/** The children, in the order of {@link #labels}. */
+		Node[] children = NO_CHILDREN;
+
+		/** Number of children. */
+		int childCount;
+
+		/** How often the name ending at this node has been added and not removed. */
+		int count;
+
+		Node child(char label) {
+			int index = Arrays.binarySearch(labels, 0, childCount, label);
+			return index >= 0 ? children[index] : null;
+		}
+
+		Node addChild(char label) {
+			int index = Arrays.binarySearch(labels, 0, childCount, label);
+			if (index >= 0) {
+				return children[index];
+			}
+			index = -index - 1;
+			if (childCount == labels.length) {
+				int capacity = Math.max(2, childCount * 2);
+				labels = Arrays.copyOf(labels, capacity);
+				children = Arrays.copyOf(children, capacity);
+			}
+			System.arraycopy(labels, index, labels, index + 1, childCount - index);
+			System.arraycopy(children, index, children, index + 1, childCount - index);
+			Node child = new Node();
+			labels[index] = label;
+			children[index] = child;
+			childCount++;
+			return child;
+		}
+
+		void removeChild(char label) {
+			int index = Arrays.binarySearch(labels, 0, childCount, label);
+			System.arraycopy(labels, index + 1, labels, index, childCount - index - 1);
+			System.arraycopy(children, index + 1, children, index, childCount - index - 1);
+			childCount--;
+			children[childCount] = null;
+		}
+	}
+
+	/**
+	 * Adds a name, or another copy of it.
+	 *
+	 * @param name the name
+	 */
+	public synchronized void add(String name) {
+		Node node = root;
+		for (int i = 0; i < name.length(); i++) {
+			node = node.addChild(name.charAt(i));
+		}
+		if (node.count++ == 0) {
+			size++;
+		}
+	}
+
+	/**
+	 * Removes one copy of a name.
+	 *
+	 * @param name the name
+	 * @return true if the name was present
+	 */
+	public synchronized boolean remove(String name) {
+		return remove(root, name, 0);
+	}
+
+	/**
+	 * Removes one copy of the name below a node, pruning nodes left without names.
+	 */
+	private boolean remove(Node node, String name, int depth) {
+		if (depth == name.length()) {
+			if (node.count == 0) {
+				return false;
+			}
+			if (--node.count == 0) {
+				size--;
+			}
+			return true;
+		}
+		char label = name.charAt(depth);
+		Node child = node.child(label);
+		if (child == null || !remove(child, name, depth + 1)) {
+			return false;
+		}
+		if (child.count == 0 && child.childCount == 0) {
+			node.removeChild(label);
+		}
+		return true;
+	}
+
+	/**
+	 * Returns whether a name is present.
+	 *
+	 * @param name the name
+	 * @return true if the name has been added more often than removed
+	 */
+	public synchronized boolean contains(String name) {
+		Node node = find(name);
+		return node != null && node.count > 0;
+	}
+
+	/**
+	 * Adds all names starting with a prefix to a collection, in sorted order.
+	 *
+	 * @param prefix the prefix; empty for all names
+	 * @param names the collection to add to
+	 */
+	public synchronized void collect(String prefix, Collection<? super String> names) {
+		Node node = find(prefix);
+		if (node != null) {
+			collect(node, new StringBuilder(prefix), names);
+		}
+	}
+
+	/**
+	 * Returns the number of distinct names.
+	 *
+	 * @return the number of names
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	private Node find(String prefix) {
+		Node node = root;
+		for (int i = 0; i < prefix.length() && node != null; i++) {
+			node = node.child(prefix.charAt(i));
+		}
+		return node;
+	}
+
+	private static void collect(Node node, StringBuilder name, Collection<? super String> names) {
+		if (node.count > 0) {
+			names.add(name.toString());
+		}
+		for (int i = 0; i < node.childCount; i++) {
+			name.append(node.labels[i]);
+			collect(node.children[i], name, names);
+			name.setLength(name.length() - 1);
+		}
+	}
+}
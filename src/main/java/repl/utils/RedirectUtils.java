@@ -0,0 +1,36 @@
+package repl.utils;
+
+import lombok.experimental.UtilityClass;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Utility class for resolving output redirection targets.
+ *
+ * <p>Targets are resolved against the shell's current working directory and
+ * missing parent directories are created, so {@code > logs/out.txt} works even
+ * when {@code logs} does not exist yet.
+ */
+@UtilityClass
+public class RedirectUtils {
+
+	/**
+	 * Resolves a redirect target and ensures its parent directory exists.
+	 *
+	 * @param currentDir the directory relative targets are resolved against
+	 * @param redirectTo the target file path as written by the user
+	 * @return the resolved target path
+	 * @throws IOException if the parent directories cannot be created
+	 */
+	public static Path prepareTarget(Path currentDir, String redirectTo) throws IOException {
+		Path outputPath = currentDir.resolve(redirectTo);
+
+		Path parentDir = outputPath.getParent();
+		if (parentDir != null && !Files.exists(parentDir)) {
+			Files.createDirectories(parentDir);
+		}
+		return outputPath;
+	}
+}
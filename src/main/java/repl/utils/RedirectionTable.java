@@ -0,0 +1,338 @@
+package repl.utils;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static repl.Constants.AMPERSAND;
+import static repl.Constants.GREATER_THAN;
+import static repl.Constants.NEWLINE;
+
+/**
+ * Where a command's stdout and stderr go, built from its redirections in order.
+ *
+ * <p>Each redirection sets one slot of the table, as in other shells: {@code > f} points
+ * descriptor 1 at a file and {@code 2>&1} copies the current target of descriptor 1 into
+ * descriptor 2. Order matters: {@code > f 2>&1} sends both streams to {@code f}, while
+ * {@code 2>&1 > f} sends stderr where stdout went before and only stdout to {@code f}.
+ *
+ * <p>Descriptors sharing one {@link Target.File} share one open file, so an external
+ * program writes both streams into it through the same handle, in the order it writes
+ * them: {@code build.sh > build.log 2>&1} streams to disk and never through the shell.
+ * Two redirections naming the same path are separate targets, compared by identity.
+ *
+ * <p>Only descriptors 1 and 2 can be redirected: a {@link ProcessBuilder} gives a child
+ * no other descriptors.
+ *
+ * @param stdout where descriptor 1 goes
+ * @param stderr where descriptor 2 goes
+ * @param files every file the redirections name, in order; all are created or
+ *              truncated, even those a later redirection replaces as in {@code > a > b}
+ */
+public record RedirectionTable(Target stdout, Target stderr, List<Target.File> files) {
+
+	private static final byte[] NEWLINE_BYTES = {NEWLINE};
+
+	/** No redirections: each descriptor goes to its own stream. */
+	public static final RedirectionTable NONE =
+			new RedirectionTable(Target.Stream.STDOUT, Target.Stream.STDERR, List.of());
+
+	/**
+	 * Where a descriptor goes.
+	 */
+	public sealed interface Target {
+		/**
+		 * One of the shell's own output streams: the terminal, or the output of the
+		 * enclosing command when it is captured.
+		 */
+		enum Stream implements Target {
+			/** The shell's stdout. */
+			STDOUT,
+
+			/** The shell's stderr. */
+			STDERR
+		}
+
+		/**
+		 * A file, opened once however many descriptors point at it.
+		 *
+		 * @param path the path as written, resolved against the current directory when opened
+		 * @param append true for {@code >>}: written after the existing content
+		 */
+		record File(String path, boolean append) implements Target { }
+	}
+
+	/**
+	 * Returns the file stdout goes to.
+	 *
+	 * @return the path as written, or null if stdout does not go to a file
+	 */
+	public String stdoutFile() {
+		return stdout instanceof Target.File file ? file.path() : null;
+	}
+
+	/**
+	 * Returns the file stderr goes to.
+	 *
+	 * @return the path as written, or null if stderr does not go to a file
+	 */
+	public String stderrFile() {
+		return stderr instanceof Target.File file ? file.path() : null;
+	}
+
+	/**
+	 * Returns whether stdout and stderr go to the same target, as after {@code 2>&1}.
+	 *
+	 * @return true if both descriptors share a target
+	 */
+	public boolean isMerged() {
+		return stdout == stderr;
+	}
+
+	/**
+	 * Returns whether a stream goes to the other one, as after {@code 1>&2}, which a
+	 * program inheriting the shell's descriptors cannot do.
+	 *
+	 * @return true if stdout goes to stderr or stderr to stdout
+	 */
+	public boolean crossesStreams() {
+		return stdout == Target.Stream.STDERR || stderr == Target.Stream.STDOUT;
+	}
+
+	/**
+	 * Creates every file the redirections name, truncating those not appended to.
+	 *
+	 * <p>Called before the command runs, so that a file exists even if the command
+	 * writes nothing to it. A file appended to gets a final newline if it lacks one, as
+	 * text the shell wrote itself ends without it: appended output starts on a new line.
+	 *
+	 * @param currentDir the directory relative paths are resolved against
+	 * @throws IOException if a file cannot be created
+	 */
+	public void open(Path currentDir) throws IOException {
+		for (int i = 0; i < files.size(); i++) {
+			Target.File file = files.get(i);
+			Path path = RedirectUtils.prepareTarget(currentDir, file.path());
+			if (file.append()) {
+				long size = Files.exists(path) ? Files.size(path) : 0;
+				byte[] separator = size > 0 && !endsWithNewline(path, size) ? NEWLINE_BYTES : new byte[0];
+				Files.write(path, separator, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+			} else {
+				Files.write(path, new byte[0]);
+			}
+		}
+	}
+
+	/**
+	 * Points a process's stdout and stderr at their files.
+	 *
+	 * <p>The files must have been {@linkplain #open(Path) opened}: the process appends to
+	 * them. Merged descriptors become one stream through
+	 * {@link ProcessBuilder#redirectErrorStream(boolean)}, read from the process's
+	 * stdout when not written to a file. Other streams are left as they are.
+	 *
+	 * @param pb the process to configure
+	 * @param currentDir the directory relative paths are resolved against
+	 */
+	public void redirect(ProcessBuilder pb, Path currentDir) {
+		if (isMerged()) {
+			pb.redirectErrorStream(true);
+		}
+		if (stdout instanceof Target.File file) {
+			pb.redirectOutput(ProcessBuilder.Redirect.appendTo(currentDir.resolve(file.path()).toFile()));
+		}
+		if (!isMerged() && stderr instanceof Target.File file) {
+			pb.redirectError(ProcessBuilder.Redirect.appendTo(currentDir.resolve(file.path()).toFile()));
+		}
+	}
+
+	/**
+	 * Returns the text one of the shell's streams receives from a command.
+	 *
+	 * <p>When both descriptors go to the stream, their texts are joined with a newline,
+	 * stdout first. A merged process stream is passed as {@code stdoutText} alone.
+	 *
+	 * @param stream the shell's stream
+	 * @param stdoutText what the command wrote to its stdout
+	 * @param stderrText what the command wrote to its stderr
+	 * @return the text for the stream, empty if neither descriptor goes to it
+	 */
+	public String textFor(Target.Stream stream, String stdoutText, String stderrText) {
+		return join(stdout == stream ? stdoutText : "", stderr == stream ? stderrText : "");
+	}
+
+	/**
+	 * Writes a command's output captured in-process into its files.
+	 *
+	 * <p>Written text ends without a newline, as the shell prints a newline after each
+	 * output itself. Appended text starts on a new line. Text written to a pipe ends with
+	 * a newline, as a program reading it expects whole lines.
+	 *
+	 * @param currentDir the directory relative paths are resolved against
+	 * @param stdoutText what the command wrote to its stdout
+	 * @param stderrText what the command wrote to its stderr
+	 * @throws IOException if a file cannot be written
+	 */
+	public void write(Path currentDir, String stdoutText, String stderrText) throws IOException {
+		if (isMerged()) {
+			if (stdout instanceof Target.File file) {
+				append(currentDir, file, join(stdoutText, stderrText));
+			}
+			return;
+		}
+		if (stdout instanceof Target.File file) {
+			append(currentDir, file, stdoutText);
+		}
+		if (stderr instanceof Target.File file) {
+			append(currentDir, file, stderrText);
+		}
+	}
+
+	private static void append(Path currentDir, Target.File file, String text) throws IOException {
+		if (text.isEmpty()) {
+			return;
+		}
+		Path path = currentDir.resolve(file.path());
+		if (!Files.isRegularFile(path)) {
+			// A pipe, as in "> >(cmd)", cannot be read back: the text goes out as full lines
+			text = text + NEWLINE;
+		} else {
+			long size = Files.size(path);
+			if (size > 0 && !endsWithNewline(path, size)) {
+				text = NEWLINE + text;
+			}
+		}
+		Files.writeString(path, text, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+	}
+
+	private static boolean endsWithNewline(Path path, long size) throws IOException {
+		try (SeekableByteChannel channel = Files.newByteChannel(path)) {
+			ByteBuffer last = ByteBuffer.allocate(1);
+			channel.position(size - 1).read(last);
+			return last.get(0) == NEWLINE;
+		}
+	}
+
+	private static String join(String first, String second) {
+		if (first.isEmpty()) {
+			return second;
+		}
+		return second.isEmpty() ? first : first + NEWLINE + second;
+	}
+
+	/**
+	 * Creates a builder starting from no redirections.
+	 *
+	 * @return a new builder
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Builds a table from redirections applied in order.
+	 */
+	@FieldDefaults(level = AccessLevel.PRIVATE)
+	public static class Builder {
+		Target stdout = Target.Stream.STDOUT;
+		Target stderr = Target.Stream.STDERR;
+		final List<Target.File> files = new ArrayList<>(2);
+
+		private Builder() { }
+
+		/**
+		 * Applies an output redirection.
+		 *
+		 * @param operator the operator, such as {@code >}, {@code 2>>}, {@code &>} or {@code 2>&}
+		 * @param target the expanded target: a file, or a descriptor after {@code >&}
+		 * @return this builder for chaining
+		 * @throws IllegalArgumentException for a descriptor other than 1 and 2, or a
+		 *                                  duplication of a descriptor that is not open
+		 */
+		public Builder add(String operator, String target) {
+			if (operator.charAt(0) == AMPERSAND) {
+				// &> and &>>: both streams to one file
+				Target.File file = file(target, operator.length() == 3);
+				stdout = file;
+				stderr = file;
+				return this;
+			}
+			int fd = 1;
+			int start = 0;
+			if (Character.isDigit(operator.charAt(0))) {
+				fd = operator.charAt(0) - '0';
+				start = 1;
+			}
+			String op = operator.substring(start);
+			if (op.length() == 2 && op.charAt(1) == AMPERSAND) {
+				return duplicate(fd, start == 1, target);
+			}
+			set(fd, file(target, op.length() == 2 && op.charAt(1) == GREATER_THAN));
+			return this;
+		}
+
+		private Builder duplicate(int fd, boolean numbered, String target) {
+			if (target.length() != 1 || !Character.isDigit(target.charAt(0))) {
+				if (numbered) {
+					throw new IllegalArgumentException(target + ": ambiguous redirect");
+				}
+				// >&file is the older spelling of &>file
+				return add("&>", target);
+			}
+			int source = target.charAt(0) - '0';
+			if (source == 0) {
+				throw new IllegalArgumentException(source + ": Bad file descriptor");
+			}
+			set(fd, slot(source));
+			return this;
+		}
+
+		private Target slot(int fd) {
+			return switch (fd) {
+				case 1 -> stdout;
+				case 2 -> stderr;
+				default -> throw new IllegalArgumentException(
+						"redirection of file descriptor " + fd + " is not supported");
+			};
+		}
+
+		private void set(int fd, Target target) {
+			switch (fd) {
+				case 1 -> stdout = target;
+				case 2 -> stderr = target;
+				default -> throw new IllegalArgumentException(
+						"redirection of file descriptor " + fd + " is not supported");
+			}
+		}
+
+		private Target.File file(String path, boolean append) {
+			if (path.isEmpty()) {
+				throw new IllegalArgumentException(": No such file or directory");
+			}
+			Target.File file = new Target.File(path, append);
+			files.add(file);
+			return file;
+		}
+
+		/**
+		 * Builds the table.
+		 *
+		 * @return the table, {@link #NONE} if nothing was redirected
+		 */
+		public RedirectionTable build() {
+			if (files.isEmpty() && stdout == Target.Stream.STDOUT && stderr == Target.Stream.STDERR) {
+				return NONE;
+			}
+			return new RedirectionTable(stdout, stderr, List.copyOf(files));
+		}
+	}
+}
@@ -0,0 +1,446 @@
+package repl.utils;
+
+import lombok.AccessLevel;
+import lombok.ToString;
+import lombok.experimental.FieldDefaults;
+import repl.utils.CommandExtractorUtils.ParserState;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import static repl.Constants.*;
+
+/**
+ * Tokenizer classifying each character of a line being edited, for syntax highlighting.
+ *
+ * <p>It follows the quoting rules of {@link CommandExtractorUtils} with the same
+ * {@link ParserState} machine, but never fails: an unclosed quote just runs to the end
+ * of the line. Each character gets a {@link Kind}; the first word of each command is a
+ * {@link Kind#COMMAND} if the predicate given knows its name, a
+ * {@link Kind#UNKNOWN_COMMAND} if not.
+ *
+ * <p>The state before every position is kept as a checkpoint: the parser state, the
+ * token being read and where it started, and whether a command name comes next. After
+ * an edit, {@link #update(CharSequence, int)} resumes from the checkpoint at the start of
+ * the token the edit touched, so typing at the end of a line re-lexes only the last
+ * word, whatever the length of the line.
+ *
+ * <p>Not thread-safe: it belongs to one line editor.
+ */
+@ToString(onlyExplicitlyIncluded = true)
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ResumableTokenizer {
+
+	/**
+	 * What a character is part of.
+	 */
+	public enum Kind {
+		/** An argument, whitespace, or a command name that cannot be checked. */
+		PLAIN,
+
+		/** The name of a builtin, function, alias or program in PATH. */
+		COMMAND,
+
+		/** A command name that is none of those. */
+		UNKNOWN_COMMAND,
+
+		/** A reserved word, such as {@code if} or {@code done}, in command position. */
+		KEYWORD,
+
+		/** Quoted or escaped text, including the quotes. */
+		QUOTED,
+
+		/** A {@code $name}, {@code ${name}}, {@code $(...)} or {@code <(...)} expansion. */
+		EXPANSION,
+
+		/** A redirection operator, such as {@code >}, {@code 2>} or {@code >&}. */
+		REDIRECT,
+
+		/** A control operator: {@code ;}, {@code &&}, {@code ||}, {@code |}, {@code &}, parentheses and newlines. */
+		OPERATOR
+	}
+
+	private static final Kind[] KINDS = Kind.values();
+
+	private static final ParserState[] STATES = ParserState.values();
+
+	/** Reserved words highlighted in command position. */
+	private static final Set<String> KEYWORDS = Set.of(
+		"if", "then", "else", "elif", "fi", "do", "done", "while", "until", "for", "in",
+		"case", "esac", "!", "{", "}");
+
+	/** Reserved words after which a command starts. */
+	private static final Set<String> COMMAND_KEYWORDS = Set.of(
+		"if", "then", "else", "elif", "do", "while", "until", "!", "{");
+
+	private static final int NO_TOKEN = 0;
+	private static final int WORD = 1;
+	private static final int OPERATOR_TOKEN = 2;
+	private static final int REDIRECT_TOKEN = 3;
+
+	/** No expansion is being read. */
+	private static final int NO_VARIABLE = 0;
+	/** A {@code $} was just read. */
+	private static final int DOLLAR_READ = 1;
+	/** A {@code $name} is being read. */
+	private static final int NAME = 2;
+	/** A {@code ${...}} is being read. */
+	private static final int BRACED = 3;
+
+	/** Whether a name is a command the shell knows. */
+	final Predicate<String> isCommand;
+
+	/** Kind of each character, as {@link Kind} ordinals. */
+	byte[] kinds = new byte[64];
+
+	/** Packed state before each position: see {@link #save(int)}. */
+	int[] checkpoints = new int[65];
+
+	/** Start of the token being read before each position. */
+	int[] tokenStarts = new int[65];
+
+	/** Number of characters lexed. */
+	@ToString.Include
+	int length;
+
+	// The state while lexing, saved before each character
+
+	ParserState state = ParserState.NORMAL;
+	boolean commandPosition = true;
+	boolean redirectTarget;
+	boolean wordIsCommand;
+	int tokenType = NO_TOKEN;
+	int tokenStart;
+	int variable = NO_VARIABLE;
+	int depth;
+
+	/**
+	 * Creates a tokenizer for an empty line.
+	 *
+	 * @param isCommand tells whether a command name is known; called on the editing
+	 *        thread, so it must answer from memory
+	 */
+	public ResumableTokenizer(Predicate<String> isCommand) {
+		this.isCommand = isCommand;
+		save(0);
+	}
+
+	/**
+	 * Re-lexes a line after the characters from {@code from} on changed.
+	 *
+	 * @param line the line
+	 * @param from the first index that may differ from the line lexed before
+	 * @return the first index whose kind changed, which is {@code from} unless the edit
+	 *         changed how the token it touched reads, as when a command name is completed
+	 */
+	public int update(CharSequence line, int from) {
+		from = Math.min(from, Math.min(length, line.length()));
+		int restart = tokenTypeAt(from) != NO_TOKEN ? tokenStarts[from] : from;
+		byte[] before = Arrays.copyOfRange(kinds, restart, from);
+		ensureCapacity(line.length());
+		load(restart);
+		for (int i = restart; i < line.length(); i++) {
+			save(i);
+			lex(line, i);
+		}
+		save(line.length());
+		length = line.length();
+		// A word at the end of the line is classified as if it ended there
+		endToken(line, length);
+		for (int i = restart; i < from; i++) {
+			if (kinds[i] != before[i - restart]) {
+				return i;
+			}
+		}
+		return from;
+	}
+
+	/**
+	 * Returns the kind of a character of the line lexed last.
+	 *
+	 * @param index the index, below the line's length
+	 * @return the kind
+	 */
+	public Kind kind(int index) {
+		return KINDS[kinds[index]];
+	}
+
+	private void lex(CharSequence line, int i) {
+		char c = line.charAt(i);
+		if (depth > 0) {
+			set(i, Kind.EXPANSION);
+			if (c == OPEN_PAREN) {
+				depth++;
+			} else if (c == CLOSE_PAREN) {
+				depth--;
+			}
+			return;
+		}
+		if (variable == BRACED) {
+			set(i, Kind.EXPANSION);
+			if (c == CLOSE_BRACE) {
+				variable = NO_VARIABLE;
+			}
+			return;
+		}
+		if (variable == DOLLAR_READ) {
+			variable = NO_VARIABLE;
+			if (c == OPEN_PAREN) {
+				depth = 1;
+			} else if (c == OPEN_BRACE) {
+				variable = BRACED;
+			} else if (c == '_' || Character.isLetter(c)) {
+				variable = NAME;
+			} else if ("?#@*!$-0123456789".indexOf(c) < 0) {
+				// A lone '$' is literal; this character is read as usual
+				lexUnexpanded(line, i, c);
+				return;
+			}
+			set(i, Kind.EXPANSION);
+			return;
+		}
+		if (variable == NAME) {
+			if (c == '_' || Character.isLetterOrDigit(c)) {
+				set(i, Kind.EXPANSION);
+				return;
+			}
+			variable = NO_VARIABLE;
+		}
+		lexUnexpanded(line, i, c);
+	}
+
+	private void lexUnexpanded(CharSequence line, int i, char c) {
+		switch (state) {
+			case ESCAPING -> {
+				set(i, Kind.QUOTED);
+				state = ParserState.NORMAL;
+			}
+			case ESCAPING_IN_DOUBLE_QUOTES -> {
+				set(i, Kind.QUOTED);
+				state = ParserState.DOUBLE_QUOTED;
+			}
+			case SINGLE_QUOTED -> {
+				set(i, Kind.QUOTED);
+				if (c == SINGLE_QUOTE) {
+					state = ParserState.NORMAL;
+				}
+			}
+			case DOUBLE_QUOTED -> {
+				if (c == DOLLAR) {
+					set(i, Kind.EXPANSION);
+					variable = DOLLAR_READ;
+				} else {
+					set(i, Kind.QUOTED);
+					if (c == DOUBLE_QUOTE) {
+						state = ParserState.NORMAL;
+					} else if (c == BACKSLASH) {
+						state = ParserState.ESCAPING_IN_DOUBLE_QUOTES;
+					}
+				}
+			}
+			case NORMAL -> lexNormal(line, i, c);
+		}
+	}
+
+	private void lexNormal(CharSequence line, int i, char c) {
+		if (c == WHITESPACE || c == TAB) {
+			endToken(line, i);
+			set(i, Kind.PLAIN);
+		} else if (c == OPEN_PAREN && tokenType == REDIRECT_TOKEN && tokenStart == i - 1) {
+			// "<(" or ">(": a process substitution, read like "$(" as part of a word
+			set(i - 1, Kind.EXPANSION);
+			set(i, Kind.EXPANSION);
+			tokenType = WORD;
+			wordIsCommand = false;
+			redirectTarget = false;
+			depth = 1;
+		} else if (CONTROL_OPERATORS.contains(c)) {
+			endToken(line, i);
+			set(i, Kind.OPERATOR);
+			commandPosition = c != CLOSE_PAREN;
+			redirectTarget = false;
+		} else if (c == AMPERSAND && tokenType == REDIRECT_TOKEN && line.charAt(i - 1) == '>') {
+			// ">&" duplicates a descriptor
+			set(i, Kind.REDIRECT);
+		} else if (c == AMPERSAND || c == PIPE) {
+			if (tokenType != OPERATOR_TOKEN || tokenStart != i - 1 || line.charAt(i - 1) != c) {
+				endToken(line, i);
+				tokenType = OPERATOR_TOKEN;
+				tokenStart = i;
+			}
+			set(i, Kind.OPERATOR);
+			commandPosition = true;
+			redirectTarget = false;
+		} else if (c == '>' || c == '<') {
+			lexRedirect(line, i);
+		} else {
+			startWord(line, i);
+			switch (c) {
+				case BACKSLASH -> {
+					set(i, Kind.QUOTED);
+					state = ParserState.ESCAPING;
+				}
+				case SINGLE_QUOTE -> {
+					set(i, Kind.QUOTED);
+					state = ParserState.SINGLE_QUOTED;
+				}
+				case DOUBLE_QUOTE -> {
+					set(i, Kind.QUOTED);
+					state = ParserState.DOUBLE_QUOTED;
+				}
+				case DOLLAR -> {
+					set(i, Kind.EXPANSION);
+					variable = DOLLAR_READ;
+				}
+				default -> set(i, wordIsCommand ? Kind.COMMAND : Kind.PLAIN);
+			}
+		}
+	}
+
+	/**
+	 * Reads {@code >} or {@code <}, joining it with a descriptor number or {@code &}
+	 * before it, or with the operator it continues, as in {@code >>}.
+	 */
+	private void lexRedirect(CharSequence line, int i) {
+		if (tokenType == WORD && isDigits(line, tokenStart, i)) {
+			// "2>": the number was read as a word, perhaps as the command name
+			if (wordIsCommand) {
+				commandPosition = true;
+			}
+			fill(tokenStart, i, Kind.REDIRECT);
+			tokenType = REDIRECT_TOKEN;
+		} else if (tokenType == OPERATOR_TOKEN && tokenStart == i - 1 && line.charAt(i - 1) == AMPERSAND) {
+			// "&>" redirects both outputs of the command before it
+			fill(tokenStart, i, Kind.REDIRECT);
+			tokenType = REDIRECT_TOKEN;
+			commandPosition = false;
+		} else if (tokenType != REDIRECT_TOKEN) {
+			endToken(line, i);
+			tokenType = REDIRECT_TOKEN;
+			tokenStart = i;
+		}
+		set(i, Kind.REDIRECT);
+		redirectTarget = true;
+	}
+
+	/**
+	 * Starts a word at an index, unless one is being read.
+	 */
+	private void startWord(CharSequence line, int i) {
+		if (tokenType == WORD) {
+			return;
+		}
+		endToken(line, i);
+		tokenType = WORD;
+		tokenStart = i;
+		if (redirectTarget) {
+			wordIsCommand = false;
+			redirectTarget = false;
+		} else {
+			wordIsCommand = commandPosition;
+			commandPosition = false;
+		}
+	}
+
+	/**
+	 * Ends the token being read; a command word is looked up.
+	 */
+	private void endToken(CharSequence line, int end) {
+		if (tokenType == WORD && wordIsCommand) {
+			classify(line, tokenStart, end);
+		}
+		tokenType = NO_TOKEN;
+	}
+
+	/**
+	 * Classifies a word in command position: an assignment, a reserved word, or a command
+	 * name, known or not. Words with quotes or expansions are left as they are.
+	 */
+	private void classify(CharSequence line, int start, int end) {
+		String word = line.subSequence(start, end).toString();
+		int name = CommandExtractorUtils.nameLength(word, 0);
+		if (name > 0 && name < word.length() && word.charAt(name) == '=') {
+			// "x=1 cmd": the command comes after the assignment
+			for (int i = start; i < end; i++) {
+				if (kinds[i] == Kind.COMMAND.ordinal()) {
+					set(i, Kind.PLAIN);
+				}
+			}
+			commandPosition = true;
+			return;
+		}
+		for (int i = start; i < end; i++) {
+			if (kinds[i] != Kind.COMMAND.ordinal()) {
+				return;
+			}
+		}
+		if (KEYWORDS.contains(word)) {
+			fill(start, end, Kind.KEYWORD);
+			commandPosition = COMMAND_KEYWORDS.contains(word);
+		} else if (word.indexOf('/') >= 0) {
+			// A path would have to be checked on the file system
+			fill(start, end, Kind.PLAIN);
+		} else if (!isCommand.test(word)) {
+			fill(start, end, Kind.UNKNOWN_COMMAND);
+		}
+	}
+
+	private static boolean isDigits(CharSequence line, int start, int end) {
+		for (int i = start; i < end; i++) {
+			if (line.charAt(i) < '0' || line.charAt(i) > '9') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void set(int index, Kind kind) {
+		kinds[index] = (byte) kind.ordinal();
+	}
+
+	private void fill(int start, int end, Kind kind) {
+		Arrays.fill(kinds, start, end, (byte) kind.ordinal());
+	}
+
+	/**
+	 * Records the state before a position. Packed as: parser state in bits 0-2, command
+	 * position, redirect target and command word in bits 3-5, token type in bits 6-7,
+	 * expansion in bits 8-9, and the {@code $(} nesting depth above them.
+	 */
+	private void save(int position) {
+		checkpoints[position] = state.ordinal()
+			| (commandPosition ? 1 << 3 : 0)
+			| (redirectTarget ? 1 << 4 : 0)
+			| (wordIsCommand ? 1 << 5 : 0)
+			| tokenType << 6
+			| variable << 8
+			| depth << 10;
+		tokenStarts[position] = tokenStart;
+	}
+
+	private void load(int position) {
+		int checkpoint = checkpoints[position];
+		state = STATES[checkpoint & 7];
+		commandPosition = (checkpoint & 1 << 3) != 0;
+		redirectTarget = (checkpoint & 1 << 4) != 0;
+		wordIsCommand = (checkpoint & 1 << 5) != 0;
+		tokenType = checkpoint >> 6 & 3;
+		variable = checkpoint >> 8 & 3;
+		depth = checkpoint >>> 10;
+		tokenStart = tokenStarts[position];
+	}
+
+	private int tokenTypeAt(int position) {
+		return checkpoints[position] >> 6 & 3;
+	}
+
+	private void ensureCapacity(int lineLength) {
+		if (lineLength >= kinds.length) {
+			int capacity = Math.max(kinds.length * 2, lineLength + 1);
+			kinds = Arrays.copyOf(kinds, capacity);
+			checkpoints = Arrays.copyOf(checkpoints, capacity + 1);
+			tokenStarts = Arrays.copyOf(tokenStarts, capacity + 1);
+		}
+	}
+}
@@ -4,11 +4,35 @@
  * <p>{@link repl.utils.DirUtils} - Current directory management.
  * Handles getting/setting working directory and home dir expansion.
  *
+ * <p>{@link repl.utils.EnvUtils} - Shell variables and the environment exported to child processes.
+ *
  * <p>{@link repl.utils.ExecutableUtils} - PATH search and executable discovery.
  * Locates executables in system PATH directories for external command resolution.
  *
+ * <p>{@link repl.utils.ExecutableIndex} - Executable listings of PATH directories, refreshed
+ * when a directory changes, with a {@link repl.utils.PrefixTrie} of their names for completion.
+ *
+ * <p>{@link repl.utils.DirectorySnapshots} - Sorted directory listings for path completion,
+ * listed on virtual threads and dropped when a watched directory changes.
+ *
  * <p>{@link repl.utils.CommandExtractorUtils} - Extracts main command and arguments from raw input.
  *
+ * <p>{@link repl.utils.ContinuationScanner} - Joins lines into complete commands, keeping the
+ * quoting state, the open compound commands and the pending here-document bodies from one
+ * line to the next.
+ *
+ * <p>{@link repl.utils.ResumableTokenizer} - Classifies each character of a line for highlighting,
+ * re-lexing after an edit from a checkpoint at the token it touched.
+ *
+ * <p>{@link repl.utils.GlobUtils} - Shell pattern matching and pathname expansion.
+ *
+ * <p>{@link repl.utils.FileStatusCache} - File metadata read once per path and statement, for {@code test}.
+ *
+ * <p>{@link repl.utils.RedirectUtils} - Resolves output redirection targets.
+ *
+ * <p>{@link repl.utils.RedirectionTable} - Where a command's stdout and stderr go, built from
+ * its redirections in order; files are applied to external programs by the OS.
+ *
  * @see repl.utils.ExecutableUtils
  * @see repl.utils.DirUtils
  * @see repl.utils.CommandExtractorUtils
@@ -0,0 +1,25 @@
+package repl;
+
+import org.junit.jupiter.api.Test;
+import repl.commands.CommandResult;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CapturedOutputTest {
+
+	@Test
+	void toResult_joinsNonEmptyChunksWithNewlines() {
+		CapturedOutput output = new CapturedOutput();
+
+		output.accept(CommandResult.success("a"));
+		output.accept(CommandResult.empty());
+		output.accept(new CommandResult("b", "oops", 1));
+
+		assertEquals(new CommandResult("a\nb", "oops", 2), output.toResult(2));
+	}
+
+	@Test
+	void stdout_nothingCaptured_returnsEmptyString() {
+		assertEquals("", new CapturedOutput().stdout());
+	}
+}
@@ -0,0 +1,78 @@
+package repl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import repl.io.Completer;
+import repl.io.Completer.Completion;
+import repl.script.ScriptParser;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommandCompleterTest {
+
+	private CommandTable commandTable;
+	private CommandCompleter completer;
+
+	@BeforeEach
+	void setUp() {
+		commandTable = new CommandTable();
+		completer = new CommandCompleter(commandTable, Completer.NONE);
+	}
+
+	@Test
+	void complete_builtinPrefix_offersBuiltins() {
+		Completion completion = complete("ec");
+
+		assertEquals(0, completion.start());
+		assertTrue(completion.candidates().contains("echo"));
+		assertTrue(completion.candidates().stream().allMatch(name -> name.startsWith("ec")));
+	}
+
+	@Test
+	void complete_functionsAndAliases_areOffered() {
+		commandTable.defineFunction("zzgreet", ScriptParser.parse("echo hi"));
+		commandTable.setAlias("zzlist", "ls");
+
+		assertEquals(List.of("zzgreet", "zzlist"), complete("zz").candidates());
+	}
+
+	@Test
+	void complete_afterSeparatorsAndKeywords_completesCommand() {
+		commandTable.defineFunction("zzf", ScriptParser.parse("true"));
+
+		assertEquals(8, complete("echo a; zz").start());
+		assertEquals(List.of("zzf"), complete("echo a; zz").candidates());
+		assertEquals(List.of("zzf"), complete("echo a |zz").candidates());
+		assertEquals(List.of("zzf"), complete("if true; then zz").candidates());
+	}
+
+	@Test
+	void complete_argument_offersNothing() {
+		commandTable.defineFunction("zzf", ScriptParser.parse("true"));
+
+		assertSame(Completion.NONE, complete("echo zz"));
+		assertSame(Completion.NONE, complete("echo then zz"));
+	}
+
+	@Test
+	void complete_specialCharacters_offersNothing() {
+		assertSame(Completion.NONE, complete("$HO"));
+		assertSame(Completion.NONE, complete("'ec"));
+	}
+
+	private Completion complete(String line) {
+		return completer.complete(line, line.length());
+	}
+
+	@Test
+	void complete_argumentOrPath_delegatesToArgumentCompleter() {
+		Completion files = new Completion(5, List.of("file.txt"));
+		completer = new CommandCompleter(commandTable, (line, cursor) -> files);
+
+		assertSame(files, complete("echo fi"));
+		assertSame(files, complete("./scr"));
+		assertSame(files, complete("echo a; bin/x"));
+	}
+}
@@ -0,0 +1,111 @@
+package repl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import repl.utils.DirUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommandSubstitutionTest {
+
+	@TempDir
+	Path tempDir;
+
+	private DirUtils dirUtils;
+	private CommandSubstitution substitution;
+
+	@BeforeEach
+	void setUp() {
+		dirUtils = new DirUtils(tempDir);
+		substitution = ReplContext.builder(dirUtils).getExpansionContext();
+	}
+
+	@Test
+	void substitute_pwdBuiltin_returnsSessionDirectory() {
+		assertEquals(tempDir.toAbsolutePath().toString(), substitution.substitute("pwd"));
+	}
+
+	@Test
+	void substitute_echoBuiltin_returnsArguments() {
+		assertEquals("hello world", substitution.substitute("echo hello world"));
+	}
+
+	@Test
+	void substitute_typePathOnly_returnsExecutablePath() {
+		String path = substitution.substitute("type -p ls");
+
+		assertTrue(path.endsWith("/ls"), path);
+	}
+
+	@Test
+	void substitute_cdBuiltin_doesNotChangeSessionDirectory() throws IOException {
+		Files.createDirectory(tempDir.resolve("sub"));
+
+		assertEquals("", substitution.substitute("cd sub"));
+
+		assertEquals(tempDir, dirUtils.getCurrentDir());
+	}
+
+	@Test
+	void substitute_nestedSubstitution_evaluatesInnerFirst() {
+		assertEquals("inner", substitution.substitute("echo $(echo inner)"));
+	}
+
+	@Test
+	void substitute_externalCommand_stripsTrailingNewlines() {
+		assertEquals("a\nb", substitution.substitute("printf 'a\\nb\\n\\n'"));
+	}
+
+	@Test
+	void substitute_externalCommand_runsInSessionDirectory() throws IOException {
+		Files.writeString(tempDir.resolve("marker.txt"), "");
+
+		assertEquals("marker.txt", substitution.substitute("ls"));
+	}
+
+	@Test
+	void substitute_externalCommandWithHereString_readsIt() {
+		assertEquals("hello", substitution.substitute("cat <<<hello"));
+	}
+
+	@Test
+	void substitute_externalCommandWithHereDocument_readsIt() {
+		assertEquals("a\nb", substitution.substitute("cat <<EOF\na\nb\nEOF"));
+	}
+
+	@Test
+	void substitute_externalCommandWithInputRedirect_readsTheFile() throws IOException {
+		Files.writeString(tempDir.resolve("in.txt"), "a\nb\nc\n");
+
+		assertEquals("3", substitution.substitute("wc -l < in.txt").strip());
+	}
+
+	@Test
+	void substitute_unknownCommand_returnsEmptyOutput() {
+		assertEquals("", substitution.substitute("unknowncmd123"));
+	}
+
+	@Test
+	void substitute_builtinWithRedirect_writesFileAndReturnsEmpty() throws IOException {
+		assertEquals("", substitution.substitute("echo saved > out.txt"));
+
+		assertEquals("saved", Files.readString(tempDir.resolve("out.txt")));
+	}
+
+	@Test
+	void readBounded_outputOverCap_truncatesAndDrains() throws IOException {
+		byte[] data = new byte[CommandSubstitution.MAX_CAPTURE_BYTES + 1000];
+		ByteArrayInputStream stream = new ByteArrayInputStream(data);
+
+		String captured = CommandSubstitution.readBounded(stream);
+
+		assertEquals(CommandSubstitution.MAX_CAPTURE_BYTES, captured.length());
+		assertEquals(0, stream.available());
+	}
+}
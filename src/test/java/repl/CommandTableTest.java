@@ -0,0 +1,209 @@
+package repl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import repl.commands.BadCommand;
+import repl.commands.ExecutableCommand;
+import repl.commands.FunctionCommand;
+import repl.commands.builtin.EchoCommand;
+import repl.script.Node;
+import repl.script.ScriptParser;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommandTableTest {
+
+	@TempDir
+	Path tempDir;
+
+	private CommandTable commandTable;
+
+	@BeforeEach
+	void setUp() {
+		commandTable = new CommandTable();
+	}
+
+	@Test
+	void setAlias_parsesValueOnce() {
+		commandTable.setAlias("ll", "ls -l");
+
+		CommandTable.Alias alias = commandTable.getAlias("ll");
+		assertEquals("ls -l", alias.value());
+		assertInstanceOf(Node.SimpleCommand.class, alias.plan());
+	}
+
+	@Test
+	void setAlias_syntaxError_throwsAndKeepsTable() {
+		assertThrows(IllegalArgumentException.class, () -> commandTable.setAlias("bad", "echo 'open"));
+
+		assertNull(commandTable.getAlias("bad"));
+	}
+
+	@Test
+	void getAliases_returnsSortedValues() {
+		commandTable.setAlias("b", "echo b");
+		commandTable.setAlias("a", "echo a");
+
+		assertEquals(List.of("a", "b"), List.copyOf(commandTable.getAliases().keySet()));
+		assertEquals(Map.of("a", "echo a", "b", "echo b"), commandTable.getAliases());
+	}
+
+	@Test
+	void fork_definitionsInChild_doNotReachParent() {
+		commandTable.setAlias("a", "echo a");
+		CommandTable child = commandTable.fork();
+
+		child.defineFunction("f", new Node.Sequence(List.of()));
+		child.removeAlias("a");
+
+		assertNull(commandTable.getFunction("f"));
+		assertNotNull(commandTable.getAlias("a"));
+		assertNotNull(child.getFunction("f"));
+	}
+
+	@Test
+	void beginAliasExpansion_sameAliasTwice_returnsNull() {
+		commandTable.setAlias("ls", "ls -F");
+
+		assertNotNull(commandTable.beginAliasExpansion("ls"));
+		assertFalse(commandTable.isExpandableAlias("ls"));
+		assertNull(commandTable.beginAliasExpansion("ls"));
+
+		commandTable.endAliasExpansion("ls");
+		assertTrue(commandTable.isExpandableAlias("ls"));
+	}
+
+	@Test
+	void enterFunction_pastMaximumDepth_returnsFalse() {
+		for (int i = 0; i < CommandTable.MAX_FUNCTION_DEPTH; i++) {
+			assertTrue(commandTable.enterFunction());
+		}
+
+		assertFalse(commandTable.enterFunction());
+		commandTable.exitFunction();
+		assertTrue(commandTable.enterFunction());
+	}
+
+	@Test
+	void resolve_builtin_returnsSharedInstance() {
+		CommandTable.Resolution resolution = commandTable.resolve("echo", "/bin");
+
+		assertInstanceOf(EchoCommand.class, resolution.command());
+		assertSame(BuiltinCommand.allCommandMap.get("echo"), resolution.command());
+		assertSame(resolution.command(), new CommandTable().resolve("echo", "/bin").command());
+	}
+
+	@Test
+	void resolve_sameNameTwice_returnsCachedResolution() {
+		commandTable.defineFunction("f", ScriptParser.parse("echo f"));
+
+		CommandTable.Resolution first = commandTable.resolve("f", "/bin");
+
+		assertInstanceOf(FunctionCommand.class, first.command());
+		assertSame(first, commandTable.resolve("f", "/bin"));
+	}
+
+	@Test
+	void resolve_functionRedefined_resolvesNewDefinition() {
+		commandTable.defineFunction("f", ScriptParser.parse("echo one"));
+		CommandTable.Resolution first = commandTable.resolve("f", "/bin");
+
+		commandTable.defineFunction("f", ScriptParser.parse("echo two"));
+
+		assertNotSame(first, commandTable.resolve("f", "/bin"));
+	}
+
+	@Test
+	void resolve_functionDefinedAfterBuiltinResolved_shadowsBuiltin() {
+		commandTable.resolve("echo", "/bin");
+
+		commandTable.defineFunction("echo", ScriptParser.parse("true"));
+
+		assertInstanceOf(FunctionCommand.class, commandTable.resolve("echo", "/bin").command());
+	}
+
+	@Test
+	void resolve_executable_returnsPath() {
+		CommandTable.Resolution resolution = commandTable.resolve("ls", "/bin");
+
+		assertInstanceOf(ExecutableCommand.class, resolution.command());
+		assertNotNull(resolution.executablePath());
+		assertSame(resolution, commandTable.resolve("ls", "/bin"));
+	}
+
+	@Test
+	void resolve_searchPathChanged_dropsCachedResolutions() {
+		CommandTable.Resolution first = commandTable.resolve("ls", "/bin");
+
+		assertNotSame(first, commandTable.resolve("ls", "/usr/bin:/bin"));
+	}
+
+	@Test
+	void resolve_executableOnlyInSearchPath_isFound() throws IOException {
+		Path program = executable(tempDir.resolve("only-here-xyz"));
+
+		assertEquals(program, commandTable.resolve("only-here-xyz", tempDir.toString()).executablePath());
+		assertSame(CommandTable.NOT_FOUND, commandTable.resolve("only-here-xyz", "/bin"));
+	}
+
+	@Test
+	void resolve_cachedExecutableDeleted_looksUpAgain() throws IOException {
+		Path program = executable(tempDir.resolve("gone-xyz"));
+		commandTable.resolve("gone-xyz", tempDir.toString());
+
+		Files.delete(program);
+
+		assertSame(CommandTable.NOT_FOUND, commandTable.resolve("gone-xyz", tempDir.toString()));
+	}
+
+	@Test
+	void resolve_unknownName_returnsBadCommand() {
+		CommandTable.Resolution resolution = commandTable.resolve("no-such-command-xyz", "/bin");
+
+		assertSame(CommandTable.NOT_FOUND, resolution);
+		assertInstanceOf(BadCommand.class, resolution.command());
+		assertNull(resolution.executablePath());
+	}
+
+	@Test
+	void fork_childRedefinesFunction_parentKeepsItsResolution() {
+		commandTable.defineFunction("f", ScriptParser.parse("echo parent"));
+		CommandTable.Resolution parent = commandTable.resolve("f", "/bin");
+		CommandTable child = commandTable.fork();
+
+		child.defineFunction("f", ScriptParser.parse("echo child"));
+
+		assertNotSame(parent, child.resolve("f", "/bin"));
+		assertSame(parent, commandTable.resolve("f", "/bin"));
+	}
+
+	@Test
+	void completeNames_functionsAndAliases_followDefinitions() {
+		commandTable.defineFunction("greet", ScriptParser.parse("echo hi"));
+		commandTable.setAlias("gl", "git log");
+		List<String> names = new ArrayList<>();
+
+		commandTable.completeNames("g", names);
+		assertEquals(List.of("gl", "greet"), names);
+
+		commandTable.removeAlias("gl");
+		commandTable.defineFunction("go", ScriptParser.parse("echo go"));
+		names.clear();
+		commandTable.completeNames("g", names);
+		assertEquals(List.of("go", "greet"), names);
+	}
+
+	private static Path executable(Path file) throws IOException {
+		Files.createFile(file, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwxr-xr-x")));
+		return file;
+	}
+}
@@ -0,0 +1,78 @@
+package repl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import repl.io.Completer.Completion;
+import repl.utils.DirUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PathCompleterTest {
+
+	@TempDir
+	Path tempDir;
+
+	private PathCompleter completer;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		Files.createDirectories(tempDir.resolve("src/main/java"));
+		Files.createFile(tempDir.resolve("src/main/notes.txt"));
+		Files.createFile(tempDir.resolve("README.md"));
+		Files.createFile(tempDir.resolve(".hidden"));
+		completer = new PathCompleter(new DirUtils(tempDir));
+	}
+
+	@Test
+	void complete_nestedPath_offersEntriesOfThatDirectory() {
+		Completion completion = complete("cat src/main/");
+
+		assertEquals(4, completion.start());
+		assertEquals(List.of("src/main/java/", "src/main/notes.txt"), completion.candidates());
+	}
+
+	@Test
+	void complete_prefix_filtersAndMarksDirectories() {
+		assertEquals(List.of("src/main/java/"), complete("ls src/main/ja").candidates());
+		assertEquals(List.of("README.md"), complete("cat R").candidates());
+	}
+
+	@Test
+	void complete_hiddenFiles_onlyWhenTypedWithDot() {
+		assertFalse(complete("ls ").candidates().contains(".hidden"));
+		assertEquals(List.of(".hidden"), complete("ls .h").candidates());
+	}
+
+	@Test
+	void complete_absolutePath_ignoresCurrentDirectory() {
+		String prefix = tempDir.resolve("RE").toString();
+
+		assertEquals(List.of(tempDir.resolve("README.md").toString()), complete("cat " + prefix).candidates());
+	}
+
+	@Test
+	void complete_expansion_offersNothing() {
+		assertSame(Completion.NONE, complete("cat $HOME/"));
+	}
+
+	@Test
+	void complete_withConsumer_deliversCandidates() throws Exception {
+		CompletableFuture<Completion> delivered = new CompletableFuture<>();
+
+		completer.complete("cat src/", 8, delivered::complete);
+
+		assertEquals(List.of("src/main/"), delivered.get(5, TimeUnit.SECONDS).candidates());
+	}
+
+	private Completion complete(String line) {
+		return completer.complete(line, line.length());
+	}
+}
@@ -6,19 +6,41 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import repl.commands.CommandResult;
 import repl.exceptions.ReplException;
+import repl.history.History;
+import repl.history.HistoryEntry;
+import repl.history.HistoryIndex;
+import repl.history.HistoryLog;
+import repl.io.LineReader;
+import repl.io.OutputRenderer;
+import repl.script.Node;
 import repl.utils.DirUtils;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.Pipe;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 /**
- * Integration tests for REPL I/O handling (stdout/stderr redirection).
+ * Integration tests for REPL I/O handling (stdout/stderr redirection) and the event loop.
  *
- * <p>Tests the actual file I/O that happens when REPL.handleIO() processes
- * EvaluationResult objects with redirection targets.
+ * <p>Lines are run through {@link REPL#loop()}, as the shell runs them, and the tests check
+ * the files their redirections write and what reaches the terminal.
  */
 class REPLTest {
 
@@ -37,176 +59,132 @@ class REPLTest {
 
 	@Test
 	@Tag("JV1")
-	void handleIO_stdoutRedirect_writesOutputToFile() throws ReplException, IOException {
-		CommandResult cmdResult = CommandResult.success("hello world");
-		EvaluationResult result = new EvaluationResult(cmdResult, "output.txt", null);
-
-		repl.handleIO(result);
+	void loop_stdoutRedirect_writesOutputToFile() throws IOException {
+		String output = runLoop("echo hello world > output.txt\n");
 
 		// Verify file was created and contains the output
 		Path outputFile = tempDir.resolve("output.txt");
 		assertTrue(Files.exists(outputFile), "Output file should exist");
-		String fileContent = Files.readString(outputFile);
-		assertEquals("hello world", fileContent);
+		assertEquals("hello world", Files.readString(outputFile));
+		assertEquals("", output);
 	}
 
 	@Test
 	@Tag("JV1")
-	void handleIO_stdoutRedirect_nestedDirectory_createsParentDirs() throws ReplException, IOException {
-		CommandResult cmdResult = CommandResult.success("nested output");
-		EvaluationResult result = new EvaluationResult(cmdResult, "subdir/nested/file.txt", null);
-
-		repl.handleIO(result);
+	void loop_stdoutRedirect_nestedDirectory_createsParentDirs() throws IOException {
+		runLoop("echo nested output > subdir/nested/file.txt\n");
 
 		// Verify nested directories were created
 		Path outputFile = tempDir.resolve("subdir/nested/file.txt");
 		assertTrue(Files.exists(outputFile), "Nested output file should exist");
 		assertTrue(Files.isDirectory(outputFile.getParent()), "Parent directory should exist");
-
-		String fileContent = Files.readString(outputFile);
-		assertEquals("nested output", fileContent);
+		assertEquals("nested output", Files.readString(outputFile));
 	}
 
 	@Test
 	@Tag("JV1")
-	void handleIO_stdoutRedirect_overwritesExistingFile() throws ReplException, IOException {
+	void loop_stdoutRedirect_overwritesExistingFile() throws IOException {
 		// Create a file with initial content
 		Path outputFile = tempDir.resolve("overwrite.txt");
 		Files.writeString(outputFile, "initial content");
 
 		// Redirect to the same file
-		CommandResult cmdResult = CommandResult.success("new content");
-		EvaluationResult result = new EvaluationResult(cmdResult, "overwrite.txt", null);
-
-		repl.handleIO(result);
+		runLoop("echo new content > overwrite.txt\n");
 
 		// Verify the file was overwritten
-		String fileContent = Files.readString(outputFile);
-		assertEquals("new content", fileContent);
+		assertEquals("new content", Files.readString(outputFile));
 	}
 
 	@Test
 	@Tag("JV1")
-	void handleIO_stdoutRedirect_emptyOutput_createsEmptyFile() throws ReplException, IOException {
-		CommandResult cmdResult = CommandResult.success("");
-		EvaluationResult result = new EvaluationResult(cmdResult, "empty.txt", null);
-
-		repl.handleIO(result);
+	void loop_stdoutRedirect_emptyOutput_createsEmptyFile() throws IOException {
+		runLoop("true > empty.txt\n");
 
 		Path outputFile = tempDir.resolve("empty.txt");
 		assertTrue(Files.exists(outputFile));
-		String fileContent = Files.readString(outputFile);
-		assertEquals("", fileContent);
+		assertEquals("", Files.readString(outputFile));
 	}
 
 	@Test
 	@Tag("JV1")
-	void handleIO_stdoutRedirect_commandFails_stillWritesStdout() throws ReplException, IOException {
+	void loop_stdoutRedirect_commandFails_stillWritesStdout() throws IOException {
 		// Failed command (exit code 1) but produced stdout
-		CommandResult cmdResult = new CommandResult("partial output", "some error", 1);
-		EvaluationResult result = new EvaluationResult(cmdResult, "output.txt", null);
-
-		repl.handleIO(result);
+		String output = runLoop("sh -c 'echo partial output; echo some error >&2; exit 1' > output.txt\n");
 
 		// Stdout should still be redirected even though command failed
 		Path outputFile = tempDir.resolve("output.txt");
 		assertTrue(Files.exists(outputFile), "Output file should exist even though command failed");
-		String fileContent = Files.readString(outputFile);
-		assertEquals("partial output", fileContent);
+		assertEquals("partial output\n", Files.readString(outputFile));
+		assertEquals("some error\n", output);
 	}
 
 	// === Stderr redirection tests ===
 
 	@Test
 	@Tag("VZ4")
-	void handleIO_stderrRedirect_writesErrorToFile() throws ReplException, IOException {
-		CommandResult cmdResult = new CommandResult("", "cat: nonexistent: No such file or directory", 1);
-		EvaluationResult result = new EvaluationResult(cmdResult, null, "errors.txt");
-
-		repl.handleIO(result);
+	void loop_stderrRedirect_writesErrorToFile() throws IOException {
+		String output = runLoop("cat nonexistent 2> errors.txt\n");
 
 		// Verify error file was created and contains stderr
 		Path errorFile = tempDir.resolve("errors.txt");
 		assertTrue(Files.exists(errorFile), "Error file should exist");
-		String fileContent = Files.readString(errorFile);
-		assertEquals("cat: nonexistent: No such file or directory", fileContent);
+		assertEquals("cat: nonexistent: No such file or directory\n", Files.readString(errorFile));
+		assertEquals("", output);
 	}
 
 	@Test
 	@Tag("VZ4")
-	void handleIO_stderrRedirect_successfulCommand_createsEmptyFile() throws ReplException, IOException {
+	void loop_stderrRedirect_successfulCommand_createsEmptyFile() throws IOException {
 		// Successful command with no stderr
-		CommandResult cmdResult = CommandResult.success("hello");
-		EvaluationResult result = new EvaluationResult(cmdResult, null, "errors.txt");
-
-		repl.handleIO(result);
+		String output = runLoop("echo hello 2> errors.txt\n");
 
 		// Stderr file should be created but empty
 		Path errorFile = tempDir.resolve("errors.txt");
 		assertTrue(Files.exists(errorFile), "Error file should exist");
-		String fileContent = Files.readString(errorFile);
-		assertTrue(fileContent.isEmpty(), "Error file should be empty for successful command");
+		assertTrue(Files.readString(errorFile).isEmpty(), "Error file should be empty for successful command");
+		assertEquals("hello\n", output);
 	}
 
 	@Test
 	@Tag("VZ4")
-	void handleIO_stderrRedirect_nestedDirectory_createsParentDirs() throws ReplException, IOException {
-		CommandResult cmdResult = new CommandResult("", "error message", 1);
-		EvaluationResult result = new EvaluationResult(cmdResult, null, "subdir/nested/errors.txt");
-
-		repl.handleIO(result);
+	void loop_stderrRedirect_nestedDirectory_createsParentDirs() throws IOException {
+		runLoop("cd missing 2> subdir/nested/errors.txt\n");
 
 		Path errorFile = tempDir.resolve("subdir/nested/errors.txt");
 		assertTrue(Files.exists(errorFile), "Nested error file should exist");
 		assertTrue(Files.isDirectory(errorFile.getParent()), "Parent directory should exist");
-
-		String fileContent = Files.readString(errorFile);
-		assertEquals("error message", fileContent);
+		assertTrue(Files.readString(errorFile).endsWith("missing: No such file or directory"));
 	}
 
 	@Test
 	@Tag("VZ4")
-	void handleIO_stderrRedirect_partialFailure_bothStdoutAndStderr() throws ReplException, IOException {
+	void loop_stderrRedirect_partialFailure_bothStdoutAndStderr() throws IOException {
 		// Command that outputs to both stdout and stderr
-		CommandResult cmdResult = new CommandResult("valid output", "error: file not found", 1);
-		EvaluationResult result = new EvaluationResult(cmdResult, null, "errors.txt");
+		String output = runLoop("sh -c 'echo valid output; echo error: file not found >&2; exit 1' 2> errors.txt\n");
 
-		repl.handleIO(result);
-
-		// Stderr should be redirected to file
+		// Stderr should be redirected to file, stdout printed
 		Path errorFile = tempDir.resolve("errors.txt");
 		assertTrue(Files.exists(errorFile), "Error file should exist");
-		String fileContent = Files.readString(errorFile);
-		assertEquals("error: file not found", fileContent);
-
-		// Note: stdout would go to System.out (terminal), not easily testable
+		assertEquals("error: file not found\n", Files.readString(errorFile));
+		assertEquals("valid output\n", output);
 	}
 
-	// === Combined redirection (future feature placeholder) ===
-
 	@Test
-	void handleIO_noRedirect_doesNotCreateFiles() throws ReplException, IOException {
-		CommandResult cmdResult = CommandResult.success("output to terminal");
-		EvaluationResult result = new EvaluationResult(cmdResult, null, null);
-
-		repl.handleIO(result);
+	void loop_noRedirect_doesNotCreateFiles() throws IOException {
+		String output = runLoop("echo output to terminal\n");
 
 		// No files should be created
 		try (var stream = Files.list(tempDir)) {
 			assertEquals(0, stream.count(), "No files should be created without redirection");
 		}
+		assertEquals("output to terminal\n", output);
 	}
 
 	@Test
 	@Tag("VZ4")
 	@Tag("JV1")
-	void handleIO_bothRedirects_writesToBothFiles() throws ReplException, IOException {
-		// This would require supporting both redirects simultaneously
-		// For now, parser rejects this, but test documents expected behavior
-		CommandResult cmdResult = new CommandResult("stdout content", "stderr content", 0);
-		EvaluationResult result = new EvaluationResult(cmdResult, "out.txt", "err.txt");
-
-		repl.handleIO(result);
+	void loop_bothRedirects_writesToBothFiles() throws IOException {
+		runLoop("sh -c 'echo stdout content; echo stderr content >&2' > out.txt 2> err.txt\n");
 
 		// Both files should be created
 		Path outFile = tempDir.resolve("out.txt");
@@ -215,7 +193,408 @@ class REPLTest {
 		assertTrue(Files.exists(outFile), "Stdout file should exist");
 		assertTrue(Files.exists(errFile), "Stderr file should exist");
 
-		assertEquals("stdout content", Files.readString(outFile));
-		assertEquals("stderr content", Files.readString(errFile));
+		assertEquals("stdout content\n", Files.readString(outFile));
+		assertEquals("stderr content\n", Files.readString(errFile));
+	}
+
+	@Test
+	void loop_divisionByZero_reportsErrorAndAbortsLine() {
+		String output = runLoop("echo $((1 / 0)); echo not run\necho $?\necho $((5 % 0))\n");
+
+		assertEquals("division by 0\n1\ndivision by 0\n", output);
+	}
+
+	// === Event loop tests ===
+
+	@Test
+	void loop_endOfInput_returnsAfterRunningEveryLine() {
+		String output = runLoop("echo a\necho b\n");
+
+		assertEquals("a\nb\n", output);
+	}
+
+	@Test
+	void loop_interactiveInput_showsPromptBeforeEachLine() {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		LineReader reader = new LineReader(Channels.newChannel(
+			new ByteArrayInputStream("echo a\n".getBytes(StandardCharsets.UTF_8))), true);
+
+		withTerminal(output, () -> new REPL(new DirUtils(tempDir), reader).loop());
+
+		assertEquals("$ a\n$ ", output.toString(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void loop_interactiveInput_recordsLinesInHistoryAndFile() throws IOException, InterruptedException {
+		Path file = tempDir.resolve("history");
+		Files.writeString(file, "1000\t5\t0\t/\tearlier\n");
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		LineReader reader = new LineReader(Channels.newChannel(
+			new ByteArrayInputStream("echo a\n\nnosuchcommand\n".getBytes(StandardCharsets.UTF_8))), true);
+		REPL interactive = new REPL(new DirUtils(tempDir), reader);
+		Thread indexing = interactive.persistHistory(file);
+
+		withTerminal(output, interactive::loop);
+
+		History history = interactive.history();
+		assertEquals(3, history.size());
+		assertEquals("earlier", history.get(0).line());
+		assertEquals("echo a", history.get(1).line());
+		assertEquals(0, history.get(1).exitCode());
+		assertEquals(tempDir.toString(), history.get(1).directory());
+		assertEquals("nosuchcommand", history.get(2).line());
+		assertNotEquals(0, history.get(2).exitCode());
+		assertEquals(List.of("earlier", "echo a", "nosuchcommand"),
+			HistoryLog.readTail(file, 10).stream().map(HistoryEntry::line).toList());
+
+		// The index holds the file as it was before the session, and the lines the session ran
+		indexing.join();
+		HistoryIndex index = interactive.historyIndex();
+		assertEquals(3, index.size());
+		assertEquals(List.of("earlier"), index.ranked(index.search("earl", null), 10));
+	}
+
+	@Test
+	void loop_pipedInput_recordsNoHistory() {
+		REPL piped = new REPL(new DirUtils(tempDir), new ByteArrayInputStream("echo a\n".getBytes(StandardCharsets.UTF_8)));
+
+		withTerminal(new ByteArrayOutputStream(), piped::loop);
+
+		assertEquals(0, piped.history().size());
+	}
+
+	@Test
+	void loop_exit_stopsBeforeRemainingLines() {
+		String output = runLoop("echo a; exit\necho b\n");
+
+		assertEquals("a\n", output);
+	}
+
+	@Test
+	void loop_syntaxError_printsErrorAndContinues() {
+		String output = runLoop("echo (\necho after\n");
+
+		assertTrue(output.endsWith("after\n"), output);
+		assertTrue(output.contains("IllegalArgumentException"), output);
+	}
+
+	@Test
+	void loop_commandSpanningLines_runsOnceComplete() {
+		String output = runLoop("echo 'a\nb'\nif true\nthen\n  echo c \\\n  d\nfi\necho e &&\necho f\n");
+
+		assertEquals("a\nb\nc d\ne\nf\n", output);
+	}
+
+	@Test
+	void loop_incompleteCommandAtEndOfInput_reportsError() {
+		String output = runLoop("echo a\necho 'b\n");
+
+		assertTrue(output.startsWith("a\n"), output);
+		assertTrue(output.contains("Unclosed quote"), output);
+	}
+
+	@Test
+	void loop_interactiveContinuation_showsContinuationPrompt() {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		LineReader reader = new LineReader(Channels.newChannel(
+			new ByteArrayInputStream("echo \"a\nb\"\n".getBytes(StandardCharsets.UTF_8))), true);
+		List<REPL> interactive = new ArrayList<>();
+
+		withTerminal(output, () -> {
+			interactive.add(new REPL(new DirUtils(tempDir), reader));
+			interactive.getFirst().loop();
+		});
+
+		assertEquals("$ > a\nb\n$ ", output.toString(StandardCharsets.UTF_8));
+		assertEquals("echo \"a\nb\"", interactive.getFirst().history().get(0).line());
+	}
+
+	@Test
+	void loop_lineTypedDuringBusyCommand_isReadAheadBeforeItEnds() throws Exception {
+		Pipe pipe = Pipe.open();
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		REPL busy = new REPL(new DirUtils(tempDir), new LineReader(pipe.source(), false),
+			OutputRenderer.of(output, output));
+		Thread loop = Thread.ofPlatform().start(busy::loop);
+
+		type(pipe, "while [ a = a ]; do x=1; done\n");
+		awaitCondition(busy::isEvaluating);
+		type(pipe, "echo $?\n");
+		// The loop never ends by itself, so the line can only be read ahead while it runs
+		awaitCondition(() -> busy.typedAhead() == 1);
+
+		assertTrue(busy.isEvaluating(), "the busy command should still be running");
+
+		busy.interrupt();
+		pipe.sink().close();
+		loop.join(10_000);
+
+		assertFalse(loop.isAlive());
+		assertEquals("130\n", output.toString(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void interrupt_noRunningLine_keepsLoopRunning() throws Exception {
+		Pipe pipe = Pipe.open();
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		REPL idle = new REPL(new DirUtils(tempDir), new LineReader(pipe.source(), false),
+			OutputRenderer.of(output, output));
+		Thread loop = Thread.ofPlatform().start(idle::loop);
+
+		idle.interrupt();
+		type(pipe, "echo still here\n");
+		pipe.sink().close();
+		loop.join(10_000);
+
+		assertEquals("still here\n", output.toString(StandardCharsets.UTF_8));
+	}
+
+	private static void type(Pipe pipe, String text) throws IOException {
+		ByteBuffer bytes = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+		while (bytes.hasRemaining()) {
+			pipe.sink().write(bytes);
+		}
+	}
+
+	private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.nanoTime() + 10_000_000_000L;
+		while (!condition.getAsBoolean()) {
+			assertTrue(System.nanoTime() < deadline, "timed out");
+			Thread.sleep(1);
+		}
+	}
+
+	/**
+	 * Runs the loop over the given input and returns what it printed to stdout and stderr.
+	 */
+	private String runLoop(String input) {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		withTerminal(output, () -> new REPL(new DirUtils(tempDir),
+			new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8))).loop());
+		return output.toString(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Runs an action with stdout and stderr both writing to the given stream.
+	 */
+	private static void withTerminal(OutputStream terminal, Runnable action) {
+		PrintStream out = System.out;
+		PrintStream err = System.err;
+		PrintStream replacement = new PrintStream(terminal, false, StandardCharsets.UTF_8);
+		System.setOut(replacement);
+		System.setErr(replacement);
+		try {
+			action.run();
+		} finally {
+			System.setOut(out);
+			System.setErr(err);
+		}
+	}
+
+	// === Allocation budget ===
+
+	/**
+	 * Bytes a repeated simple line may allocate on its way through the loop: the line read
+	 * (56 bytes for {@code echo hello}), the {@link CommandResult} of its command (48), and
+	 * the bytes its output is encoded to when rendered (24).
+	 */
+	private static final long LINE_ALLOCATION_BUDGET_BYTES = 144;
+
+	/** Lines run before the first measurement, so the path is compiled. */
+	private static final int ALLOCATION_WARM_UP_LINES = 200_000;
+
+	/** Lines in each measured window. */
+	private static final int ALLOCATION_WINDOW_LINES = 50_000;
+
+	/** Number of measured windows, of which the best counts. */
+	private static final int ALLOCATION_WINDOWS = 10;
+
+	/**
+	 * Fails if a repeated line, read from a pipe, evaluated and printed, allocates more
+	 * than {@link #LINE_ALLOCATION_BUDGET_BYTES} across all threads of the loop.
+	 *
+	 * <p>The evaluating and rendering threads are virtual, so their allocation is counted
+	 * on their carriers: the input stream, read by the read thread, sums what every live
+	 * thread allocated each time a window of lines has been served. The read thread is at
+	 * most the type-ahead queue ahead of the evaluator, a small part of a window.
+	 */
+	@Test
+	@Tag("allocation")
+	void loop_repeatedLine_allocatesWithinBudgetPerLine() {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		assumeTrue(threads.isThreadAllocatedMemorySupported());
+		byte[] line = "echo hello\n".getBytes(StandardCharsets.UTF_8);
+		long lines = ALLOCATION_WARM_UP_LINES + (long) ALLOCATION_WINDOWS * ALLOCATION_WINDOW_LINES;
+		List<Long> samples = new ArrayList<>();
+		InputStream input = new InputStream() {
+			private long served;
+
+			@Override
+			public int read() {
+				byte[] one = new byte[1];
+				return read(one, 0, 1) < 0 ? -1 : one[0];
+			}
+
+			@Override
+			public int read(byte[] buffer, int offset, int length) {
+				long done = served / line.length;
+				if (done >= ALLOCATION_WARM_UP_LINES && (done - ALLOCATION_WARM_UP_LINES) % ALLOCATION_WINDOW_LINES == 0
+						&& served % line.length == 0 && samples.size() <= ALLOCATION_WINDOWS) {
+					samples.add(allocatedByAllThreads(threads));
+				}
+				if (done == lines) {
+					return -1;
+				}
+				// Never past the end of a line, so every window starts on a line boundary
+				int n = (int) Math.min(length, line.length - served % line.length);
+				for (int i = 0; i < n; i++) {
+					buffer[offset + i] = line[(int) (served++ % line.length)];
+				}
+				return n;
+			}
+		};
+
+		withTerminal(OutputStream.nullOutputStream(), () -> new REPL(new DirUtils(tempDir), input).loop());
+
+		assertEquals(ALLOCATION_WINDOWS + 1, samples.size());
+		long best = Long.MAX_VALUE;
+		for (int i = 1; i < samples.size(); i++) {
+			best = Math.min(best, (samples.get(i) - samples.get(i - 1)) / ALLOCATION_WINDOW_LINES);
+		}
+		assertTrue(best <= LINE_ALLOCATION_BUDGET_BYTES,
+				best + " bytes per line, budget " + LINE_ALLOCATION_BUDGET_BYTES);
+	}
+
+	private static long allocatedByAllThreads(com.sun.management.ThreadMXBean threads) {
+		long total = 0;
+		for (long allocated : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+			if (allocated > 0) {
+				total += allocated;
+			}
+		}
+		return total;
+	}
+
+	// === Soak test ===
+
+	/** Number of lines run by the soak test. */
+	private static final int SOAK_LINES = 2_000_000;
+
+	/** Number of lines evaluated between two stack and heap samples. */
+	private static final int SOAK_SAMPLE_INTERVAL = 200_000;
+
+	/** Largest growth of the live heap allowed between the first and any later sample. */
+	private static final long SOAK_HEAP_GROWTH_BYTES = 8L * 1024 * 1024;
+
+	/**
+	 * Drives millions of lines through the loop, as a polling script piped into the
+	 * shell for weeks would. Every fourth line is new, so the plan cache keeps evicting.
+	 *
+	 * <p>Samples are taken on the thread that evaluates, as it looks up the plan of a
+	 * line: it must be the same thread for every line, its stack depth there must never
+	 * change, and the heap left after a full collection must stay flat.
+	 */
+	@Test
+	@Tag("soak")
+	void loop_millionsOfLines_keepsEvaluatorStackDepthAndHeapFlat() {
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		List<Thread> evaluators = new ArrayList<>();
+		List<Long> stackDepths = new ArrayList<>();
+		List<Long> liveHeap = new ArrayList<>();
+		long[] lines = new long[2];
+		OutputStream terminal = new OutputStream() {
+			@Override
+			public void write(int b) {
+				if (b == '\n') {
+					lines[1]++;
+				}
+			}
+
+			@Override
+			public void write(byte[] bytes, int offset, int length) {
+				for (int i = offset; i < offset + length; i++) {
+					write(bytes[i]);
+				}
+			}
+		};
+
+		withTerminal(terminal, () -> new REPL(new DirUtils(tempDir), new GeneratedLines(SOAK_LINES)) {
+			@Override
+			Node plan(String input) {
+				if (++lines[0] % SOAK_SAMPLE_INTERVAL == 0) {
+					evaluators.add(Thread.currentThread());
+					stackDepths.add(StackWalker.getInstance().walk(frames -> frames.count()));
+					System.gc();
+					liveHeap.add(memory.getHeapMemoryUsage().getUsed());
+				}
+				return super.plan(input);
+			}
+		}.loop());
+
+		assertEquals(SOAK_LINES, lines[0], "every line should have been evaluated");
+		assertTrue(lines[1] >= SOAK_LINES, "every line should have printed");
+		assertEquals(1, evaluators.stream().distinct().count(), "lines ran on several threads");
+		assertEquals("repl-eval", evaluators.getFirst().getName());
+		assertEquals(1, stackDepths.stream().distinct().count(), "stack depth changed: " + stackDepths);
+		long first = liveHeap.getFirst();
+		for (long used : liveHeap) {
+			assertTrue(used - first < SOAK_HEAP_GROWTH_BYTES, "live heap grew: " + liveHeap);
+		}
+	}
+
+	/**
+	 * Input stream producing numbered lines on demand, so millions of lines need no buffer.
+	 */
+	private static final class GeneratedLines extends InputStream {
+		private final int count;
+		private int line;
+		private byte[] current = new byte[0];
+		private int position;
+
+		GeneratedLines(int count) {
+			this.count = count;
+		}
+
+		@Override
+		public int read() {
+			if (position == current.length) {
+				if (line == count) {
+					return -1;
+				}
+				current = next(line++).getBytes(StandardCharsets.UTF_8);
+				position = 0;
+			}
+			return current[position++];
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) {
+			int n = 0;
+			while (n < length) {
+				int b = read();
+				if (b < 0) {
+					return n == 0 ? -1 : n;
+				}
+				buffer[offset + n++] = (byte) b;
+			}
+			return n;
+		}
+
+		private static String next(int line) {
+			return switch (line % 4) {
+				case 0 -> "echo hello\n";
+				case 1 -> "x=1; echo $x\n";
+				case 2 -> "[ a = a ] && echo yes\n";
+				default -> "echo line " + line + "\n";
+			};
+		}
+	}
+
+	@Test
+	void plan_repeatedLine_isParsedOnce() {
+		Node first = repl.plan("echo hello");
+
+		assertSame(first, repl.plan("echo hello"));
+		assertNotSame(first, repl.plan("echo other"));
 	}
 }
@@ -5,6 +5,8 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import repl.script.Word;
+import repl.utils.CommandExtractorUtils;
 import repl.utils.DirUtils;
 
 import java.util.List;
@@ -107,4 +109,27 @@ class ReplContextTest {
 
 		assertNotNull(context);
 	}
+
+	@Test
+	void build_staticWords_reusesPreparedContext() {
+		List<Word> words = CommandExtractorUtils.parseWords("echo hello");
+
+		ReplContext first = builder.words(words).build();
+
+		assertSame(first, builder.words(words).build());
+		assertEquals(List.of("hello"), first.getArgs());
+	}
+
+	@Test
+	void build_wordsWithExpansion_buildsNewContext() {
+		List<Word> words = CommandExtractorUtils.parseWords("echo $x");
+		builder.getEnvUtils().set("x", "one");
+		ReplContext first = builder.words(words).build();
+
+		builder.getEnvUtils().set("x", "two");
+		ReplContext second = builder.words(words).build();
+
+		assertNotSame(first, second);
+		assertEquals(List.of("two"), second.getArgs());
+	}
 }
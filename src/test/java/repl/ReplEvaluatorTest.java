@@ -4,18 +4,39 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
+import repl.commands.CommandResult;
+import repl.commands.TerminalHandoff;
+import repl.exceptions.CancelledException;
 import repl.exceptions.GracefulExitException;
 import repl.exceptions.ReplException;
+import repl.script.Node;
+import repl.script.ScriptParser;
 import repl.utils.DirUtils;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 class ReplEvaluatorTest {
 
+	/**
+	 * Bytes one repeated static command may allocate per run: the {@link repl.commands.CommandResult}
+	 * holding its output (24 bytes with compressed pointers), with headroom for larger
+	 * object headers. Raise only with a reason.
+	 */
+	private static final long ALLOCATION_BUDGET_BYTES = 48;
+
+	/** Variable reads by a process substitution, and assignments by the shell meanwhile. */
+	private static final int CONCURRENT_ASSIGNMENTS = 2000;
+
 	@TempDir
 	Path tempDir;
 
@@ -29,111 +50,91 @@ class ReplEvaluatorTest {
 
 	@Test
 	void eval_echoCommand_returnsEchoedText() throws ReplException {
-		ReplEvaluator evaluator = new ReplEvaluator("echo hello", contextBuilder);
-
-		EvaluationResult result = evaluator.eval();
+		CommandResult result = eval("echo hello");
 
-		assertEquals("hello", result.commandResult().stdout());
-		assertTrue(result.commandResult().stderr().isEmpty());
-		assertEquals(0, result.commandResult().exitCode());
+		assertEquals("hello", result.stdout());
+		assertTrue(result.stderr().isEmpty());
+		assertEquals(0, result.exitCode());
 	}
 
 	@Test
 	void eval_echoMultipleArgs_returnsJoinedText() throws ReplException {
-		ReplEvaluator evaluator = new ReplEvaluator("echo hello world", contextBuilder);
+		CommandResult result = eval("echo hello world");
 
-		EvaluationResult result = evaluator.eval();
-
-		assertEquals("hello world", result.commandResult().stdout());
-		assertTrue(result.commandResult().stderr().isEmpty());
+		assertEquals("hello world", result.stdout());
+		assertTrue(result.stderr().isEmpty());
 	}
 
 	@Test
 	void eval_exitCommand_throwsGracefulExitException() {
-		ReplEvaluator evaluator = new ReplEvaluator("exit 0", contextBuilder);
-
-		assertThrows(GracefulExitException.class, evaluator::eval);
+		assertThrows(GracefulExitException.class, () -> eval("exit 0"));
 	}
 
 	@Test
 	void eval_typeBuiltin_returnsShellBuiltin() throws ReplException {
-		ReplEvaluator evaluator = new ReplEvaluator("type echo", contextBuilder);
+		CommandResult result = eval("type echo");
 
-		EvaluationResult result = evaluator.eval();
-
-		assertEquals("echo is a shell builtin", result.commandResult().stdout());
+		assertEquals("echo is a shell builtin", result.stdout());
 	}
 
 	@Test
 	void eval_typeUnknown_returnsNotFound() throws ReplException {
-		ReplEvaluator evaluator = new ReplEvaluator("type unknowncmd123", contextBuilder);
-
-		EvaluationResult result = evaluator.eval();
+		CommandResult result = eval("type unknowncmd123");
 
-		assertEquals("unknowncmd123: not found", result.commandResult().stdout());
+		assertEquals("unknowncmd123: not found", result.stdout());
 	}
 
 	@Test
 	void eval_pwdCommand_returnsCurrentDirectory() throws ReplException {
-		ReplEvaluator evaluator = new ReplEvaluator("pwd", contextBuilder);
-
-		EvaluationResult result = evaluator.eval();
+		CommandResult result = eval("pwd");
 
 		// DirUtils stores the path passed to constructor, not the real path
 		// So we compare with tempDir directly (without toRealPath)
-		assertEquals(tempDir.toAbsolutePath().toString(), result.commandResult().stdout());
+		assertEquals(tempDir.toAbsolutePath().toString(), result.stdout());
 	}
 
 	@Test
 	void eval_cdCommand_changesDirectory() throws ReplException, IOException {
 		Path subDir = Files.createDirectory(tempDir.resolve("testdir"));
-		ReplEvaluator cdEvaluator = new ReplEvaluator("cd testdir", contextBuilder);
 
-		EvaluationResult cdResult = cdEvaluator.eval();
+		CommandResult cdResult = eval("cd testdir");
 
 		// cd returns empty string (CommandResult.empty().stdout())
-		assertEquals("", cdResult.commandResult().stdout());
+		assertEquals("", cdResult.stdout());
 
 		// Verify by running pwd
-		ReplEvaluator pwdEvaluator = new ReplEvaluator("pwd", contextBuilder);
-		EvaluationResult pwdResult = pwdEvaluator.eval();
+		CommandResult pwdResult = eval("pwd");
 
-		assertEquals(subDir.toRealPath().toAbsolutePath().toString(), pwdResult.commandResult().stdout());
+		assertEquals(subDir.toRealPath().toAbsolutePath().toString(), pwdResult.stdout());
 	}
 
 	@Test
 	@Tag("FF0")
 	@Tag("CZ2")
 	void eval_unknownCommand_printsErrorToStderr() throws ReplException {
-		ReplEvaluator evaluator = new ReplEvaluator("unknowncmd123", contextBuilder);
-
 		// Commands no longer throw exceptions for expected failures
 		// Instead, they return CommandResult with error
-		EvaluationResult result = evaluator.eval();
+		CommandResult result = eval("unknowncmd123");
 
 		// Unknown command returns empty stdout
-		assertEquals("", result.commandResult().stdout());
+		assertEquals("", result.stdout());
 		// Stderr contains the error message
-		assertEquals("unknowncmd123: command not found", result.commandResult().stderr());
+		assertEquals("unknowncmd123: command not found", result.stderr());
 	}
 
 	@Test
 	void eval_externalCommand_executesAndReturnsOutput() throws ReplException {
-		ReplEvaluator evaluator = new ReplEvaluator("echo external", contextBuilder);
-
-		EvaluationResult result = evaluator.eval();
+		CommandResult result = eval("echo external");
 
-		assertEquals("external", result.commandResult().stdout());
+		assertEquals("external", result.stdout());
 	}
 
 	@Test
 	void eval_externalCommand_cachesResolvedExecutablePath() throws ReplException {
-		ReplEvaluator evaluator = new ReplEvaluator("echo test", contextBuilder);
-
-		EvaluationResult result = evaluator.eval();
+		CommandResult result = eval("echo test");
 
 		// Verify command executed successfully
-		assertEquals("test", result.commandResult().stdout());
+		assertEquals("test", result.stdout());
 
 		// The resolved path should be cached for performance
 		// (This verifies ReplEvaluator sets executablePath in context)
@@ -141,168 +142,783 @@ class ReplEvaluatorTest {
 		// but this documents the expected behavior
 	}
 
+	@Test
+	void eval_pwdSubstitution_expandsInProcess() throws ReplException {
+		CommandResult result = eval("echo dir=$(pwd)");
+
+		assertEquals("dir=" + tempDir.toAbsolutePath(), result.stdout());
+	}
+
+	@Test
+	void eval_substitutionAsCommandName_runsResult() throws ReplException {
+		CommandResult result = eval("$(echo echo) hi");
+
+		assertEquals("hi", result.stdout());
+	}
+
 	// === Stdout redirection tests ===
 
 	@Test
 	@Tag("JV1")
-	void eval_redirectWithGreaterThan_returnsStdoutAndRedirectTarget() throws ReplException {
-		ReplEvaluator evaluator = new ReplEvaluator("echo hello world > output.txt", contextBuilder);
+	void eval_redirectWithGreaterThan_writesStdoutToFile() throws ReplException, IOException {
+		CommandResult result = eval("echo hello world > output.txt");
 
-		EvaluationResult result = evaluator.eval();
-
-		// Verify command output is returned
-		assertEquals("hello world", result.commandResult().stdout());
-		// Verify redirect target is set
-		assertEquals("output.txt", result.stdoutRedirectTo());
-		assertFalse(result.hasStderrRedirect());
+		// The output goes to the file, not to the shell's stdout
+		assertEquals("", result.stdout());
+		assertEquals("hello world", Files.readString(tempDir.resolve("output.txt")));
 	}
 
 	@Test
 	@Tag("JV1")
-	void eval_redirectWith1GreaterThan_returnsStdoutAndRedirectTarget() throws ReplException {
-		ReplEvaluator evaluator = new ReplEvaluator("echo test content 1> output2.txt", contextBuilder);
-
-		EvaluationResult result = evaluator.eval();
+	void eval_redirectWith1GreaterThan_writesStdoutToFile() throws ReplException, IOException {
+		CommandResult result = eval("echo test content 1> output2.txt");
 
-		assertEquals("test content", result.commandResult().stdout());
-		assertEquals("output2.txt", result.stdoutRedirectTo());
+		assertEquals("", result.stdout());
+		assertEquals("test content", Files.readString(tempDir.resolve("output2.txt")));
 	}
 
 	@Test
 	@Tag("JV1")
-	void eval_redirectToNestedDirectory_returnsResultWithNestedPath() throws ReplException {
-		ReplEvaluator evaluator = new ReplEvaluator("echo nested output > subdir/nested/file.txt", contextBuilder);
-
-		EvaluationResult result = evaluator.eval();
+	void eval_redirectToNestedDirectory_createsParentDirs() throws ReplException, IOException {
+		eval("echo nested output > subdir/nested/file.txt");
 
-		assertEquals("nested output", result.commandResult().stdout());
-		assertEquals("subdir/nested/file.txt", result.stdoutRedirectTo());
+		assertEquals("nested output", Files.readString(tempDir.resolve("subdir/nested/file.txt")));
 	}
 
 	@Test
 	@Tag("JV1")
-	void eval_redirectBuiltinCommand_returnsResultWithRedirect() throws ReplException {
-		ReplEvaluator evaluator = new ReplEvaluator("pwd > pwd_output.txt", contextBuilder);
+	void eval_redirectBuiltinCommand_writesItsOutputToFile() throws ReplException, IOException {
+		eval("pwd > pwd_output.txt");
 
-		EvaluationResult result = evaluator.eval();
-
-		assertEquals(tempDir.toAbsolutePath().toString(), result.commandResult().stdout());
-		assertEquals("pwd_output.txt", result.stdoutRedirectTo());
+		assertEquals(tempDir.toAbsolutePath().toString(), Files.readString(tempDir.resolve("pwd_output.txt")));
 	}
 
 	@Test
 	@Tag("JV1")
-	void eval_redirectOutputReturnsCorrectTarget() throws ReplException {
-		ReplEvaluator evaluator = new ReplEvaluator("echo new content > overwrite.txt", contextBuilder);
+	void eval_redirectToExistingFile_overwritesIt() throws ReplException, IOException {
+		Files.writeString(tempDir.resolve("overwrite.txt"), "old content that is longer");
 
-		EvaluationResult result = evaluator.eval();
+		eval("echo new content > overwrite.txt");
 
-		assertEquals("new content", result.commandResult().stdout());
-		assertEquals("overwrite.txt", result.stdoutRedirectTo());
+		assertEquals("new content", Files.readString(tempDir.resolve("overwrite.txt")));
 	}
 
 	@Test
 	@Tag("JV1")
-	void eval_redirectEmptyOutput_returnsEmptyStdout() throws ReplException {
-		ReplEvaluator evaluator = new ReplEvaluator("echo '' > empty.txt", contextBuilder);
-
-		EvaluationResult result = evaluator.eval();
+	void eval_redirectEmptyOutput_createsEmptyFile() throws ReplException, IOException {
+		CommandResult result = eval("echo '' > empty.txt");
 
-		assertEquals("", result.commandResult().stdout());
-		assertEquals("empty.txt", result.stdoutRedirectTo());
+		assertEquals("", result.stdout());
+		assertEquals("", Files.readString(tempDir.resolve("empty.txt")));
 	}
 
 	@Test
 	@Tag("JV1")
-	void eval_commandFailsButProducesStdout_redirectsStdoutAndThrows() throws IOException, ReplException {
+	void eval_commandFailsButProducesStdout_redirectsStdoutAndReturnsStderr() throws IOException, ReplException {
 		// Create a file to read successfully
 		Path validFile = tempDir.resolve("valid.txt");
 		Files.writeString(validFile, "valid content\n");
 
-		// cat valid.txt nonexistent > output.txt
-		// Should redirect "valid content" to file even though command fails
-		ReplEvaluator evaluator = new ReplEvaluator(
-			"cat " + validFile + " nonexistent > output.txt",
-			contextBuilder
-		);
-
 		// Command returns error via CommandResult (exit code != 0)
-		EvaluationResult result = evaluator.eval();
+		CommandResult result = eval("cat " + validFile + " nonexistent > output.txt");
 
-		// Stdout should be in the result with redirect target
-		assertEquals("valid content", result.commandResult().stdout());
-		assertEquals("output.txt", result.stdoutRedirectTo());
+		// Stdout goes to the file even though the command fails
+		assertEquals("valid content\n", Files.readString(tempDir.resolve("output.txt")));
+		assertEquals("", result.stdout());
 		// Stderr contains error about nonexistent file
-		assertTrue(result.commandResult().stderr().contains("nonexistent"));
+		assertTrue(result.stderr().contains("nonexistent"));
+		assertNotEquals(0, result.exitCode());
 	}
 
 	// === Stderr redirection tests ===
 
 	@Test
 	@Tag("VZ4")
-	void eval_stderrRedirect_failingCommand_returnsStderrAndRedirectTarget() throws ReplException {
-		ReplEvaluator evaluator = new ReplEvaluator("cat nonexistent_file 2> errors.txt", contextBuilder);
-
-		EvaluationResult result = evaluator.eval();
-
-		// Failed command returns empty stdout
-		assertEquals("", result.commandResult().stdout());
-		// Stderr should be in result
-		assertTrue(result.commandResult().stderr().contains("nonexistent_file"));
-		assertTrue(result.commandResult().stderr().contains("No such file"));
-		// Redirect target should be set
-		assertEquals("errors.txt", result.stderrRedirectTo());
+	void eval_stderrRedirect_failingCommand_writesStderrToFile() throws ReplException, IOException {
+		CommandResult result = eval("cat nonexistent_file 2> errors.txt");
+
+		// Failed command returns empty stdout and stderr
+		assertEquals("", result.stdout());
+		assertEquals("", result.stderr());
+		String errors = Files.readString(tempDir.resolve("errors.txt"));
+		assertTrue(errors.contains("nonexistent_file"));
+		assertTrue(errors.contains("No such file"));
 	}
 
 	@Test
 	@Tag("VZ4")
-	void eval_stderrRedirect_successfulCommand_returnsStdoutAndEmptyStderr() throws ReplException {
-		ReplEvaluator evaluator = new ReplEvaluator("echo hello 2> errors.txt", contextBuilder);
+	void eval_stderrRedirect_successfulCommand_returnsStdoutAndCreatesEmptyFile() throws ReplException, IOException {
+		CommandResult result = eval("echo hello 2> errors.txt");
 
-		EvaluationResult result = evaluator.eval();
-
-		// Stdout should be returned
-		assertEquals("hello", result.commandResult().stdout());
-		// Stderr should be empty
-		assertTrue(result.commandResult().stderr().isEmpty());
-		// Redirect target should be set
-		assertEquals("errors.txt", result.stderrRedirectTo());
+		assertEquals("hello", result.stdout());
+		assertTrue(result.stderr().isEmpty());
+		assertEquals("", Files.readString(tempDir.resolve("errors.txt")));
 	}
 
 	@Test
 	@Tag("VZ4")
-	void eval_stderrRedirect_partialFailure_returnsStdoutStderrAndRedirectTarget() throws IOException, ReplException {
+	void eval_stderrRedirect_partialFailure_returnsStdoutAndWritesStderr() throws IOException, ReplException {
 		// Create a valid file
 		Path validFile = tempDir.resolve("valid.txt");
 		Files.writeString(validFile, "pear\n");
 
-		ReplEvaluator evaluator = new ReplEvaluator(
-			"cat " + validFile + " nonexistent 2> errors.txt",
-			contextBuilder
-		);
-
-		EvaluationResult result = evaluator.eval();
+		CommandResult result = eval("cat " + validFile + " nonexistent 2> errors.txt");
 
 		// Should return stdout even when command partially fails
-		assertEquals("pear", result.commandResult().stdout());
-		// Stderr should contain error
-		assertTrue(result.commandResult().stderr().contains("nonexistent"));
-		// Redirect target should be set
-		assertEquals("errors.txt", result.stderrRedirectTo());
+		assertEquals("pear", result.stdout());
+		assertEquals("", result.stderr());
+		assertTrue(Files.readString(tempDir.resolve("errors.txt")).contains("nonexistent"));
 	}
 
 	@Test
 	@Tag("VZ4")
-	void eval_stderrRedirect_nestedDirectory_returnsResultWithNestedPath() throws ReplException {
-		ReplEvaluator evaluator = new ReplEvaluator("cat nonexistent 2> subdir/nested/errors.txt", contextBuilder);
+	void eval_stderrRedirect_nestedDirectory_createsParentDirs() throws ReplException, IOException {
+		CommandResult result = eval("cat nonexistent 2> subdir/nested/errors.txt");
+
+		assertEquals("", result.stdout());
+		assertTrue(Files.readString(tempDir.resolve("subdir/nested/errors.txt")).contains("nonexistent"));
+	}
+
+	// === Sequences, variables and subshells ===
+
+	@Test
+	void eval_sequence_returnsOutputOfEachCommand() throws ReplException {
+		CommandResult result = eval("echo a; echo b");
+
+		assertEquals("a\nb", result.stdout());
+	}
+
+	@Test
+	void eval_subshellCd_doesNotLeakToParent() throws ReplException, IOException {
+		Path subDir = Files.createDirectory(tempDir.resolve("sub"));
+
+		CommandResult inside = eval("(cd sub; pwd)");
+		CommandResult after = eval("pwd");
+
+		assertEquals(subDir.toRealPath().toString(), inside.stdout());
+		assertEquals(tempDir.toAbsolutePath().toString(), after.stdout());
+	}
+
+	@Test
+	void eval_subshellAssignment_doesNotLeakToParent() throws ReplException {
+		CommandResult result = eval("x=1; (x=2; echo $x); echo $x");
+
+		assertEquals("2\n1", result.stdout());
+	}
+
+	@Test
+	void eval_exitInSubshell_onlyEndsSubshell() throws ReplException {
+		CommandResult result = eval("(echo a; exit; echo b); echo c");
+
+		assertEquals("a\nc", result.stdout());
+	}
+
+	@Test
+	void eval_subshellRedirect_writesCombinedOutput() throws ReplException, IOException {
+		CommandResult result = eval("(echo a; echo b) > out.txt");
+
+		assertEquals("", result.stdout());
+		assertEquals("a\nb", Files.readString(tempDir.resolve("out.txt")));
+	}
+
+	@Test
+	void eval_redirectInsideSequence_appliedByEvaluator() throws ReplException, IOException {
+		CommandResult result = eval("echo a > a.txt; echo b");
+
+		assertEquals("b", result.stdout());
+		assertEquals("a", Files.readString(tempDir.resolve("a.txt")));
+	}
+
+	@Test
+	void eval_stdoutAndStderrToOneFile_programWritesBothInOrder() throws ReplException, IOException {
+		CommandResult result = eval(
+				"sh -c 'echo o; echo e >&2; echo o2' > log.txt 2>&1");
+
+		assertEquals("", result.stdout());
+		assertEquals("", result.stderr());
+		assertEquals("o\ne\no2\n", Files.readString(tempDir.resolve("log.txt")));
+	}
+
+	@Test
+	void eval_duplicationBeforeFile_sendsStderrToOutput() throws ReplException, IOException {
+		CommandResult result = eval(
+				"sh -c 'echo o; echo e >&2' 2>&1 > out.txt");
+
+		assertEquals("e", result.stdout());
+		assertEquals("", result.stderr());
+		assertEquals("o\n", Files.readString(tempDir.resolve("out.txt")));
+	}
+
+	@Test
+	void eval_builtinWithMergedStreams_writesBothToFile() throws ReplException, IOException {
+		eval("cd missing &> out.txt; echo a 1>&2 2> err.txt");
+
+		assertTrue(Files.readString(tempDir.resolve("out.txt")).startsWith("cd: "));
+		assertEquals("", Files.readString(tempDir.resolve("err.txt")));
+	}
+
+	@Test
+	void eval_appendRedirect_addsLinesFromBuiltinsAndPrograms() throws ReplException, IOException {
+		eval("echo a > f.txt; echo b >> f.txt; sh -c 'echo c' >> f.txt; echo d >>f.txt");
+
+		assertEquals("a\nb\nc\nd", Files.readString(tempDir.resolve("f.txt")));
+	}
+
+	@Test
+	void eval_everyNamedFile_isCreated() throws ReplException, IOException {
+		Files.writeString(tempDir.resolve("a.txt"), "old");
+
+		CommandResult result = eval("echo x > a.txt > b.txt; > c.txt");
 
-		EvaluationResult result = evaluator.eval();
+		assertEquals("", result.stdout());
+		assertEquals("", Files.readString(tempDir.resolve("a.txt")));
+		assertEquals("x", Files.readString(tempDir.resolve("b.txt")));
+		assertTrue(Files.exists(tempDir.resolve("c.txt")));
+	}
+
+	@Test
+	void eval_groupWithMergedStreams_keepsCommandOrder() throws ReplException, IOException {
+		eval("{ echo a; cd missing; echo b; } > out.txt 2>&1");
+
+		String[] lines = Files.readString(tempDir.resolve("out.txt")).split("\n");
+		assertEquals(3, lines.length);
+		assertEquals("a", lines[0]);
+		assertTrue(lines[1].startsWith("cd: "));
+		assertEquals("b", lines[2]);
+	}
+
+	@Test
+	void eval_prefixAssignment_exportedToExternalCommandOnly() throws ReplException {
+		CommandResult result = eval(
+				"GREETING=hi sh -c 'echo $GREETING'; echo \"[$GREETING]\"");
+
+		assertEquals("hi\n[]", result.stdout());
+	}
+
+	@Test
+	void eval_prefixAssignment_notSeenByOwnWords() throws ReplException {
+		CommandResult result = eval("A=1; A=2 echo $A; A=3 sh -c 'echo $A'; echo $A");
+
+		assertEquals("1\n3\n1", result.stdout());
+	}
+
+	@Test
+	void eval_externalCommand_runsInShellDirectory() throws ReplException, IOException {
+		Files.createDirectory(tempDir.resolve("sub"));
+
+		CommandResult result = eval("cd sub; sh -c pwd");
+
+		assertEquals(tempDir.resolve("sub").toRealPath().toString(), result.stdout());
+	}
+
+	@Test
+	void eval_hereDocument_feedsExpandedBodyToStdin() throws ReplException {
+		CommandResult result = eval(
+				"name=world\ncat <<EOF\nhello $name\n'$(echo hi)' \\$x\nEOF\necho after");
+
+		assertEquals("hello world\n'hi' $x\nafter", result.stdout());
+	}
+
+	@Test
+	void eval_quotedHereDocumentAndHereString_feedLiteralText() throws ReplException {
+		CommandResult result = eval(
+				"x=a; cat <<-'EOF'; cat <<< \"$x b\"\n\t$x\n\tEOF");
+
+		assertEquals("$x\na b", result.stdout());
+	}
+
+	@Test
+	void eval_hereDocumentLargerThanPipeBuffer_isStreamedToStdin() throws ReplException {
+		String line = "x".repeat(99) + "\n";
+		String body = line.repeat(10_000);
+
+		CommandResult counted = eval("wc -c <<EOF\n" + body + "EOF");
+		CommandResult ignored = eval("true <<EOF\n" + body + "EOF");
+
+		assertEquals(Integer.toString(body.length()), counted.stdout().strip());
+		assertEquals(0, ignored.exitCode());
+	}
+
+	@Test
+	void eval_inputRedirect_programReadsFileFromCurrentDirectory() throws ReplException, IOException {
+		Files.writeString(tempDir.resolve("in.txt"), "b\na\n");
+		Files.createDirectory(tempDir.resolve("sub"));
+		Files.writeString(tempDir.resolve("sub/in.txt"), "c\n");
+
+		CommandResult result = eval("sort < in.txt; cd sub; sort < in.txt");
+
+		assertEquals("a\nb\nc", result.stdout());
+	}
+
+	@Test
+	void eval_inputRedirectFromMissingFile_failsWithoutRunning() throws ReplException {
+		CommandResult result = eval("echo x < missing.txt; echo $?");
+
+		assertEquals("1", result.stdout());
+		assertEquals("missing.txt: No such file or directory", result.stderr());
+	}
+
+	@Test
+	void eval_processSubstitutions_consumerReadsEachProducer() throws ReplException, IOException {
+		Files.writeString(tempDir.resolve("a.txt"), "b\na\n");
+		Files.writeString(tempDir.resolve("b.txt"), "a\nb\n");
+
+		CommandResult cat = eval("cat <(echo 1) <(sh -c 'echo 2') <(echo 3; echo 4)");
+		CommandResult diff = eval("diff <(sort a.txt) <(sort b.txt)");
+
+		assertEquals("1\n2\n3\n4", cat.stdout().strip());
+		assertEquals(0, diff.exitCode());
+		assertEquals("", diff.stdout());
+	}
+
+	@Test
+	void eval_processSubstitution_consumerExitingEarlyStopsProducer() throws ReplException, IOException {
+		// Loads the classes involved, which may open files of their own
+		eval("true <(true)");
+		long openBefore = openDescriptors();
+
+		CommandResult result = assertTimeoutPreemptively(Duration.ofSeconds(10),
+				() -> eval("head -c 1 <(yes); true <(sleep 60); head -c 1 <(while true; do echo y; done)"));
+
+		assertEquals("y\ny", result.stdout());
+		assertEquals(openBefore, openDescriptors());
+	}
+
+	@Test
+	void eval_outputProcessSubstitution_consumerReadsWhatIsWritten() throws ReplException, IOException {
+		eval("printf 'b\\na\\n' > >(sort > sorted.txt); echo in-process > >(cat > copy.txt)");
+
+		assertEquals("a\nb\n", Files.readString(tempDir.resolve("sorted.txt")));
+		assertEquals("in-process\n", Files.readString(tempDir.resolve("copy.txt")));
+	}
+
+	@Test
+	void eval_parentAssignsWhileProcessSubstitutionReads_bodySeesItsOwnCopy() throws ReplException {
+		// The body echoes i while the words after it are expanded, each assigning i
+		String assignments = " $((i+=1))".repeat(CONCURRENT_ASSIGNMENTS);
+
+		CommandResult result = eval("i=0; cat <(j=0; while [ $j -lt " + CONCURRENT_ASSIGNMENTS
+				+ " ]; do echo $i; j=$((j+1)); done)" + assignments + " 2> /dev/null; echo $i");
+
+		List<String> lines = result.stdout().lines().toList();
+		assertEquals(String.valueOf(CONCURRENT_ASSIGNMENTS), lines.getLast());
+		assertEquals(List.of("0"), lines.subList(0, lines.size() - 1).stream().distinct().toList());
+		assertEquals(CONCURRENT_ASSIGNMENTS + 1, lines.size());
+	}
+
+	@Test
+	void eval_sourceProcessSubstitution_runsItsOutput() throws ReplException {
+		CommandResult result = eval("source <(echo x=5); echo $x");
+
+		assertEquals("5", result.stdout());
+	}
+
+	@Test
+	void eval_compoundSubstitution_runsInForkedEnvironment() throws ReplException, IOException {
+		Path subDir = Files.createDirectory(tempDir.resolve("sub"));
+
+		CommandResult result = eval("echo $(cd sub; pwd); pwd");
+
+		assertEquals(subDir.toRealPath() + "\n" + tempDir.toAbsolutePath(), result.stdout());
+	}
+
+	// === Arithmetic expansion ===
+
+	@Test
+	void eval_arithmetic_evaluatesInProcess() throws ReplException {
+		CommandResult result = eval("echo $((6 * 7)) \"$((1 << 4))\"");
+
+		assertEquals("42 16", result.stdout());
+	}
+
+	@Test
+	void eval_arithmeticCounter_updatesShellVariable() throws ReplException {
+		CommandResult result = eval(
+				"i=0; i=$((i + 1)); echo $((i += 10)) $i; echo $((i++)) $i");
+
+		assertEquals("11 11\n11 12", result.stdout());
+	}
+
+	@Test
+	void eval_programInShellPath_isFoundAndRun() throws ReplException, IOException {
+		Path bin = Files.createDirectory(tempDir.resolve("bin"));
+		script(bin.resolve("greet-xyz"), "echo hello from $0");
+
+		CommandResult result = eval("PATH=" + bin + ":/bin:/usr/bin; type -p greet-xyz; greet-xyz");
+
+		assertEquals(bin.resolve("greet-xyz") + "\nhello from " + bin.resolve("greet-xyz"), result.stdout());
+	}
+
+	@Test
+	void eval_programDeletedAfterRun_isNotFound() throws ReplException, IOException {
+		Path bin = Files.createDirectory(tempDir.resolve("bin"));
+		Path program = script(bin.resolve("once-xyz"), "echo once");
+		eval("PATH=" + bin + ":/bin:/usr/bin; once-xyz");
+
+		Files.delete(program);
+
+		assertEquals("once-xyz: " + Messages.COMMAND_NOT_FOUND, eval("once-xyz").stderr());
+	}
+
+	@Test
+	void eval_programMadeExecutableAfterMiss_isFound() throws ReplException, IOException {
+		Path bin = Files.createDirectory(tempDir.resolve("bin"));
+		Path program = Files.writeString(bin.resolve("later-xyz"), "#!/bin/sh\necho later\n");
+		assertEquals("later-xyz: " + Messages.COMMAND_NOT_FOUND,
+				eval("PATH=" + bin + ":/bin:/usr/bin; later-xyz").stderr());
+
+		Files.setPosixFilePermissions(program, PosixFilePermissions.fromString("rwxr-xr-x"));
+
+		assertEquals("later", eval("later-xyz").stdout());
+	}
+
+	// === Control flow ===
+
+	@Test
+	void eval_ifElse_runsMatchingBranch() throws ReplException {
+		CommandResult result = eval(
+				"if type -p nosuchcmd123; then echo yes; else echo no; fi");
+
+		assertEquals("no", result.stdout());
+	}
+
+	@Test
+	void eval_elif_triesConditionsInOrder() throws ReplException {
+		CommandResult result = eval(
+				"if cd missing 2> err.txt; then echo a; elif pwd > p.txt; then echo b; fi");
+
+		assertEquals("b", result.stdout());
+	}
+
+	@Test
+	void eval_whileLoop_countsWithArithmetic() throws ReplException {
+		CommandResult result = eval(
+				"i=0; while sh -c \"exit $((i >= 3))\"; do echo $i; i=$((i + 1)); done");
+
+		assertEquals("", result.stderr());
+		assertEquals("0\n1\n2", result.stdout());
+	}
+
+	@Test
+	void eval_untilLoop_runsUntilConditionSucceeds() throws ReplException, IOException {
+		Files.createDirectory(tempDir.resolve("d3"));
+
+		CommandResult result = eval(
+				"n=0; until cd d$n 2> e.txt; do n=$((n + 1)); done; echo $n");
+
+		assertEquals("3", result.stdout());
+	}
+
+	@Test
+	void eval_forOverGlob_iteratesSortedMatches() throws ReplException, IOException {
+		Files.createFile(tempDir.resolve("b.csv"));
+		Files.createFile(tempDir.resolve("a.csv"));
+		Files.createFile(tempDir.resolve("c.txt"));
+
+		CommandResult result = eval("for f in *.csv; do echo file $f; done");
+
+		assertEquals("file a.csv\nfile b.csv", result.stdout());
+	}
+
+	@Test
+	void eval_case_runsFirstMatchingItem() throws ReplException {
+		CommandResult result = eval(
+				"for x in a.txt b.csv other; do case $x in *.txt|*.md) echo text;; *.csv) echo csv;; *) echo $x;; esac; done");
+
+		assertEquals("text\ncsv\nother", result.stdout());
+	}
+
+	@Test
+	void eval_lastExitCode_expandsDollarQuestionMark() throws ReplException {
+		CommandResult result = eval("cd missing; echo $?; echo $?");
+
+		assertEquals("1\n0", result.stdout());
+	}
+
+	@Test
+	void eval_redirectedLoop_writesAllIterations() throws ReplException, IOException {
+		eval("for i in 1 2 3; do echo $i; done > out.txt");
+
+		assertEquals("1\n2\n3", Files.readString(tempDir.resolve("out.txt")));
+	}
+
+	@Test
+	void eval_andOr_runsRightSideByExitCode() throws ReplException {
+		CommandResult result = eval(
+				"true && echo and; false && echo skipped; false || echo or; true || echo skipped");
+
+		assertEquals("and\nor", result.stdout());
+	}
+
+	@Test
+	void eval_testBuiltins_checkFiles() throws ReplException, IOException {
+		Files.writeString(tempDir.resolve("data.txt"), "x");
+
+		CommandResult result = eval(
+				"[ -f data.txt ] && [ -r data.txt ] && echo file; test -d data.txt || echo notdir; "
+						+ "[[ data.txt == *.txt && -s data.txt ]] && echo match");
+
+		assertEquals("file\nnotdir\nmatch", result.stdout());
+	}
+
+	@Test
+	void eval_testInStatement_seesFileCreatedByEarlierStatement() throws ReplException {
+		CommandResult result = eval(
+				"[ -e new.txt ] || echo missing; echo x > new.txt; [ -e new.txt ] && echo present");
+
+		assertEquals("missing\npresent", result.stdout());
+	}
+
+	@Test
+	void eval_whileTest_loopsOnIntegerComparison() throws ReplException {
+		CommandResult result = eval(
+				"i=0; while [ $i -lt 3 ]; do echo $i; i=$((i + 1)); done");
+
+		assertEquals("0\n1\n2", result.stdout());
+	}
+
+	@Test
+	void eval_function_definedOnceAndCalledWithArguments() throws ReplException {
+		CommandResult result = eval(
+				"greet() { echo hello $1; }; greet a; greet b");
+
+		assertEquals("hello a\nhello b", result.stdout());
+	}
+
+	@Test
+	void eval_function_shadowsBuiltin() throws ReplException {
+		CommandResult result = eval("pwd() { echo mine; }; pwd");
+
+		assertEquals("mine", result.stdout());
+	}
+
+	@Test
+	void eval_functionReturn_setsExitCode() throws ReplException {
+		CommandResult result = eval(
+				"f() { if [ $1 = yes ]; then return 0; fi; return 4; }; f no; echo $?; f yes && echo ok");
+
+		assertEquals("4\nok", result.stdout());
+	}
+
+	@Test
+	void eval_quotedAllParameters_keepsArgumentsSeparate() throws ReplException {
+		CommandResult result = eval(
+				"count() { echo $#; }; f() { count \"$@\"; count \"$*\"; }; f 'a b' c");
+
+		assertEquals("2\n1", result.stdout());
+	}
+
+	@Test
+	void eval_runawayRecursion_stopsAtNestingLimit() throws ReplException {
+		CommandResult result = eval("f() { f; }; f");
+
+		assertTrue(result.stderr().contains("maximum function nesting level exceeded"));
+	}
+
+	@Test
+	void eval_functionInSubstitution_runsBody() throws ReplException {
+		CommandResult result = eval("f() { echo inner; }; echo [$(f)]");
+
+		assertEquals("[inner]", result.stdout());
+	}
+
+	@Test
+	void execute_functionMixingStdoutAndStderr_passesEachCommandsOutputInOrder() throws ReplException {
+		List<String> events = new ArrayList<>();
+		Node plan = ScriptParser.parse("f() { echo a; ls nonexist; echo b; }; f");
+
+		ReplEvaluator.execute(plan, contextBuilder, result -> {
+			if (!result.stdout().isEmpty()) {
+				events.add("out:" + result.stdout());
+			}
+			if (!result.stderr().isEmpty()) {
+				events.add("err");
+			}
+		});
+
+		assertEquals(List.of("out:a", "err", "out:b"), events);
+	}
+
+	@Test
+	void eval_redirectedFunction_writesWholeBodyToFile() throws ReplException, IOException {
+		CommandResult result = eval("f() { echo a; echo b; }; f > out.txt; echo done");
+
+		assertEquals("done", result.stdout());
+		assertEquals("a\nb", Files.readString(tempDir.resolve("out.txt")));
+	}
+
+	@Test
+	void eval_alias_splicesArgumentsIntoParsedValue() throws ReplException {
+		eval("alias say='echo said:'");
+
+		CommandResult result = eval("say hi there");
+
+		assertEquals("said: hi there", result.stdout());
+	}
+
+	@Test
+	void eval_selfReferencingAlias_expandsOnce() throws ReplException {
+		CommandResult result = eval(
+				"alias echo='echo prefix'; echo x; \\echo plain");
+
+		assertEquals("prefix x\nplain", result.stdout());
+	}
+
+	@Test
+	void eval_compoundAlias_appendsArgumentsToLastCommand() throws ReplException {
+		CommandResult result = eval(
+				"alias both='echo one; echo two'; both three");
+
+		assertEquals("one\ntwo three", result.stdout());
+	}
+
+	@Test
+	void eval_functionDefinedInSubshell_doesNotLeak() throws ReplException {
+		CommandResult result = eval("(f() { echo in; }; f); type f");
+
+		assertEquals("in\nf: not found", result.stdout());
+	}
+
+	@Test
+	void eval_source_runsFileInCurrentEnvironment() throws ReplException, IOException {
+		Files.writeString(tempDir.resolve("lib.sh"), "greeting=hello\ngreet() { echo $greeting $1; }\n");
+
+		CommandResult result = eval(". ./lib.sh; greet world");
+
+		assertEquals("hello world", result.stdout());
+	}
+
+	@Test
+	void execute_interruptedThread_cancelsBeforeNextCommand() {
+		Node plan = ScriptParser.parse("echo a; echo b");
+		CapturedOutput output = new CapturedOutput();
+
+		Thread.currentThread().interrupt();
+
+		assertThrows(CancelledException.class, () -> ReplEvaluator.execute(plan, contextBuilder, output));
+		assertFalse(Thread.interrupted(), "the interrupt should be consumed");
+		assertEquals("", output.stdout());
+	}
+
+	@Test
+	void execute_terminalOffered_externalCommandsTakeItOver() throws ReplException {
+		List<String> events = new ArrayList<>();
+		Node plan = ScriptParser.parse("echo a; sh -c 'exit 3'; (sh -c 'exit 4')");
+
+		int exitCode = ReplEvaluator.execute(plan, contextBuilder, terminalSink(events));
+
+		assertEquals(4, exitCode);
+		assertEquals(List.of("a", "suspend", "resume", "suspend", "resume"), events);
+	}
+
+	@Test
+	void execute_terminalOffered_redirectedProgramTakesItAndCapturedOutputBypassesIt() throws ReplException, IOException {
+		List<String> events = new ArrayList<>();
+		Node plan = ScriptParser.parse("sh -c 'echo x' > out.txt; echo $(sh -c 'echo y'); { sh -c 'echo z'; } > z.txt");
+
+		ReplEvaluator.execute(plan, contextBuilder, terminalSink(events));
+
+		// The redirected program still reads keys from the terminal, but writes its file itself
+		assertEquals(List.of("suspend", "resume", "y"), events);
+		assertEquals("x\n", Files.readString(tempDir.resolve("out.txt")));
+		assertEquals("z", Files.readString(tempDir.resolve("z.txt")));
+	}
+
+	@Test
+	void eval_afterForegroundRun_capturesOutputAgain() throws ReplException, IOException {
+		// Silent while it has the terminal, which is the test's own stdout
+		String input = "sh -c 'cat f 2>/dev/null'";
+		List<String> events = new ArrayList<>();
+		ReplEvaluator.execute(ScriptParser.parse(input), contextBuilder, terminalSink(events));
+		Files.writeString(tempDir.resolve("f"), "x\n");
+
+		CommandResult result = eval(input);
+
+		assertEquals("x", result.stdout());
+		assertEquals(List.of("suspend", "resume"), events);
+	}
+
+	@Test
+	@Tag("allocation")
+	void execute_repeatedStaticCommand_allocatesOnlyItsResult() throws ReplException {
+		assertWithinAllocationBudget("echo hello", 1);
+		assertWithinAllocationBudget("pwd", 1);
+		assertWithinAllocationBudget("echo a; echo b", 2);
+		assertWithinAllocationBudget("if [ a = a ]; then echo y; fi", 2);
+		assertWithinAllocationBudget("[ -n x ] && { echo y; }", 2);
+	}
+
+	/**
+	 * Runs input the way the REPL does, parsed once and executed as a plan, and returns the
+	 * output of all its commands with the exit code of the last.
+	 */
+	private CommandResult eval(String input) throws ReplException {
+		CapturedOutput output = new CapturedOutput();
+		return output.toResult(ReplEvaluator.execute(ScriptParser.parse(input), contextBuilder, output));
+	}
+
+	/**
+	 * A sink offering a terminal that records handoffs, and the output it receives, in order.
+	 */
+	private static OutputSink terminalSink(List<String> events) {
+		TerminalHandoff terminal = new TerminalHandoff() {
+			@Override
+			public void suspend() {
+				events.add("suspend");
+			}
+
+			@Override
+			public void resume() {
+				events.add("resume");
+			}
+		};
+		return new OutputSink() {
+			@Override
+			public void accept(CommandResult result) {
+				if (!result.stdout().isEmpty()) {
+					events.add(result.stdout());
+				}
+			}
+
+			@Override
+			public TerminalHandoff terminal() {
+				return terminal;
+			}
+		};
+	}
+
+	/**
+	 * Fails if running a parsed plan, after warm-up, allocates more than
+	 * {@link #ALLOCATION_BUDGET_BYTES} per command. Takes the best of several rounds,
+	 * so a JIT recompilation during one round does not fail the build.
+	 */
+	private void assertWithinAllocationBudget(String input, int commands) throws ReplException {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		assumeTrue(threads.isThreadAllocatedMemorySupported());
+		Node plan = ScriptParser.parse(input);
+		OutputSink sink = _ -> { };
+		int runs = 10_000;
+		long best = Long.MAX_VALUE;
+		for (int round = 0; round < 10; round++) {
+			long before = threads.getCurrentThreadAllocatedBytes();
+			for (int i = 0; i < runs; i++) {
+				ReplEvaluator.execute(plan, contextBuilder, sink);
+			}
+			best = Math.min(best, (threads.getCurrentThreadAllocatedBytes() - before) / runs);
+		}
+		assertTrue(best <= ALLOCATION_BUDGET_BYTES * commands,
+				input + ": " + best + " bytes per run, budget " + ALLOCATION_BUDGET_BYTES * commands);
+	}
+
+	private static Path script(Path file, String body) throws IOException {
+		Files.writeString(file, "#!/bin/sh\n" + body + "\n");
+		Files.setPosixFilePermissions(file, PosixFilePermissions.fromString("rwxr-xr-x"));
+		return file;
+	}
 
-		// Failed command returns empty stdout
-		assertEquals("", result.commandResult().stdout());
-		// Stderr contains error
-		assertTrue(result.commandResult().stderr().contains("nonexistent"));
-		// Redirect target should be the nested path
-		assertEquals("subdir/nested/errors.txt", result.stderrRedirectTo());
+	private static long openDescriptors() throws IOException {
+		try (var descriptors = Files.list(Path.of("/proc/self/fd"))) {
+			return descriptors.count();
+		}
 	}
 }
@@ -0,0 +1,55 @@
+package repl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import repl.script.ScriptParser;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SyntaxHighlighterTest {
+
+	private CommandTable commandTable;
+	private SyntaxHighlighter highlighter;
+
+	@BeforeEach
+	void setUp() {
+		commandTable = new CommandTable();
+		highlighter = new SyntaxHighlighter(commandTable);
+	}
+
+	@Test
+	void style_builtinAndUnknownCommand_greenAndRed() {
+		highlighter.update("echo 'x' > f; zz_no_such_cmd", 0);
+
+		assertEquals("32", highlighter.style(0));
+		assertNull(highlighter.style(4));
+		assertEquals("33", highlighter.style(5));
+		assertEquals("34", highlighter.style(9));
+		assertEquals("1", highlighter.style(12));
+		assertEquals("31", highlighter.style(14));
+	}
+
+	@Test
+	void style_functionsAndAliases_areKnownOnceDefined() {
+		assertEquals("31", styleOfFirst("zzgreet"));
+
+		commandTable.defineFunction("zzgreet", ScriptParser.parse("echo hi"));
+		commandTable.setAlias("zzlist", "ls");
+
+		assertEquals("32", styleOfFirst("zzgreet"));
+		assertEquals("32", styleOfFirst("zzlist"));
+	}
+
+	@Test
+	void style_pathCommand_isNotProbed() {
+		highlighter.update("/no/such/program x", 0);
+
+		assertNull(highlighter.style(0));
+	}
+
+	private String styleOfFirst(String line) {
+		highlighter.update("", 0);
+		highlighter.update(line, 0);
+		return highlighter.style(0);
+	}
+}
@@ -0,0 +1,58 @@
+package repl.commands;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link CommandInput}.
+ */
+class CommandInputTest {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void writeTo_text_writesChunksInOrder() throws IOException {
+		StringWriter out = new StringWriter();
+
+		new CommandInput.Text(List.of("hello ", "world", "\n")).writeTo(out);
+
+		assertEquals("hello world\n", out.toString());
+	}
+
+	@Test
+	void open_file_streamsContentInReads() throws IOException {
+		byte[] content = new byte[100_000];
+		for (int i = 0; i < content.length; i++) {
+			content[i] = (byte) i;
+		}
+		Path file = Files.write(tempDir.resolve("in.bin"), content);
+
+		byte[] buffer = new byte[8192];
+		int total = 0;
+		try (InputStream in = new CommandInput.File(file).open()) {
+			for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+				for (int i = 0; i < read; i++) {
+					assertEquals(content[total + i], buffer[i]);
+				}
+				total += read;
+			}
+		}
+
+		assertEquals(content.length, total);
+	}
+
+	@Test
+	void open_missingFile_throwsIOException() {
+		assertThrows(IOException.class, () -> new CommandInput.File(tempDir.resolve("missing")).open());
+	}
+}
@@ -3,12 +3,18 @@ package repl.commands;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import repl.ReplContext;
 import repl.commands.CommandResult;
+import repl.exceptions.CancelledException;
 import repl.exceptions.ReplException;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -61,6 +67,71 @@ class ExecutableCommandTest {
 		assertTrue(result.isSuccess());
 	}
 
+	// === Standard input ===
+
+	@Test
+	void execute_withoutInput_programReadsEndOfInput() throws ReplException {
+		when(mockContext.getMainCommandStr()).thenReturn("cat");
+		when(mockContext.getArgs()).thenReturn(List.of());
+
+		CommandResult result = executableCommand.execute(mockContext);
+
+		assertEquals("", result.stdout());
+		assertTrue(result.isSuccess());
+	}
+
+	@Test
+	void execute_textInput_writtenToStdinInOrder() throws ReplException {
+		when(mockContext.getMainCommandStr()).thenReturn("cat");
+		when(mockContext.getArgs()).thenReturn(List.of());
+		when(mockContext.getStdin()).thenReturn(new CommandInput.Text(List.of("a ", "b\n", "c")));
+
+		CommandResult result = executableCommand.execute(mockContext);
+
+		assertEquals("a b\nc", result.stdout());
+	}
+
+	@Test
+	void execute_fileInput_processReadsFile(@TempDir Path tempDir) throws ReplException, IOException {
+		Path input = Files.writeString(tempDir.resolve("in.txt"), "b\na\n");
+		when(mockContext.getMainCommandStr()).thenReturn("sort");
+		when(mockContext.getArgs()).thenReturn(List.of());
+		when(mockContext.getStdin()).thenReturn(new CommandInput.File(input));
+
+		CommandResult result = executableCommand.execute(mockContext);
+
+		assertEquals("a\nb", result.stdout());
+	}
+
+	// === Foreground programs ===
+
+	@Test
+	void execute_terminalOffered_programRunsOnItAndReportsExitCode() throws ReplException {
+		List<String> events = new ArrayList<>();
+		when(mockContext.getMainCommandStr()).thenReturn("sh");
+		when(mockContext.getArgs()).thenReturn(List.of("-c", "exit 3"));
+		when(mockContext.getTerminal()).thenReturn(recordingTerminal(events));
+
+		CommandResult result = executableCommand.execute(mockContext);
+
+		assertEquals(new CommandResult("", "", 3), result);
+		assertEquals(List.of("suspend", "resume"), events);
+	}
+
+	@Test
+	void execute_terminalOfferedWithTextInput_stillFeedsStdin() throws ReplException {
+		List<String> events = new ArrayList<>();
+		when(mockContext.getMainCommandStr()).thenReturn("sh");
+		when(mockContext.getArgs()).thenReturn(List.of("-c", "read x; exit $x"));
+		when(mockContext.getStdin()).thenReturn(new CommandInput.Text(List.of("7\n")));
+		when(mockContext.getTerminal()).thenReturn(recordingTerminal(events));
+
+		CommandResult result = executableCommand.execute(mockContext);
+
+		assertEquals(7, result.exitCode());
+		assertEquals(List.of("suspend", "resume"), events);
+	}
+
 	// === Error handling ===
 
 	@Test
@@ -94,4 +165,33 @@ class ExecutableCommandTest {
 		assertEquals("sh", result.stdout());
 		assertTrue(result.isSuccess());
 	}
+
+	@Test
+	void execute_interrupted_destroysProcessAndCancels() {
+		when(mockContext.getMainCommandStr()).thenReturn("sleep");
+		when(mockContext.getArgs()).thenReturn(List.of("30"));
+
+		Thread.currentThread().interrupt();
+		long start = System.nanoTime();
+		try {
+			assertThrows(CancelledException.class, () -> executableCommand.execute(mockContext));
+		} finally {
+			Thread.interrupted();
+		}
+		assertTrue(System.nanoTime() - start < 10_000_000_000L, "should not wait for the program");
+	}
+
+	private static TerminalHandoff recordingTerminal(List<String> events) {
+		return new TerminalHandoff() {
+			@Override
+			public void suspend() {
+				events.add("suspend");
+			}
+
+			@Override
+			public void resume() {
+				events.add("resume");
+			}
+		};
+	}
 }
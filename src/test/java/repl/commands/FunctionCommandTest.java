@@ -0,0 +1,64 @@
+package repl.commands;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import repl.ReplContext;
+import repl.exceptions.ReplException;
+import repl.script.ScriptParser;
+import repl.utils.DirUtils;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FunctionCommandTest {
+
+	@TempDir
+	Path tempDir;
+
+	private ReplContext.Builder scope;
+
+	@BeforeEach
+	void setUp() {
+		scope = ReplContext.builder(new DirUtils(tempDir));
+	}
+
+	private CommandResult call(String body, String input) throws ReplException {
+		FunctionCommand command = new FunctionCommand(ScriptParser.parse(body));
+		return command.execute(scope.originalInput(input).build());
+	}
+
+	@Test
+	void execute_body_seesArgumentsAsPositionalParameters() throws ReplException {
+		CommandResult result = call("echo $# $1 $2", "f one two");
+
+		assertEquals("2 one two", result.stdout());
+		assertEquals(0, result.exitCode());
+	}
+
+	@Test
+	void execute_afterCall_restoresCallerParameters() throws ReplException {
+		scope.setPositionalParameters(List.of("outer"));
+
+		call("echo $1", "f inner");
+
+		assertEquals(List.of("outer"), scope.getPositionalParameters());
+	}
+
+	@Test
+	void execute_return_setsExitCodeAndStopsBody() throws ReplException {
+		CommandResult result = call("echo before; return 3; echo after", "f");
+
+		assertEquals("before", result.stdout());
+		assertEquals(3, result.exitCode());
+	}
+
+	@Test
+	void execute_assignmentInBody_staysInCallerEnvironment() throws ReplException {
+		call("x=set", "f");
+
+		assertEquals("set", scope.getEnvUtils().get("x"));
+	}
+}
@@ -0,0 +1,75 @@
+package repl.commands.builtin;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import repl.CommandTable;
+import repl.ReplContext;
+import repl.commands.CommandResult;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AliasCommandTest {
+
+	@Mock
+	private ReplContext mockContext;
+
+	private CommandTable commandTable;
+
+	private final AliasCommand aliasCommand = new AliasCommand();
+
+	@BeforeEach
+	void setUp() {
+		commandTable = new CommandTable();
+		when(mockContext.getCommandTable()).thenReturn(commandTable);
+	}
+
+	@Test
+	void execute_definition_storesAlias() {
+		when(mockContext.getArgs()).thenReturn(List.of("ll=ls -l"));
+
+		CommandResult result = aliasCommand.execute(mockContext);
+
+		assertTrue(result.isSuccess());
+		assertEquals("ls -l", commandTable.getAlias("ll").value());
+	}
+
+	@Test
+	void execute_noArgs_listsAliasesQuoted() {
+		commandTable.setAlias("q", "echo 'hi'");
+		commandTable.setAlias("ll", "ls -l");
+		when(mockContext.getArgs()).thenReturn(List.of());
+
+		CommandResult result = aliasCommand.execute(mockContext);
+
+		assertEquals("alias ll='ls -l'\nalias q='echo '\\''hi'\\'''", result.stdout());
+	}
+
+	@Test
+	void execute_unknownName_returnsError() {
+		commandTable.setAlias("ll", "ls -l");
+		when(mockContext.getArgs()).thenReturn(List.of("ll", "nope"));
+
+		CommandResult result = aliasCommand.execute(mockContext);
+
+		assertEquals("alias ll='ls -l'", result.stdout());
+		assertEquals("alias: nope: not found", result.stderr());
+		assertEquals(1, result.exitCode());
+	}
+
+	@Test
+	void execute_invalidValue_returnsSyntaxError() {
+		when(mockContext.getArgs()).thenReturn(List.of("bad=echo 'x"));
+
+		CommandResult result = aliasCommand.execute(mockContext);
+
+		assertEquals(1, result.exitCode());
+		assertTrue(result.stderr().startsWith("alias: bad: "));
+	}
+}
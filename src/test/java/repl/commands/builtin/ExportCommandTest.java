@@ -0,0 +1,77 @@
+package repl.commands.builtin;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import repl.ReplContext;
+import repl.commands.CommandResult;
+import repl.utils.EnvUtils;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ExportCommandTest {
+
+	@Mock
+	private ReplContext mockContext;
+
+	private EnvUtils envUtils;
+
+	private final ExportCommand exportCommand = new ExportCommand();
+
+	@BeforeEach
+	void setUp() {
+		envUtils = new EnvUtils(Map.of());
+		when(mockContext.getEnvUtils()).thenReturn(envUtils);
+	}
+
+	@Test
+	void execute_nameWithValue_setsAndExports() {
+		when(mockContext.getArgs()).thenReturn(List.of("x=1"));
+
+		CommandResult result = exportCommand.execute(mockContext);
+
+		assertTrue(result.isSuccess());
+		assertEquals(Map.of("x", "1"), envUtils.getExportedVariables());
+	}
+
+	@Test
+	void execute_existingShellVariable_exportsIt() {
+		envUtils.set("y", "2");
+		when(mockContext.getArgs()).thenReturn(List.of("y"));
+
+		exportCommand.execute(mockContext);
+
+		assertEquals(Map.of("y", "2"), envUtils.getExportedVariables());
+	}
+
+	@Test
+	void execute_invalidName_returnsError() {
+		when(mockContext.getArgs()).thenReturn(List.of("1x=3", "ok=4"));
+
+		CommandResult result = exportCommand.execute(mockContext);
+
+		assertEquals("export: `1x=3': not a valid identifier", result.stderr());
+		assertEquals(1, result.exitCode());
+		assertEquals(Map.of("ok", "4"), envUtils.getExportedVariables());
+	}
+
+	@Test
+	void execute_noArgs_listsExportedVariables() {
+		envUtils.set("b", "2");
+		envUtils.export("b");
+		envUtils.set("a", "1");
+		envUtils.export("a");
+		when(mockContext.getArgs()).thenReturn(List.of());
+
+		CommandResult result = exportCommand.execute(mockContext);
+
+		assertEquals("declare -x a=\"1\"\ndeclare -x b=\"2\"", result.stdout());
+	}
+}
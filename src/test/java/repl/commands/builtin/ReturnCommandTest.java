@@ -0,0 +1,51 @@
+package repl.commands.builtin;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import repl.ReplContext;
+import repl.commands.CommandResult;
+import repl.exceptions.ReturnException;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ReturnCommandTest {
+
+	@Mock
+	private ReplContext mockContext;
+
+	private final ReturnCommand returnCommand = new ReturnCommand();
+
+	@Test
+	void execute_exitCode_throwsReturnException() {
+		when(mockContext.getArgs()).thenReturn(List.of("3"));
+
+		ReturnException exception = assertThrows(ReturnException.class, () -> returnCommand.execute(mockContext));
+
+		assertEquals(3, exception.getExitCode());
+	}
+
+	@Test
+	void execute_noArgs_keepsLastExitCode() {
+		when(mockContext.getArgs()).thenReturn(List.of());
+
+		ReturnException exception = assertThrows(ReturnException.class, () -> returnCommand.execute(mockContext));
+
+		assertEquals(-1, exception.getExitCode());
+	}
+
+	@Test
+	void execute_nonNumeric_returnsUsageError() throws ReturnException {
+		when(mockContext.getArgs()).thenReturn(List.of("x"));
+
+		CommandResult result = returnCommand.execute(mockContext);
+
+		assertEquals("return: x: numeric argument required", result.stderr());
+		assertEquals(2, result.exitCode());
+	}
+}
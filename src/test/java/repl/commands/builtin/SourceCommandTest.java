@@ -0,0 +1,163 @@
+package repl.commands.builtin;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import repl.ReplContext;
+import repl.commands.CommandResult;
+import repl.exceptions.ReplException;
+import repl.script.ScriptCache;
+import repl.utils.DirUtils;
+import repl.utils.EnvUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SourceCommandTest {
+
+	@TempDir
+	Path tempDir;
+
+	private ReplContext.Builder scope;
+
+	private ScriptCache cache;
+
+	@BeforeEach
+	void setUp() {
+		scope = ReplContext.builder(new DirUtils(tempDir), new EnvUtils(Map.of()));
+		cache = new ScriptCache(16);
+	}
+
+	private CommandResult source(String input) throws ReplException {
+		return new SourceCommand(cache).execute(scope.originalInput(input).build());
+	}
+
+	@Test
+	void execute_file_runsInCurrentEnvironment() throws ReplException, IOException {
+		Files.writeString(tempDir.resolve("lib.sh"), "x=set\ncd sub\necho done\n");
+		Files.createDirectory(tempDir.resolve("sub"));
+
+		CommandResult result = source("source lib.sh");
+
+		assertEquals("done", result.stdout());
+		assertEquals(0, result.exitCode());
+		assertEquals("set", scope.getEnvUtils().get("x"));
+		assertEquals(tempDir.resolve("sub"), scope.getDirUtils().getCurrentDir());
+	}
+
+	@Test
+	void execute_functionDefinedInFile_staysDefined() throws ReplException, IOException {
+		Files.writeString(tempDir.resolve("lib.sh"), "f() { echo in f; }");
+
+		source(". ./lib.sh");
+
+		assertNotNull(scope.getCommandTable().getFunction("f"));
+	}
+
+	@Test
+	void execute_fileWithComments_skipsThem() throws ReplException, IOException {
+		Files.writeString(tempDir.resolve("lib.sh"), """
+				#!/bin/sh
+				# greets; it's a comment, so its quote is not one
+				greet() {
+					# inside the body
+					echo "hello #$1" # after a command
+				}
+				greet a#b
+				""");
+
+		CommandResult result = source("source lib.sh");
+
+		assertEquals("hello #a#b", result.stdout());
+		assertEquals(0, result.exitCode());
+	}
+
+	@Test
+	void execute_extraArguments_becomePositionalParametersForTheFile() throws ReplException, IOException {
+		Files.writeString(tempDir.resolve("lib.sh"), "echo $# $1 $2");
+		scope.setPositionalParameters(List.of("outer"));
+
+		CommandResult result = source("source lib.sh one two");
+
+		assertEquals("2 one two", result.stdout());
+		assertEquals(List.of("outer"), scope.getPositionalParameters());
+	}
+
+	@Test
+	void execute_noExtraArguments_keepsCallerParameters() throws ReplException, IOException {
+		Files.writeString(tempDir.resolve("lib.sh"), "echo $1");
+		scope.setPositionalParameters(List.of("outer"));
+
+		assertEquals("outer", source("source lib.sh").stdout());
+	}
+
+	@Test
+	void execute_return_endsFile() throws ReplException, IOException {
+		Files.writeString(tempDir.resolve("lib.sh"), "echo before\nreturn 4\necho after\n");
+
+		CommandResult result = source("source lib.sh");
+
+		assertEquals("before", result.stdout());
+		assertEquals(4, result.exitCode());
+	}
+
+	@Test
+	void execute_nameWithoutSlash_searchesPath() throws ReplException, IOException {
+		Path bin = Files.createDirectory(tempDir.resolve("bin"));
+		Files.writeString(bin.resolve("lib.sh"), "echo from path");
+		Files.writeString(tempDir.resolve("lib.sh"), "echo from cwd");
+		scope.getEnvUtils().set("PATH", bin.toString());
+
+		assertEquals("from path", source("source lib.sh").stdout());
+		assertEquals("from cwd", source("source ./lib.sh").stdout());
+	}
+
+	@Test
+	void execute_sameFileTwice_parsesOnce() throws ReplException, IOException {
+		Files.writeString(tempDir.resolve("lib.sh"), "echo hi");
+
+		source("source lib.sh");
+		source(". " + tempDir.resolve("lib.sh"));
+
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	void execute_missingFile_returnsError() throws ReplException {
+		CommandResult result = source("source missing.sh");
+
+		assertEquals("source: missing.sh: No such file or directory", result.stderr());
+		assertEquals(1, result.exitCode());
+	}
+
+	@Test
+	void execute_directory_returnsError() throws ReplException {
+		CommandResult result = source(". .");
+
+		assertEquals(".: .: is a directory", result.stderr());
+		assertEquals(1, result.exitCode());
+	}
+
+	@Test
+	void execute_syntaxError_returnsUsageExitCode() throws ReplException, IOException {
+		Files.writeString(tempDir.resolve("bad.sh"), "if true");
+
+		CommandResult result = source("source bad.sh");
+
+		assertTrue(result.stderr().startsWith("bad.sh: syntax error"), result.stderr());
+		assertEquals(2, result.exitCode());
+	}
+
+	@Test
+	void execute_noArguments_returnsUsageError() throws ReplException {
+		CommandResult result = source("source");
+
+		assertEquals("source: filename argument required", result.stderr());
+		assertEquals(2, result.exitCode());
+	}
+}
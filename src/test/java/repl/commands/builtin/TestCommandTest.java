@@ -0,0 +1,124 @@
+package repl.commands.builtin;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import repl.ReplContext;
+import repl.commands.CommandResult;
+import repl.utils.DirUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestCommandTest {
+
+	@TempDir
+	Path tempDir;
+
+	private ReplContext.Builder contextBuilder;
+
+	@BeforeEach
+	void setUp() {
+		contextBuilder = ReplContext.builder(new DirUtils(tempDir));
+	}
+
+	/**
+	 * Runs a command line, invoking the command by its first word.
+	 */
+	private CommandResult run(String input) {
+		ReplContext context = contextBuilder.originalInput(input).build();
+		return new TestCommand(context.getMainCommandStr()).execute(context);
+	}
+
+	@Test
+	void execute_fileTests_useFileType() throws IOException {
+		Files.writeString(tempDir.resolve("file.txt"), "data");
+		Files.createDirectory(tempDir.resolve("dir"));
+		Files.createFile(tempDir.resolve("empty"));
+
+		assertEquals(0, run("test -f file.txt").exitCode());
+		assertEquals(1, run("test -f dir").exitCode());
+		assertEquals(0, run("[ -d dir ]").exitCode());
+		assertEquals(0, run("[ -e dir ]").exitCode());
+		assertEquals(1, run("[ -e missing ]").exitCode());
+		assertEquals(0, run("[ -s file.txt ]").exitCode());
+		assertEquals(1, run("[ -s empty ]").exitCode());
+		assertEquals(0, run("[ -r file.txt -a -w file.txt ]").exitCode());
+	}
+
+	@Test
+	void execute_symbolicLink_onlyDetectedByLinkTest() throws IOException {
+		Files.createFile(tempDir.resolve("target"));
+		Files.createSymbolicLink(tempDir.resolve("link"), tempDir.resolve("target"));
+
+		assertEquals(0, run("[ -L link ]").exitCode());
+		assertEquals(0, run("[ -f link ]").exitCode());
+		assertEquals(1, run("[ -h target ]").exitCode());
+		assertEquals(0, run("[ link -ef target ]").exitCode());
+	}
+
+	@Test
+	void execute_stringTests_compareText() {
+		assertEquals(0, run("[ -z '' ]").exitCode());
+		assertEquals(0, run("[ -n x ]").exitCode());
+		assertEquals(0, run("[ abc = abc ]").exitCode());
+		assertEquals(0, run("[ abc != abd ]").exitCode());
+		assertEquals(1, run("[ '' ]").exitCode());
+		assertEquals(0, run("[ -n ]").exitCode());
+	}
+
+	@Test
+	void execute_integerComparisons_compareNumbers() {
+		assertEquals(0, run("[ 2 -lt 10 ]").exitCode());
+		assertEquals(1, run("[ 2 -gt 10 ]").exitCode());
+		assertEquals(0, run("test -5 -le -5").exitCode());
+		assertEquals(0, run("[ 3 -ne 4 ]").exitCode());
+	}
+
+	@Test
+	void execute_notAndParentheses_combineExpressions() {
+		assertEquals(0, run("[ ! -e missing ]").exitCode());
+		assertEquals(0, run("[ \\( a = b -o a = a \\) -a x ]").exitCode());
+		assertEquals(1, run("[ ! x ]").exitCode());
+	}
+
+	@Test
+	void execute_doubleBracket_matchesPatternsAndRegex() {
+		assertEquals(0, run("[[ report.csv == *.csv ]]").exitCode());
+		assertEquals(0, run("[[ report.csv != *.txt ]]").exitCode());
+		assertEquals(0, run("[[ abc123 =~ [0-9]+$ ]]").exitCode());
+		assertEquals(0, run("[[ 0x10 -eq 16 ]]").exitCode());
+	}
+
+	@Test
+	void execute_missingClosingBracket_returnsUsageError() {
+		CommandResult result = run("[ -n x");
+
+		assertEquals(2, result.exitCode());
+		assertEquals("[: missing `]'", result.stderr());
+	}
+
+	@Test
+	void execute_nonIntegerOperand_returnsUsageError() {
+		CommandResult result = run("[ abc -eq 1 ]");
+
+		assertEquals(2, result.exitCode());
+		assertEquals("[: abc: integer expression expected", result.stderr());
+	}
+
+	@Test
+	void execute_unknownUnaryOperator_returnsUsageError() {
+		CommandResult result = run("test -q x");
+
+		assertEquals(2, result.exitCode());
+		assertEquals("test: -q: unary operator expected", result.stderr());
+	}
+
+	@Test
+	void execute_noArguments_isFalse() {
+		assertEquals(1, run("test").exitCode());
+	}
+}
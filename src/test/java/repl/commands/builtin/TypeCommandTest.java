@@ -5,8 +5,10 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import repl.CommandTable;
 import repl.ReplContext;
 import repl.commands.CommandResult;
+import repl.script.Node;
 
 import java.util.List;
 
@@ -114,4 +116,62 @@ class TypeCommandTest {
 		assertEquals("type: missing operand", result.stderr());
 		assertFalse(result.isSuccess());
 	}
+
+	// === Path-only option ===
+
+	@Test
+	void execute_pathOnlyExecutable_returnsOnlyPath() {
+		when(mockContext.getArgs()).thenReturn(List.of("-p", "ls"));
+
+		CommandResult result = typeCommand.execute(mockContext);
+
+		assertTrue(result.stdout().endsWith("/ls"));
+		assertFalse(result.stdout().contains(" is "));
+		assertTrue(result.isSuccess());
+	}
+
+	@Test
+	void execute_pathOnlyBuiltin_returnsEmptyOutput() {
+		when(mockContext.getArgs()).thenReturn(List.of("-p", "echo"));
+
+		CommandResult result = typeCommand.execute(mockContext);
+
+		assertEquals("", result.stdout());
+		assertTrue(result.isSuccess());
+	}
+
+	@Test
+	void execute_pathOnlyUnknown_failsWithoutOutput() {
+		when(mockContext.getArgs()).thenReturn(List.of("-p", "unknowncmd123"));
+
+		CommandResult result = typeCommand.execute(mockContext);
+
+		assertEquals("", result.stdout());
+		assertEquals("", result.stderr());
+		assertFalse(result.isSuccess());
+	}
+
+	@Test
+	void execute_alias_returnsAliasValue() {
+		CommandTable commandTable = new CommandTable();
+		commandTable.setAlias("ll", "ls -l");
+		when(mockContext.getArgs()).thenReturn(List.of("ll"));
+		when(mockContext.getCommandTable()).thenReturn(commandTable);
+
+		CommandResult result = typeCommand.execute(mockContext);
+
+		assertEquals("ll is aliased to `ls -l'", result.stdout());
+	}
+
+	@Test
+	void execute_function_returnsFunction() {
+		CommandTable commandTable = new CommandTable();
+		commandTable.defineFunction("echo", new Node.Sequence(List.of()));
+		when(mockContext.getArgs()).thenReturn(List.of("echo"));
+		when(mockContext.getCommandTable()).thenReturn(commandTable);
+
+		CommandResult result = typeCommand.execute(mockContext);
+
+		assertEquals("echo is a function", result.stdout());
+	}
 }
@@ -0,0 +1,73 @@
+package repl.commands.builtin;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import repl.CommandTable;
+import repl.ReplContext;
+import repl.commands.CommandResult;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class UnaliasCommandTest {
+
+	@Mock
+	private ReplContext mockContext;
+
+	private CommandTable commandTable;
+
+	private final UnaliasCommand unaliasCommand = new UnaliasCommand();
+
+	@BeforeEach
+	void setUp() {
+		commandTable = new CommandTable();
+		commandTable.setAlias("a", "echo a");
+		commandTable.setAlias("b", "echo b");
+		when(mockContext.getCommandTable()).thenReturn(commandTable);
+	}
+
+	@Test
+	void execute_name_removesAlias() {
+		when(mockContext.getArgs()).thenReturn(List.of("a"));
+
+		CommandResult result = unaliasCommand.execute(mockContext);
+
+		assertTrue(result.isSuccess());
+		assertNull(commandTable.getAlias("a"));
+		assertNotNull(commandTable.getAlias("b"));
+	}
+
+	@Test
+	void execute_allOption_removesEveryAlias() {
+		when(mockContext.getArgs()).thenReturn(List.of("-a"));
+
+		unaliasCommand.execute(mockContext);
+
+		assertTrue(commandTable.getAliases().isEmpty());
+	}
+
+	@Test
+	void execute_unknownName_returnsError() {
+		when(mockContext.getArgs()).thenReturn(List.of("nope"));
+
+		CommandResult result = unaliasCommand.execute(mockContext);
+
+		assertEquals("unalias: nope: not found", result.stderr());
+		assertEquals(1, result.exitCode());
+	}
+
+	@Test
+	void execute_noArgs_returnsUsage() {
+		when(mockContext.getArgs()).thenReturn(List.of());
+
+		CommandResult result = unaliasCommand.execute(mockContext);
+
+		assertEquals(2, result.exitCode());
+	}
+}
@@ -0,0 +1,18 @@
+package repl.exceptions;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CancelledExceptionTest {
+
+	@Test
+	void extendsReplException() {
+		assertInstanceOf(ReplException.class, new CancelledException());
+	}
+
+	@Test
+	void exitCode_isSigintStatus() {
+		assertEquals(130, CancelledException.EXIT_CODE);
+	}
+}
@@ -0,0 +1,25 @@
+package repl.exceptions;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReturnExceptionTest {
+
+	@Test
+	void constructor_keepsExitCode() {
+		ReturnException exception = new ReturnException(4);
+
+		assertEquals(4, exception.getExitCode());
+	}
+
+	@Test
+	void extendsReplException() {
+		assertInstanceOf(ReplException.class, new ReturnException(0));
+	}
+
+	@Test
+	void getMessage_explainsUseOutsideFunction() {
+		assertEquals("return: can only `return' from a function or sourced script", new ReturnException(0).getMessage());
+	}
+}
@@ -0,0 +1,126 @@
+package repl.history;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link HistoryIndex}.
+ */
+class HistoryIndexTest {
+
+	/** Number of entries in the history of the benchmark. */
+	private static final int BENCHMARK_ENTRIES = 1_000_000;
+
+	@Test
+	void search_findsLinesContainingQuery() {
+		HistoryIndex index = index("git status", "git push", "ls -la", "cat .gitignore");
+
+		assertEquals(List.of("cat .gitignore", "git push", "git status"), ranked(index, index.search("git", null)));
+		assertEquals(List.of("git push"), ranked(index, index.search("push", null)));
+		assertEquals(List.of("ls -la"), ranked(index, index.search("l", null)));
+		assertEquals(0, index.search("svn", null).size());
+		assertEquals(0, index.search("", null).size());
+	}
+
+	@Test
+	void search_extendedQuery_narrowsPreviousMatches() {
+		HistoryIndex index = index("git status", "git stash", "grep x");
+
+		HistoryIndex.Matches g = index.search("g", null);
+		HistoryIndex.Matches gi = index.search("gi", g);
+		HistoryIndex.Matches sta = index.search("git sta", gi);
+
+		assertEquals(3, g.size());
+		assertEquals(2, gi.size());
+		assertEquals(List.of("git stash", "git status"), ranked(index, sta));
+		assertEquals(List.of("git stash"), ranked(index, index.search("git stas", sta)));
+	}
+
+	@Test
+	void search_unrelatedPrevious_searchesAgain() {
+		HistoryIndex index = index("make test", "git push");
+
+		HistoryIndex.Matches make = index.search("make", null);
+
+		assertEquals(List.of("git push"), ranked(index, index.search("push", make)));
+		assertEquals(List.of("git push"), ranked(index, index.search("push", index.search("", null))));
+	}
+
+	@Test
+	void add_repeatedLine_isIndexedOnce() {
+		HistoryIndex index = index("ls", "ls", "pwd", "ls");
+
+		assertEquals(2, index.size());
+		assertEquals(1, index.search("ls", null).size());
+	}
+
+	@Test
+	void ranked_ordersByRecencyAndFrequency() {
+		HistoryIndex index = new HistoryIndex();
+		index.add(new HistoryEntry("make test", 1000, "/", 0, 0));
+		index.add(new HistoryEntry("make test", 1100, "/", 0, 0));
+		index.add(new HistoryEntry("make test", 1200, "/", 0, 0));
+		index.add(new HistoryEntry("make build", 2000, "/", 0, 0));
+		index.add(new HistoryEntry("make clean", 2900, "/", 0, 0));
+		index.add(new HistoryEntry("ls", 3000, "/", 0, 0));
+
+		// make clean: 101 ms ago, once; make test: 1801 ms ago, three times; make build: 1001 ms ago, once
+		assertEquals(List.of("make clean", "make test", "make build"), ranked(index, index.search("make", null)));
+		assertEquals(List.of("make clean"), index.ranked(index.search("make", null), 1));
+	}
+
+	@Test
+	void addAll_entriesOutOfOrder_rankByStartTime() {
+		HistoryIndex index = new HistoryIndex();
+		index.add(new HistoryEntry("echo new", 5000, "/", 0, 0));
+		index.addAll(List.of(new HistoryEntry("echo old", 1000, "/", 0, 0), new HistoryEntry("echo new", 900, "/", 0, 0)));
+
+		assertEquals(List.of("echo new", "echo old"), ranked(index, index.search("echo", null)));
+	}
+
+	@Test
+	@Tag("benchmark")
+	void search_millionEntries_checksOnlyThePreviousMatches() {
+		List<HistoryEntry> entries = new ArrayList<>(BENCHMARK_ENTRIES);
+		String[] verbs = {"git commit -m", "grep -rn", "docker run --rm", "kubectl get pods -n", "make -j8"};
+		for (int i = 0; i < BENCHMARK_ENTRIES; i++) {
+			// About 200,000 distinct lines, repeated
+			int line = i % 200_000;
+			entries.add(new HistoryEntry(verbs[line % verbs.length] + " target" + line, 1_700_000_000_000L + i, "/", 0, 0));
+		}
+		HistoryIndex index = new HistoryIndex();
+		index.addAll(entries);
+		String query = "kubectl get pods -n target199998";
+
+		// As typed: the first keystroke scans every distinct line, each later one only
+		// the previous matches, or fewer
+		HistoryIndex.Matches matches = null;
+		for (int length = 1; length <= query.length(); length++) {
+			long before = index.checked();
+			int candidates = matches == null ? index.size() : matches.size();
+			matches = index.search(query.substring(0, length), matches);
+			index.ranked(matches, 100);
+			assertTrue(index.checked() - before <= candidates,
+				(index.checked() - before) + " lines checked for " + query.substring(0, length));
+		}
+
+		assertEquals(List.of(query), index.ranked(matches, 100));
+	}
+
+	private static HistoryIndex index(String... lines) {
+		HistoryIndex index = new HistoryIndex();
+		for (int i = 0; i < lines.length; i++) {
+			index.add(new HistoryEntry(lines[i], 1000 + i, "/", 0, 0));
+		}
+		return index;
+	}
+
+	private static List<String> ranked(HistoryIndex index, HistoryIndex.Matches matches) {
+		return index.ranked(matches, 100);
+	}
+}
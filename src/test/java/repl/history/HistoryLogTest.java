@@ -0,0 +1,132 @@
+package repl.history;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link HistoryLog}.
+ */
+class HistoryLogTest {
+
+	/** Number of entries in the history file of the benchmark. */
+	private static final int BENCHMARK_ENTRIES = 1_000_000;
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void append_thenClose_writesEveryEntryInOrder() throws IOException {
+		Path file = tempDir.resolve("history");
+		try (HistoryLog log = HistoryLog.open(file)) {
+			for (int i = 0; i < 100; i++) {
+				assertTrue(log.append(new HistoryEntry("echo " + i, 1000 + i, "/tmp", i % 2, i)));
+			}
+		}
+
+		List<HistoryEntry> entries = HistoryLog.readTail(file, 1000);
+		assertEquals(100, entries.size());
+		assertEquals(new HistoryEntry("echo 0", 1000, "/tmp", 0, 0), entries.getFirst());
+		assertEquals(new HistoryEntry("echo 99", 1099, "/tmp", 1, 99), entries.getLast());
+	}
+
+	@Test
+	void append_afterClose_isDropped() throws IOException {
+		HistoryLog log = HistoryLog.open(tempDir.resolve("history"));
+		log.close();
+
+		assertFalse(log.append(new HistoryEntry("late", 0, "/", 0, 0)));
+	}
+
+	@Test
+	void open_newFile_isPrivateToOwner() throws IOException {
+		Path file = tempDir.resolve("history");
+		HistoryLog.open(file).close();
+
+		assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(file)));
+	}
+
+	@Test
+	void open_unfinishedLastLine_isEndedBeforeAppending() throws IOException {
+		Path file = tempDir.resolve("history");
+		Files.writeString(file, "1\t0\t0\t/\tdone\n2\t0");
+		try (HistoryLog log = HistoryLog.open(file)) {
+			log.append(new HistoryEntry("next", 3, "/", 0, 0));
+		}
+
+		assertEquals(List.of("done", "next"), lines(HistoryLog.readTail(file, 10)));
+	}
+
+	@Test
+	void readTail_returnsOnlyLastEntries() throws IOException {
+		Path file = tempDir.resolve("history");
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 10; i++) {
+			HistoryLog.format(new HistoryEntry("cmd" + i, i, "/", 0, 0), text);
+		}
+		Files.writeString(file, text);
+
+		assertEquals(List.of("cmd7", "cmd8", "cmd9"), lines(HistoryLog.readTail(file, 3)));
+		assertEquals(10, HistoryLog.readTail(file, 20).size());
+	}
+
+	@Test
+	void readTail_missingOrEmptyFile_isEmpty() throws IOException {
+		assertTrue(HistoryLog.readTail(tempDir.resolve("missing"), 10).isEmpty());
+		assertTrue(HistoryLog.readTail(Files.createFile(tempDir.resolve("empty")), 10).isEmpty());
+	}
+
+	@Test
+	void readTail_malformedLines_areSkipped() throws IOException {
+		Path file = tempDir.resolve("history");
+		Files.writeString(file, "garbage\n1\t0\t0\t/\tgood\nx\t0\t0\t/\tbad\n");
+
+		assertEquals(List.of("good"), lines(HistoryLog.readTail(file, 10)));
+	}
+
+	@Test
+	void formatAndParse_escapedCharacters_roundTrip() {
+		HistoryEntry entry = new HistoryEntry("printf 'a\\tb'\tx\nfor\\", 42, "/dir\twith\ttabs", 130, 7);
+		StringBuilder text = new StringBuilder();
+		HistoryLog.format(entry, text);
+
+		assertEquals(1, text.chars().filter(c -> c == '\n').count());
+		assertEquals(entry, HistoryLog.parse(text.substring(0, text.length() - 1)));
+	}
+
+	@Test
+	@Tag("benchmark")
+	void readTail_millionEntries_returnsTheLastEntries() throws IOException {
+		Path file = tempDir.resolve("history");
+		try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			StringBuilder text = new StringBuilder();
+			for (int i = 0; i < BENCHMARK_ENTRIES; i++) {
+				text.setLength(0);
+				HistoryLog.format(new HistoryEntry("git commit -m 'change " + i + "'", 1_700_000_000_000L + i,
+					"/home/user/project", 0, 12), text);
+				writer.append(text);
+			}
+		}
+
+		List<HistoryEntry> tail = HistoryLog.readTail(file, History.DEFAULT_CAPACITY);
+
+		assertEquals(History.DEFAULT_CAPACITY, tail.size());
+		assertEquals("git commit -m 'change " + (BENCHMARK_ENTRIES - History.DEFAULT_CAPACITY) + "'",
+			tail.getFirst().line());
+		assertEquals("git commit -m 'change " + (BENCHMARK_ENTRIES - 1) + "'", tail.getLast().line());
+	}
+
+	private static List<String> lines(List<HistoryEntry> entries) {
+		return entries.stream().map(HistoryEntry::line).toList();
+	}
+}
@@ -0,0 +1,47 @@
+package repl.history;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link History}.
+ */
+class HistoryTest {
+
+	@Test
+	void add_belowCapacity_keepsEntriesOldestFirst() {
+		History history = new History(3);
+		history.add(entry("a"));
+		history.add(entry("b"));
+
+		assertEquals(2, history.size());
+		assertEquals("a", history.get(0).line());
+		assertEquals("b", history.get(1).line());
+	}
+
+	@Test
+	void add_full_overwritesOldest() {
+		History history = new History(3);
+		history.addAll(List.of(entry("a"), entry("b"), entry("c"), entry("d"), entry("e")));
+
+		assertEquals(3, history.size());
+		assertEquals("c", history.get(0).line());
+		assertEquals("e", history.get(2).line());
+	}
+
+	@Test
+	void get_outOfRange_throws() {
+		History history = new History(3);
+		history.add(entry("a"));
+
+		assertThrows(IndexOutOfBoundsException.class, () -> history.get(1));
+		assertThrows(IndexOutOfBoundsException.class, () -> history.get(-1));
+	}
+
+	private static HistoryEntry entry(String line) {
+		return new HistoryEntry(line, 0, "/", 0, 0);
+	}
+}
@@ -0,0 +1,28 @@
+package repl.io;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Unit tests for {@link InterruptSignal}.
+ */
+class InterruptSignalTest {
+
+	@Test
+	void handle_sigintReceived_runsActionInsteadOfEndingJvm() throws IOException, InterruptedException {
+		CountDownLatch handled = new CountDownLatch(1);
+		// Never raised if the handler is missing, as the JVM would end
+		assumeTrue(InterruptSignal.handle(handled::countDown));
+
+		Process kill = new ProcessBuilder("kill", "-INT", Long.toString(ProcessHandle.current().pid())).start();
+
+		assertEquals(0, kill.waitFor());
+		assertTrue(handled.await(10, TimeUnit.SECONDS), "the action should run");
+	}
+}
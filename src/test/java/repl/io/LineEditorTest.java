@@ -0,0 +1,355 @@
+package repl.io;
+
+import org.junit.jupiter.api.Test;
+import repl.history.History;
+import repl.history.HistoryEntry;
+import repl.history.HistoryIndex;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.Pipe;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link LineEditor}.
+ */
+class LineEditorTest {
+
+	private static final String LEFT = "\033[D";
+	private static final String UP = "\033[A";
+	private static final String DOWN = "\033[B";
+	private static final String DELETE = "\033[3~";
+	private static final String BACKSPACE = "\u007f";
+	private static final String CTRL_R = "\u0012";
+	private static final String CTRL_G = "\u0007";
+
+	/** Everything the editor echoed. */
+	private final ByteArrayOutputStream echoed = new ByteArrayOutputStream();
+
+	@Test
+	void readLine_typedText_isEchoedAsTyped() throws IOException {
+		LineEditor editor = editor("echo hi\r");
+
+		assertEquals("echo hi", editor.readLine());
+		assertEquals("echo hi\n", echo());
+	}
+
+	@Test
+	void readLine_insertInMiddle_redrawsOnlyTheRestOfTheLine() throws IOException {
+		LineEditor editor = editor("ab" + LEFT + "X\r");
+
+		assertEquals("aXb", editor.readLine());
+		assertEquals("ab\033[1DXb\033[1D\033[1C\n", echo());
+	}
+
+	@Test
+	void readLine_backspaceAndDelete_removeCharacters() throws IOException {
+		LineEditor editor = editor("abcd" + BACKSPACE + LEFT + LEFT + DELETE + "\r");
+
+		assertEquals("ac", editor.readLine());
+	}
+
+	@Test
+	void readLine_homeEndAndKills_editLine() throws IOException {
+		assertEquals("x", editor("abc\u0001\u000Bx\r").readLine());
+		assertEquals("cd", editor("ab cd\u0002\u0002\u0015\u0005\r").readLine());
+		assertEquals("echo ", editor("echo foo bar\u0017\u0017\r").readLine());
+	}
+
+	@Test
+	void readLine_upAndDown_recallHistoryAndDraft() throws IOException {
+		LineEditor editor = editor("one\rtwo\r" + UP + UP + "\r" + "new" + UP + DOWN + "\r");
+		History history = new History();
+		editor.setHistory(history);
+
+		assertEquals("one", ran(history, editor.readLine()));
+		assertEquals("two", ran(history, editor.readLine()));
+		assertEquals("one", ran(history, editor.readLine()));
+		assertEquals("new", editor.readLine());
+	}
+
+	@Test
+	void readLine_lineRecordedWhileRecalling_isReachable() throws IOException {
+		Pipe pipe = Pipe.open();
+		LineEditor editor = new LineEditor(pipe.source(), null, OutputRenderer.of(echoed, echoed));
+		History history = new History();
+		editor.setHistory(history);
+		ran(history, "old");
+		CompletableFuture<String> read = CompletableFuture.supplyAsync(() -> {
+			try {
+				return editor.readLine();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+
+		// The line typed ahead finishes running while the next one is being edited
+		ran(history, "typed ahead");
+		pipe.sink().write(ByteBuffer.wrap((UP + UP + DOWN + "\r").getBytes(StandardCharsets.UTF_8)));
+
+		assertEquals("typed ahead", read.join());
+	}
+
+	@Test
+	void readLine_ctrlR_runsBestMatch() throws IOException {
+		LineEditor editor = editor(CTRL_R + "git\r");
+		editor.setHistoryIndex(index("git status", "ls", "git push"));
+
+		assertEquals("git push", editor.readLine());
+		assertEquals("\r\033[K(reverse-i-search)`': \r\033[Kgit push\n", echo());
+	}
+
+	@Test
+	void readLine_ctrlRAgain_showsNextMatch() throws IOException {
+		LineEditor editor = editor(CTRL_R + "git" + CTRL_R + "\r" + CTRL_R + "git" + CTRL_R + CTRL_R + "\r");
+		editor.setHistoryIndex(index("git status", "ls", "git push"));
+
+		assertEquals("git status", editor.readLine());
+		// No third match: the bell rings and the last one stays
+		assertEquals("git status", editor.readLine());
+		assertTrue(echo().contains("\007"));
+	}
+
+	@Test
+	void readLine_backspaceInSearch_widensQuery() throws IOException {
+		LineEditor editor = editor(CTRL_R + "git sx" + CTRL_R + BACKSPACE + BACKSPACE + "\r");
+		editor.setHistoryIndex(index("git status", "git push"));
+
+		assertEquals("git push", editor.readLine());
+		assertTrue(echo().contains("(failed reverse-i-search)`git sx': \r"));
+	}
+
+	@Test
+	void readLine_ctrlGInSearch_restoresLine() throws IOException {
+		LineEditor editor = editor("draft" + CTRL_R + "git" + CTRL_G + "\r");
+		editor.setHistoryIndex(index("git push"));
+
+		assertEquals("draft", editor.readLine());
+	}
+
+	@Test
+	void readLine_editingKeyInSearch_endsSearchWithMatch() throws IOException {
+		LineEditor editor = editor(CTRL_R + "push\u0001sudo \r");
+		editor.setHistoryIndex(index("git push"));
+		editor.setPrompt("$ ");
+
+		assertEquals("sudo git push", editor.readLine());
+		assertTrue(echo().contains("\r\033[K$ git push"));
+	}
+
+	@Test
+	void readLine_ctrlC_discardsLineAndRunsHandler() throws IOException {
+		LineEditor editor = editor("abc\u0003d\r");
+		AtomicInteger interrupts = new AtomicInteger();
+		editor.setInterruptHandler(interrupts::incrementAndGet);
+
+		assertEquals("d", editor.readLine());
+		assertEquals(1, interrupts.get());
+		assertTrue(echo().startsWith("abc^C"));
+	}
+
+	@Test
+	void readLine_ctrlD_endsInputOnlyOnEmptyLine() throws IOException {
+		LineEditor editor = editor("ab" + LEFT + "\u0004\r\u0004");
+
+		assertEquals("a", editor.readLine());
+		assertNull(editor.readLine());
+	}
+
+	@Test
+	void readLine_endOfInputAfterText_returnsText() throws IOException {
+		LineEditor editor = editor("partial");
+
+		assertEquals("partial", editor.readLine());
+		assertNull(editor.readLine());
+	}
+
+	@Test
+	void readLine_multiByteCharacters_areDecoded() throws IOException {
+		assertEquals("héllo €", editor("héllo €\r").readLine());
+	}
+
+	@Test
+	void readLine_unknownEscapeSequence_isIgnored() throws IOException {
+		assertEquals("ab", editor("a\033[1;5Cb\r").readLine());
+	}
+
+	@Test
+	void readLine_highlighter_drawsStylesAndRedrawsRestyledWord() throws IOException {
+		LineEditor editor = editor("o" + "k" + " x" + LEFT + LEFT + BACKSPACE + "\r");
+		editor.setHighlighter(okHighlighter());
+
+		assertEquals("o x", editor.readLine());
+		// "ok" turns green as its k is typed, and back when it is deleted
+		assertEquals("o\033[1D\033[32mok\033[0m x\033[1D\033[1D\033[1D\033[1Do x\033[K\033[2D\033[2C\n", echo());
+	}
+
+		@Test
+	void readLine_tabWithOneCandidate_insertsItAndSpace() throws IOException {
+		LineEditor editor = editor("ec\tx\r");
+		editor.setCompleter(completer(List.of("echo")));
+
+		assertEquals("echo x", editor.readLine());
+		assertEquals("echo x\n", echo());
+	}
+
+	@Test
+	void readLine_tabWithCandidates_completesCommonPrefixThenRingsThenLists() throws IOException {
+		LineEditor editor = editor("x\t\t\t\r");
+		editor.setCompleter(completer(List.of("xyz_bar", "xyz_foo")));
+		editor.setPrompt("$ ");
+
+		assertEquals("xyz_", editor.readLine());
+		assertEquals("xyz_\007\nxyz_bar  xyz_foo\n$ xyz_\n", echo());
+	}
+
+	@Test
+	void readLine_tabWithoutCandidates_ringsBell() throws IOException {
+		LineEditor editor = editor("q\t\r");
+
+		assertEquals("q", editor.readLine());
+		assertEquals("q\007\n", echo());
+	}
+
+	@Test
+	void readLine_completionArrivingLater_isAppliedIfNothingWasTyped() throws Exception {
+		Pipe pipe = Pipe.open();
+		LineEditor editor = new LineEditor(pipe.source(), null, OutputRenderer.of(echoed, echoed));
+		CompletableFuture<Consumer<Completer.Completion>> request = new CompletableFuture<>();
+		editor.setCompleter(new Completer() {
+			@Override
+			public Completer.Completion complete(String line, int cursor) {
+				throw new AssertionError("the editor must not wait for completions");
+			}
+
+			@Override
+			public void complete(String line, int cursor, Consumer<Completer.Completion> results) {
+				request.complete(results);
+			}
+		});
+		CompletableFuture<String> line = CompletableFuture.supplyAsync(() -> readLine(editor));
+
+		type(pipe, "cat sr\t");
+		request.get(5, TimeUnit.SECONDS).accept(new Completer.Completion(4, List.of("src/")));
+		type(pipe, "\r");
+
+		assertEquals("cat src/", line.get(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	void readLine_completionArrivingAfterTyping_isDropped() throws Exception {
+		List<Consumer<Completer.Completion>> requests = new ArrayList<>();
+		LineEditor editor = editor("cat sr\tc\r");
+		editor.setCompleter(new Completer() {
+			@Override
+			public Completer.Completion complete(String line, int cursor) {
+				throw new AssertionError();
+			}
+
+			@Override
+			public void complete(String line, int cursor, Consumer<Completer.Completion> results) {
+				requests.add(results);
+			}
+		});
+
+		assertEquals("cat src", editor.readLine());
+		requests.getFirst().accept(new Completer.Completion(4, List.of("src/")));
+		assertEquals("cat src\n", echo());
+	}
+
+	@Test
+	void isInteractive_isTrue() {
+		assertTrue(editor("").isInteractive());
+	}
+
+	@Test
+	void suspend_withoutTerminal_isNotSuspendableAndKeepsReading() throws IOException {
+		LineEditor editor = editor("ls\r");
+
+		assertFalse(editor.isSuspendable());
+		editor.suspend();
+		editor.resume();
+		assertEquals("ls", editor.readLine());
+	}
+
+	private LineEditor editor(String keys) {
+		return new LineEditor(Channels.newChannel(new ByteArrayInputStream(keys.getBytes(StandardCharsets.UTF_8))),
+			null, OutputRenderer.of(echoed, echoed));
+	}
+
+	private String echo() {
+		return echoed.toString(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Highlighter coloring the word "ok" at the start of the line green.
+	 */
+	private static Highlighter okHighlighter() {
+		return new Highlighter() {
+			boolean ok;
+
+			@Override
+			public int update(CharSequence line, int from) {
+				boolean wasOk = ok;
+				ok = line.length() >= 2 && line.subSequence(0, 2).toString().equals("ok")
+					&& (line.length() == 2 || line.charAt(2) == ' ');
+				return ok != wasOk ? Math.min(from, 0) : from;
+			}
+
+			@Override
+			public String style(int index) {
+				return ok && index < 2 ? "32" : null;
+			}
+		};
+	}
+
+	/**
+	 * Completer offering the given candidates for the word from the last space to the cursor.
+	 */
+	private static Completer completer(List<String> candidates) {
+		return (line, cursor) -> {
+			int start = line.lastIndexOf(' ', cursor - 1) + 1;
+			String word = line.substring(start, cursor);
+			return new Completer.Completion(start, candidates.stream().filter(c -> c.startsWith(word)).toList());
+		};
+	}
+
+	private static String readLine(LineEditor editor) {
+		try {
+			return editor.readLine();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static void type(Pipe pipe, String keys) throws IOException {
+		pipe.sink().write(ByteBuffer.wrap(keys.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	/** Index of lines run in order, the last one most recently. */
+	private static HistoryIndex index(String... lines) {
+		HistoryIndex index = new HistoryIndex();
+		for (int i = 0; i < lines.length; i++) {
+			index.add(new HistoryEntry(lines[i], 1000 + i, "/", 0, 0));
+		}
+		return index;
+	}
+
+	/** Records a line in the history, as the shell does once the line has run. */
+	private static String ran(History history, String line) {
+		history.add(new HistoryEntry(line, 0, "/", 0, 0));
+		return line;
+	}
+}
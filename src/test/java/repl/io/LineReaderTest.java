@@ -0,0 +1,145 @@
+package repl.io;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link LineReader}.
+ */
+class LineReaderTest {
+
+	@Test
+	void readLine_multipleLines_returnsEachWithoutTerminator() throws IOException {
+		LineReader reader = reader("echo a\necho b\n");
+
+		assertEquals("echo a", reader.readLine());
+		assertEquals("echo b", reader.readLine());
+		assertNull(reader.readLine());
+		assertNull(reader.readLine());
+	}
+
+	@Test
+	void readLine_lastLineWithoutNewline_isReturned() throws IOException {
+		LineReader reader = reader("first\nlast");
+
+		assertEquals("first", reader.readLine());
+		assertEquals("last", reader.readLine());
+		assertNull(reader.readLine());
+	}
+
+	@Test
+	void readLine_emptyLinesAndCrLf_areKept() throws IOException {
+		LineReader reader = reader("\r\na\r\n\n");
+
+		assertEquals("", reader.readLine());
+		assertEquals("a", reader.readLine());
+		assertEquals("", reader.readLine());
+		assertNull(reader.readLine());
+	}
+
+	@Test
+	void readLine_emptyInput_returnsNull() throws IOException {
+		assertNull(reader("").readLine());
+	}
+
+	@Test
+	void readLine_lineLongerThanBuffer_growsBuffer() throws IOException {
+		String longLine = "x".repeat(100);
+		LineReader reader = new LineReader(channel(longLine + "\nshort\n"), false, 8);
+
+		assertEquals(longLine, reader.readLine());
+		assertEquals("short", reader.readLine());
+	}
+
+	@Test
+	void readLine_multiByteCharactersSplitAcrossReads_areDecoded() throws IOException {
+		LineReader reader = new LineReader(new OneByteChannel("héllo wörld €\nñ\n"), false, 4);
+
+		assertEquals("héllo wörld €", reader.readLine());
+		assertEquals("ñ", reader.readLine());
+		assertNull(reader.readLine());
+	}
+
+	@Test
+	void readLine_manyLines_reusesBuffer() throws IOException {
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			input.append("line ").append(i).append('\n');
+		}
+		LineReader reader = new LineReader(channel(input.toString()), false, 16);
+
+		for (int i = 0; i < 1000; i++) {
+			assertEquals("line " + i, reader.readLine());
+		}
+		assertNull(reader.readLine());
+	}
+
+	@Test
+	void read_returnsBytesThenEndOfInput() throws IOException {
+		LineReader reader = new LineReader(channel("aé"), true, 2);
+
+		assertEquals('a', reader.read());
+		assertTrue(reader.hasBuffered());
+		assertEquals(0xC3, reader.read());
+		assertFalse(reader.hasBuffered());
+		assertEquals(0xA9, reader.read());
+		assertEquals(-1, reader.read());
+	}
+
+	@Test
+	void constructor_interactiveFlag_isKept() {
+		assertTrue(new LineReader(channel(""), true).isInteractive());
+		assertFalse(new LineReader(channel(""), false).isInteractive());
+	}
+
+	@Test
+	void stdin_returnsReader() {
+		assertNotNull(LineReader.stdin());
+	}
+
+	private static LineReader reader(String input) {
+		return new LineReader(channel(input), false);
+	}
+
+	private static ReadableByteChannel channel(String input) {
+		return Channels.newChannel(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	/**
+	 * Channel returning one byte per read, as a slow pipe might.
+	 */
+	private static final class OneByteChannel implements ReadableByteChannel {
+		private final byte[] bytes;
+		private int position;
+
+		OneByteChannel(String input) {
+			this.bytes = input.getBytes(StandardCharsets.UTF_8);
+		}
+
+		@Override
+		public int read(ByteBuffer destination) {
+			if (position == bytes.length) {
+				return -1;
+			}
+			destination.put(bytes[position++]);
+			return 1;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
@@ -0,0 +1,163 @@
+package repl.io;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static repl.io.OutputRenderer.Target.STDERR;
+import static repl.io.OutputRenderer.Target.STDOUT;
+
+/**
+ * Unit tests for {@link OutputRenderer}.
+ */
+class OutputRendererTest {
+
+	/** Writes to both channels, in order, as "out:text" or "err:text". */
+	private final List<String> writes = new ArrayList<>();
+
+	/** Timer delay long enough that the timer never flushes during a test. */
+	private static final long NO_TIMER = 60_000;
+
+	private final OutputRenderer renderer = new OutputRenderer(
+		channel("out"), channel("err"), OutputRenderer.BUFFER_SIZE, NO_TIMER);
+
+	@Test
+	void println_beforeFlush_writesNothing() {
+		renderer.println(STDOUT, "hello");
+
+		assertTrue(writes.isEmpty());
+	}
+
+	@Test
+	void flush_coalescesOutputIntoOneWrite() {
+		renderer.println(STDOUT, "a");
+		renderer.println(STDOUT, "b");
+		renderer.print(STDOUT, "$ ");
+
+		renderer.flush();
+		renderer.flush();
+
+		assertEquals(List.of("out:a\nb\n$ "), writes);
+	}
+
+	@Test
+	void println_switchingStreams_keepsOrder() {
+		renderer.println(STDOUT, "a");
+		renderer.println(STDERR, "b");
+		renderer.println(STDOUT, "c");
+		renderer.flush();
+
+		assertEquals(List.of("out:a\n", "err:b\n", "out:c\n"), writes);
+	}
+
+	@Test
+	void write_bufferFull_flushesBeforeBuffering() {
+		OutputRenderer small = new OutputRenderer(channel("out"), channel("err"), 8, NO_TIMER);
+
+		small.print(STDOUT, "12345");
+		small.print(STDOUT, "6789");
+
+		assertEquals(List.of("out:12345"), writes);
+		small.flush();
+		assertEquals(List.of("out:12345", "out:6789"), writes);
+	}
+
+	@Test
+	void write_largerThanBuffer_writesDirectly() {
+		OutputRenderer small = new OutputRenderer(channel("out"), channel("err"), 4, NO_TIMER);
+
+		small.print(STDOUT, "ab");
+		small.print(STDOUT, "0123456789");
+
+		assertEquals(List.of("out:ab", "out:0123456789"), writes);
+	}
+
+	@Test
+	void print_notFlushed_isWrittenByTimer() throws InterruptedException {
+		OutputRenderer timed = new OutputRenderer(channel("out"), channel("err"));
+		timed.print(STDOUT, "streaming");
+
+		long deadline = System.nanoTime() + 5_000_000_000L;
+		while (snapshot().isEmpty() && System.nanoTime() < deadline) {
+			Thread.sleep(OutputRenderer.FLUSH_DELAY_MILLIS);
+		}
+
+		assertEquals(List.of("out:streaming"), snapshot());
+	}
+
+	@Test
+	void printStream_printsThroughRenderer() {
+		PrintStream err = renderer.printStream(STDERR);
+		renderer.println(STDOUT, "out");
+
+		err.println("err");
+		err.flush();
+
+		assertEquals(List.of("out:out\n", "err:err\n"), writes);
+	}
+
+	@Test
+	void flush_channelFails_dropsOutput() {
+		WritableByteChannel broken = new WritableByteChannel() {
+			@Override
+			public int write(ByteBuffer source) throws IOException {
+				throw new IOException("Broken pipe");
+			}
+
+			@Override
+			public boolean isOpen() {
+				return true;
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+		OutputRenderer failing = new OutputRenderer(broken, broken);
+
+		failing.println(STDOUT, "lost");
+
+		assertDoesNotThrow(failing::flush);
+		assertDoesNotThrow(failing::flush);
+	}
+
+	private List<String> snapshot() {
+		synchronized (writes) {
+			return List.copyOf(writes);
+		}
+	}
+
+	/**
+	 * Channel recording each write, with the given prefix, in {@link #writes}.
+	 */
+	private WritableByteChannel channel(String name) {
+		return new WritableByteChannel() {
+			@Override
+			public int write(ByteBuffer source) {
+				int length = source.remaining();
+				byte[] bytes = new byte[length];
+				source.get(bytes);
+				synchronized (writes) {
+					writes.add(name + ":" + new String(bytes, StandardCharsets.UTF_8));
+				}
+				return length;
+			}
+
+			@Override
+			public boolean isOpen() {
+				return true;
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+	}
+}
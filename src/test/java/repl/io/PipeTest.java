@@ -0,0 +1,47 @@
+package repl.io;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Unit tests for {@link Pipe}.
+ */
+class PipeTest {
+
+	@Test
+	void open_endsOpenedByPath_carryBytesUntilWritersClose() throws IOException {
+		assumeTrue(System.getProperty("os.name", "").startsWith("Linux"));
+		Pipe pipe = Pipe.open();
+
+		try (OutputStream out = new FileOutputStream(pipe.writePath())) {
+			out.write("data".getBytes(StandardCharsets.UTF_8));
+		}
+		pipe.closeWrite();
+		String read = Files.readString(Path.of(pipe.readPath()));
+		pipe.closeRead();
+
+		assertEquals("data", read);
+	}
+
+	@Test
+	void closeRead_withoutOtherReaders_failsWrites() throws IOException {
+		assumeTrue(System.getProperty("os.name", "").startsWith("Linux"));
+		Pipe pipe = Pipe.open();
+
+		try (OutputStream out = new FileOutputStream(pipe.writePath())) {
+			pipe.closeRead();
+			pipe.closeWrite();
+
+			assertThrows(IOException.class, () -> out.write(1));
+		}
+	}
+}
@@ -0,0 +1,51 @@
+package repl.io;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link TerminalMode}.
+ */
+class TerminalModeTest {
+
+	/** {@code OPOST}, which raw mode keeps. */
+	private static final int OPOST = 0x1;
+
+	/** {@code ICANON}. */
+	private static final int ICANON = 0x2;
+
+	/** {@code ECHO}. */
+	private static final int ECHO = 0x8;
+
+	@Test
+	void makeRaw_clearsLineDisciplineButKeepsOutputProcessing() {
+		try (Arena arena = Arena.ofConfined()) {
+			MemorySegment termios = arena.allocate(TerminalMode.TERMIOS_SIZE);
+			termios.set(ValueLayout.JAVA_INT, TerminalMode.INPUT_FLAGS, -1);
+			termios.set(ValueLayout.JAVA_INT, TerminalMode.OUTPUT_FLAGS, OPOST);
+			termios.set(ValueLayout.JAVA_INT, TerminalMode.LOCAL_FLAGS, -1);
+			termios.set(ValueLayout.JAVA_BYTE, TerminalMode.CONTROL_CHARS + TerminalMode.VTIME, (byte) 5);
+
+			TerminalMode.makeRaw(termios);
+
+			int inputFlags = termios.get(ValueLayout.JAVA_INT, TerminalMode.INPUT_FLAGS);
+			int localFlags = termios.get(ValueLayout.JAVA_INT, TerminalMode.LOCAL_FLAGS);
+			assertEquals(0, inputFlags & TerminalMode.RAW_INPUT_CLEARED);
+			assertEquals(0, localFlags & (ICANON | ECHO));
+			assertEquals(~TerminalMode.RAW_LOCAL_CLEARED, localFlags);
+			assertEquals(OPOST, termios.get(ValueLayout.JAVA_INT, TerminalMode.OUTPUT_FLAGS));
+			assertEquals(1, termios.get(ValueLayout.JAVA_BYTE, TerminalMode.CONTROL_CHARS + TerminalMode.VMIN));
+			assertEquals(0, termios.get(ValueLayout.JAVA_BYTE, TerminalMode.CONTROL_CHARS + TerminalMode.VTIME));
+		}
+	}
+
+	@Test
+	void of_notATerminal_returnsNull() {
+		assertNull(TerminalMode.of(-1));
+	}
+}
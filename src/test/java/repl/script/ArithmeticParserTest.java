@@ -0,0 +1,147 @@
+package repl.script;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArithmeticParserTest {
+
+	private final Map<String, Long> values = new HashMap<>();
+
+	private final ArithmeticExpression.Variables variables = new ArithmeticExpression.Variables() {
+		@Override
+		public long get(String name) {
+			return values.getOrDefault(name, 0L);
+		}
+
+		@Override
+		public void set(String name, long value) {
+			values.put(name, value);
+		}
+	};
+
+	private long eval(String text) {
+		return ArithmeticParser.parse(text).evaluate(variables);
+	}
+
+	@Test
+	void parse_precedence_followsC() {
+		assertEquals(7, eval("1 + 2 * 3"));
+		assertEquals(9, eval("(1 + 2) * 3"));
+		assertEquals(1, eval("10 % 3"));
+		assertEquals(-3, eval("-7 / 2"));
+		assertEquals(1, eval("1 + 2 == 3"));
+		assertEquals(8, eval("1 << 3"));
+		assertEquals(6, eval("2 | 4 & 6"));
+	}
+
+	@Test
+	void parse_power_isRightAssociative() {
+		assertEquals(512, eval("2 ** 3 ** 2"));
+	}
+
+	@Test
+	void parse_unaryOperators() {
+		assertEquals(-5, eval("-5"));
+		assertEquals(0, eval("!3"));
+		assertEquals(1, eval("!0"));
+		assertEquals(-1, eval("~0"));
+		assertEquals(5, eval("- -5"));
+	}
+
+	@Test
+	void parse_comparisonsAndLogic() {
+		assertEquals(1, eval("2 <= 2 && 3 > 1"));
+		assertEquals(0, eval("1 != 1 || 0"));
+		assertEquals(20, eval("0 ? 10 : 20"));
+	}
+
+	@Test
+	void parse_logicalOperators_shortCircuit() {
+		eval("0 && (x = 5)");
+		eval("1 || (y = 5)");
+
+		assertFalse(values.containsKey("x"));
+		assertFalse(values.containsKey("y"));
+	}
+
+	@Test
+	void parse_variables_inAllNotations() {
+		values.put("x", 4L);
+
+		assertEquals(12, eval("x + $x + ${x}"));
+		assertEquals(0, eval("unset"));
+	}
+
+	@Test
+	void parse_assignments_updateVariables() {
+		assertEquals(3, eval("i = 3"));
+		assertEquals(5, eval("i += 2"));
+		assertEquals(10, eval("i <<= 1"));
+		assertEquals(10L, values.get("i"));
+	}
+
+	@Test
+	void parse_increments_returnOldOrNewValue() {
+		values.put("i", 1L);
+
+		assertEquals(1, eval("i++"));
+		assertEquals(3, eval("++i"));
+		assertEquals(3, eval("i--"));
+		assertEquals(2L, values.get("i"));
+	}
+
+	@Test
+	void parse_comma_returnsLastValue() {
+		assertEquals(2, eval("a = 1, b = 2"));
+		assertEquals(1L, values.get("a"));
+	}
+
+	@Test
+	void parse_numberBases() {
+		assertEquals(255, eval("0xff"));
+		assertEquals(8, eval("010"));
+	}
+
+	@Test
+	void parse_emptyExpression_isZero() {
+		assertEquals(0, eval("  "));
+	}
+
+	@Test
+	void evaluate_overflow_wraps() {
+		assertEquals(Long.MIN_VALUE, eval("9223372036854775807 + 1"));
+	}
+
+	@Test
+	void evaluate_divisionByZero_throwsArithmeticException() {
+		ArithmeticException exception = assertThrows(ArithmeticException.class, () -> eval("1 / 0"));
+
+		assertEquals("division by 0", exception.getMessage());
+	}
+
+	@Test
+	void parse_missingOperand_throwsIllegalArgumentException() {
+		IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+				() -> ArithmeticParser.parse("1 +"));
+
+		assertEquals("1 +: arithmetic syntax error: operand expected", exception.getMessage());
+	}
+
+	@Test
+	void parse_trailingToken_throwsIllegalArgumentException() {
+		IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+				() -> ArithmeticParser.parse("1 2"));
+
+		assertEquals("1 2: arithmetic syntax error (error token is \"2\")", exception.getMessage());
+	}
+
+	@Test
+	void parseNumber_invalid_throwsArithmeticException() {
+		assertThrows(ArithmeticException.class, () -> ArithmeticParser.parseNumber("abc"));
+		assertEquals(-12, ArithmeticParser.parseNumber(" -12 "));
+	}
+}
@@ -0,0 +1,110 @@
+package repl.script;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScriptCacheTest {
+
+	@TempDir
+	Path tempDir;
+
+	private ScriptCache cache;
+
+	@BeforeEach
+	void setUp() {
+		cache = new ScriptCache(2);
+	}
+
+	@Test
+	void load_sameFile_parsesOnce() throws IOException {
+		Path file = Files.writeString(tempDir.resolve("lib.sh"), "echo hello");
+
+		Node first = cache.load(file);
+
+		assertSame(first, cache.load(file));
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	void load_differentPathToSameFile_sharesEntry() throws IOException {
+		Path file = Files.writeString(tempDir.resolve("lib.sh"), "echo hello");
+		Path link = Files.createSymbolicLink(tempDir.resolve("link.sh"), file);
+		Files.createDirectory(tempDir.resolve("sub"));
+
+		Node first = cache.load(file);
+
+		assertSame(first, cache.load(link));
+		assertSame(first, cache.load(tempDir.resolve("sub/../lib.sh")));
+	}
+
+	@Test
+	void load_sizeChanged_parsesAgain() throws IOException {
+		Path file = Files.writeString(tempDir.resolve("lib.sh"), "echo hello");
+		FileTime time = Files.getLastModifiedTime(file);
+		Node first = cache.load(file);
+
+		Files.writeString(file, "echo goodbye");
+		Files.setLastModifiedTime(file, time);
+
+		Node second = cache.load(file);
+		assertNotSame(first, second);
+		assertEquals(ScriptParser.parse("echo goodbye"), second);
+	}
+
+	@Test
+	void load_modificationTimeChanged_parsesAgain() throws IOException {
+		Path file = Files.writeString(tempDir.resolve("lib.sh"), "echo hello");
+		Node first = cache.load(file);
+
+		Files.writeString(file, "echo world");
+		Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 1000));
+
+		assertEquals(ScriptParser.parse("echo world"), cache.load(file));
+		assertNotSame(first, cache.load(file));
+	}
+
+	@Test
+	void load_beyondCapacity_dropsLeastRecentlyUsed() throws IOException {
+		Path a = Files.writeString(tempDir.resolve("a.sh"), "echo a");
+		Path b = Files.writeString(tempDir.resolve("b.sh"), "echo b");
+		Path c = Files.writeString(tempDir.resolve("c.sh"), "echo c");
+		Node first = cache.load(a);
+		cache.load(b);
+		cache.load(a);
+
+		cache.load(c);
+
+		assertEquals(2, cache.size());
+		assertSame(first, cache.load(a));
+	}
+
+	@Test
+	void load_missingFile_throwsNoSuchFile() {
+		assertThrows(NoSuchFileException.class, () -> cache.load(tempDir.resolve("missing.sh")));
+	}
+
+	@Test
+	void load_directory_throwsFileSystemException() {
+		FileSystemException e = assertThrows(FileSystemException.class, () -> cache.load(tempDir));
+
+		assertEquals("is a directory", e.getReason());
+	}
+
+	@Test
+	void load_syntaxError_isNotCached() throws IOException {
+		Path file = Files.writeString(tempDir.resolve("bad.sh"), "if true");
+
+		assertThrows(IllegalArgumentException.class, () -> cache.load(file));
+		assertEquals(0, cache.size());
+	}
+}
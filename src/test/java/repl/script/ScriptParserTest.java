@@ -0,0 +1,279 @@
+package repl.script;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScriptParserTest {
+
+	private static Word literal(String text) {
+		return new Word(List.of(new WordPart.Literal(text)));
+	}
+
+	@Test
+	void parse_simpleCommand_returnsUnwrappedCommand() {
+		Node plan = ScriptParser.parse("echo hi");
+
+		assertEquals(new Node.SimpleCommand(List.of(), List.of(literal("echo"), literal("hi"))), plan);
+	}
+
+	@Test
+	void parse_emptyInput_returnsEmptySequence() {
+		assertEquals(new Node.Sequence(List.of()), ScriptParser.parse("   "));
+	}
+
+	@Test
+	void parse_semicolonsAndNewlines_returnsSequence() {
+		Node plan = ScriptParser.parse("cd a; pwd\n\necho x;");
+
+		Node.Sequence sequence = assertInstanceOf(Node.Sequence.class, plan);
+		assertEquals(3, sequence.nodes().size());
+	}
+
+	@Test
+	void parse_comments_areDropped() {
+		Node plan = ScriptParser.parse("# setup\nf() { # body\n\techo hi # done\n}\n");
+
+		Node.FunctionDefinition definition = assertInstanceOf(Node.FunctionDefinition.class, plan);
+		Node.Group group = assertInstanceOf(Node.Group.class, definition.body());
+		assertEquals(new Node.SimpleCommand(List.of(), List.of(literal("echo"), literal("hi"))), group.body());
+	}
+
+	@Test
+	void parse_subshellWithRedirection_keepsBodyAndTarget() {
+		Node plan = ScriptParser.parse("(cd a; pwd) > out.txt");
+
+		Node.Redirected redirected = assertInstanceOf(Node.Redirected.class, plan);
+		Node.Subshell subshell = assertInstanceOf(Node.Subshell.class, redirected.command());
+		assertInstanceOf(Node.Sequence.class, subshell.body());
+		assertEquals(List.of(new Redirection(">", literal("out.txt"))), redirected.redirections());
+	}
+
+	@Test
+	void parse_groupWithSeveralRedirections_splitsAttachedTargets() {
+		Node plan = ScriptParser.parse("{ make; } >build.log 2>&1 2>> err.txt");
+
+		Node.Redirected redirected = assertInstanceOf(Node.Redirected.class, plan);
+		assertEquals(List.of(
+			new Redirection(">", literal("build.log")),
+			new Redirection("2>&", literal("1")),
+			new Redirection("2>>", literal("err.txt"))
+		), redirected.redirections());
+	}
+
+	@Test
+	void parse_inputRedirectionAfterCompound_throwsSyntaxError() {
+		assertThrows(IllegalArgumentException.class, () -> ScriptParser.parse("{ cat; } < in.txt"));
+	}
+
+	@Test
+	void parse_nestedSubshell_parsesRecursively() {
+		Node plan = ScriptParser.parse("((pwd))");
+
+		Node.Subshell outer = assertInstanceOf(Node.Subshell.class, plan);
+		assertInstanceOf(Node.Subshell.class, outer.body());
+	}
+
+	@Test
+	void parse_leadingAssignments_separatedFromWords() {
+		Node.SimpleCommand command = assertInstanceOf(Node.SimpleCommand.class,
+				ScriptParser.parse("A=1 B= cmd C=3"));
+
+		assertEquals(List.of(new Assignment("A", literal("1")), new Assignment("B", new Word(List.of()))),
+				command.assignments());
+		assertEquals(List.of(literal("cmd"), literal("C=3")), command.words());
+	}
+
+	@Test
+	void parse_quotedEquals_isNotAssignment() {
+		Node.SimpleCommand command = assertInstanceOf(Node.SimpleCommand.class,
+				ScriptParser.parse("'A=1' cmd"));
+
+		assertTrue(command.assignments().isEmpty());
+		assertEquals(2, command.words().size());
+	}
+
+	@Test
+	void parse_unclosedSubshell_throwsIllegalArgumentException() {
+		IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+				() -> ScriptParser.parse("(pwd"));
+
+		assertEquals("syntax error: unclosed subshell", exception.getMessage());
+	}
+
+	@Test
+	void parse_unexpectedCloseParen_throwsIllegalArgumentException() {
+		IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+				() -> ScriptParser.parse("pwd )"));
+
+		assertEquals("syntax error near unexpected token `)'", exception.getMessage());
+	}
+
+	@Test
+	void parse_emptySubshell_throwsIllegalArgumentException() {
+		assertThrows(IllegalArgumentException.class, () -> ScriptParser.parse("()"));
+	}
+
+	@Test
+	void parse_wordAfterSubshell_throwsIllegalArgumentException() {
+		IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+				() -> ScriptParser.parse("(pwd) echo"));
+
+		assertEquals("syntax error near unexpected token `echo'", exception.getMessage());
+	}
+
+	// === Control flow ===
+
+	@Test
+	void parse_ifElifElse_collectsBranches() {
+		Node.If node = assertInstanceOf(Node.If.class,
+				ScriptParser.parse("if a; then b; elif c; then d; else e; fi"));
+
+		assertEquals(2, node.branches().size());
+		assertEquals(new Node.SimpleCommand(List.of(), List.of(literal("e"))), node.otherwise());
+	}
+
+	@Test
+	void parse_multilineIf_allowsNewlinesBetweenParts() {
+		Node.If node = assertInstanceOf(Node.If.class, ScriptParser.parse("if a\nthen\n  b\n  c\nfi"));
+
+		assertInstanceOf(Node.Sequence.class, node.branches().getFirst().body());
+		assertNull(node.otherwise());
+	}
+
+	@Test
+	void parse_whileAndUntil_createLoops() {
+		Node.Loop whileLoop = assertInstanceOf(Node.Loop.class, ScriptParser.parse("while a; do b; done"));
+		Node.Loop untilLoop = assertInstanceOf(Node.Loop.class, ScriptParser.parse("until a; do b; done"));
+
+		assertFalse(whileLoop.until());
+		assertTrue(untilLoop.until());
+	}
+
+	@Test
+	void parse_for_keepsItemsUnexpanded() {
+		Node.For node = assertInstanceOf(Node.For.class, ScriptParser.parse("for f in *.csv b; do echo $f; done"));
+
+		assertEquals("f", node.name());
+		assertEquals(List.of(literal("*.csv"), literal("b")), node.items());
+		assertInstanceOf(Node.SimpleCommand.class, node.body());
+	}
+
+	@Test
+	void parse_case_splitsAlternativePatterns() {
+		Node.Case node = assertInstanceOf(Node.Case.class,
+				ScriptParser.parse("case $x in a|b) echo ab;; (*) ;; esac"));
+
+		assertEquals(2, node.items().size());
+		assertEquals(List.of(literal("a"), literal("b")), node.items().getFirst().patterns());
+		assertEquals(new Node.Sequence(List.of()), node.items().get(1).body());
+	}
+
+	@Test
+	void parse_reservedWordAsArgument_isPlainWord() {
+		Node.SimpleCommand command = assertInstanceOf(Node.SimpleCommand.class, ScriptParser.parse("echo done if"));
+
+		assertEquals(3, command.words().size());
+	}
+
+	@Test
+	void parse_quotedReservedWord_isNotKeyword() {
+		assertInstanceOf(Node.SimpleCommand.class, ScriptParser.parse("'if' x"));
+	}
+
+	@Test
+	void parse_compoundWithRedirection_wrapsInRedirected() {
+		Node.Redirected node = assertInstanceOf(Node.Redirected.class,
+				ScriptParser.parse("for i in 1; do echo $i; done > out.txt"));
+
+		assertInstanceOf(Node.For.class, node.command());
+	}
+
+	@Test
+	void parse_missingFi_throwsIllegalArgumentException() {
+		IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+				() -> ScriptParser.parse("if a; then b"));
+
+		assertEquals("syntax error: unexpected end of input", exception.getMessage());
+	}
+
+	@Test
+	void parse_strayDone_throwsIllegalArgumentException() {
+		IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+				() -> ScriptParser.parse("done"));
+
+		assertEquals("syntax error near unexpected token `done'", exception.getMessage());
+	}
+
+	@Test
+	void parse_andOrChain_isLeftAssociative() {
+		Node plan = ScriptParser.parse("a && b || c");
+
+		Node.AndOr or = assertInstanceOf(Node.AndOr.class, plan);
+		assertFalse(or.and());
+		Node.AndOr and = assertInstanceOf(Node.AndOr.class, or.left());
+		assertTrue(and.and());
+		assertEquals(new Node.SimpleCommand(List.of(), List.of(literal("c"))), or.right());
+	}
+
+	@Test
+	void parse_andOrInSequence_bindsTighterThanSemicolon() {
+		Node plan = ScriptParser.parse("a && b; c");
+
+		Node.Sequence sequence = assertInstanceOf(Node.Sequence.class, plan);
+		assertInstanceOf(Node.AndOr.class, sequence.nodes().getFirst());
+		assertEquals(2, sequence.nodes().size());
+	}
+
+	@Test
+	void parse_operatorsInsideDoubleBrackets_areWords() {
+		Node plan = ScriptParser.parse("[[ -n a && ( b || c ) ]] && echo ok");
+
+		Node.AndOr andOr = assertInstanceOf(Node.AndOr.class, plan);
+		Node.SimpleCommand conditional = assertInstanceOf(Node.SimpleCommand.class, andOr.left());
+		assertEquals(10, conditional.words().size());
+		assertEquals("&&", ((WordPart.Literal) conditional.words().get(3).parts().getFirst()).text());
+	}
+
+	@Test
+	void parse_andWithoutRightCommand_throwsIllegalArgumentException() {
+		IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+				() -> ScriptParser.parse("true &&"));
+
+		assertEquals("syntax error: unexpected end of input", exception.getMessage());
+	}
+
+	@Test
+	void parse_functionDefinition_keepsParsedBody() {
+		Node plan = ScriptParser.parse("greet() {\n echo hi\n}");
+
+		Node.FunctionDefinition definition = assertInstanceOf(Node.FunctionDefinition.class, plan);
+		assertEquals("greet", definition.name());
+		Node.Group group = assertInstanceOf(Node.Group.class, definition.body());
+		assertEquals(new Node.SimpleCommand(List.of(), List.of(literal("echo"), literal("hi"))), group.body());
+	}
+
+	@Test
+	void parse_functionKeyword_acceptsDefinitionWithoutParentheses() {
+		Node plan = ScriptParser.parse("function f { echo hi; }");
+
+		assertEquals("f", assertInstanceOf(Node.FunctionDefinition.class, plan).name());
+	}
+
+	@Test
+	void parse_functionWithSimpleBody_throwsIllegalArgumentException() {
+		IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+				() -> ScriptParser.parse("f() echo hi"));
+
+		assertEquals("syntax error near unexpected token `echo'", exception.getMessage());
+	}
+
+	@Test
+	void parse_closingBraceOutsideGroup_isArgument() {
+		Node plan = ScriptParser.parse("echo }");
+
+		assertInstanceOf(Node.SimpleCommand.class, plan);
+	}
+}
@@ -0,0 +1,228 @@
+package repl.script;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WordExpanderTest {
+
+	private static final ExpansionContext A_B = _ -> "a b";
+
+	@Test
+	void expand_literalWord_returnsSingleField() {
+		Word word = new Word(List.of(new WordPart.Literal("hello")));
+
+		assertEquals(List.of("hello"), WordExpander.expand(List.of(word), A_B));
+	}
+
+	@Test
+	void expand_unquotedSubstitution_splitsOnWhitespace() {
+		Word word = new Word(List.of(new WordPart.CommandSubstitution("cmd", false)));
+
+		assertEquals(List.of("a", "b"), WordExpander.expand(List.of(word), A_B));
+	}
+
+	@Test
+	void expand_quotedSubstitution_keepsSingleField() {
+		Word word = new Word(List.of(new WordPart.CommandSubstitution("cmd", true)));
+
+		assertEquals(List.of("a b"), WordExpander.expand(List.of(word), A_B));
+	}
+
+	@Test
+	void expand_unquotedSubstitutionBetweenLiterals_joinsOuterFields() {
+		Word word = new Word(List.of(
+			new WordPart.Literal("x"),
+			new WordPart.CommandSubstitution("cmd", false),
+			new WordPart.Literal("y")
+		));
+
+		assertEquals(List.of("xa", "by"), WordExpander.expand(List.of(word), A_B));
+	}
+
+	@Test
+	void expand_unquotedEmptySubstitution_producesNoField() {
+		Word word = new Word(List.of(new WordPart.CommandSubstitution("true", false)));
+
+		assertTrue(WordExpander.expand(List.of(word), _ -> "").isEmpty());
+	}
+
+	@Test
+	void expand_quotedEmptySubstitution_producesEmptyField() {
+		Word word = new Word(List.of(new WordPart.CommandSubstitution("true", true)));
+
+		assertEquals(List.of(""), WordExpander.expand(List.of(word), _ -> ""));
+	}
+
+	@Test
+	void expand_multilineOutput_splitsOnNewlines() {
+		Word word = new Word(List.of(new WordPart.CommandSubstitution("ls", false)));
+
+		assertEquals(List.of("one", "two"), WordExpander.expand(List.of(word), _ -> "one\ntwo"));
+	}
+
+	@Test
+	void expand_processSubstitution_isOneFieldFromContext() {
+		ExpansionContext context = new ExpansionContext() {
+			@Override
+			public String substitute(String body) {
+				return "";
+			}
+
+			@Override
+			public String processSubstitution(WordPart.ProcessSubstitution substitution) {
+				return "/fd " + substitution.body() + (substitution.output() ? " out*" : " in*");
+			}
+		};
+		Word word = new Word(List.of(new WordPart.Literal("x="), new WordPart.ProcessSubstitution("ls", true)));
+
+		assertEquals(List.of("x=/fd ls out*"), WordExpander.expand(List.of(word), context));
+		assertFalse(word.isStatic());
+	}
+
+	@Test
+	void expand_commandSubstitution_passesThePartWithItsParsedPlan() {
+		WordPart.CommandSubstitution part = new WordPart.CommandSubstitution("echo a; echo b", false);
+		List<Node> plans = new ArrayList<>();
+		ExpansionContext context = new ExpansionContext() {
+			@Override
+			public String substitute(String body) {
+				throw new AssertionError("the body should not be passed as text");
+			}
+
+			@Override
+			public String substitute(WordPart.CommandSubstitution substitution) {
+				plans.add(substitution.plan());
+				return "x";
+			}
+		};
+		Word word = new Word(List.of(part));
+
+		WordExpander.expand(List.of(word, word), context);
+
+		assertEquals(2, plans.size());
+		assertSame(part.plan(), plans.get(0));
+		assertSame(part.plan(), plans.get(1));
+	}
+
+	@Test
+	void isLiteral_withSubstitution_returnsFalse() {
+		assertTrue(new Word(List.of(new WordPart.Literal("x"))).isLiteral());
+		assertFalse(new Word(List.of(new WordPart.CommandSubstitution("x", false))).isLiteral());
+	}
+
+	@Test
+	void isStatic_literalWithoutWildcards_returnsTrue() {
+		assertTrue(new Word(List.of(new WordPart.Literal("echo"))).isStatic());
+		assertTrue(new Word(List.of(new WordPart.Literal("["))).isStatic());
+		assertTrue(new Word(List.of(new WordPart.Literal("*", true))).isStatic());
+		assertTrue(new Word(List.of(new WordPart.Literal("", true))).isStatic());
+	}
+
+	@Test
+	void isStatic_wildcardOrExpansion_returnsFalse() {
+		assertFalse(new Word(List.of(new WordPart.Literal("*.txt"))).isStatic());
+		assertFalse(new Word(List.of(new WordPart.Literal("a?"))).isStatic());
+		assertFalse(new Word(List.of(new WordPart.Literal("[ab"), new WordPart.Literal("]", true))).isStatic());
+		assertFalse(new Word(List.of(new WordPart.Parameter("x", false))).isStatic());
+		assertFalse(new Word(List.of()).isStatic());
+	}
+
+	@Test
+	void expand_arithmetic_evaluatesWithContextVariables() {
+		ExpansionContext context = new ExpansionContext() {
+			@Override
+			public String substitute(String body) {
+				return "";
+			}
+
+			@Override
+			public String getVariable(String name) {
+				return "20";
+			}
+		};
+		Word word = new Word(List.of(
+				new WordPart.Literal("n="),
+				new WordPart.Arithmetic("x / 4", ArithmeticParser.parse("x / 4"), false)));
+
+		assertEquals(List.of("n=5"), WordExpander.expand(List.of(word), context));
+	}
+
+	@Test
+	void expand_unquotedWildcard_expandsThroughContextGlob() {
+		List<String> patterns = new ArrayList<>();
+		ExpansionContext context = new ExpansionContext() {
+			@Override
+			public String substitute(String body) {
+				return "";
+			}
+
+			@Override
+			public List<String> glob(String pattern) {
+				patterns.add(pattern);
+				return List.of("a.csv", "b.csv");
+			}
+		};
+		Word word = new Word(List.of(new WordPart.Literal("x*", true), new WordPart.Literal("*.csv")));
+
+		assertEquals(List.of("a.csv", "b.csv"), WordExpander.expand(List.of(word), context));
+		assertEquals(List.of("x\\**.csv"), patterns);
+	}
+
+	@Test
+	void expand_quotedWildcard_isNotGlobbed() {
+		ExpansionContext context = new ExpansionContext() {
+			@Override
+			public String substitute(String body) {
+				return "";
+			}
+
+			@Override
+			public List<String> glob(String pattern) {
+				throw new AssertionError("glob called for " + pattern);
+			}
+		};
+		Word word = new Word(List.of(new WordPart.Literal("*.csv", true)));
+
+		assertEquals(List.of("*.csv"), WordExpander.expand(List.of(word), context));
+	}
+
+	@Test
+	void expand_wildcardWithoutMatches_keepsText() {
+		Word word = new Word(List.of(new WordPart.Literal("*.none")));
+
+		assertEquals(List.of("*.none"), WordExpander.expand(List.of(word), A_B));
+	}
+
+	@Test
+	void expandToPattern_escapesQuotedParts() {
+		Word word = new Word(List.of(new WordPart.Literal("*", true), new WordPart.Literal("?")));
+
+		assertEquals("\\*?", WordExpander.expandToPattern(word, A_B));
+	}
+
+	@Test
+	void expand_quotedAllParameters_producesOneFieldPerParameter() {
+		ExpansionContext context = new ExpansionContext() {
+			@Override
+			public String substitute(String body) {
+				return "";
+			}
+
+			@Override
+			public List<String> getPositionalParameters() {
+				return List.of("a b", "c");
+			}
+		};
+		Word word = new Word(List.of(
+			new WordPart.Literal("<", true),
+			new WordPart.Parameter("@", true),
+			new WordPart.Literal(">", true)
+		));
+
+		assertEquals(List.of("<a b", "c>"), WordExpander.expand(List.of(word), context));
+	}
+}
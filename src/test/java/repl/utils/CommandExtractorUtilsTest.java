@@ -3,6 +3,13 @@ package repl.utils;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 
+import repl.script.ExpansionContext;
+import repl.script.Node;
+import repl.script.ScriptParser;
+import repl.script.Token;
+import repl.script.Word;
+import repl.script.WordPart;
+
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -282,6 +289,14 @@ class CommandExtractorUtilsTest {
 		assertEquals(List.of("'\"script", "world\"'"), result.args());
 	}
 
+	@Test
+	void get_backslashNewline_isLineContinuation() {
+		CommandExtractorUtils.ExtractedCommand result = CommandExtractorUtils.get("echo a\\\nb \"c\\\nd\"");
+
+		assertEquals("echo", result.mainCommandStr());
+		assertEquals(List.of("ab", "cd"), result.args());
+	}
+
 	@Test
 	@Tag("YT5")
 	void get_escapedRegularCharacter() {
@@ -663,13 +678,11 @@ class CommandExtractorUtilsTest {
 	}
 
 	@Test
-	void get_redirectWithMultipleTokensAfterOperator_throwsException() {
-		IllegalArgumentException exception = assertThrows(
-			IllegalArgumentException.class,
-			() -> CommandExtractorUtils.get("echo hello > file1.txt file2.txt")
-		);
+	void get_redirectFollowedByMoreWords_keepsThemAsArguments() {
+		CommandExtractorUtils.ExtractedCommand result = CommandExtractorUtils.get("echo hello > file1.txt file2.txt");
 
-		assertEquals("single token expected after stdout redirection", exception.getMessage());
+		assertEquals(List.of("hello", "file2.txt"), result.args());
+		assertEquals("file1.txt", result.stdoutRedirectTo());
 	}
 
 	@Test
@@ -679,7 +692,7 @@ class CommandExtractorUtilsTest {
 			() -> CommandExtractorUtils.get("echo hello >")
 		);
 
-		assertEquals("single token expected after stdout redirection", exception.getMessage());
+		assertEquals("syntax error near unexpected token `newline'", exception.getMessage());
 	}
 
 	@Test
@@ -701,4 +714,364 @@ class CommandExtractorUtilsTest {
 		assertEquals(List.of("hello", "world"), result.args());
 		assertNull(result.stdoutRedirectTo());
 	}
+
+	// === Command substitution ===
+
+	@Test
+	void get_withoutSubstitutor_keepsSubstitutionText() {
+		CommandExtractorUtils.ExtractedCommand result = CommandExtractorUtils.get("echo \"$(pwd)\"");
+
+		assertEquals(List.of("$(pwd)"), result.args());
+	}
+
+	@Test
+	void get_unquotedSubstitution_splitsResultIntoArgs() {
+		CommandExtractorUtils.ExtractedCommand result = CommandExtractorUtils.get("echo $(list) end", _ -> "a  b");
+
+		assertEquals(List.of("a", "b", "end"), result.args());
+	}
+
+	@Test
+	void get_quotedSubstitution_keepsResultAsSingleArg() {
+		CommandExtractorUtils.ExtractedCommand result = CommandExtractorUtils.get("echo \"[$(list)]\"", _ -> "a  b");
+
+		assertEquals(List.of("[a  b]"), result.args());
+	}
+
+	@Test
+	void get_substitutionInSingleQuotes_treatedLiterally() {
+		CommandExtractorUtils.ExtractedCommand result = CommandExtractorUtils.get("echo '$(pwd)'", _ -> "evaluated");
+
+		assertEquals(List.of("$(pwd)"), result.args());
+	}
+
+	@Test
+	void get_escapedDollar_treatedLiterally() {
+		CommandExtractorUtils.ExtractedCommand result = CommandExtractorUtils.get("echo \\$(pwd)", _ -> "evaluated");
+
+		assertEquals(List.of("$(pwd)"), result.args());
+	}
+
+	@Test
+	void get_substitutionBodyWithParensAndQuotes_passesWholeBody() {
+		List<String> bodies = new java.util.ArrayList<>();
+
+		CommandExtractorUtils.get("echo $(echo ')' \"(\" $(pwd))", body -> {
+			bodies.add(body);
+			return "";
+		});
+
+		assertEquals(List.of("echo ')' \"(\" $(pwd)"), bodies);
+	}
+
+	@Test
+	void get_unclosedSubstitution_throwsIllegalArgumentException() {
+		IllegalArgumentException exception = assertThrows(
+			IllegalArgumentException.class,
+			() -> CommandExtractorUtils.get("echo $(pwd", _ -> "")
+		);
+
+		assertEquals("Unclosed command substitution in input", exception.getMessage());
+	}
+
+	@Test
+	void parseWords_substitution_keepsUnevaluatedPart() {
+		List<repl.script.Word> words = CommandExtractorUtils.parseWords("a$(b)");
+
+		assertEquals(1, words.size());
+		assertFalse(words.getFirst().isLiteral());
+	}
+
+	// === Variables and operators ===
+
+	@Test
+	void get_variableReference_expandsFromContext() {
+		ExpansionContext context = new ExpansionContext() {
+			@Override
+			public String substitute(String body) {
+				return "";
+			}
+
+			@Override
+			public String getVariable(String name) {
+				return name.equals("x") ? "1 2" : null;
+			}
+		};
+
+		CommandExtractorUtils.ExtractedCommand result =
+				CommandExtractorUtils.get("echo $x \"${x}\" $unset end", context);
+
+		assertEquals(List.of("1", "2", "1 2", "end"), result.args());
+	}
+
+	@Test
+	void get_unclosedParameterExpansion_throwsIllegalArgumentException() {
+		IllegalArgumentException exception = assertThrows(
+			IllegalArgumentException.class,
+			() -> CommandExtractorUtils.get("echo ${x", ExpansionContext.LITERAL)
+		);
+
+		assertEquals("Unclosed parameter expansion in input", exception.getMessage());
+	}
+
+	@Test
+	void tokenize_separatesControlOperators() {
+		List<Token> tokens = CommandExtractorUtils.tokenize("(cd a;pwd)");
+
+		assertEquals(6, tokens.size());
+		assertEquals(new Token.Operator("("), tokens.get(0));
+		assertInstanceOf(Token.WordToken.class, tokens.get(1));
+		assertEquals(new Token.Operator(";"), tokens.get(3));
+		assertEquals(new Token.Operator(")"), tokens.get(5));
+	}
+
+	@Test
+	void tokenize_quotedOperators_stayInWord() {
+		List<Token> tokens = CommandExtractorUtils.tokenize("echo ';' \\( \"()\"");
+
+		assertEquals(4, tokens.size());
+		assertTrue(tokens.stream().allMatch(Token.WordToken.class::isInstance));
+	}
+
+	@Test
+	void tokenize_hashStartingWord_commentsOutRestOfLine() {
+		List<Token> tokens = CommandExtractorUtils.tokenize("echo a # it's (ignored)\n# whole line\nls");
+
+		assertEquals(List.of("echo", "a", "\n", "\n", "ls"), tokens.stream()
+			.map(token -> token instanceof Token.WordToken(Word word)
+				? word.unquotedText()
+				: ((Token.Operator) token).symbol())
+			.toList());
+	}
+
+	@Test
+	void tokenize_hashInsideWordOrQuoted_isLiteral() {
+		List<Token> tokens = CommandExtractorUtils.tokenize("echo a#b '#c' \\#d ''#e $#");
+
+		assertEquals(6, tokens.size());
+		assertEquals("a#b", ((Token.WordToken) tokens.get(1)).word().unquotedText());
+		assertEquals("#e", ((Token.WordToken) tokens.get(4)).word().unquotedText());
+	}
+
+	@Test
+	void tokenize_arithmetic_compiledIntoWordPart() {
+		List<Token> tokens = CommandExtractorUtils.tokenize("echo $((1 + (2)))");
+
+		Token.WordToken word = assertInstanceOf(Token.WordToken.class, tokens.get(1));
+		WordPart.Arithmetic arithmetic = assertInstanceOf(WordPart.Arithmetic.class, word.word().parts().getFirst());
+		assertEquals("1 + (2)", arithmetic.text());
+	}
+
+	@Test
+	void tokenize_substitutionOfSubshell_notMistakenForArithmetic() {
+		List<Token> tokens = CommandExtractorUtils.tokenize("echo $((pwd) )");
+
+		Token.WordToken word = assertInstanceOf(Token.WordToken.class, tokens.get(1));
+		assertInstanceOf(WordPart.CommandSubstitution.class, word.word().parts().getFirst());
+	}
+
+	@Test
+	void tokenize_processSubstitutions_becomeWordPartsNotRedirections() {
+		List<Token> tokens = CommandExtractorUtils.tokenize("diff <(sort 'a)') x>(cat) < <(ls)");
+
+		Token.WordToken input = assertInstanceOf(Token.WordToken.class, tokens.get(1));
+		Token.WordToken output = assertInstanceOf(Token.WordToken.class, tokens.get(2));
+		Token.WordToken redirected = assertInstanceOf(Token.WordToken.class, tokens.get(4));
+		assertEquals(List.of(new WordPart.ProcessSubstitution("sort 'a)'", false)), input.word().parts());
+		assertEquals(new WordPart.ProcessSubstitution("cat", true), output.word().parts().getLast());
+		assertEquals(new WordPart.ProcessSubstitution("ls", false), redirected.word().parts().getFirst());
+		assertEquals(List.of("<(ls)"), CommandExtractorUtils.get("cat <(ls)").args());
+	}
+
+	@Test
+	void tokenize_substitutionBodies_areParsedWithTheWord() {
+		List<Token> tokens = CommandExtractorUtils.tokenize("echo \"$(echo a; echo b)\" <(ls)");
+
+		Token.WordToken command = assertInstanceOf(Token.WordToken.class, tokens.get(1));
+		Token.WordToken process = assertInstanceOf(Token.WordToken.class, tokens.get(2));
+		WordPart.CommandSubstitution substitution =
+				assertInstanceOf(WordPart.CommandSubstitution.class, command.word().parts().getFirst());
+		assertEquals(ScriptParser.parse("echo a; echo b"), substitution.plan());
+		assertInstanceOf(Node.SimpleCommand.class,
+				assertInstanceOf(WordPart.ProcessSubstitution.class, process.word().parts().getFirst()).plan());
+		assertThrows(IllegalArgumentException.class, () -> CommandExtractorUtils.tokenize("echo $(if)"));
+	}
+
+	@Test
+	void get_arithmeticWithoutContext_keepsText() {
+		assertEquals(List.of("$((1+2))"), CommandExtractorUtils.get("echo $((1+2))").args());
+	}
+
+	@Test
+	void tokenize_doubledAmpersandAndBar_areOperators() {
+		List<Token> tokens = CommandExtractorUtils.tokenize("true&&echo a||echo b");
+
+		assertEquals(new Token.Operator("&&"), tokens.get(1));
+		assertEquals(new Token.Operator("||"), tokens.get(4));
+		assertEquals(7, tokens.size());
+	}
+
+	@Test
+	void tokenize_singleAmpersandOrBar_staysInWord() {
+		List<Token> tokens = CommandExtractorUtils.tokenize("echo a|b c&d '&&'");
+
+		assertEquals(4, tokens.size());
+		assertTrue(tokens.stream().allMatch(Token.WordToken.class::isInstance));
+	}
+
+	@Test
+	void tokenize_positionalAndSpecialParameters_becomeParameterParts() {
+		List<Token> tokens = CommandExtractorUtils.tokenize("echo $1 $# \"$@\" ${10}");
+
+		assertEquals(new WordPart.Parameter("1", false), ((Token.WordToken) tokens.get(1)).word().parts().getFirst());
+		assertEquals(new WordPart.Parameter("#", false), ((Token.WordToken) tokens.get(2)).word().parts().getFirst());
+		assertEquals(new WordPart.Parameter("@", true), ((Token.WordToken) tokens.get(3)).word().parts().getFirst());
+		assertEquals(new WordPart.Parameter("10", false), ((Token.WordToken) tokens.get(4)).word().parts().getFirst());
+	}
+
+	@Test
+	void tokenize_hereDocument_bodyFollowsOperator() {
+		List<Token> tokens = CommandExtractorUtils.tokenize("cat <<EOF; echo b\nhi $USER \\$x 'q'\nEOF\necho c");
+
+		assertEquals(literal("<<"), tokens.get(1));
+		Token.WordToken body = assertInstanceOf(Token.WordToken.class, tokens.get(2));
+		assertEquals(List.of(new WordPart.Literal("hi ", true), new WordPart.Parameter("USER", true),
+			new WordPart.Literal(" $x 'q'\n", true)), body.word().parts());
+		assertEquals(new Token.Operator(";"), tokens.get(3));
+		assertEquals(new Token.Operator("\n"), tokens.get(6));
+		assertEquals(literal("echo"), tokens.get(7));
+		assertEquals(9, tokens.size());
+	}
+
+	@Test
+	void tokenize_quotedHereDocumentDelimiter_keepsBodyLiteral() {
+		List<Token> tokens = CommandExtractorUtils.tokenize("cat <<'EOF'\n$HOME \\\nEOF\n");
+
+		assertEquals(new Token.WordToken(new Word(List.of(new WordPart.Literal("$HOME \\\n", true)))), tokens.get(2));
+	}
+
+	@Test
+	void tokenize_hereDocumentsOnOneLine_readBodiesInOrder() {
+		List<Token> tokens = CommandExtractorUtils.tokenize("cat <<-A << \"B\"\n\ta\n\tA\nb\nB\n");
+
+		assertEquals(literal("<<-"), tokens.get(1));
+		assertEquals(new Token.WordToken(new Word(List.of(new WordPart.Literal("a\n", true)))), tokens.get(2));
+		assertEquals(new Token.WordToken(new Word(List.of(new WordPart.Literal("b\n", true)))), tokens.get(4));
+		assertEquals(6, tokens.size());
+	}
+
+	@Test
+	void tokenize_hereDocumentWithoutDelimiter_throwsSyntaxError() {
+		IllegalArgumentException exception = assertThrows(
+			IllegalArgumentException.class,
+			() -> CommandExtractorUtils.tokenize("cat <<\n")
+		);
+
+		assertEquals("syntax error near unexpected token `newline'", exception.getMessage());
+	}
+
+	@Test
+	void get_hereString_feedsWordAndNewlineToStdin() {
+		CommandExtractorUtils.ExtractedCommand result = CommandExtractorUtils.get("cat <<< 'a b' -n");
+
+		assertEquals("cat", result.mainCommandStr());
+		assertEquals(List.of("-n"), result.args());
+		assertEquals("a b\n", String.join("", result.stdin()));
+	}
+
+	@Test
+	void get_quotedHereStringOperator_isArgument() {
+		CommandExtractorUtils.ExtractedCommand result = CommandExtractorUtils.get("echo '<<<' x");
+
+		assertEquals(List.of("<<<", "x"), result.args());
+		assertNull(result.stdin());
+	}
+
+	@Test
+	void get_inputRedirect_extractsSourceFile() {
+		CommandExtractorUtils.ExtractedCommand result = CommandExtractorUtils.get("sort -r < in.txt > out.txt");
+
+		assertEquals("sort", result.mainCommandStr());
+		assertEquals(List.of("-r"), result.args());
+		assertEquals("in.txt", result.stdinRedirectFrom());
+		assertEquals("out.txt", result.stdoutRedirectTo());
+		assertNull(result.stdin());
+	}
+
+	@Test
+	void get_lastInputRedirect_wins() {
+		CommandExtractorUtils.ExtractedCommand result = CommandExtractorUtils.get("cat < a.txt <<< b");
+
+		assertNull(result.stdinRedirectFrom());
+		assertEquals("b\n", String.join("", result.stdin()));
+		assertEquals("c.txt", CommandExtractorUtils.get("cat <<< b 0< c.txt").stdinRedirectFrom());
+	}
+
+	@Test
+	void get_inputRedirectWithoutFile_throwsSyntaxError() {
+		IllegalArgumentException exception = assertThrows(
+			IllegalArgumentException.class,
+			() -> CommandExtractorUtils.get("cat <")
+		);
+
+		assertEquals("syntax error near unexpected token `newline'", exception.getMessage());
+	}
+
+	@Test
+	void get_stdoutAndStderrRedirects_bothApply() {
+		CommandExtractorUtils.ExtractedCommand result = CommandExtractorUtils.get("make > out.txt 2> err.txt all");
+
+		assertEquals(List.of("all"), result.args());
+		assertEquals("out.txt", result.stdoutRedirectTo());
+		assertEquals("err.txt", result.stderrRedirectTo());
+	}
+
+	@Test
+	void get_duplicationAfterFile_mergesIntoIt() {
+		RedirectionTable redirections = CommandExtractorUtils.get("build.sh > build.log 2>&1").redirections();
+
+		assertTrue(redirections.isMerged());
+		assertEquals("build.log", redirections.stderrFile());
+		assertEquals(1, redirections.files().size());
+	}
+
+	@Test
+	void get_duplicationBeforeFile_keepsStderrOnStdout() {
+		RedirectionTable redirections = CommandExtractorUtils.get("cmd 2>&1 > out.txt").redirections();
+
+		assertEquals("out.txt", redirections.stdoutFile());
+		assertEquals(RedirectionTable.Target.Stream.STDOUT, redirections.stderr());
+	}
+
+	@Test
+	void get_attachedTargetsAndAmpersandForm_areRecognized() {
+		CommandExtractorUtils.ExtractedCommand result = CommandExtractorUtils.get("cmd >out.txt 2>>err.txt &>>all.txt x");
+
+		assertEquals(List.of("x"), result.args());
+		assertEquals(3, result.redirections().files().size());
+		assertTrue(result.redirections().isMerged());
+		assertTrue(result.redirections().files().get(2).append());
+	}
+
+	@Test
+	void get_quotedOrExpandedOperator_isAnArgument() {
+		CommandExtractorUtils.ExtractedCommand result = CommandExtractorUtils.get("echo '>' a \\> b $(op)", _ -> ">");
+
+		assertEquals(List.of(">", "a", ">", "b", ">"), result.args());
+		assertSame(RedirectionTable.NONE, result.redirections());
+	}
+
+	@Test
+	void get_otherDescriptor_throwsException() {
+		IllegalArgumentException exception = assertThrows(
+			IllegalArgumentException.class,
+			() -> CommandExtractorUtils.get("cmd 3> fd3.txt")
+		);
+
+		assertEquals("redirection of file descriptor 3 is not supported", exception.getMessage());
+	}
+
+	private static Token literal(String text) {
+		return new Token.WordToken(new Word(List.of(new WordPart.Literal(text))));
+	}
 }
@@ -0,0 +1,138 @@
+package repl.utils;
+
+import org.junit.jupiter.api.Test;
+import repl.script.ScriptParser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link ContinuationScanner}.
+ */
+class ContinuationScannerTest {
+
+	/** Number of lines of the pasted quoted block. */
+	private static final int PASTED_LINES = 3000;
+
+	@Test
+	void add_completeLines_areCommandsOfTheirOwn() {
+		assertEquals(List.of("echo a", "echo 'b' \"c\"", "ls; pwd", "echo ( x"),
+			commands("echo a", "echo 'b' \"c\"", "ls; pwd", "echo ( x"));
+	}
+
+	@Test
+	void add_unclosedQuotes_continueWithNewlines() {
+		assertEquals(List.of("echo 'a\nb'", "echo \"x\n\ny\" z"),
+			commands("echo 'a", "b'", "echo \"x", "", "y\" z"));
+	}
+
+	@Test
+	void add_quoteInComment_doesNotContinue() {
+		assertEquals(List.of("echo a # it's", "# (", "echo a#'b\n'", "if true; then # fi\necho x\nfi"),
+			commands("echo a # it's", "# (", "echo a#'b", "'", "if true; then # fi", "echo x", "fi"));
+	}
+
+	@Test
+	void add_trailingBackslash_joinsLinesWithoutNewline() {
+		assertEquals(List.of("echo a b", "echo \"ab\""), commands("echo a \\", "b", "echo \"a\\", "b\""));
+		assertEquals(List.of("echo a\\\\"), commands("echo a\\\\"));
+		assertEquals(List.of("echo 'a\\\nb'"), commands("echo 'a\\", "b'"));
+	}
+
+	@Test
+	void add_trailingRedirections_areComplete() {
+		assertEquals(List.of("make > log 2>&1", "make &> log", "make >&2"),
+			commands("make > log 2>&1", "make &> log", "make >&2"));
+	}
+
+	@Test
+	void add_trailingAndOr_continues() {
+		assertEquals(List.of("true &&\necho a", "false ||\n\necho b"), commands("true &&", "echo a", "false ||", "", "echo b"));
+	}
+
+	@Test
+	void add_compoundCommands_continueUntilClosed() {
+		assertEquals(List.of("if true\nthen\n  while false; do\n    echo x\n  done\nfi", "echo after"),
+			commands("if true", "then", "  while false; do", "    echo x", "  done", "fi", "echo after"));
+		assertEquals(List.of("f() {\n  echo hi\n}"), commands("f() {", "  echo hi", "}"));
+		assertEquals(List.of("case $x in\n  a) echo a;;\n  (b) echo b;;\nesac"),
+			commands("case $x in", "  a) echo a;;", "  (b) echo b;;", "esac"));
+		assertEquals(List.of("for i in 1 2\ndo echo $i; done"), commands("for i in 1 2", "do echo $i; done"));
+	}
+
+	@Test
+	void add_reservedWordsOutsideCommandPosition_areArguments() {
+		assertEquals(List.of("echo if", "echo 'while' do"), commands("echo if", "echo 'while' do"));
+	}
+
+	@Test
+	void add_substitutionsAndSubshells_continueUntilClosed() {
+		assertEquals(List.of("echo $(\necho a\n) x", "echo \"$(date\n)\" y", "(cd /\npwd)"),
+			commands("echo $(", "echo a", ") x", "echo \"$(date", ")\" y", "(cd /", "pwd)"));
+		assertEquals(List.of("echo $((1 + (2)))"), commands("echo $((1 + (2)))"));
+		assertEquals(List.of("diff <(sort\na) >(cat\n)"), commands("diff <(sort", "a) >(cat", ")"));
+	}
+
+	@Test
+	void add_hereDocuments_continueUntilDelimiterLines() {
+		assertEquals(List.of("cat <<EOF\nif 'a\n  EOF\nEOF", "cat <<-'A' && cat << \"B\"\n\ta\n\tA\nB", "echo after"),
+			commands("cat <<EOF", "if 'a", "  EOF", "EOF", "cat <<-'A' && cat << \"B\"", "\ta", "\tA", "B", "echo after"));
+		assertEquals(List.of("if true; then cat <<E\nfi\nE\nfi"), commands("if true; then cat <<E", "fi", "E", "fi"));
+		assertEquals(List.of("cat <<< x", "echo $(( 1 << 2 ))"), commands("cat <<< x", "echo $(( 1 << 2 ))"));
+	}
+
+	@Test
+	void take_incompleteCommand_returnsLinesSoFar() {
+		ContinuationScanner scanner = new ContinuationScanner();
+
+		assertFalse(scanner.add("echo 'a"));
+		assertTrue(scanner.isContinuing());
+		assertEquals("echo 'a\n", scanner.take());
+		assertFalse(scanner.isContinuing());
+		assertTrue(scanner.add("echo b"));
+		assertEquals("echo b", scanner.take());
+	}
+
+	@Test
+	void add_joinedCommand_parses() {
+		ContinuationScanner scanner = new ContinuationScanner();
+		for (String line : List.of("if true; then", "  echo \"a", "b\" \\", "    c", "fi")) {
+			scanner.add(line);
+		}
+
+		assertDoesNotThrow(() -> ScriptParser.parse(scanner.take()));
+	}
+
+	@Test
+	void add_pastedQuotedBlock_completesOnlyAtItsLastLine() {
+		List<String> lines = new ArrayList<>(PASTED_LINES + 2);
+		lines.add("echo '{");
+		for (int i = 0; i < PASTED_LINES; i++) {
+			lines.add("  \"key" + i + "\": [1, 2, 3, \"value\"],");
+		}
+		lines.add("}'");
+
+		ContinuationScanner scanner = new ContinuationScanner();
+		for (String line : lines.subList(0, lines.size() - 1)) {
+			assertFalse(scanner.add(line), line);
+		}
+
+		assertTrue(scanner.add(lines.getLast()));
+		assertEquals(String.join("\n", lines), scanner.take());
+	}
+
+	/** The commands the lines make, each taken when complete. */
+	private static List<String> commands(String... lines) {
+		ContinuationScanner scanner = new ContinuationScanner();
+		List<String> commands = new ArrayList<>();
+		for (String line : lines) {
+			if (scanner.add(line)) {
+				commands.add(scanner.take());
+			}
+		}
+		assertFalse(scanner.isContinuing(), "incomplete: " + scanner);
+		return commands;
+	}
+}
@@ -40,6 +40,17 @@ class DirUtilsTest {
 		assertEquals(tempDir, dirUtils.getCurrentDir());
 	}
 
+	@Test
+	void fork_changeDirectoryInCopy_doesNotAffectOriginal() throws IOException {
+		Path subDir = Files.createDirectory(tempDir.resolve("forked"));
+		DirUtils copy = dirUtils.fork();
+
+		copy.setCurrentDir(subDir.toString());
+
+		assertEquals(subDir.toRealPath(), copy.getCurrentDir());
+		assertEquals(tempDir, dirUtils.getCurrentDir());
+	}
+
 	@Test
 	void setCurrentDir_absolutePath_changesDirectory() throws IOException {
 		Path subDir = Files.createDirectory(tempDir.resolve("subdir"));
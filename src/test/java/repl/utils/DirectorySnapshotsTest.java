@@ -0,0 +1,113 @@
+package repl.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DirectorySnapshotsTest {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void get_directory_listsNamesSorted() throws IOException {
+		Files.createFile(tempDir.resolve("b.txt"));
+		Files.createFile(tempDir.resolve("a.txt"));
+		Files.createDirectory(tempDir.resolve("src"));
+
+		DirectorySnapshots.Snapshot snapshot = new DirectorySnapshots().get(tempDir).join();
+
+		assertArrayEquals(new String[]{"a.txt", "b.txt", "src"}, snapshot.names());
+		assertEquals(List.of("a.txt", "b.txt"), snapshot.withPrefix("").subList(0, 2));
+		assertEquals(List.of("src"), snapshot.withPrefix("s"));
+		assertEquals(List.of(), snapshot.withPrefix("z"));
+	}
+
+	@Test
+	void get_missingDirectory_isEmpty() {
+		assertEquals(0, new DirectorySnapshots().get(tempDir.resolve("missing")).join().names().length);
+	}
+
+	@Test
+	void get_again_reusesSnapshot() {
+		AtomicInteger listings = new AtomicInteger();
+		DirectorySnapshots snapshots = new DirectorySnapshots(_ -> {
+			listings.incrementAndGet();
+			return List.of("x");
+		});
+
+		snapshots.get(tempDir).join();
+		snapshots.get(tempDir.resolve(".")).join();
+
+		assertEquals(1, listings.get());
+	}
+
+	@Test
+	void get_slowDirectory_returnsBeforeListing() {
+		CountDownLatch release = new CountDownLatch(1);
+		DirectorySnapshots snapshots = new DirectorySnapshots(_ -> {
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return List.of("late");
+		});
+
+		CompletableFuture<DirectorySnapshots.Snapshot> snapshot = snapshots.get(tempDir);
+
+		assertFalse(snapshot.isDone());
+		release.countDown();
+		assertEquals(List.of("late"), snapshot.join().withPrefix(""));
+	}
+
+	@Test
+	void invalidate_listsAgain() {
+		AtomicInteger listings = new AtomicInteger();
+		DirectorySnapshots snapshots = new DirectorySnapshots(_ -> List.of("v" + listings.incrementAndGet()));
+		snapshots.get(tempDir).join();
+
+		snapshots.invalidate(tempDir);
+
+		assertEquals(List.of("v2"), snapshots.get(tempDir).join().withPrefix(""));
+	}
+
+	@Test
+	void get_directoryChanged_isListedAgain() throws IOException, InterruptedException {
+		DirectorySnapshots snapshots = new DirectorySnapshots();
+		assertEquals(List.of(), snapshots.get(tempDir).join().withPrefix(""));
+
+		Files.createFile(tempDir.resolve("new.txt"));
+
+		long deadline = System.nanoTime() + 10_000_000_000L;
+		while (snapshots.get(tempDir).join().names().length == 0 && System.nanoTime() < deadline) {
+			Thread.sleep(20);
+		}
+		assertEquals(List.of("new.txt"), snapshots.get(tempDir).join().withPrefix(""));
+	}
+
+	@Test
+	void get_manyDirectories_keepsOnlyRecentOnes() {
+		AtomicInteger listings = new AtomicInteger();
+		DirectorySnapshots snapshots = new DirectorySnapshots(_ -> {
+			listings.incrementAndGet();
+			return List.of();
+		});
+
+		for (int i = 0; i <= DirectorySnapshots.MAX_SNAPSHOTS; i++) {
+			snapshots.get(tempDir.resolve("d" + i)).join();
+		}
+		snapshots.get(tempDir.resolve("d0")).join();
+
+		assertEquals(DirectorySnapshots.MAX_SNAPSHOTS + 2, listings.get());
+	}
+}
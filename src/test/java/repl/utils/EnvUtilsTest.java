@@ -0,0 +1,92 @@
+package repl.utils;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EnvUtilsTest {
+
+	private EnvUtils envUtils;
+
+	@BeforeEach
+	void setUp() {
+		envUtils = new EnvUtils(Map.of("HOME", "/home/user"));
+	}
+
+	@Test
+	void constructor_defaultConstructor_holdsProcessEnvironment() {
+		EnvUtils defaultEnvUtils = new EnvUtils();
+
+		assertEquals(System.getenv("PATH"), defaultEnvUtils.get("PATH"));
+		assertFalse(defaultEnvUtils.hasExportChanges());
+	}
+
+	@Test
+	void set_newVariable_isNotExported() {
+		envUtils.set("x", "1");
+
+		assertEquals("1", envUtils.get("x"));
+		assertFalse(envUtils.getExportedVariables().containsKey("x"));
+	}
+
+	@Test
+	void export_variable_isPassedToChildren() {
+		envUtils.set("x", "1");
+		envUtils.export("x");
+
+		assertEquals(Map.of("HOME", "/home/user", "x", "1"), envUtils.getExportedVariables());
+	}
+
+	@Test
+	void fork_childChanges_doNotAffectParent() {
+		EnvUtils child = envUtils.fork();
+
+		child.set("HOME", "/tmp");
+		child.set("x", "1");
+
+		assertEquals("/tmp", child.get("HOME"));
+		assertEquals("/home/user", envUtils.get("HOME"));
+		assertNull(envUtils.get("x"));
+	}
+
+	@Test
+	void fork_parentChangesAfterFork_doNotAffectChild() {
+		EnvUtils child = envUtils.fork();
+
+		envUtils.set("HOME", "/tmp");
+		envUtils.set("x", "1");
+
+		assertEquals("/home/user", child.get("HOME"));
+		assertNull(child.get("x"));
+		assertEquals("/tmp", envUtils.get("HOME"));
+	}
+
+	@Test
+	void fork_childSeesParentVariables() {
+		envUtils.set("x", "1");
+
+		assertEquals("1", envUtils.fork().get("x"));
+	}
+
+	@Test
+	void applyTo_withoutChanges_keepsInheritedEnvironment() {
+		ProcessBuilder processBuilder = new ProcessBuilder("true");
+		Map<String, String> inherited = Map.copyOf(processBuilder.environment());
+
+		new EnvUtils().applyTo(processBuilder);
+
+		assertEquals(inherited, processBuilder.environment());
+	}
+
+	@Test
+	void applyTo_withExports_replacesEnvironment() {
+		ProcessBuilder processBuilder = new ProcessBuilder("true");
+
+		envUtils.applyTo(processBuilder);
+
+		assertEquals(Map.of("HOME", "/home/user"), processBuilder.environment());
+	}
+}
@@ -0,0 +1,118 @@
+package repl.utils;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExecutableIndexTest {
+
+	/** Number of executables on the PATH of the benchmark. */
+	private static final int BENCHMARK_EXECUTABLES = 10_000;
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void listing_onlyExecutableRegularFiles() throws IOException {
+		executable(tempDir.resolve("run"));
+		Files.createFile(tempDir.resolve("notes.txt"));
+		Files.createDirectory(tempDir.resolve("subdir"));
+		ExecutableIndex index = new ExecutableIndex(List.of(tempDir.toString()));
+
+		assertEquals(Set.of("run"), index.listing(tempDir.toString()));
+	}
+
+	@Test
+	void listing_missingDirectory_isEmpty() {
+		String missing = tempDir.resolve("missing").toString();
+
+		assertTrue(new ExecutableIndex(List.of(missing)).listing(missing).isEmpty());
+	}
+
+	@Test
+	void complete_namesFromAllDirectories_sortedOnce() throws IOException {
+		Path first = Files.createDirectory(tempDir.resolve("a"));
+		Path second = Files.createDirectory(tempDir.resolve("b"));
+		executable(first.resolve("git"));
+		executable(second.resolve("git"));
+		executable(second.resolve("grep"));
+		ExecutableIndex index = new ExecutableIndex(List.of(first.toString(), second.toString()));
+
+		assertEquals(List.of("git", "grep"), complete(index, "g"));
+	}
+
+	@Test
+	void complete_directoryChanged_updatesNames() throws IOException {
+		Path dir = Files.createDirectory(tempDir.resolve("bin"));
+		executable(dir.resolve("old"));
+		ExecutableIndex index = new ExecutableIndex(List.of(dir.toString()));
+		assertEquals(List.of("old"), complete(index, ""));
+
+		Files.delete(dir.resolve("old"));
+		executable(dir.resolve("new"));
+		// Modification times can be coarse; make the change visible
+		Files.setLastModifiedTime(dir, FileTime.fromMillis(Files.getLastModifiedTime(dir).toMillis() + 1000));
+
+		assertEquals(List.of("new"), complete(index, ""));
+	}
+
+	@Test
+	void contains_followsFinishedListings() throws IOException {
+		Path dir = Files.createDirectory(tempDir.resolve("bin"));
+		executable(dir.resolve("old"));
+		ExecutableIndex index = new ExecutableIndex(List.of(dir.toString()));
+		assertFalse(index.contains("old"), "nothing is listed yet");
+
+		index.listing(dir.toString());
+		assertTrue(index.contains("old"));
+
+		Files.delete(dir.resolve("old"));
+		executable(dir.resolve("new"));
+		Files.setLastModifiedTime(dir, FileTime.fromMillis(Files.getLastModifiedTime(dir).toMillis() + 1000));
+		index.refresh();
+
+		assertFalse(index.contains("old"));
+		assertTrue(index.contains("new"));
+	}
+
+	@Test
+	@Tag("benchmark")
+	void complete_tenThousandExecutables_answersWithoutRescanning() throws IOException {
+		Path dir = Files.createDirectory(tempDir.resolve("bin"));
+		for (int i = 0; i < BENCHMARK_EXECUTABLES; i++) {
+			executable(dir.resolve("cmd" + i));
+		}
+		ExecutableIndex index = new ExecutableIndex(List.of(dir.toString()));
+		assertEquals(BENCHMARK_EXECUTABLES, complete(index, "").size());
+
+		Set<String> listed = index.listing(dir.toString());
+
+		for (int round = 0; round < 20; round++) {
+			assertEquals(111, complete(index, "cmd12").size());
+		}
+
+		// A listing made again would be a new set
+		assertSame(listed, index.listing(dir.toString()));
+	}
+
+	private static List<String> complete(ExecutableIndex index, String prefix) {
+		List<String> names = new ArrayList<>();
+		index.complete(prefix, names);
+		return names;
+	}
+
+	private static void executable(Path file) throws IOException {
+		Files.createFile(file, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwxr-xr-x")));
+	}
+}
@@ -0,0 +1,74 @@
+package repl.utils;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileStatusCacheTest {
+
+	@TempDir
+	Path tempDir;
+
+	private FileStatusCache cache;
+
+	@BeforeEach
+	void setUp() {
+		cache = new FileStatusCache();
+	}
+
+	@Test
+	void get_regularFile_readsTypeAndSize() throws IOException {
+		Path file = Files.writeString(tempDir.resolve("a.txt"), "abc");
+
+		FileStatusCache.FileStatus status = cache.get(file, true);
+
+		assertTrue(status.is(FileStatusCache.TYPE_REGULAR));
+		assertEquals(3, status.size());
+		assertTrue(status.permits(4));
+	}
+
+	@Test
+	void get_missingFile_returnsNull() {
+		assertNull(cache.get(tempDir.resolve("missing"), true));
+	}
+
+	@Test
+	void get_insideStatement_readsFileOnce() throws IOException {
+		Path file = tempDir.resolve("late.txt");
+		cache.beginStatement();
+
+		assertNull(cache.get(file, true));
+		Files.createFile(file);
+		cache.endCommand();
+
+		assertNull(cache.get(file, true));
+		cache.endStatement();
+		assertNotNull(cache.get(file, true));
+	}
+
+	@Test
+	void endCommand_outsideStatement_clearsCache() throws IOException {
+		Path file = tempDir.resolve("late.txt");
+		assertNull(cache.get(file, true));
+		Files.createFile(file);
+
+		cache.endCommand();
+
+		assertNotNull(cache.get(file, true));
+	}
+
+	@Test
+	void get_symbolicLink_distinguishesFollowedAndLinkStatus() throws IOException {
+		Path target = Files.createDirectory(tempDir.resolve("dir"));
+		Path link = Files.createSymbolicLink(tempDir.resolve("link"), target);
+
+		assertTrue(cache.get(link, true).is(FileStatusCache.TYPE_DIRECTORY));
+		assertTrue(cache.get(link, false).is(FileStatusCache.TYPE_SYMBOLIC_LINK));
+	}
+}
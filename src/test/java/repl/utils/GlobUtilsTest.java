@@ -0,0 +1,82 @@
+package repl.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GlobUtilsTest {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void matches_wildcards() {
+		assertTrue(GlobUtils.matches("*.csv", "data.csv"));
+		assertTrue(GlobUtils.matches("*", ""));
+		assertTrue(GlobUtils.matches("a*b*c", "aXbYbc"));
+		assertTrue(GlobUtils.matches("file?.txt", "file1.txt"));
+		assertFalse(GlobUtils.matches("*.csv", "data.csv.bak"));
+		assertFalse(GlobUtils.matches("file?", "file"));
+	}
+
+	@Test
+	void matches_bracketExpressions() {
+		assertTrue(GlobUtils.matches("file[0-9]", "file7"));
+		assertTrue(GlobUtils.matches("[!a]x", "bx"));
+		assertFalse(GlobUtils.matches("[^a]x", "ax"));
+		assertTrue(GlobUtils.matches("[]]", "]"));
+		assertTrue(GlobUtils.matches("a[", "a["));
+	}
+
+	@Test
+	void matches_escapedWildcard_isLiteral() {
+		assertTrue(GlobUtils.matches("\\*.txt", "*.txt"));
+		assertFalse(GlobUtils.matches("\\*.txt", "a.txt"));
+	}
+
+	@Test
+	void hasWildcards_ignoresEscapedCharacters() {
+		assertTrue(GlobUtils.hasWildcards("a*"));
+		assertFalse(GlobUtils.hasWildcards("a\\*"));
+		assertFalse(GlobUtils.hasWildcards("plain"));
+	}
+
+	@Test
+	void expand_matchesSortedAndSkipsHiddenFiles() throws IOException {
+		Files.createFile(tempDir.resolve("b.csv"));
+		Files.createFile(tempDir.resolve("a.csv"));
+		Files.createFile(tempDir.resolve(".hidden.csv"));
+		Files.createFile(tempDir.resolve("c.txt"));
+
+		assertEquals(List.of("a.csv", "b.csv"), GlobUtils.expand(tempDir, "*.csv"));
+		assertEquals(List.of(".hidden.csv"), GlobUtils.expand(tempDir, ".*.csv"));
+	}
+
+	@Test
+	void expand_acrossDirectories_keepsRelativePrefix() throws IOException {
+		Files.createDirectories(tempDir.resolve("logs/2024"));
+		Files.createFile(tempDir.resolve("logs/2024/x.log"));
+		Files.createFile(tempDir.resolve("logs/top.log"));
+
+		assertEquals(List.of("logs/2024/x.log"), GlobUtils.expand(tempDir, "logs/*/*.log"));
+		assertEquals(List.of("logs/2024/"), GlobUtils.expand(tempDir, "logs/*/"));
+	}
+
+	@Test
+	void expand_absolutePattern_returnsAbsolutePaths() throws IOException {
+		Files.createFile(tempDir.resolve("abs.txt"));
+
+		assertEquals(List.of(tempDir + "/abs.txt"), GlobUtils.expand(Path.of("/"), tempDir + "/*.txt"));
+	}
+
+	@Test
+	void expand_noMatch_returnsEmptyList() {
+		assertTrue(GlobUtils.expand(tempDir, "*.none").isEmpty());
+	}
+}
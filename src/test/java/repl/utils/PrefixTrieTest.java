@@ -0,0 +1,71 @@
+package repl.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrefixTrieTest {
+
+	private final PrefixTrie trie = new PrefixTrie();
+
+	@Test
+	void collect_prefix_returnsMatchesSorted() {
+		List.of("grep", "git", "gzip", "ls", "g").forEach(trie::add);
+
+		assertEquals(List.of("g", "git", "grep", "gzip"), collect("g"));
+		assertEquals(List.of("grep"), collect("gr"));
+		assertEquals(List.of(), collect("x"));
+		assertEquals(5, collect("").size());
+	}
+
+	@Test
+	void add_sameNameTwice_needsTwoRemovals() {
+		trie.add("ls");
+		trie.add("ls");
+
+		assertEquals(1, trie.size());
+		assertTrue(trie.remove("ls"));
+		assertTrue(trie.contains("ls"));
+		assertTrue(trie.remove("ls"));
+		assertFalse(trie.contains("ls"));
+		assertEquals(0, trie.size());
+	}
+
+	@Test
+	void remove_keepsLongerAndShorterNames() {
+		List.of("a", "ab", "abc").forEach(trie::add);
+
+		trie.remove("ab");
+
+		assertEquals(List.of("a", "abc"), collect("a"));
+		assertFalse(trie.remove("ab"));
+		assertFalse(trie.remove("abcd"));
+	}
+
+	@Test
+	void remove_lastName_prunesBranch() {
+		trie.add("abc");
+
+		trie.remove("abc");
+
+		assertEquals(List.of(), collect(""));
+		assertFalse(trie.contains("ab"));
+	}
+
+	@Test
+	void contains_prefixOfName_isFalse() {
+		trie.add("python3");
+
+		assertFalse(trie.contains("python"));
+		assertTrue(trie.contains("python3"));
+	}
+
+	private List<String> collect(String prefix) {
+		List<String> names = new ArrayList<>();
+		trie.collect(prefix, names);
+		return names;
+	}
+}
@@ -0,0 +1,30 @@
+package repl.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RedirectUtilsTest {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void prepareTarget_relativePath_resolvesAgainstCurrentDir() throws IOException {
+		Path target = RedirectUtils.prepareTarget(tempDir, "out.txt");
+
+		assertEquals(tempDir.resolve("out.txt"), target);
+	}
+
+	@Test
+	void prepareTarget_nestedPath_createsParentDirectories() throws IOException {
+		Path target = RedirectUtils.prepareTarget(tempDir, "a/b/out.txt");
+
+		assertTrue(Files.isDirectory(target.getParent()));
+	}
+}
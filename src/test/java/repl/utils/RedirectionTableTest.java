@@ -0,0 +1,102 @@
+package repl.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static repl.utils.RedirectionTable.Target.Stream.STDERR;
+import static repl.utils.RedirectionTable.Target.Stream.STDOUT;
+
+class RedirectionTableTest {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void build_noRedirections_returnsNone() {
+		assertSame(RedirectionTable.NONE, RedirectionTable.builder().build());
+	}
+
+	@Test
+	void add_fileThenDuplication_sharesOneFile() {
+		RedirectionTable table = RedirectionTable.builder().add(">", "log").add("2>&", "1").build();
+
+		assertTrue(table.isMerged());
+		assertSame(table.stdout(), table.stderr());
+		assertEquals(1, table.files().size());
+	}
+
+	@Test
+	void add_duplicationThenFile_copiesTheEarlierTarget() {
+		RedirectionTable table = RedirectionTable.builder().add("2>&", "1").add(">", "out").build();
+
+		assertEquals("out", table.stdoutFile());
+		assertEquals(STDOUT, table.stderr());
+		assertTrue(table.crossesStreams());
+	}
+
+	@Test
+	void add_samePathTwice_opensSeparateFiles() {
+		RedirectionTable table = RedirectionTable.builder().add(">", "a").add("2>", "a").build();
+
+		assertFalse(table.isMerged());
+		assertEquals(2, table.files().size());
+	}
+
+	@Test
+	void add_ampersandForms_redirectBothStreams() {
+		RedirectionTable both = RedirectionTable.builder().add("&>>", "all").build();
+		RedirectionTable older = RedirectionTable.builder().add(">&", "all").build();
+
+		assertTrue(both.isMerged());
+		assertTrue(both.files().getFirst().append());
+		assertTrue(older.isMerged());
+		assertFalse(older.files().getFirst().append());
+	}
+
+	@Test
+	void add_unsupportedOrInvalidDuplication_throwsException() {
+		assertEquals("redirection of file descriptor 3 is not supported", assertThrows(IllegalArgumentException.class,
+				() -> RedirectionTable.builder().add("2>&", "3")).getMessage());
+		assertEquals("x: ambiguous redirect", assertThrows(IllegalArgumentException.class,
+				() -> RedirectionTable.builder().add("2>&", "x")).getMessage());
+		assertThrows(IllegalArgumentException.class, () -> RedirectionTable.builder().add("2>&", "0"));
+	}
+
+	@Test
+	void textFor_mergedStream_joinsStdoutFirst() {
+		RedirectionTable table = RedirectionTable.builder().add("1>&", "2").build();
+
+		assertEquals("", table.textFor(STDOUT, "o", "e"));
+		assertEquals("o\ne", table.textFor(STDERR, "o", "e"));
+	}
+
+	@Test
+	void openAndWrite_truncateAndAppendOnNewLines() throws IOException {
+		Files.writeString(tempDir.resolve("a"), "old");
+		Files.writeString(tempDir.resolve("b"), "first");
+		RedirectionTable table = RedirectionTable.builder().add(">", "a").add("2>>", "b").build();
+
+		table.open(tempDir);
+		table.write(tempDir, "out", "err");
+
+		assertEquals("out", Files.readString(tempDir.resolve("a")));
+		assertEquals("first\nerr", Files.readString(tempDir.resolve("b")));
+	}
+
+	@Test
+	void redirect_mergedFile_runsProgramIntoOneHandle() throws IOException, InterruptedException {
+		RedirectionTable table = RedirectionTable.builder().add(">", "log").add("2>&", "1").build();
+		ProcessBuilder pb = new ProcessBuilder("sh", "-c", "echo 1; echo 2 >&2; echo 3").directory(tempDir.toFile());
+
+		table.open(tempDir);
+		table.redirect(pb, tempDir);
+		assertEquals(0, pb.start().waitFor());
+
+		assertEquals("1\n2\n3\n", Files.readString(tempDir.resolve("log")));
+	}
+}
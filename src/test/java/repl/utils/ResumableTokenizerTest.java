@@ -0,0 +1,169 @@
+package repl.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link ResumableTokenizer}.
+ */
+class ResumableTokenizerTest {
+
+	/** Commands the tokenizers of these tests know. */
+	private static final Set<String> COMMANDS = Set.of("echo", "ls", "cat");
+
+	/** Length of the long line typed key by key. */
+	private static final int TYPED_LENGTH = 4000;
+
+	/**
+	 * Characters a keystroke may read on average: those of the word it ends, however long
+	 * the line before it.
+	 */
+	private static final int MAX_READS_PER_KEYSTROKE = 8;
+
+	@Test
+	void update_line_classifiesEachCharacter() {
+		assertEquals("CCCCPQQQQQPEEEEEPRPPPPPOOPUUUU", kinds("echo 'a b' $HOME > out && nope"));
+		assertEquals("CCCPQQQEEEEEQQQQQPQQ", kinds("cat \"x $HOME\\\" y\" \\;"));
+		assertEquals("CCPEEEEEEEEEPEEEEEEE", kinds("ls $(echo a) ${HOME}"));
+		assertEquals("CCCPEEEEEEEEPRPEEEEE", kinds("cat <(ls -a) < >(ls)"));
+	}
+
+	@Test
+	void update_reservedWordsAndAssignments_precedeCommands() {
+		assertEquals("KKPPPPPCCOPKKKKPUUUU", kinds("if x=1 ls; then nope"));
+		assertEquals("CCOOPCCCOPOUUUU", kinds("ls|| cat; (nope"));
+	}
+
+	@Test
+	void update_redirections_joinDescriptorsAndTargets() {
+		assertEquals("CCPRRRPPRRP", kinds("ls 2>&1 >>f"));
+		assertEquals("RRPPPCCCC", kinds("2> e echo"));
+		assertEquals("CCPRRPP", kinds("ls &> f"));
+	}
+
+	@Test
+	void update_unclosedQuote_runsToEndOfLine() {
+		assertEquals("CCCCPQQQQ", kinds("echo 'a b"));
+	}
+
+	@Test
+	void update_completingCommandName_restylesFromWordStart() {
+		ResumableTokenizer tokenizer = new ResumableTokenizer(COMMANDS::contains);
+
+		assertEquals(0, tokenizer.update("e", 0));
+		assertEquals(1, tokenizer.update("ec", 1));
+		assertEquals(2, tokenizer.update("ech", 2));
+		assertEquals("UUU", kinds(tokenizer, 3));
+		assertEquals(0, tokenizer.update("echo", 3));
+		assertEquals("CCCC", kinds(tokenizer, 4));
+		assertEquals(4, tokenizer.update("echo x", 4));
+		assertEquals(0, tokenizer.update("ech x", 3));
+		assertEquals("UUUPP", kinds(tokenizer, 5));
+	}
+
+	@Test
+	void update_randomEdits_matchLexingFromStart() {
+		Random random = new Random(42);
+		String alphabet = "ecls ho'\"\\$(){}<>&|;12x=\n";
+		ResumableTokenizer incremental = new ResumableTokenizer(COMMANDS::contains);
+		StringBuilder line = new StringBuilder();
+		for (int edit = 0; edit < 5000; edit++) {
+			int at = random.nextInt(line.length() + 1);
+			if (random.nextInt(4) == 0 && at < line.length()) {
+				line.delete(at, Math.min(line.length(), at + 1 + random.nextInt(3)));
+			} else {
+				line.insert(at, alphabet.charAt(random.nextInt(alphabet.length())));
+			}
+			if (line.length() > 60) {
+				line.setLength(30);
+				at = Math.min(at, 30);
+			}
+			incremental.update(line, at);
+
+			assertEquals(kinds(line.toString()), kinds(incremental, line.length()), "after edit " + edit + ": " + line);
+		}
+	}
+
+	@Test
+	void update_typingLongLine_relexesOnlyLastWord() {
+		StringBuilder line = new StringBuilder();
+		String words = "echo 'quoted text' $HOME > out && ls -la | cat; ";
+		for (int i = 0; i < TYPED_LENGTH; i++) {
+			line.append(words.charAt(i % words.length()));
+		}
+		CountingLine typed = new CountingLine(line);
+
+		ResumableTokenizer tokenizer = new ResumableTokenizer(COMMANDS::contains);
+		for (int length = 1; length <= line.length(); length++) {
+			typed.length = length;
+			tokenizer.update(typed, length - 1);
+		}
+
+		assertEquals(kinds(line.toString()), kinds(tokenizer, line.length()));
+		// Lexing from the start on every keystroke reads about length^2 / 2 characters
+		assertTrue(typed.reads < (long) MAX_READS_PER_KEYSTROKE * TYPED_LENGTH,
+			typed.reads + " characters read for " + TYPED_LENGTH + " keystrokes");
+	}
+
+	/** The kinds of a line lexed at once, one letter each. */
+	private static String kinds(String line) {
+		ResumableTokenizer tokenizer = new ResumableTokenizer(COMMANDS::contains);
+		tokenizer.update(line, 0);
+		return kinds(tokenizer, line.length());
+	}
+
+	private static String kinds(ResumableTokenizer tokenizer, int length) {
+		StringBuilder kinds = new StringBuilder();
+		for (int i = 0; i < length; i++) {
+			kinds.append(switch (tokenizer.kind(i)) {
+				case PLAIN -> 'P';
+				case COMMAND -> 'C';
+				case UNKNOWN_COMMAND -> 'U';
+				case KEYWORD -> 'K';
+				case QUOTED -> 'Q';
+				case EXPANSION -> 'E';
+				case REDIRECT -> 'R';
+				case OPERATOR -> 'O';
+			});
+		}
+		return kinds.toString();
+	}
+
+	/**
+	 * The first characters of a line, as typed so far, counting the characters read.
+	 */
+	private static final class CountingLine implements CharSequence {
+		private final CharSequence line;
+		int length;
+		long reads;
+
+		CountingLine(CharSequence line) {
+			this.line = line;
+		}
+
+		@Override
+		public int length() {
+			return length;
+		}
+
+		@Override
+		public char charAt(int index) {
+			reads++;
+			return line.charAt(index);
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			return line.subSequence(start, end);
+		}
+
+		@Override
+		public String toString() {
+			return line.subSequence(0, length).toString();
+		}
+	}
+}